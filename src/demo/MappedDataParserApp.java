@@ -0,0 +1,82 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package demo;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+import org.opensourcephysics.display.MappedDataParser;
+
+/**
+ * Writes a temporary file of random data and reports the rate at which
+ * MappedDataParser reads it.
+ *
+ * @version 1.0
+ */
+public class MappedDataParserApp {
+  /**
+   * Runs the benchmark.
+   *
+   * @param args the number of rows and columns (default 5000000 and 4)
+   */
+  public static void main(String[] args) throws IOException {
+    int rows = (args.length>0) ? Integer.parseInt(args[0]) : 5000000;
+    int cols = (args.length>1) ? Integer.parseInt(args[1]) : 4;
+    File file = File.createTempFile("osp_data", ".txt"); //$NON-NLS-1$ //$NON-NLS-2$
+    file.deleteOnExit();
+    PrintWriter out = new PrintWriter(new FileWriter(file));
+    StringBuffer header = new StringBuffer("c0"); //$NON-NLS-1$
+    for(int j = 1; j<cols; j++) {
+      header.append("\tc").append(j); //$NON-NLS-1$
+    }
+    out.println(header);
+    Random random = new Random(0);
+    for(int i = 0; i<rows; i++) {
+      StringBuffer line = new StringBuffer();
+      line.append(i*0.001);
+      for(int j = 1; j<cols; j++) {
+        line.append('\t').append(Math.round(random.nextGaussian()*1e6)/1e3);
+      }
+      out.println(line);
+    }
+    out.close();
+    MappedDataParser parser = new MappedDataParser(file);
+    for(int i = 0; i<3; i++) {
+      parser.parse();
+      System.out.println(parser.getRowCount()+" rows, "+file.length()/1048576+" MB: " //$NON-NLS-1$ //$NON-NLS-2$
+                         +(long) parser.getRowsPerSecond()+" rows/s"); //$NON-NLS-1$
+    }
+    file.delete();
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -6,7 +6,9 @@
  */
 
 package org.opensourcephysics.controls;
+import java.awt.DisplayMode;
 import java.awt.Frame;
+import java.awt.GraphicsEnvironment;
 import java.text.DecimalFormat;
 import java.util.Collection;
 import javax.swing.JFrame;
@@ -22,10 +24,24 @@ import org.opensourcephysics.display.OSPFrame;
  * @version 1.0
  */
 public abstract class AbstractAnimation implements Animation, Runnable {
+  /** Scheduler mode that steps and then sleeps for the remainder of the delay time. */
+  public static final int PACED = 0;
+
+  /** Scheduler mode that steps as fast as possible and renders at the frame rate. */
+  public static final int FREE_RUNNING = 1;
+
+  /** Scheduler mode that steps at a fixed rate in real time and renders at the frame rate. */
+  public static final int FIXED_RATE = 2;
   protected OSPFrame mainFrame;                                        // the main frame that closed the program
   protected Control control;                                           // the model's control
   protected volatile Thread animationThread;
   protected int delayTime = 100;                                       // time between animation steps in milliseconds
+  protected int schedulerMode = PACED;
+  protected double stepRate = 1000;                                    // steps per second in FIXED_RATE mode
+  protected double maxFrameRate = getDisplayRefreshRate();             // frames per second in FREE_RUNNING and FIXED_RATE modes
+  protected volatile boolean headless = false;                         // true if frames are never rendered
+  private volatile double stepsPerSecond, framesPerSecond;
+  private long rateStartTime, rateSteps, rateFrames;
 
   /** Field decimalFormat can be used to display time and other numeric values. */
   protected DecimalFormat decimalFormat = new DecimalFormat("0.00E0"); // default numeric format for messages //$NON-NLS-1$
@@ -67,6 +83,91 @@ public abstract class AbstractAnimation implements Animation, Runnable {
     return delayTime;
   }
 
+  /**
+   * Sets the scheduler mode. PACED calls doStep and then sleeps for the remainder of the
+   * delay time. FREE_RUNNING calls doStep as fast as possible and FIXED_RATE calls it
+   * at the step rate; both render at most at the maximum frame rate.
+   *
+   * @param mode PACED, FREE_RUNNING or FIXED_RATE
+   */
+  public void setSchedulerMode(int mode) {
+    schedulerMode = mode;
+  }
+
+  /**
+   * Gets the scheduler mode.
+   * @return PACED, FREE_RUNNING or FIXED_RATE
+   */
+  public int getSchedulerMode() {
+    return schedulerMode;
+  }
+
+  /**
+   * Sets the number of steps per second of real time in FIXED_RATE mode.
+   * @param rate the step rate
+   */
+  public void setStepRate(double rate) {
+    stepRate = Math.max(rate, 1.0e-3);
+  }
+
+  /**
+   * Gets the number of steps per second of real time in FIXED_RATE mode.
+   * @return the step rate
+   */
+  public double getStepRate() {
+    return stepRate;
+  }
+
+  /**
+   * Sets the maximum number of frames rendered per second in FREE_RUNNING and FIXED_RATE
+   * modes. The rate is limited to the refresh rate of the display.
+   *
+   * @param rate the frame rate
+   */
+  public void setMaxFrameRate(double rate) {
+    maxFrameRate = Math.max(1.0e-3, Math.min(rate, getDisplayRefreshRate()));
+  }
+
+  /**
+   * Gets the maximum number of frames rendered per second.
+   * @return the frame rate
+   */
+  public double getMaxFrameRate() {
+    return maxFrameRate;
+  }
+
+  /**
+   * Sets the headless flag. A headless animation never renders frames, which is useful for batch runs.
+   * @param headless true to disable rendering
+   */
+  public void setHeadless(boolean headless) {
+    this.headless = headless;
+  }
+
+  /**
+   * Gets the headless flag.
+   * @return true if rendering is disabled
+   */
+  public boolean isHeadless() {
+    return headless;
+  }
+
+  /**
+   * Gets the number of steps per second achieved by the animation thread.
+   * @return the measured step rate
+   */
+  public double getStepsPerSecond() {
+    return stepsPerSecond;
+  }
+
+  /**
+   * Gets the number of frames per second rendered by the animation thread.
+   * @return the measured frame rate
+   */
+  public double getFrameRate() {
+    return framesPerSecond;
+  }
+
   /**
    * Gets the main OSPFrame.  The main frame will usually exit program when it is closed.
    * @return OSPFrame
@@ -138,6 +239,23 @@ public abstract class AbstractAnimation implements Animation, Runnable {
    */
   abstract protected void doStep();
 
+  /**
+   * Does a step of the animation thread in FREE_RUNNING and FIXED_RATE modes.
+   */
+  protected void advance() {
+    doStep();
+  }
+
+  /**
+   * Renders a frame in FREE_RUNNING and FIXED_RATE modes. Animations render in doStep
+   * so this method does nothing and no frames are counted in the frame rate.
+   *
+   * @return true if a frame was drawn
+   */
+  protected boolean renderFrame() {
+    return false;
+  }
+
   /**
    * Stops the animation.
    *
@@ -188,6 +306,7 @@ public abstract class AbstractAnimation implements Animation, Runnable {
     if(animationThread!=null) {
       return; // animation is running
     }
+    resetRates();
     animationThread = new Thread(this);
     animationThread.setPriority(Thread.NORM_PRIORITY);
     //animationThread.setPriority(Thread.MAX_PRIORITY);   // for testing
@@ -210,10 +329,16 @@ public abstract class AbstractAnimation implements Animation, Runnable {
    * Implementation of Runnable interface.  DO NOT access this method directly.
    */
   public void run() {
+    if(schedulerMode!=PACED) {
+      runClocked();
+      return;
+    }
     long sleepTime = delayTime;
     while(animationThread==Thread.currentThread()) {
       long currentTime = System.currentTimeMillis();
       doStep();
+      stepDone();
+      updateRates();
       // adjust the sleep time to try and achieve a constant animation rate
       // some VMs will hang if sleep time is less than 10
       sleepTime = Math.max(10, delayTime-(System.currentTimeMillis()-currentTime));
@@ -223,6 +348,113 @@ public abstract class AbstractAnimation implements Animation, Runnable {
     }
   }
 
+  /**
+   * Runs the animation thread in FREE_RUNNING or FIXED_RATE mode. Steps and frames
+   * have separate clocks so that rendering never limits the step rate.
+   */
+  protected void runClocked() {
+    long startTime = System.nanoTime();
+    long nextFrameTime = startTime;
+    long steps = 0;
+    while(animationThread==Thread.currentThread()) {
+      long now = System.nanoTime();
+      if(schedulerMode==FIXED_RATE) {
+        long due = (long) ((now-startTime)*1.0e-9*stepRate);
+        long maxBacklog = Math.max(1, (long) (0.25*stepRate)); // drop steps rather than fall behind forever
+        if(due-steps>maxBacklog) {
+          steps = due-maxBacklog;
+        }
+        while((steps<due)&&(animationThread==Thread.currentThread())) {
+          advance();
+          stepDone();
+          steps++;
+          if(!headless&&(System.nanoTime()>=nextFrameTime)) {
+            break; // render before catching up
+          }
+        }
+      } else {
+        advance();
+        stepDone();
+      }
+      now = System.nanoTime();
+      if(!headless&&(now>=nextFrameTime)) {
+        if(renderFrame()) {
+          frameDone();
+        }
+        nextFrameTime = now+(long) (1.0e9/maxFrameRate);
+      }
+      updateRates();
+      if(schedulerMode==FIXED_RATE) {
+        long wakeTime = startTime+(long) ((steps+1)*1.0e9/stepRate);
+        if(!headless) {
+          wakeTime = Math.min(wakeTime, nextFrameTime);
+        }
+        long sleepTime = (wakeTime-System.nanoTime())/1000000;
+        if(sleepTime>0) {
+          try {
+            Thread.sleep(sleepTime);
+          } catch(InterruptedException ie) {}
+        }
+      }
+    }
+  }
+
+  /**
+   * Records a completed step for the measured step rate.
+   */
+  final void stepDone() {
+    rateSteps++;
+  }
+
+  /**
+   * Records a rendered frame for the measured frame rate.
+   */
+  final void frameDone() {
+    rateFrames++;
+  }
+
+  /**
+   * Updates the measured rates about twice a second.
+   */
+  final void updateRates() {
+    long now = System.nanoTime();
+    long elapsed = now-rateStartTime;
+    if(elapsed>=500000000L) {
+      stepsPerSecond = rateSteps*1.0e9/elapsed;
+      framesPerSecond = rateFrames*1.0e9/elapsed;
+      rateSteps = 0;
+      rateFrames = 0;
+      rateStartTime = now;
+    }
+  }
+
+  private void resetRates() {
+    rateSteps = 0;
+    rateFrames = 0;
+    rateStartTime = System.nanoTime();
+    stepsPerSecond = 0;
+    framesPerSecond = 0;
+  }
+
+  /**
+   * Gets the refresh rate of the default screen, or 60 if it is unknown.
+   *
+   * @return the refresh rate in Hz
+   */
+  public static double getDisplayRefreshRate() {
+    try {
+      if(!GraphicsEnvironment.isHeadless()) {
+        DisplayMode mode = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode();
+        if((mode!=null)&&(mode.getRefreshRate()!=DisplayMode.REFRESH_RATE_UNKNOWN)) {
+          return mode.getRefreshRate();
+        }
+      }
+    } catch(Exception ex) {
+      /** empty block */
+    }
+    return 60;
+  }
+
   /**
    * Returns an XML.ObjectLoader to save and load data for this object.
    *
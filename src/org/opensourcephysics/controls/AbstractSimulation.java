@@ -44,6 +44,8 @@ abstract public class AbstractSimulation extends AbstractAnimation implements Si
   protected boolean showStepsPerDisplay = false;
   protected int stepsPerDisplay = 1;
   protected int stepCounter = 0;
+  protected Checkpoint checkpoint;
+  protected int checkpointInterval = 0;
 
   /**
    * Sets the Control for this model and initializes the control's values.
@@ -161,8 +163,11 @@ abstract public class AbstractSimulation extends AbstractAnimation implements Si
     startRunning();
     super.stepAnimation();
     stepCounter++;
+    checkpointIfDue();
     stopRunning();
-    org.opensourcephysics.display.GUIUtils.repaintAnimatedFrames();
+    if(!headless) {
+      org.opensourcephysics.display.GUIUtils.repaintAnimatedFrames();
+    }
   }
 
   /**
@@ -251,6 +256,50 @@ abstract public class AbstractSimulation extends AbstractAnimation implements Si
     return stepsPerDisplay;
   }
 
+  /**
+   * Sets a checkpoint that is saved every given number of steps. The checkpoint is
+   * saved after doStep on the simulation thread, so its arrays are consistent.
+   *
+   * @param checkpoint the checkpoint, or null for none
+   * @param interval the number of steps between saves
+   */
+  public void setCheckpoint(Checkpoint checkpoint, int interval) {
+    this.checkpoint = checkpoint;
+    checkpointInterval = Math.max(1, interval);
+  }
+
+  /**
+   * Gets the checkpoint.
+   *
+   * @return the checkpoint, or null if none
+   */
+  public Checkpoint getCheckpoint() {
+    return checkpoint;
+  }
+
+  /**
+   * Restores the registered state and step counter from the latest checkpoint file.
+   *
+   * @return true if restored
+   */
+  public boolean restoreCheckpoint() {
+    if(checkpoint==null) {
+      return false;
+    }
+    long step = checkpoint.restoreLatest();
+    if(step<0) {
+      return false;
+    }
+    stepCounter = (int) step;
+    return true;
+  }
+
+  private void checkpointIfDue() {
+    if((checkpoint!=null)&&(stepCounter%checkpointInterval==0)) {
+      checkpoint.save(stepCounter);
+    }
+  }
+
   /**
    * Resets the simulation to its default state.
    *
@@ -258,23 +307,56 @@ abstract public class AbstractSimulation extends AbstractAnimation implements Si
    */
   public void reset() {}
 
+  /**
+   * Does a simulation step in FREE_RUNNING and FIXED_RATE modes.
+   */
+  protected void advance() {
+    doStep();
+    stepCounter++;
+    checkpointIfDue();
+  }
+
+  /**
+   * Renders the animated frames in FREE_RUNNING and FIXED_RATE modes.
+   *
+   * @return true since the animated frames were drawn
+   */
+  protected boolean renderFrame() {
+    GUIUtils.renderAnimatedFrames();
+    return true;
+  }
+
   /**
    * Implementation of Runnable interface.  DO NOT access this method directly.
+   *
+   * In FREE_RUNNING and FIXED_RATE modes the steps per display is ignored and frames are
+   * rendered at most at the maximum frame rate.
    */
   public void run() {
     GUIUtils.setAnimatedFrameIgnoreRepaint(true); // animated frames are updated by this thread so no need to repaint
+    if(schedulerMode!=PACED) {
+      runClocked();
+      GUIUtils.setAnimatedFrameIgnoreRepaint(false);
+      return;
+    }
     long sleepTime = delayTime;
     while(animationThread==Thread.currentThread()) {
       long currentTime = System.currentTimeMillis();
       for(int i = 0; i<stepsPerDisplay; i++) {
         doStep();
         stepCounter++;
+        stepDone();
+        checkpointIfDue();
         if(animationThread!=Thread.currentThread()) {
           break;        // check for stop condition
         }
         Thread.yield(); // give other threads a chance to run if needed
       }
-      org.opensourcephysics.display.GUIUtils.renderAnimatedFrames();
+      if(!headless) {
+        GUIUtils.renderAnimatedFrames();
+        frameDone();
+      }
+      updateRates();
       // adjust the sleep time to try and achieve a constant animation rate
       // some VMs will hang if sleep time is less than 10
       sleepTime = Math.max(10, delayTime-(System.currentTimeMillis()-currentTime));
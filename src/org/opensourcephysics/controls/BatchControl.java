@@ -0,0 +1,286 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.controls;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * BatchControl is a SimControl without a graphical user interface. Parameters and
+ * output values are stored in an XMLControlElement, which can be read from a
+ * parameter file, and messages are collected in a buffer. Numbers are converted
+ * between int, double and string values as needed so that parameters written by
+ * hand may be read with any of the getters.
+ *
+ * A BatchControl lets simulations and calculations run without a display, for
+ * example in a SweepRunner.
+ *
+ * @version 1.0
+ */
+public class BatchControl implements SimControl {
+  private XMLControlElement parameters = new XMLControlElement();
+  private StringBuffer messages = new StringBuffer();
+  private boolean echo = false;
+  private volatile boolean done = false;
+
+  /**
+   * Constructs an empty BatchControl.
+   */
+  public BatchControl() {}
+
+  /**
+   * Constructs a BatchControl and copies the values of an XMLControl.
+   *
+   * @param control the values
+   */
+  public BatchControl(XMLControl control) {
+    setValues(control);
+  }
+
+  /**
+   * Constructs a BatchControl and reads the values from an xml parameter file.
+   *
+   * @param fileName the file name
+   */
+  public BatchControl(String fileName) {
+    parameters.read(fileName);
+  }
+
+  /**
+   * Copies the values of an XMLControl into this control. Existing values
+   * with the same names are replaced.
+   *
+   * @param control the values
+   */
+  public void setValues(XMLControl control) {
+    for(String name : control.getPropertyNames()) {
+      String type = control.getPropertyType(name);
+      if("int".equals(type)) {        //$NON-NLS-1$
+        setValue(name, control.getInt(name));
+      } else if("double".equals(type)) { //$NON-NLS-1$
+        setValue(name, control.getDouble(name));
+      } else if("boolean".equals(type)) { //$NON-NLS-1$
+        setValue(name, control.getBoolean(name));
+      } else if("string".equals(type)) { //$NON-NLS-1$
+        setValue(name, control.getString(name));
+      } else {
+        setValue(name, control.getObject(name));
+      }
+    }
+  }
+
+  /**
+   * Gets the XMLControlElement that stores the values.
+   *
+   * @return the values
+   */
+  public XMLControlElement getParameters() {
+    return parameters;
+  }
+
+  /**
+   * Sets whether messages are also printed to System.out.
+   *
+   * @param echo true to print messages
+   */
+  public void setEcho(boolean echo) {
+    this.echo = echo;
+  }
+
+  /**
+   * Gets the messages printed to this control.
+   *
+   * @return the messages
+   */
+  public String getMessages() {
+    return messages.toString();
+  }
+
+  /**
+   * Determines if calculationDone has been called.
+   *
+   * @return true if the model reported that it is done
+   */
+  public boolean isDone() {
+    return done;
+  }
+
+  /**
+   * Sets or clears the done flag.
+   *
+   * @param done the done flag
+   */
+  public void setDone(boolean done) {
+    this.done = done;
+  }
+
+  public void setLockValues(boolean lock) {
+    // this control does not have a user interface
+  }
+
+  public void setValue(String name, Object val) {
+    parameters.setValue(name, val);
+  }
+
+  public void setValue(String name, double val) {
+    parameters.setValue(name, val);
+  }
+
+  public void setValue(String name, int val) {
+    parameters.setValue(name, val);
+  }
+
+  public void setValue(String name, boolean val) {
+    parameters.setValue(name, val);
+  }
+
+  public void setAdjustableValue(String name, boolean val) {
+    parameters.setValue(name, val);
+  }
+
+  public void setAdjustableValue(String name, double val) {
+    parameters.setValue(name, val);
+  }
+
+  public void setAdjustableValue(String name, int val) {
+    parameters.setValue(name, val);
+  }
+
+  public void setAdjustableValue(String name, Object val) {
+    parameters.setValue(name, val);
+  }
+
+  public void removeParameter(String name) {
+    parameters.setValue(name, null);
+  }
+
+  public void setParameterToFixed(String name, boolean fixed) {
+    // this control does not have a user interface
+  }
+
+  /**
+   * Gets the int value of a parameter. Double and string values are converted.
+   *
+   * @param name the name
+   * @return the value, or Integer.MIN_VALUE if not found
+   */
+  public int getInt(String name) {
+    String type = parameters.getPropertyType(name);
+    if("double".equals(type)||"string".equals(type)) { //$NON-NLS-1$ //$NON-NLS-2$
+      double val = getDouble(name);
+      return Double.isNaN(val) ? Integer.MIN_VALUE : (int) Math.round(val);
+    }
+    return parameters.getInt(name);
+  }
+
+  /**
+   * Gets the double value of a parameter. String values are converted.
+   *
+   * @param name the name
+   * @return the value, or Double.NaN if not found
+   */
+  public double getDouble(String name) {
+    if("string".equals(parameters.getPropertyType(name))) { //$NON-NLS-1$
+      try {
+        return Double.parseDouble(parameters.getString(name).trim());
+      } catch(NumberFormatException ex) {
+        return Double.NaN;
+      }
+    }
+    return parameters.getDouble(name);
+  }
+
+  public Object getObject(String name) {
+    return parameters.getObject(name);
+  }
+
+  /**
+   * Gets the string value of a parameter. Numbers and booleans are converted.
+   *
+   * @param name the name
+   * @return the value, or null if not found
+   */
+  public String getString(String name) {
+    String type = parameters.getPropertyType(name);
+    if("int".equals(type)) {             //$NON-NLS-1$
+      return String.valueOf(parameters.getInt(name));
+    } else if("double".equals(type)) {   //$NON-NLS-1$
+      return String.valueOf(parameters.getDouble(name));
+    } else if("boolean".equals(type)) {  //$NON-NLS-1$
+      return String.valueOf(parameters.getBoolean(name));
+    }
+    return parameters.getString(name);
+  }
+
+  public boolean getBoolean(String name) {
+    return parameters.getBoolean(name);
+  }
+
+  public Collection<String> getPropertyNames() {
+    return new ArrayList<String>(parameters.getPropertyNames());
+  }
+
+  public void println(String s) {
+    print(s+XML.NEW_LINE);
+  }
+
+  public void println() {
+    print(XML.NEW_LINE);
+  }
+
+  public void print(String s) {
+    messages.append(s);
+    if(echo) {
+      System.out.print(s);
+    }
+  }
+
+  public void clearMessages() {
+    messages.setLength(0);
+  }
+
+  public void clearValues() {
+    parameters.clearValues();
+  }
+
+  /**
+   * Records that the model is done and prints the message, if any.
+   *
+   * @param message the message
+   */
+  public void calculationDone(String message) {
+    done = true;
+    if(message!=null) {
+      println(message);
+    }
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
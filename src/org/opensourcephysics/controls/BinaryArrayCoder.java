@@ -0,0 +1,304 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.controls;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * This encodes int, double and boolean arrays of any dimension as base64 strings
+ * of little-endian IEEE bytes, optionally deflated. Elements are copied through
+ * typed buffers so no element is boxed.
+ *
+ * An encoded string has a typed header followed by the base64 data:
+ * <pre>
+ *    base64:double[][]:1608:deflate:eJzt...
+ * </pre>
+ * The header fields are the array type, the number of raw (inflated) bytes and an
+ * optional deflate flag. The raw bytes hold, for each array in depth-first order,
+ * its int length (-1 for a null array) followed by its elements if it is a
+ * primitive array.
+ *
+ * @version 1.0
+ */
+public class BinaryArrayCoder {
+  /** prefix that identifies an encoded array string */
+  public static final String PREFIX = "base64:"; //$NON-NLS-1$
+  private static final String DEFLATE = "deflate"; //$NON-NLS-1$
+
+  private BinaryArrayCoder() {
+
+  /** empty block */
+  }
+
+  /**
+   * Determines if an array can be encoded. The base component type must be int,
+   * double or boolean.
+   *
+   * @param type the array class
+   * @return true if arrays of this type can be encoded
+   */
+  public static boolean canEncode(Class<?> type) {
+    if((type==null)||!type.isArray()) {
+      return false;
+    }
+    while(type.isArray()) {
+      type = type.getComponentType();
+    }
+    return(type==Integer.TYPE)||(type==Double.TYPE)||(type==Boolean.TYPE);
+  }
+
+  /**
+   * Determines if a string is an encoded array.
+   *
+   * @param s the string
+   * @return true if the string starts with the base64 prefix
+   */
+  public static boolean isEncoded(String s) {
+    return(s!=null)&&s.startsWith(PREFIX);
+  }
+
+  /**
+   * Encodes an int, double or boolean array of any dimension.
+   *
+   * @param array the array
+   * @param deflate true to deflate the bytes before base64 encoding
+   * @return the encoded string
+   */
+  public static String encode(Object array, boolean deflate) {
+    long size = byteCount(array);
+    if(size>Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("array too large to encode: "+size+" bytes"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    ByteBuffer buf = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+    put(buf, array);
+    byte[] bytes = buf.array();
+    int length = bytes.length;
+    if(deflate) {
+      Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      deflater.setInput(bytes);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length/4));
+      byte[] chunk = new byte[65536];
+      while(!deflater.finished()) {
+        int n = deflater.deflate(chunk);
+        out.write(chunk, 0, n);
+      }
+      deflater.end();
+      bytes = out.toByteArray();
+    }
+    char[] chars = Base64Coder.encode(bytes);
+    String header = PREFIX+typeName(array.getClass())+":"+length+":"+(deflate ? DEFLATE+":" : ""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    StringBuffer sb = new StringBuffer(header.length()+chars.length);
+    sb.append(header);
+    sb.append(chars);
+    return sb.toString();
+  }
+
+  /**
+   * Decodes an encoded array string.
+   *
+   * @param s the encoded string
+   * @param type the expected array class
+   * @return the array, or null if the string is not an encoded array of the expected type
+   */
+  public static Object decode(String s, Class<?> type) {
+    if(!isEncoded(s)||!canEncode(type)) {
+      return null;
+    }
+    int i = PREFIX.length();
+    int j = s.indexOf(':', i);
+    if((j<0)||!s.substring(i, j).equals(typeName(type))) {
+      return null;
+    }
+    i = j+1;
+    j = s.indexOf(':', i);
+    if(j<0) {
+      return null;
+    }
+    try {
+      int length = Integer.parseInt(s.substring(i, j));
+      i = j+1;
+      boolean deflated = s.startsWith(DEFLATE+":", i); //$NON-NLS-1$
+      if(deflated) {
+        i += DEFLATE.length()+1;
+      }
+      char[] chars = new char[s.length()-i];
+      s.getChars(i, s.length(), chars, 0);
+      byte[] bytes = Base64Coder.decode(chars);
+      if(deflated) {
+        Inflater inflater = new Inflater();
+        inflater.setInput(bytes);
+        byte[] raw = new byte[length];
+        int n = 0;
+        while((n<length)&&!inflater.finished()) {
+          int count = inflater.inflate(raw, n, length-n);
+          if((count==0)&&(inflater.needsInput()||inflater.needsDictionary())) {
+            break;
+          }
+          n += count;
+        }
+        inflater.end();
+        if(n!=length) {
+          return null;
+        }
+        bytes = raw;
+      }
+      ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+      return get(buf, type);
+    } catch(DataFormatException ex) {
+      return null;
+    } catch(RuntimeException ex) { // invalid length, base64 data or truncated buffer
+      return null;
+    }
+  }
+
+  /**
+   * Returns the type name of an array class, eg "double[][]".
+   *
+   * @param type the array class
+   * @return the type name
+   */
+  public static String typeName(Class<?> type) {
+    String brackets = ""; //$NON-NLS-1$
+    while(type.isArray()) {
+      brackets += "[]"; //$NON-NLS-1$
+      type = type.getComponentType();
+    }
+    return type.getName()+brackets;
+  }
+
+  /**
+   * Returns the number of raw bytes needed to encode an array.
+   *
+   * @param array the array, may be null
+   * @return the byte count
+   */
+  private static long byteCount(Object array) {
+    if(array==null) {
+      return 4;
+    }
+    if(array instanceof double[]) {
+      return 4+8L*((double[]) array).length;
+    }
+    if(array instanceof int[]) {
+      return 4+4L*((int[]) array).length;
+    }
+    if(array instanceof boolean[]) {
+      return 4+((boolean[]) array).length;
+    }
+    Object[] arrays = (Object[]) array;
+    long size = 4;
+    for(int i = 0; i<arrays.length; i++) {
+      size += byteCount(arrays[i]);
+    }
+    return size;
+  }
+
+  /**
+   * Writes an array into a buffer.
+   *
+   * @param buf the buffer
+   * @param array the array, may be null
+   */
+  private static void put(ByteBuffer buf, Object array) {
+    if(array==null) {
+      buf.putInt(-1);
+    } else if(array instanceof double[]) {
+      double[] data = (double[]) array;
+      buf.putInt(data.length);
+      buf.asDoubleBuffer().put(data);
+      buf.position(buf.position()+8*data.length);
+    } else if(array instanceof int[]) {
+      int[] data = (int[]) array;
+      buf.putInt(data.length);
+      buf.asIntBuffer().put(data);
+      buf.position(buf.position()+4*data.length);
+    } else if(array instanceof boolean[]) {
+      boolean[] data = (boolean[]) array;
+      buf.putInt(data.length);
+      for(int i = 0; i<data.length; i++) {
+        buf.put(data[i] ? (byte) 1 : (byte) 0);
+      }
+    } else {
+      Object[] arrays = (Object[]) array;
+      buf.putInt(arrays.length);
+      for(int i = 0; i<arrays.length; i++) {
+        put(buf, arrays[i]);
+      }
+    }
+  }
+
+  /**
+   * Reads an array from a buffer.
+   *
+   * @param buf the buffer
+   * @param type the array class
+   * @return the array, may be null
+   */
+  private static Object get(ByteBuffer buf, Class<?> type) {
+    int length = buf.getInt();
+    if(length<0) {
+      return null;
+    }
+    Class<?> componentType = type.getComponentType();
+    if(componentType==Double.TYPE) {
+      double[] data = new double[length];
+      buf.asDoubleBuffer().get(data);
+      buf.position(buf.position()+8*length);
+      return data;
+    }
+    if(componentType==Integer.TYPE) {
+      int[] data = new int[length];
+      buf.asIntBuffer().get(data);
+      buf.position(buf.position()+4*length);
+      return data;
+    }
+    if(componentType==Boolean.TYPE) {
+      boolean[] data = new boolean[length];
+      for(int i = 0; i<length; i++) {
+        data[i] = buf.get()!=0;
+      }
+      return data;
+    }
+    Object[] arrays = (Object[]) Array.newInstance(componentType, length);
+    for(int i = 0; i<length; i++) {
+      arrays[i] = get(buf, componentType);
+    }
+    return arrays;
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
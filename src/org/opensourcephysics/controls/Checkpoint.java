@@ -0,0 +1,600 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.controls;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Checkpoint saves and restores the state of a long-running simulation. The state
+ * is a set of registered primitive arrays, such as ODE state vectors, lattice
+ * cells or particle coordinates, and arrays of such arrays.
+ *
+ * A save copies the registered arrays into a snapshot buffer, which takes about as
+ * long as a memory copy, and then writes the snapshot to a file on a background
+ * thread so the simulation can continue stepping. Saves are skipped while the
+ * previous snapshot is still being written, so the write time never slows the
+ * simulation. The latest snapshot is kept in memory for rollback.
+ *
+ * Files are written in a compact binary format with a CRC32 checksum to a temporary
+ * file that is then renamed, so a crash during a write leaves the previous files
+ * intact. restoreLatest reads the newest valid file.
+ *
+ * Save and rollback must be called between steps on the thread that changes the
+ * arrays. Arrays that are replaced rather than changed in place must be
+ * registered again.
+ *
+ * @version 1.0
+ */
+public class Checkpoint {
+  static final int MAGIC = 0x4F535043; // "OSPC"
+  static final int VERSION = 1;
+  static final String EXTENSION = ".ckp"; //$NON-NLS-1$
+  private static ExecutorService writer;
+  // instance fields
+  private File directory;
+  private String name;
+  private ArrayList<String> names = new ArrayList<String>();
+  private ArrayList<Object> arrays = new ArrayList<Object>();
+  private Object[] latest, spare;    // snapshot buffers
+  private long latestStep = -1;
+  private long sequence;
+  private int keepCount = 2;
+  private volatile Future<?> pendingWrite;
+  private volatile IOException lastError;
+  private int skipCount;
+
+  /**
+   * Constructs a Checkpoint that writes files name.nnnnnn.ckp in a directory.
+   *
+   * @param directory the directory
+   * @param name the base file name
+   */
+  public Checkpoint(File directory, String name) {
+    this.directory = directory;
+    this.name = name;
+    File[] files = listFiles();
+    if(files.length>0) {
+      sequence = getSequence(files[0]);
+    }
+  }
+
+  /**
+   * Registers a primitive array, or an array of primitive arrays, as part of the state.
+   * An array registered with an existing name replaces the old array.
+   *
+   * @param name the name of the array
+   * @param array the array
+   */
+  public synchronized void register(String name, Object array) {
+    checkType(array);
+    int i = names.indexOf(name);
+    if(i>=0) {
+      arrays.set(i, array);
+    } else {
+      names.add(name);
+      arrays.add(array);
+    }
+    latest = null;
+    spare = null;
+    latestStep = -1;
+  }
+
+  /**
+   * Sets the number of checkpoint files kept in the directory. Default is 2.
+   *
+   * @param n the number of files
+   */
+  public void setKeepCount(int n) {
+    keepCount = Math.max(1, n);
+  }
+
+  /**
+   * Takes a snapshot of the registered arrays and writes it in the background.
+   * The save is skipped if the previous snapshot is still being written.
+   *
+   * @param step the step number stored with the snapshot
+   * @return true if saved, false if skipped
+   */
+  public synchronized boolean save(final long step) {
+    if((pendingWrite!=null)&&!pendingWrite.isDone()) {
+      skipCount++;
+      return false;
+    }
+    if(spare==null) {
+      spare = new Object[arrays.size()];
+    }
+    for(int i = 0; i<spare.length; i++) {
+      spare[i] = copy(arrays.get(i), spare[i]);
+    }
+    Object[] snapshot = spare;
+    spare = latest;
+    latest = snapshot;
+    latestStep = step;
+    final Object[] data = snapshot;
+    final String[] dataNames = names.toArray(new String[names.size()]);
+    final long seq = ++sequence;
+    pendingWrite = getWriter().submit(new Runnable() {
+      public void run() {
+        try {
+          write(seq, step, dataNames, data);
+          lastError = null;
+        } catch(IOException ex) {
+          lastError = ex;
+          OSPLog.warning("Checkpoint not written: "+ex); //$NON-NLS-1$
+        }
+      }
+
+    });
+    return true;
+  }
+
+  /**
+   * Waits for the snapshot being written, if any, to be written.
+   */
+  public void waitForWrite() {
+    Future<?> f = pendingWrite;
+    if(f==null) {
+      return;
+    }
+    try {
+      f.get();
+    } catch(Exception ex) {
+      /** empty block */
+    }
+  }
+
+  /**
+   * Determines if a snapshot is being written.
+   *
+   * @return true if writing
+   */
+  public boolean isWriting() {
+    Future<?> f = pendingWrite;
+    return(f!=null)&&!f.isDone();
+  }
+
+  /**
+   * Copies the latest snapshot back into the registered arrays.
+   *
+   * @return the step of the snapshot, or -1 if there is none
+   */
+  public synchronized long rollback() {
+    if(latest==null) {
+      return -1;
+    }
+    for(int i = 0; i<latest.length; i++) {
+      restore(latest[i], arrays.get(i));
+    }
+    return latestStep;
+  }
+
+  /**
+   * Reads the newest valid checkpoint file into the registered arrays. Files that
+   * are damaged or do not match the registered arrays are skipped.
+   *
+   * @return the step of the checkpoint, or -1 if none was read
+   */
+  public synchronized long restoreLatest() {
+    waitForWrite();
+    File[] files = listFiles();
+    for(int i = 0; i<files.length; i++) {
+      try {
+        Object[] data = new Object[arrays.size()];
+        long step = read(files[i], data);
+        for(int j = 0; j<data.length; j++) {
+          restore(data[j], arrays.get(j));
+        }
+        latest = data;
+        spare = null;
+        latestStep = step;
+        return step;
+      } catch(IOException ex) {
+        OSPLog.warning("Checkpoint "+files[i].getName()+" not read: "+ex.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Gets the step of the latest snapshot.
+   *
+   * @return the step, or -1 if there is none
+   */
+  public synchronized long getLatestStep() {
+    return latestStep;
+  }
+
+  /**
+   * Gets the number of saves skipped because a snapshot was being written.
+   *
+   * @return the skip count
+   */
+  public synchronized int getSkipCount() {
+    return skipCount;
+  }
+
+  /**
+   * Gets the exception thrown by the last write, if it failed.
+   *
+   * @return the exception, or null
+   */
+  public IOException getLastError() {
+    return lastError;
+  }
+
+  /**
+   * Gets the checkpoint files, newest first.
+   *
+   * @return the files
+   */
+  public File[] listFiles() {
+    File[] files = directory.listFiles();
+    if(files==null) {
+      return new File[0];
+    }
+    ArrayList<File> list = new ArrayList<File>();
+    for(int i = 0; i<files.length; i++) {
+      if(getSequence(files[i])>=0) {
+        list.add(files[i]);
+      }
+    }
+    File[] result = list.toArray(new File[list.size()]);
+    Arrays.sort(result, new Comparator<File>() {
+      public int compare(File a, File b) {
+        long sa = getSequence(a), sb = getSequence(b);
+        return(sa>sb) ? -1 : (sa<sb) ? 1 : 0;
+      }
+
+    });
+    return result;
+  }
+
+  //_____________________________ private methods ___________________________
+
+  private long getSequence(File file) {
+    String fileName = file.getName();
+    if(!fileName.startsWith(name+".")||!fileName.endsWith(EXTENSION)) { //$NON-NLS-1$
+      return -1;
+    }
+    try {
+      return Long.parseLong(fileName.substring(name.length()+1, fileName.length()-EXTENSION.length()));
+    } catch(NumberFormatException ex) {
+      return -1;
+    }
+  }
+
+  private void write(long seq, long step, String[] dataNames, Object[] data) throws IOException {
+    if(!directory.exists()&&!directory.mkdirs()) {
+      throw new IOException("Cannot create directory "+directory); //$NON-NLS-1$
+    }
+    String fileName = name+"."+new DecimalFormat("000000").format(seq)+EXTENSION; //$NON-NLS-1$ //$NON-NLS-2$
+    File temp = new File(directory, fileName+".tmp"); //$NON-NLS-1$
+    boolean renamed = false;
+    try {
+      CRC32 crc = new CRC32();
+      DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1<<16), crc));
+      try {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(step);
+        out.writeInt(data.length);
+        ByteBuffer buffer = ByteBuffer.allocate(1<<16);
+        for(int i = 0; i<data.length; i++) {
+          out.writeUTF(dataNames[i]);
+          writeArray(out, data[i], buffer);
+        }
+        out.flush();
+        out.writeLong(crc.getValue());
+      } finally {
+        out.close();
+      }
+      File file = new File(directory, fileName);
+      if(!temp.renameTo(file)) {
+        file.delete();
+        if(!temp.renameTo(file)) {
+          throw new IOException("Cannot rename "+temp); //$NON-NLS-1$
+        }
+      }
+      renamed = true;
+    } finally {
+      if(!renamed) {
+        temp.delete(); // a failed write leaves no partial file
+      }
+    }
+    File[] files = listFiles();
+    for(int i = keepCount; i<files.length; i++) {
+      files[i].delete();
+    }
+  }
+
+  private long read(File file, Object[] data) throws IOException {
+    CRC32 crc = new CRC32();
+    InputStream in = new BufferedInputStream(new FileInputStream(file), 1<<16);
+    DataInputStream checked = new DataInputStream(new CheckedInputStream(in, crc));
+    try {
+      if((checked.readInt()!=MAGIC)||(checked.readInt()!=VERSION)) {
+        throw new IOException("Not a checkpoint file"); //$NON-NLS-1$
+      }
+      long step = checked.readLong();
+      int n = checked.readInt();
+      if(n!=arrays.size()) {
+        throw new IOException("Array count does not match"); //$NON-NLS-1$
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(1<<16);
+      for(int i = 0; i<n; i++) {
+        String arrayName = checked.readUTF();
+        int j = names.indexOf(arrayName);
+        if(j<0) {
+          throw new IOException("Unknown array "+arrayName); //$NON-NLS-1$
+        }
+        data[j] = readArray(checked, arrays.get(j), buffer);
+      }
+      long expected = crc.getValue();
+      if(new DataInputStream(in).readLong()!=expected) {
+        throw new IOException("Checksum does not match"); //$NON-NLS-1$
+      }
+      return step;
+    } finally {
+      checked.close();
+    }
+  }
+
+  private static void writeArray(DataOutputStream out, Object array, ByteBuffer buffer) throws IOException {
+    int length = Array.getLength(array);
+    char type = getTypeCode(array);
+    out.writeByte(type);
+    out.writeInt(length);
+    if(type=='[') {
+      Object[] rows = (Object[]) array;
+      for(int i = 0; i<length; i++) {
+        writeArray(out, rows[i], buffer);
+      }
+      return;
+    }
+    if(type=='B') {
+      out.write((byte[]) array);
+      return;
+    }
+    int size = getElementSize(type);
+    int perChunk = buffer.capacity()/size;
+    for(int start = 0; start<length; start += perChunk) {
+      int count = Math.min(perChunk, length-start);
+      buffer.clear();
+      switch(type) {
+      case 'D' :
+        buffer.asDoubleBuffer().put((double[]) array, start, count);
+        break;
+      case 'F' :
+        buffer.asFloatBuffer().put((float[]) array, start, count);
+        break;
+      case 'J' :
+        buffer.asLongBuffer().put((long[]) array, start, count);
+        break;
+      case 'I' :
+        buffer.asIntBuffer().put((int[]) array, start, count);
+        break;
+      case 'S' :
+        buffer.asShortBuffer().put((short[]) array, start, count);
+        break;
+      case 'C' :
+        buffer.asCharBuffer().put((char[]) array, start, count);
+        break;
+      case 'Z' :
+        boolean[] b = (boolean[]) array;
+        for(int i = 0; i<count; i++) {
+          buffer.put(i, b[start+i] ? (byte) 1 : (byte) 0);
+        }
+        break;
+      }
+      out.write(buffer.array(), 0, count*size);
+    }
+  }
+
+  /**
+   * Reads an array with the same type and shape as a template.
+   */
+  private static Object readArray(DataInputStream in, Object template, ByteBuffer buffer) throws IOException {
+    char type = (char) in.readUnsignedByte();
+    int length = in.readInt();
+    if((type!=getTypeCode(template))||(length!=Array.getLength(template))) {
+      throw new IOException("Array shape does not match"); //$NON-NLS-1$
+    }
+    Object array = Array.newInstance(template.getClass().getComponentType(), length);
+    if(type=='[') {
+      Object[] rows = (Object[]) array;
+      for(int i = 0; i<length; i++) {
+        rows[i] = readArray(in, ((Object[]) template)[i], buffer);
+      }
+      return array;
+    }
+    if(type=='B') {
+      in.readFully((byte[]) array);
+      return array;
+    }
+    int size = getElementSize(type);
+    int perChunk = buffer.capacity()/size;
+    for(int start = 0; start<length; start += perChunk) {
+      int count = Math.min(perChunk, length-start);
+      buffer.clear();
+      in.readFully(buffer.array(), 0, count*size);
+      switch(type) {
+      case 'D' :
+        buffer.asDoubleBuffer().get((double[]) array, start, count);
+        break;
+      case 'F' :
+        buffer.asFloatBuffer().get((float[]) array, start, count);
+        break;
+      case 'J' :
+        buffer.asLongBuffer().get((long[]) array, start, count);
+        break;
+      case 'I' :
+        buffer.asIntBuffer().get((int[]) array, start, count);
+        break;
+      case 'S' :
+        buffer.asShortBuffer().get((short[]) array, start, count);
+        break;
+      case 'C' :
+        buffer.asCharBuffer().get((char[]) array, start, count);
+        break;
+      case 'Z' :
+        boolean[] b = (boolean[]) array;
+        for(int i = 0; i<count; i++) {
+          b[start+i] = buffer.get(i)!=0;
+        }
+        break;
+      }
+    }
+    return array;
+  }
+
+  /**
+   * Copies an array into a destination of the same shape, allocating a new
+   * destination if needed.
+   */
+  private static Object copy(Object src, Object dest) {
+    int length = Array.getLength(src);
+    if((dest==null)||(dest.getClass()!=src.getClass())||(Array.getLength(dest)!=length)) {
+      dest = Array.newInstance(src.getClass().getComponentType(), length);
+    }
+    if(src instanceof Object[]) {
+      Object[] s = (Object[]) src, d = (Object[]) dest;
+      for(int i = 0; i<length; i++) {
+        d[i] = copy(s[i], d[i]);
+      }
+    } else {
+      System.arraycopy(src, 0, dest, 0, length);
+    }
+    return dest;
+  }
+
+  /**
+   * Copies a snapshot into a registered array, which must have the same shape.
+   */
+  private static void restore(Object src, Object dest) {
+    if(src instanceof Object[]) {
+      Object[] s = (Object[]) src, d = (Object[]) dest;
+      for(int i = 0; i<s.length; i++) {
+        restore(s[i], d[i]);
+      }
+    } else {
+      System.arraycopy(src, 0, dest, 0, Array.getLength(src));
+    }
+  }
+
+  private static void checkType(Object array) {
+    if(array==null) {
+      throw new IllegalArgumentException("Null array"); //$NON-NLS-1$
+    }
+    getTypeCode(array);
+    if(array instanceof Object[]) {
+      Object[] rows = (Object[]) array;
+      for(int i = 0; i<rows.length; i++) {
+        checkType(rows[i]);
+      }
+    }
+  }
+
+  private static char getTypeCode(Object array) {
+    if(array instanceof double[]) {
+      return 'D';
+    } else if(array instanceof float[]) {
+      return 'F';
+    } else if(array instanceof long[]) {
+      return 'J';
+    } else if(array instanceof int[]) {
+      return 'I';
+    } else if(array instanceof short[]) {
+      return 'S';
+    } else if(array instanceof char[]) {
+      return 'C';
+    } else if(array instanceof byte[]) {
+      return 'B';
+    } else if(array instanceof boolean[]) {
+      return 'Z';
+    } else if((array!=null)&&array.getClass().isArray()&&array.getClass().getComponentType().isArray()) {
+      return '[';
+    }
+    throw new IllegalArgumentException("Not a primitive array: "+array); //$NON-NLS-1$
+  }
+
+  private static int getElementSize(char type) {
+    switch(type) {
+    case 'D' :
+    case 'J' :
+      return 8;
+    case 'F' :
+    case 'I' :
+      return 4;
+    case 'S' :
+    case 'C' :
+      return 2;
+    default :
+      return 1;
+    }
+  }
+
+  private static synchronized ExecutorService getWriter() {
+    if(writer==null) {
+      writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "Checkpoint"); //$NON-NLS-1$
+          t.setDaemon(true);
+          t.setPriority(Thread.NORM_PRIORITY-1);
+          return t;
+        }
+
+      });
+    }
+    return writer;
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
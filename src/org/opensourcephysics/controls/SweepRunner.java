@@ -0,0 +1,376 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.controls;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.opensourcephysics.numerics.ParallelLoop;
+
+/**
+ * SweepRunner runs a Simulation, Animation or Calculation class without a display
+ * for every point of a parameter sweep. Each run creates a new instance of the class
+ * with its own BatchControl, so runs are independent and are executed in parallel on
+ * the shared ParallelLoop pool.
+ *
+ * The parameters of a run are the base parameters, which may be read from an xml
+ * file, overridden by the run's point in the sweep. The sweep is the cartesian
+ * product of the values added with addSweep. A model is set up as follows:
+ * <ul>
+ * <li>setControl(control), which normally resets the model and sets its default parameters</li>
+ * <li>the run's parameters are copied into the control</li>
+ * <li>initializeAnimation() for animations</li>
+ * <li>stepAnimation() up to the maximum number of steps, stopping early if the model
+ * calls control.calculationDone(), or calculate() once for calculations</li>
+ * </ul>
+ *
+ * The output values are the named control values that the model sets, for example with
+ * control.setValue("energy", e). Every record interval they are written as a row of a
+ * tab-delimited file run_nnnnn.txt in the output directory. A summary file sweep.txt
+ * lists each run's parameters, steps and final output values.
+ *
+ * @version 1.0
+ */
+public class SweepRunner {
+  private Class<?> modelClass;
+  private XMLControlElement baseParameters = new XMLControlElement();
+  private ArrayList<String> sweepNames = new ArrayList<String>();
+  private ArrayList<Object[]> sweepValues = new ArrayList<Object[]>();
+  private ArrayList<String> outputNames = new ArrayList<String>();
+  private int maxSteps = 1000;
+  private int recordInterval = 1;
+  private volatile boolean cancelled;
+  private AtomicInteger completed = new AtomicInteger();
+
+  /**
+   * Constructs a SweepRunner for a model class with a public no-argument constructor.
+   *
+   * @param modelClass an Animation (including Simulation) or Calculation class
+   */
+  public SweepRunner(Class<?> modelClass) {
+    if(!Animation.class.isAssignableFrom(modelClass)&&!Calculation.class.isAssignableFrom(modelClass)) {
+      throw new IllegalArgumentException("Not an Animation or Calculation: "+modelClass.getName()); //$NON-NLS-1$
+    }
+    this.modelClass = modelClass;
+  }
+
+  /**
+   * Sets the base parameters of every run.
+   *
+   * @param control the parameters
+   */
+  public void setParameters(XMLControl control) {
+    baseParameters = new XMLControlElement(control);
+  }
+
+  /**
+   * Reads the base parameters of every run from an xml file.
+   *
+   * @param fileName the file name
+   */
+  public void loadParameters(String fileName) {
+    baseParameters = new XMLControlElement();
+    baseParameters.read(fileName);
+  }
+
+  /**
+   * Gets the base parameters.
+   *
+   * @return the parameters
+   */
+  public XMLControlElement getParameters() {
+    return baseParameters;
+  }
+
+  /**
+   * Adds a swept parameter with double values.
+   *
+   * @param name the parameter name
+   * @param values the values
+   */
+  public void addSweep(String name, double[] values) {
+    Object[] objects = new Object[values.length];
+    for(int i = 0; i<values.length; i++) {
+      objects[i] = new Double(values[i]);
+    }
+    addSweep(name, objects);
+  }
+
+  /**
+   * Adds a swept parameter with int, double, boolean or string values.
+   *
+   * @param name the parameter name
+   * @param values the values
+   */
+  public void addSweep(String name, Object[] values) {
+    sweepNames.add(name);
+    sweepValues.add(values.clone());
+  }
+
+  /**
+   * Adds the name of a control value to record.
+   *
+   * @param name the output name
+   */
+  public void addOutput(String name) {
+    outputNames.add(name);
+  }
+
+  /**
+   * Sets the maximum number of steps of each animation run.
+   *
+   * @param steps the maximum number of steps
+   */
+  public void setMaxSteps(int steps) {
+    maxSteps = Math.max(0, steps);
+  }
+
+  /**
+   * Sets the number of steps between recorded rows.
+   *
+   * @param interval the record interval
+   */
+  public void setRecordInterval(int interval) {
+    recordInterval = Math.max(1, interval);
+  }
+
+  /**
+   * Gets the number of runs in the sweep.
+   *
+   * @return the run count
+   */
+  public int getRunCount() {
+    int n = 1;
+    for(Object[] values : sweepValues) {
+      n *= values.length;
+    }
+    return n;
+  }
+
+  /**
+   * Gets the swept parameter values of a run. The last swept parameter varies fastest.
+   *
+   * @param run the run index
+   * @return the values in the order the sweeps were added
+   */
+  public Object[] getRunValues(int run) {
+    Object[] point = new Object[sweepValues.size()];
+    for(int k = point.length-1; k>=0; k--) {
+      Object[] values = sweepValues.get(k);
+      point[k] = values[run%values.length];
+      run /= values.length;
+    }
+    return point;
+  }
+
+  /**
+   * Gets the number of completed runs.
+   *
+   * @return the completed count
+   */
+  public int getCompletedCount() {
+    return completed.get();
+  }
+
+  /**
+   * Cancels the sweep. Runs that have not started are skipped and running runs
+   * stop at their next step.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  /**
+   * Runs the sweep and waits for it to finish. A run that throws an exception is
+   * logged and listed in the summary with -1 steps.
+   *
+   * @param directory the output directory
+   * @throws IOException if the files cannot be written
+   */
+  public void run(final File directory) throws IOException {
+    if(!directory.exists()&&!directory.mkdirs()) {
+      throw new IOException("Cannot create directory "+directory); //$NON-NLS-1$
+    }
+    cancelled = false;
+    completed.set(0);
+    int n = getRunCount();
+    final String[] summaries = new String[n];
+    if(ParallelLoop.isPoolThread()) {
+      for(int i = 0; (i<n)&&!cancelled; i++) {
+        summaries[i] = runPoint(i, directory);
+      }
+    } else {
+      ArrayList<Future<String>> futures = new ArrayList<Future<String>>();
+      for(int i = 0; i<n; i++) {
+        final int run = i;
+        futures.add(ParallelLoop.getPool().submit(new Callable<String>() {
+          public String call() throws IOException {
+            return cancelled ? null : runPoint(run, directory);
+          }
+
+        }));
+      }
+      for(int i = 0; i<n; i++) {
+        try {
+          summaries[i] = futures.get(i).get();
+        } catch(InterruptedException ex) {
+          cancel();
+          Thread.currentThread().interrupt();
+          throw new IOException("Sweep interrupted"); //$NON-NLS-1$
+        } catch(ExecutionException ex) {
+          if(ex.getCause() instanceof IOException) {
+            throw(IOException) ex.getCause();
+          }
+          throw new RuntimeException(ex.getCause());
+        }
+      }
+    }
+    BufferedWriter out = new BufferedWriter(new FileWriter(new File(directory, "sweep.txt"))); //$NON-NLS-1$
+    try {
+      StringBuffer header = new StringBuffer("run"); //$NON-NLS-1$
+      for(String name : sweepNames) {
+        header.append('\t').append(name);
+      }
+      header.append("\tsteps"); //$NON-NLS-1$
+      for(String name : outputNames) {
+        header.append('\t').append(name);
+      }
+      out.write(header.toString());
+      out.newLine();
+      for(int i = 0; i<n; i++) {
+        if(summaries[i]!=null) {
+          out.write(summaries[i]);
+          out.newLine();
+        }
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Runs one point of the sweep and returns its summary row.
+   */
+  private String runPoint(int run, File directory) throws IOException {
+    Object[] point = getRunValues(run);
+    StringBuffer summary = new StringBuffer(String.valueOf(run));
+    for(int k = 0; k<point.length; k++) {
+      summary.append('\t').append(point[k]);
+    }
+    File file = new File(directory, "run_"+new DecimalFormat("00000").format(run)+".txt"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    BufferedWriter out = new BufferedWriter(new FileWriter(file));
+    int steps = 0;
+    BatchControl control = new BatchControl();
+    try {
+      StringBuffer header = new StringBuffer("step"); //$NON-NLS-1$
+      for(String name : outputNames) {
+        header.append('\t').append(name);
+      }
+      out.write(header.toString());
+      out.newLine();
+      Object model = modelClass.newInstance();
+      if(model instanceof AbstractAnimation) {
+        ((AbstractAnimation) model).setHeadless(true);
+      }
+      if(model instanceof Animation) {
+        Animation animation = (Animation) model;
+        animation.setControl(control);
+        setRunParameters(control, point);
+        animation.initializeAnimation();
+        while((steps<maxSteps)&&!control.isDone()&&!cancelled) {
+          animation.stepAnimation();
+          steps++;
+          if((steps%recordInterval==0)||(steps==maxSteps)||control.isDone()) {
+            writeRow(out, steps, control);
+          }
+        }
+      } else {
+        Calculation calculation = (Calculation) model;
+        calculation.setControl(control);
+        setRunParameters(control, point);
+        calculation.calculate();
+        writeRow(out, steps, control);
+      }
+    } catch(IOException ex) {
+      throw ex;
+    } catch(Exception ex) {
+      OSPLog.warning("Sweep run "+run+" failed: "+ex); //$NON-NLS-1$ //$NON-NLS-2$
+      steps = -1;
+    } finally {
+      out.close();
+    }
+    summary.append('\t').append(steps);
+    for(String name : outputNames) {
+      summary.append('\t').append(getOutput(control, name));
+    }
+    completed.incrementAndGet();
+    return summary.toString();
+  }
+
+  private void setRunParameters(BatchControl control, Object[] point) {
+    control.setValues(baseParameters);
+    for(int k = 0; k<point.length; k++) {
+      String name = sweepNames.get(k);
+      Object value = point[k];
+      if(value instanceof Double) {
+        control.setValue(name, ((Double) value).doubleValue());
+      } else if(value instanceof Integer) {
+        control.setValue(name, ((Integer) value).intValue());
+      } else if(value instanceof Boolean) {
+        control.setValue(name, ((Boolean) value).booleanValue());
+      } else {
+        control.setValue(name, value);
+      }
+    }
+  }
+
+  private void writeRow(BufferedWriter out, int step, BatchControl control) throws IOException {
+    StringBuffer row = new StringBuffer(String.valueOf(step));
+    for(String name : outputNames) {
+      row.append('\t').append(getOutput(control, name));
+    }
+    out.write(row.toString());
+    out.newLine();
+  }
+
+  private static String getOutput(BatchControl control, String name) {
+    String value = control.getString(name);
+    return(value==null) ? "NaN" : value; //$NON-NLS-1$
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -12,9 +12,13 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
@@ -23,6 +27,8 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import javax.swing.JOptionPane;
 import org.opensourcephysics.tools.Resource;
 import org.opensourcephysics.tools.ResourceLoader;
@@ -40,6 +46,10 @@ public class XMLControlElement implements XMLControl {
   public static final int NEVER_DECRYPT = 5;
   // static fields
   public static int compactArraySize = 0;
+  public static boolean compactArrayBinary = false;  // base64 encode compact arrays
+  public static boolean compactArrayDeflate = false; // deflate base64 encoded arrays
+  public static boolean streamingRead = false;       // read with an XMLStreamingReader
+  public static boolean lazyArrays = false;          // defer loading large arrays when streaming
   protected static String encoding = "UTF-8";                             //$NON-NLS-1$
   
   // instance fields
@@ -390,7 +400,11 @@ public class XMLControlElement implements XMLControl {
     OSPLog.finest("reading "+name); //$NON-NLS-1$
     Resource res = ResourceLoader.getResource(name);
     if(res!=null) {
-      read(res.openReader());
+      if(name.toLowerCase().endsWith(".gz")) { //$NON-NLS-1$
+        read(openGZIPReader(res));
+      } else {
+        read(res.openReader());
+      }
       String path = XML.getDirectoryPath(name);
       if(!path.equals("")) { //$NON-NLS-1$
         ResourceLoader.addSearchPath(path);
@@ -515,8 +529,8 @@ public class XMLControlElement implements XMLControl {
         return null;
       }
       FileOutputStream stream = new FileOutputStream(file);
-      java.nio.charset.Charset charset = java.nio.charset.Charset.forName(encoding);
-      write(new OutputStreamWriter(stream, charset));
+      // compress files with a .gz extension
+      write(stream, fileName.toLowerCase().endsWith(".gz")); //$NON-NLS-1$
       // add search path to ResourceLoader
       if(file.exists()) {
         String path = XML.getDirectoryPath(file.getCanonicalPath());
@@ -545,21 +559,22 @@ public class XMLControlElement implements XMLControl {
   }
 
   /**
-   * Writes this control to a Writer.
+   * Writes this control to a Writer. The xml is written as the property tree
+   * is traversed, so the document string is never built in memory.
    *
    * @param out the Writer
    */
   public void write(Writer out) {
     try {
-      output = new BufferedWriter(out);
-      String xml = toXML();
+      output = new BufferedWriter(out, 65536);
       // if password-protected, encrypt the xml string and save the cryptic
       if(getPassword()!=null) {
-        Cryptic cryptic = new Cryptic(xml);
-        XMLControl control = new XMLControlElement(cryptic);
-        xml = control.toXML();
+        Cryptic cryptic = new Cryptic(toXML());
+        XMLControlElement control = new XMLControlElement(cryptic);
+        control.writeXML(output);
+      } else {
+        writeXML(output);
       }
-      output.write(xml);
       output.flush();
       output.close();
     } catch(IOException ex) {
@@ -567,6 +582,66 @@ public class XMLControlElement implements XMLControl {
     }
   }
 
+  /**
+   * Writes this control to an OutputStream using the current encoding.
+   * The stream is closed when done.
+   *
+   * @param out the OutputStream
+   * @param gzip true to gzip the output
+   */
+  public void write(OutputStream out, boolean gzip) {
+    try {
+      if(gzip) {
+        out = new GZIPOutputStream(out, 65536);
+      }
+      java.nio.charset.Charset charset = java.nio.charset.Charset.forName(encoding);
+      write(new OutputStreamWriter(out, charset));
+    } catch(IOException ex) {
+      OSPLog.info(ex.getMessage());
+    }
+  }
+
+  /**
+   * Writes the xml representation of this control to a Writer, traversing
+   * the property tree. This is the streaming equivalent of toXML(). The
+   * writer is not flushed or closed.
+   *
+   * @param out the Writer
+   * @throws IOException
+   */
+  public void writeXML(Writer out) throws IOException {
+    int level = getLevel();
+    // write the header if this is the top level
+    if(level==0) {
+      out.write("<?xml version=\"1.0\" encoding=\""+encoding+"\"?>");       //$NON-NLS-1$ //$NON-NLS-2$
+      if(isValid()) {
+        out.write(XML.NEW_LINE+"<!DOCTYPE object SYSTEM \""+doctype+"\">"); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+    // write the opening tag
+    out.write(XML.NEW_LINE+indent(level)+"<object class=\""+className+"\""); //$NON-NLS-1$ //$NON-NLS-2$
+    // write the version if this is the top level
+    if((version!=null)&&(level==0)) {
+      out.write(" version=\""+version+"\""); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    // write the property content and closing tag
+    if(props.isEmpty()) {
+      out.write("/>");                                        //$NON-NLS-1$
+    } else {
+      out.write(">");                                         //$NON-NLS-1$
+      Iterator<XMLProperty> it = props.iterator();
+      while(it.hasNext()) {
+        XMLProperty next = it.next();
+        if(next instanceof XMLPropertyElement) {
+          ((XMLPropertyElement) next).writeXML(out);
+        } else {
+          out.write(next.toString());
+        }
+      }
+      out.write(XML.NEW_LINE+indent(level)+"</object>"); //$NON-NLS-1$
+    }
+  }
+
   /**
    * Writes the DTD to a Writer.
    *
@@ -1052,30 +1127,12 @@ public class XMLControlElement implements XMLControl {
    * @return the string xml representation
    */
   public String toString() {
-    StringBuffer xml = new StringBuffer(""); //$NON-NLS-1$
-    // write the header if this is the top level
-    if(getLevel()==0) {
-      xml.append("<?xml version=\"1.0\" encoding=\""+encoding+"\"?>");       //$NON-NLS-1$ //$NON-NLS-2$
-      if(isValid()) {
-        xml.append(XML.NEW_LINE+"<!DOCTYPE object SYSTEM \""+doctype+"\">"); //$NON-NLS-1$ //$NON-NLS-2$
-      }
-    }
-    // write the opening tag
-    xml.append(XML.NEW_LINE+indent(getLevel())+"<object class=\""+className+"\""); //$NON-NLS-1$ //$NON-NLS-2$
-    // write the version if this is the top level
-    if((version!=null)&&(getLevel()==0)) {
-      xml.append(" version=\""+version+"\""); //$NON-NLS-1$ //$NON-NLS-2$
-    }
-    // write the property content and closing tag
-    if(props.isEmpty()) {
-      xml.append("/>");                                        //$NON-NLS-1$
-    } else {
-      xml.append(">");                                         //$NON-NLS-1$
-      Iterator<XMLProperty> it = props.iterator();
-      while(it.hasNext()) {
-        xml.append(it.next().toString());
-      }
-      xml.append(XML.NEW_LINE+indent(getLevel())+"</object>"); //$NON-NLS-1$
+    StringWriter xml = new StringWriter();
+    try {
+      writeXML(xml);
+    } catch(IOException ex) {
+
+    /** empty block */
     }
     return xml.toString();
   }
@@ -1264,30 +1321,56 @@ public class XMLControlElement implements XMLControl {
     return null;
   }
 
+  /**
+   * Opens a reader for a gzip compressed resource.
+   *
+   * @param res the resource
+   * @return the reader, or null if the resource cannot be opened
+   */
+  private Reader openGZIPReader(Resource res) {
+    InputStream stream = res.openInputStream();
+    if(stream==null) {
+      return null;
+    }
+    try {
+      java.nio.charset.Charset charset = java.nio.charset.Charset.forName(encoding);
+      return new InputStreamReader(new GZIPInputStream(stream, 65536), charset);
+    } catch(IOException ex) {
+      OSPLog.warning(ex.getMessage());
+      return null;
+    }
+  }
+
   /**
    * Reads this control from the current input.
    */
   private void readInput() {
     readFailed = false;
     try {
-      // get document root opening tag line
-      String openingTag = input.readLine();
-      while((openingTag!=null)&&(openingTag.indexOf("<object")==-1)) { //$NON-NLS-1$
-        openingTag = input.readLine();
-      }
-      // read this element from the root
-      if(openingTag!=null) {
-        // get version, if any
-        String xml = openingTag;
-        int i = xml.indexOf("version=");                               //$NON-NLS-1$
-        if(i!=-1) {
-          xml = xml.substring(i+9);
-          version = xml.substring(0, xml.indexOf("\""));               //$NON-NLS-1$
-        }
-        readObject(this, openingTag);
+      if(streamingRead) {
+        XMLStreamingReader reader = new XMLStreamingReader();
+        reader.setLazyArrays(lazyArrays);
+        reader.read(input, this);
       } else {
-        readFailed = true;
-        return;
+        // get document root opening tag line
+        String openingTag = input.readLine();
+        while((openingTag!=null)&&(openingTag.indexOf("<object")==-1)) { //$NON-NLS-1$
+          openingTag = input.readLine();
+        }
+        // read this element from the root
+        if(openingTag!=null) {
+          // get version, if any
+          String xml = openingTag;
+          int i = xml.indexOf("version=");                               //$NON-NLS-1$
+          if(i!=-1) {
+            xml = xml.substring(i+9);
+            version = xml.substring(0, xml.indexOf("\""));               //$NON-NLS-1$
+          }
+          readObject(this, openingTag);
+        } else {
+          readFailed = true;
+          return;
+        }
       }
     } catch(Exception ex) {
       readFailed = true;
@@ -1561,7 +1644,11 @@ public class XMLControlElement implements XMLControl {
       // create the array from an array string
       Object obj = first.getPropertyContent().get(0);
       if(obj instanceof String) {
-        return arrayValue((String) obj, componentType);
+        String s = (String) obj;
+        if(BinaryArrayCoder.isEncoded(s)) {
+          return BinaryArrayCoder.decode(s, prop.getPropertyClass());
+        }
+        return arrayValue(s, componentType);
       }
       return null;
     }
@@ -1637,7 +1724,7 @@ public class XMLControlElement implements XMLControl {
       int j = trimmed.indexOf("}"); //$NON-NLS-1$
       int k = trimmed.indexOf(","); //$NON-NLS-1$
       while(j>0) {
-        if (k<i) { // first comma is before opening brace
+        if ((k>-1)&&(k<i)) { // first comma is before opening brace
         	isNull.add(true);
           trimmed = trimmed.substring(k+1);
         }
@@ -1676,36 +1763,61 @@ public class XMLControlElement implements XMLControl {
       }
       return array;
     }
-    // collect element substrings separated by commas
-    ArrayList<String> list = new ArrayList<String>();
-    while(!trimmed.equals("")) {    //$NON-NLS-1$
-      int i = trimmed.indexOf(","); //$NON-NLS-1$
-      if(i>-1) {
-        list.add(trimmed.substring(0, i));
-        trimmed = trimmed.substring(i+1);
-      } else {
-        list.add(trimmed);
-        break;
+    // count the elements separated by commas
+    int count = 0;
+    int len = trimmed.length();
+    if(len>0) {
+      count = 1;
+      for(int i = trimmed.indexOf(','); i>-1; i = trimmed.indexOf(',', i+1)) {
+        count++;
+      }
+      if(trimmed.charAt(len-1)==',') { // ignore a trailing comma
+        count--;
       }
     }
-    // create the array
-    Object array = Array.newInstance(componentType, list.size());
-    // populate the array
-    Iterator<String> it = list.iterator();
-    int n = 0;
-    while(it.hasNext()) {
-      if(componentType==Integer.TYPE) {
-        int i = Integer.parseInt(it.next());
-        Array.setInt(array, n++, i);
-      } else if(componentType==Double.TYPE) {
-        double x = Double.parseDouble(it.next());
-        Array.setDouble(array, n++, x);
-      } else if(componentType==Boolean.TYPE) {
-        boolean bool = it.next().equals("true"); //$NON-NLS-1$
-        Array.setBoolean(array, n++, bool);
+    // create and populate the array without boxing the elements
+    if(componentType==Integer.TYPE) {
+      int[] array = new int[count];
+      int start = 0;
+      for(int n = 0; n<count; n++) {
+        int end = nextComma(trimmed, start);
+        array[n] = Integer.parseInt(trimmed.substring(start, end));
+        start = end+1;
       }
+      return array;
+    } else if(componentType==Double.TYPE) {
+      double[] array = new double[count];
+      int start = 0;
+      for(int n = 0; n<count; n++) {
+        int end = nextComma(trimmed, start);
+        array[n] = Double.parseDouble(trimmed.substring(start, end));
+        start = end+1;
+      }
+      return array;
+    } else if(componentType==Boolean.TYPE) {
+      boolean[] array = new boolean[count];
+      int start = 0;
+      for(int n = 0; n<count; n++) {
+        int end = nextComma(trimmed, start);
+        array[n] = trimmed.startsWith("true", start)&&(end-start==4); //$NON-NLS-1$
+        start = end+1;
+      }
+      return array;
     }
-    return array;
+    return Array.newInstance(componentType, count);
+  }
+
+  /**
+   * Returns the index of the next comma in an array string, or the string
+   * length if there are no more commas.
+   *
+   * @param s the array string
+   * @param start the index to start from
+   * @return the index
+   */
+  private static int nextComma(String s, int start) {
+    int i = s.indexOf(',', start);
+    return(i<0) ? s.length() : i;
   }
 
   /**
@@ -6,6 +6,9 @@
  */
 
 package org.opensourcephysics.controls;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -90,7 +93,7 @@ public class XMLPropertyElement implements XMLProperty {
       boolean primitive = "intdoubleboolean".indexOf(baseType.getName())!=-1; //$NON-NLS-1$
       if(primitive&&(count>XMLControlElement.compactArraySize)) {
         // write array as string if base type is primitive
-        String s = getArrayString(value);
+        String s = XMLControlElement.compactArrayBinary ? BinaryArrayCoder.encode(value, XMLControlElement.compactArrayDeflate) : getArrayString(value);
         content.add(new XMLPropertyElement(this, "array", "string", s));      //$NON-NLS-1$ //$NON-NLS-2$
       } else {
         int length = Array.getLength(value);
@@ -250,33 +253,57 @@ public class XMLPropertyElement implements XMLProperty {
    * @return the xml string
    */
   public String toString() {
+    StringWriter xml = new StringWriter();
+    try {
+      writeXML(xml);
+    } catch(IOException ex) {
+
+    /** empty block */
+    }
+    return xml.toString();
+  }
+
+  /**
+   * Writes the xml representation of this property to a Writer,
+   * traversing any child controls and properties.
+   *
+   * @param out the Writer
+   * @throws IOException
+   */
+  public void writeXML(Writer out) throws IOException {
+    int level = getLevel();
     // write the opening tag with attributes
-    StringBuffer xml = new StringBuffer(XML.NEW_LINE+indent(getLevel())+"<property name=\""+name+"\" type=\""+type+"\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    out.write(XML.NEW_LINE+indent(level)+"<property name=\""+name+"\" type=\""+type+"\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
     if("arraycollection".indexOf(type)!=-1) { //$NON-NLS-1$
-      xml.append(" class=\""+className+"\""); //$NON-NLS-1$ //$NON-NLS-2$
+      out.write(" class=\""+className+"\""); //$NON-NLS-1$ //$NON-NLS-2$
     }
     // write the content
     List<Object> content = getPropertyContent();
     // if no content, write closing tag and return
     if(content.isEmpty()) {
-      xml.append("/>"); //$NON-NLS-1$
-      return xml.toString();
+      out.write("/>"); //$NON-NLS-1$
+      return;
     }
     // else write content
-    xml.append(">"); //$NON-NLS-1$
+    out.write(">"); //$NON-NLS-1$
     boolean hasChildren = false;
     Iterator<Object> it = content.iterator();
     while(it.hasNext()) {
       Object next = it.next();
       hasChildren = hasChildren||(next instanceof XMLProperty);
-      xml.append(next);
+      if(next instanceof XMLPropertyElement) {
+        ((XMLPropertyElement) next).writeXML(out);
+      } else if(next instanceof XMLControlElement) {
+        ((XMLControlElement) next).writeXML(out);
+      } else {
+        out.write(String.valueOf(next));
+      }
     }
     // write the closing tag
     if(hasChildren) {
-      xml.append(XML.NEW_LINE+indent(getLevel()));
+      out.write(XML.NEW_LINE+indent(level));
     }
-    xml.append("</property>"); //$NON-NLS-1$
-    return xml.toString();
+    out.write("</property>"); //$NON-NLS-1$
   }
 
   /**
@@ -300,22 +327,60 @@ public class XMLPropertyElement implements XMLProperty {
    * @return the array string
    */
   protected String getArrayString(Object array) {
-    StringBuffer sb = new StringBuffer("{"); //$NON-NLS-1$
-    int length = Array.getLength(array);
-    for(int j = 0; j<length; j++) {
-      // add separator except for first element
-      if(j>0) {
-        sb.append(','); // s += ",";
+    StringBuffer sb = new StringBuffer();
+    appendArrayString(sb, array);
+    return sb.toString();
+  }
+
+  /**
+   * Appends the string representation of a primitive array to a buffer.
+   * Elements of int, double and boolean arrays are appended without boxing.
+   *
+   * @param sb the buffer
+   * @param array the array
+   */
+  protected void appendArrayString(StringBuffer sb, Object array) {
+    sb.append('{');
+    if(array instanceof double[]) {
+      double[] data = (double[]) array;
+      for(int j = 0; j<data.length; j++) {
+        if(j>0) {
+          sb.append(',');
+        }
+        sb.append(data[j]);
       }
-      Object element = Array.get(array, j);
-      if((element!=null)&&element.getClass().isArray()) {
-        sb.append(getArrayString(element));
-      } else {
-        sb.append(element);
+    } else if(array instanceof int[]) {
+      int[] data = (int[]) array;
+      for(int j = 0; j<data.length; j++) {
+        if(j>0) {
+          sb.append(',');
+        }
+        sb.append(data[j]);
+      }
+    } else if(array instanceof boolean[]) {
+      boolean[] data = (boolean[]) array;
+      for(int j = 0; j<data.length; j++) {
+        if(j>0) {
+          sb.append(',');
+        }
+        sb.append(data[j]);
+      }
+    } else {
+      int length = Array.getLength(array);
+      for(int j = 0; j<length; j++) {
+        // add separator except for first element
+        if(j>0) {
+          sb.append(',');
+        }
+        Object element = Array.get(array, j);
+        if((element!=null)&&element.getClass().isArray()) {
+          appendArrayString(sb, element);
+        } else {
+          sb.append(element);
+        }
       }
     }
     sb.append('}');
-    return sb.toString();
   }
 
 }
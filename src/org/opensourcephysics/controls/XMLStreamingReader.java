@@ -0,0 +1,532 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.controls;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * This reads xml into an XMLControlElement with a StAX stream reader. It builds
+ * the same tree of XMLControlElements and XMLPropertyElements as the line-based
+ * reader in XMLControlElement, but in a single pass over the input. Element text is
+ * collected in a reused buffer and repeated names, types and class names are
+ * pooled so they are shared by all properties.
+ *
+ * In lazy mode the text of large primitive arrays is not kept in memory. It is
+ * streamed to a scratch file as it is read and loaded only when the content of
+ * the property is requested, for example when getObject converts it to an array.
+ * The scratch file is deleted when the last of its arrays is loaded or, if the
+ * control is discarded first, when its lazy properties are garbage collected.
+ *
+ * @version 1.0
+ */
+public class XMLStreamingReader {
+  // static fields
+  private static XMLInputFactory factory;
+  // instance fields
+  protected boolean lazyArrays = false;
+  protected int lazyArraySize = 65536; // characters
+  private HashMap<String, String> pool = new HashMap<String, String>();
+  private StringBuilder text = new StringBuilder();
+  private StringBuilder cdata = new StringBuilder();
+  private SpillFile spillFile;
+  private OutputStream spill;
+  private long spillLength; // characters written to the spill file
+  private byte[] spillBytes = new byte[16384];
+
+  /**
+   * Sets the lazy array mode.
+   *
+   * @param lazy true to defer loading the text of large arrays
+   */
+  public void setLazyArrays(boolean lazy) {
+    lazyArrays = lazy;
+  }
+
+  /**
+   * Gets the lazy array mode.
+   *
+   * @return true if the text of large arrays is loaded on demand
+   */
+  public boolean isLazyArrays() {
+    return lazyArrays;
+  }
+
+  /**
+   * Sets the number of characters above which array text is loaded on demand
+   * in lazy mode.
+   *
+   * @param size the number of characters
+   */
+  public void setLazyArraySize(int size) {
+    lazyArraySize = Math.max(0, size);
+  }
+
+  /**
+   * Gets the number of characters above which array text is loaded on demand.
+   *
+   * @return the number of characters
+   */
+  public int getLazyArraySize() {
+    return lazyArraySize;
+  }
+
+  /**
+   * Reads the first object element of an xml document into a control.
+   *
+   * @param in the reader
+   * @param control the control
+   * @throws XMLStreamException if the document is not well formed or has no object element
+   */
+  public void read(Reader in, XMLControlElement control) throws XMLStreamException {
+    XMLStreamReader xml = getFactory().createXMLStreamReader(in);
+    try {
+      while(xml.hasNext()&&(xml.next()!=XMLStreamConstants.START_ELEMENT)) {
+
+      /** empty block */
+      }
+      if(!xml.isStartElement()||!xml.getLocalName().equals("object")) { //$NON-NLS-1$
+        throw new XMLStreamException("no object element found"); //$NON-NLS-1$
+      }
+      String version = xml.getAttributeValue(null, "version"); //$NON-NLS-1$
+      if(version!=null) {
+        control.version = version;
+      }
+      readObject(xml, control);
+    } finally {
+      xml.close();
+      closeSpill();
+      pool.clear();
+    }
+  }
+
+  /**
+   * Reads an object element into a control. The reader is positioned on
+   * the start tag of the object and is left on its end tag.
+   *
+   * @param xml the stream reader
+   * @param control the control to load
+   * @return the loaded control
+   * @throws XMLStreamException
+   */
+  private XMLControlElement readObject(XMLStreamReader xml, XMLControlElement control) throws XMLStreamException {
+    control.clearValues();
+    control.className = getClassName(xml);
+    while(true) {
+      int event = xml.next();
+      if(event==XMLStreamConstants.END_ELEMENT) {
+        return control;
+      } else if(event==XMLStreamConstants.START_ELEMENT) {
+        if(xml.getLocalName().equals("property")) { //$NON-NLS-1$
+          XMLPropertyElement child = readProperty(xml, new XMLPropertyElement(control));
+          control.props.add(child);
+          control.propNames.add(child.getPropertyName());
+        } else {
+          skipElement(xml);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads a property element. The reader is positioned on the start tag
+   * of the property and is left on its end tag.
+   *
+   * @param xml the stream reader
+   * @param prop the property to load
+   * @return the loaded property, which may be a lazy replacement for prop
+   * @throws XMLStreamException
+   */
+  private XMLPropertyElement readProperty(XMLStreamReader xml, XMLPropertyElement prop) throws XMLStreamException {
+    prop.name = pooled(xml.getAttributeValue(null, "name")); //$NON-NLS-1$
+    prop.type = pooled(xml.getAttributeValue(null, "type")); //$NON-NLS-1$
+    if(prop.type==null) {
+      throw new XMLStreamException("property has no type", xml.getLocation()); //$NON-NLS-1$
+    }
+    if(prop.type.equals("array")||prop.type.equals("collection")) { //$NON-NLS-1$ //$NON-NLS-2$
+      prop.className = getClassName(xml);
+      while(true) {
+        int event = xml.next();
+        if(event==XMLStreamConstants.END_ELEMENT) {
+          return prop;
+        } else if(event==XMLStreamConstants.START_ELEMENT) {
+          if(xml.getLocalName().equals("property")) { //$NON-NLS-1$
+            prop.content.add(readProperty(xml, new XMLPropertyElement(prop)));
+          } else {
+            skipElement(xml);
+          }
+        }
+      }
+    } else if(prop.type.equals("object")) { //$NON-NLS-1$
+      while(true) {
+        int event = xml.next();
+        if(event==XMLStreamConstants.END_ELEMENT) {
+          return prop;
+        } else if(event==XMLStreamConstants.START_ELEMENT) {
+          if(xml.getLocalName().equals("object")&&prop.content.isEmpty()) { //$NON-NLS-1$
+            XMLControlElement control = readObject(xml, new XMLControlElement(prop));
+            prop.content.add(control);
+            prop.className = control.className;
+          } else {
+            skipElement(xml);
+          }
+        }
+      }
+    }
+    // int, double, boolean or string types
+    boolean spillable = lazyArrays&&"array".equals(prop.name) //$NON-NLS-1$
+                        &&prop.type.equals("string")&&"array".equals(prop.parent.getPropertyType()); //$NON-NLS-1$ //$NON-NLS-2$
+    long spillStart = -1;
+    boolean hasCDATA = false;
+    text.setLength(0);
+    cdata.setLength(0);
+    while(true) {
+      int event = xml.next();
+      if(event==XMLStreamConstants.END_ELEMENT) {
+        break;
+      } else if(event==XMLStreamConstants.START_ELEMENT) {
+        skipElement(xml);
+      } else if(event==XMLStreamConstants.CDATA) {
+        hasCDATA = true;
+        cdata.append(xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength());
+      } else if((event==XMLStreamConstants.CHARACTERS)||(event==XMLStreamConstants.SPACE)) {
+        if(spillStart>-1) {
+          writeSpill(xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength());
+        } else {
+          text.append(xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength());
+          if(spillable&&!hasCDATA&&(text.length()>lazyArraySize)) {
+            // move the text collected so far to the spill file
+            spillStart = openSpill();
+            char[] chars = new char[text.length()];
+            text.getChars(0, chars.length, chars, 0);
+            writeSpill(chars, 0, chars.length);
+            text.setLength(0);
+          }
+        }
+      }
+    }
+    if(spillStart>-1) {
+      LazyPropertyElement lazy = new LazyPropertyElement(prop.parent, spillFile, spillStart, (int) (spillLength-spillStart));
+      lazy.name = prop.name;
+      lazy.type = prop.type;
+      return lazy;
+    }
+    if(hasCDATA) {
+      prop.content.add(XML.CDATA_PRE+cdata+XML.CDATA_POST);
+    } else if(XML.NEW_LINE.equals("\n")||(text.indexOf("\n")==-1)) { //$NON-NLS-1$ //$NON-NLS-2$
+      prop.content.add(text.toString());
+    } else {
+      prop.content.add(text.toString().replace("\n", XML.NEW_LINE)); //$NON-NLS-1$
+    }
+    return prop;
+  }
+
+  /**
+   * Gets the class attribute of the current element, renaming classes
+   * from the former media package.
+   *
+   * @param xml the stream reader
+   * @return the pooled class name
+   */
+  private String getClassName(XMLStreamReader xml) {
+    String className = xml.getAttributeValue(null, "class"); //$NON-NLS-1$
+    if(className==null) {
+      return Object.class.getName();
+    }
+    // workaround for media package name change
+    int i = className.lastIndexOf(".");                     //$NON-NLS-1$
+    if(i>-1) {
+      String packageName = className.substring(0, i);
+      if(packageName.endsWith("org.opensourcephysics.media")) { //$NON-NLS-1$
+        className = packageName+".core"+className.substring(i); //$NON-NLS-1$
+      }
+    }
+    return pooled(className);
+  }
+
+  /**
+   * Returns a shared instance of a string.
+   *
+   * @param s the string
+   * @return the pooled string
+   */
+  private String pooled(String s) {
+    if(s==null) {
+      return null;
+    }
+    String shared = pool.get(s);
+    if(shared==null) {
+      pool.put(s, s);
+      shared = s;
+    }
+    return shared;
+  }
+
+  /**
+   * Skips the current element and its children.
+   *
+   * @param xml the stream reader positioned on a start tag
+   * @throws XMLStreamException
+   */
+  private void skipElement(XMLStreamReader xml) throws XMLStreamException {
+    int depth = 1;
+    while(depth>0) {
+      int event = xml.next();
+      if(event==XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if(event==XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+
+  /**
+   * Opens the spill file if needed.
+   *
+   * @return the character position at which the next text will be written
+   * @throws XMLStreamException if the file cannot be created
+   */
+  private long openSpill() throws XMLStreamException {
+    if(spill==null) {
+      try {
+        File file = File.createTempFile("osp_xml", ".tmp"); //$NON-NLS-1$ //$NON-NLS-2$
+        file.deleteOnExit(); // in case the lazy properties are never loaded or collected
+        spillFile = new SpillFile(file);
+        spill = new BufferedOutputStream(new FileOutputStream(file), 65536);
+        spillLength = 0;
+      } catch(IOException ex) {
+        throw new XMLStreamException(ex);
+      }
+    }
+    return spillLength;
+  }
+
+  /**
+   * Writes characters to the spill file as UTF-16 so positions are character offsets.
+   *
+   * @param chars the characters
+   * @param start the start index
+   * @param length the number of characters
+   * @throws XMLStreamException
+   */
+  private void writeSpill(char[] chars, int start, int length) throws XMLStreamException {
+    try {
+      while(length>0) {
+        int n = Math.min(length, spillBytes.length/2);
+        for(int i = 0, j = 0; i<n; i++) {
+          char c = chars[start+i];
+          spillBytes[j++] = (byte) (c>>8);
+          spillBytes[j++] = (byte) c;
+        }
+        spill.write(spillBytes, 0, 2*n);
+        spillLength += n;
+        start += n;
+        length -= n;
+      }
+    } catch(IOException ex) {
+      throw new XMLStreamException(ex);
+    }
+  }
+
+  /**
+   * Closes the spill file. Lazy properties reopen it when loaded, and the file is
+   * deleted now if no lazy properties use it.
+   */
+  private void closeSpill() {
+    if(spill!=null) {
+      try {
+        spill.close();
+      } catch(IOException ex) {
+
+      /** empty block */
+      }
+      spill = null;
+    }
+    if(spillFile!=null) {
+      spillFile.closeWriting();
+      spillFile = null;
+    }
+  }
+
+  /**
+   * Gets the shared input factory.
+   *
+   * @return the factory
+   */
+  private static synchronized XMLInputFactory getFactory() {
+    if(factory==null) {
+      factory = XMLInputFactory.newInstance();
+      // don't read the dtd named in the doctype
+      factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+      factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+      String reportCDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event"; //$NON-NLS-1$
+      if(factory.isPropertySupported(reportCDATA)) {
+        factory.setProperty(reportCDATA, Boolean.TRUE);
+      }
+    }
+    return factory;
+  }
+
+  /**
+   * A spill file and the number of lazy properties that have not loaded their text.
+   * The file is deleted when it is no longer written and no lazy property needs it.
+   */
+  static class SpillFile {
+    File file;
+    private int pending;
+    private boolean writing = true;
+
+    SpillFile(File file) {
+      this.file = file;
+    }
+
+    synchronized void acquire() {
+      pending++;
+    }
+
+    synchronized void release() {
+      pending--;
+      deleteIfUnused();
+    }
+
+    synchronized void closeWriting() {
+      writing = false;
+      deleteIfUnused();
+    }
+
+    private void deleteIfUnused() {
+      if(!writing&&(pending<=0)) {
+        file.delete();
+      }
+    }
+
+    /**
+     * Deletes the file when the lazy properties that use it are discarded.
+     */
+    protected void finalize() throws Throwable {
+      file.delete();
+      super.finalize();
+    }
+
+  }
+
+  /**
+   * A string property whose content is loaded from the spill file when first requested.
+   */
+  static class LazyPropertyElement extends XMLPropertyElement {
+    SpillFile spill;
+    long offset;
+    int length;
+    boolean loaded;
+
+    LazyPropertyElement(XMLProperty mother, SpillFile spill, long offset, int length) {
+      super(mother);
+      this.spill = spill;
+      this.offset = offset;
+      this.length = length;
+      spill.acquire();
+    }
+
+    /**
+     * Gets the content, loading the text first if needed.
+     *
+     * @return a list of content items
+     */
+    public synchronized List<Object> getPropertyContent() {
+      if(!loaded) {
+        try {
+          content.add(load());
+        } catch(IOException ex) {
+          OSPLog.warning("Failed to load array text: "+ex.getMessage()); //$NON-NLS-1$
+          content.add(""); //$NON-NLS-1$
+        }
+        setLoaded();
+      }
+      return content;
+    }
+
+    /**
+     * Sets the value, replacing any text not yet loaded.
+     *
+     * @param stringValue the string value
+     */
+    public synchronized void setValue(String stringValue) {
+      setLoaded();
+      super.setValue(stringValue);
+    }
+
+    /**
+     * Determines if the text has been loaded.
+     *
+     * @return true if loaded
+     */
+    public boolean isLoaded() {
+      return loaded;
+    }
+
+    /**
+     * Marks the text as loaded and releases the spill file.
+     */
+    private void setLoaded() {
+      if(!loaded) {
+        loaded = true;
+        spill.release();
+        spill = null;
+      }
+    }
+
+    private String load() throws IOException {
+      RandomAccessFile raf = new RandomAccessFile(spill.file, "r"); //$NON-NLS-1$
+      try {
+        byte[] bytes = new byte[2*length];
+        raf.seek(2*offset);
+        raf.readFully(bytes);
+        return ByteBuffer.wrap(bytes).asCharBuffer().toString();
+      } finally {
+        raf.close();
+      }
+    }
+
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
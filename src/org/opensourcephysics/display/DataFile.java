@@ -66,8 +66,11 @@ public class DataFile extends DataAdapter {
         return fileName;
       }
       // if not xml, attempt to import data and add tab
-      else if(res.getString()!=null) {
-        data = parseData(res.getString(), fileName);
+      else {
+        data = parseLargeFile(res, fileName);
+        if((data==null)&&(res.getString()!=null)) {
+          data = parseData(res.getString(), fileName);
+        }
         if(data!=null) {
           return fileName;
         }
@@ -77,6 +80,41 @@ public class DataFile extends DataAdapter {
     return null;
   }
 
+  /**
+   * Parses a large local data file with a MappedDataParser.
+   *
+   * @param res the resource
+   * @param fileName the file name
+   * @return the data columns, or null if the file is small, not local or has no data
+   */
+  protected double[][] parseLargeFile(Resource res, String fileName) {
+    java.io.File file = res.getFile();
+    if((file==null)||(file.length()<MappedDataParser.minimumFileSize)) {
+      return null;
+    }
+    try {
+      MappedDataParser parser = new MappedDataParser(file);
+      if(!parser.parse()) {
+        return null;
+      }
+      double[][] columns = parser.getColumns();
+      int rows = parser.getRowCount();
+      for(int i = 0; i<columns.length; i++) {
+        if(columns[i].length!=rows) {
+          double[] column = new double[rows];
+          System.arraycopy(columns[i], 0, column, 0, rows);
+          columns[i] = column;
+        }
+      }
+      setName((parser.getTitle()==null) ? XML.getName(fileName) : parser.getTitle());
+      setColumnNames(parser.getColumnNames());
+      return columns;
+    } catch(IOException ex) {
+      OSPLog.fine("failed to map "+file+": "+ex); //$NON-NLS-1$ //$NON-NLS-2$
+      return null;
+    }
+  }
+
   /**
    * Parses character-delimited data from a string. This attempts to extract
    * the following information from the string:
@@ -84,6 +84,8 @@ public class DataTable extends JTable implements ActionListener {
   protected int labelColumnWidth = 40;
   protected NumberFormatDialog formatDialog;
   protected int clickCountToSort = 1;
+  /** tables with at least this many rows are sorted on a worker thread */
+  public static int backgroundSortRowCount = 100000;
 
   /**
    *  Constructs a DatTable with a default data model
@@ -125,7 +127,7 @@ public class DataTable extends JTable implements ActionListener {
           TableColumnModel tcm = getColumnModel();
           int vc = tcm.getColumnIndexAtX(e.getX());
           int mc = convertColumnIndexToModel(vc);
-          decorator.sort(mc);
+          sortLater(mc);
         }
       }
 
@@ -258,6 +260,38 @@ public class DataTable extends JTable implements ActionListener {
     decorator.sort(col);
   }
 
+  /**
+   * Sorts the table using the given column. Tables with at least
+   * backgroundSortRowCount rows are sorted on a worker thread and
+   * repainted when the sort is done.
+   *
+   * @param col the model column
+   */
+  public void sortLater(final int col) {
+    if(getRowCount()<backgroundSortRowCount) {
+      sort(col);
+      repaint();
+      return;
+    }
+    Thread sorter = new Thread(new Runnable() {
+      public void run() {
+        final int[] sorted = decorator.getSortedIndexes(col);
+        SwingUtilities.invokeLater(new Runnable() {
+          public void run() {
+            if(decorator.setSortedIndexes(sorted, col)) {
+              repaint();
+              getTableHeader().repaint();
+            }
+          }
+
+        });
+      }
+
+    }, "DataTable sort"); //$NON-NLS-1$
+    sorter.setDaemon(true);
+    sorter.start();
+  }
+
   /**
    * Gets the sorted column. Added by D Brown 2010-10-24.
    * @return the 
@@ -266,6 +300,16 @@ public class DataTable extends JTable implements ActionListener {
   	return decorator.getSortedColumn();
   }
 
+  /**
+   * Converts a table row index to the index of the row in the unsorted model.
+   *
+   * @param row the table row
+   * @return the model row
+   */
+  public int convertRowToModel(int row) {
+    return decorator.getModelRow(row);
+  }
+
   /**
    *  Sets the maximum number of fraction digits to display for cells that have
    *  type Double
@@ -908,8 +952,12 @@ public class DataTable extends JTable implements ActionListener {
   }
 
   protected static class PrecisionRenderer extends DefaultTableCellRenderer {
+    static final int CACHE_SIZE = 1024; // power of two
     NumberFormat numberFormat;
     String pattern;
+    // formatted strings of recently rendered values, indexed by a hash of the value
+    long[] cachedValues = new long[CACHE_SIZE];
+    String[] cachedText = new String[CACHE_SIZE];
 
     /**
      *  PrecisionRenderer constructor
@@ -946,6 +994,16 @@ public class DataTable extends JTable implements ActionListener {
      *      the text value to an empty string
      */
     public void setValue(Object value) {
+      if(value instanceof Double) {
+        long bits = Double.doubleToLongBits(((Double) value).doubleValue());
+        int slot = (int) (bits^(bits>>>29)^(bits>>>47))&(CACHE_SIZE-1);
+        if((cachedText[slot]==null)||(cachedValues[slot]!=bits)) {
+          cachedValues[slot] = bits;
+          cachedText[slot] = numberFormat.format(value);
+        }
+        setText(cachedText[slot]);
+        return;
+      }
       setText((value==null) ? "" : numberFormat.format(value)); //$NON-NLS-1$
     }
 
@@ -956,6 +1014,7 @@ public class DataTable extends JTable implements ActionListener {
      */
     public void setPrecision(int precision) {
       numberFormat.setMaximumFractionDigits(precision);
+      Arrays.fill(cachedText, null);
     }
 
   }
@@ -885,6 +885,48 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
     }
   }
 
+  /**
+   * Replaces the data with the first n points of the specified arrays. Arrays of
+   * equal length are used directly rather than copied, so large data sets can be
+   * loaded without duplicating them; they should not be modified afterwards.
+   * The arrays may be shared with other datasets since they are copied before
+   * bad data is removed or the points are sorted.
+   *
+   * @param _xpoints the x values
+   * @param _ypoints the y values
+   * @param n the number of points
+   */
+  public void setPoints(double[] _xpoints, double[] _ypoints, int n) {
+    boolean badData = false;
+    for(int i = 0; i<n; i++) {
+      if(Double.isNaN(_xpoints[i])||Double.isInfinite(_xpoints[i])||Double.isInfinite(_ypoints[i])) {
+        badData = true;
+        break;
+      }
+    }
+    if((_xpoints.length!=_ypoints.length)||badData||sorted) {
+      double[] x = new double[n];
+      double[] y = new double[n];
+      System.arraycopy(_xpoints, 0, x, 0, n);
+      System.arraycopy(_ypoints, 0, y, 0, n);
+      _xpoints = x;
+      _ypoints = y;
+    }
+    xpoints = _xpoints;
+    ypoints = _ypoints;
+    index = n;
+    maxPoints = Math.max(maxPoints, xpoints.length);
+    errorBars.clear();
+    if(badData) {
+      removeBadData();
+    }
+    if(sorted) {
+      insertionSort();
+    }
+    resetXYMinMax();
+    recalculatePath();
+  }
+
   /**
    *    Reads a file and appends the data contained in the file to this
    *    Dataset. The format of the file is x and y coordinates separated by tabs.
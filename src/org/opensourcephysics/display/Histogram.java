@@ -13,11 +13,7 @@ import java.awt.Shape;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.Set;
 import javax.swing.table.AbstractTableModel;
 import org.opensourcephysics.controls.XML;
 import org.opensourcephysics.controls.XMLControl;
@@ -73,7 +69,19 @@ public class Histogram extends AbstractTableModel implements Measurable, LogMeas
   protected int binStyle = DRAW_BIN;
 
   /** maps bin number to occurrences */
-  HashMap<Integer, Double> bins;
+  HistogramBins bins = new HistogramBins();
+
+  /** per-thread sub-histograms, or null if not appending concurrently */
+  private ThreadLocal<HistogramBins> localBins;
+
+  /** all per-thread sub-histograms */
+  private ArrayList<HistogramBins> localBinsList = new ArrayList<HistogramBins>();
+
+  /** accumulators that merge into this histogram */
+  private ArrayList<HistogramAccumulator> accumulators = new ArrayList<HistogramAccumulator>();
+
+  /** first bin and number of bins stored densely */
+  private int denseFirst, denseCount;
 
   /** width of a bin */
   double binWidth = 1;
@@ -161,13 +169,7 @@ public class Histogram extends AbstractTableModel implements Measurable, LogMeas
         java.util.StringTokenizer st = new java.util.StringTokenizer(s, "\t"); //$NON-NLS-1$
         int binNumber = Integer.parseInt(st.nextToken());
         double numberOfoccurrences = Double.parseDouble(st.nextToken());
-        Double prioroccurrences = bins.get(new Integer(binNumber));
-        if(prioroccurrences==null) {                                           // first occurence for this bin
-          bins.put(new Integer(binNumber), new Double(numberOfoccurrences));
-        } else {
-          numberOfoccurrences += prioroccurrences.doubleValue();               // increase occurrences for bin by prioroccurrences
-          bins.put(new Integer(binNumber), new Double(numberOfoccurrences));
-        }
+        numberOfoccurrences = bins.add(binNumber, numberOfoccurrences);       // increase occurrences for bin by prioroccurrences
         ymax = Math.max(numberOfoccurrences, ymax);
         xmin = Math.min(binNumber*binWidth+binOffset, xmin);
         xmax = Math.max(binNumber*binWidth+binWidth+binOffset, xmax);
@@ -188,17 +190,16 @@ public class Histogram extends AbstractTableModel implements Measurable, LogMeas
    * @return    A String with the number of occurrences for each bin.
    * @see       #toString
    */
-  public String toSortedString() {
-    Set<Integer> keySet = bins.keySet();
-    Object[] keys = keySet.toArray();
-    Arrays.sort(keys);
+  public synchronized String toSortedString() {
+    mergeLocalBins();
+    int[] keys = bins.getBinNumbers();
     String s = "x\tx"; //$NON-NLS-1$
     StringBuffer buf = new StringBuffer(s.length()*keys.length);
     for(int i = 0; i<keys.length; i++) {
-      Object key = keys[i];
+      int key = keys[i];
       buf.append(key);
       buf.append("\t"); //$NON-NLS-1$
-      buf.append(bins.get(keys[i]));
+      buf.append(bins.get(key));
       buf.append("\n"); //$NON-NLS-1$
     }
     return buf.toString();
@@ -210,14 +211,14 @@ public class Histogram extends AbstractTableModel implements Measurable, LogMeas
    *
    * @return    A String with the number of occurrences for each bin.
    */
-  public String toString() {
-    Set<Integer> set = bins.keySet();
-    Iterator<Integer> keys = set.iterator();
+  public synchronized String toString() {
+    mergeLocalBins();
+    int[] keys = bins.getBinNumbers();
     String s = "x\tx"; //$NON-NLS-1$
-    StringBuffer buf = new StringBuffer(s.length()*set.size());
-    while(keys.hasNext()) {
-      Integer binNumber = keys.next();
-      Double occurrences = bins.get(binNumber);
+    StringBuffer buf = new StringBuffer(s.length()*keys.length);
+    for(int i = 0; i<keys.length; i++) {
+      int binNumber = keys[i];
+      double occurrences = bins.get(binNumber);
       buf.append(binNumber);
       buf.append("\t"); //$NON-NLS-1$
       buf.append(occurrences);
@@ -242,18 +243,29 @@ public class Histogram extends AbstractTableModel implements Measurable, LogMeas
    * @param  value
    * @param  numberOfoccurrences
    */
-  public synchronized void append(double value, double numberOfoccurrences) {
-    sum += numberOfoccurrences;
+  public void append(double value, double numberOfoccurrences) {
     int binNumber = hashCode(value);
-    // Determine if there have previously been any occurrences for this bin
-    Double occurrences = bins.get(new Integer(binNumber));
-    if(occurrences==null) {                             // first occurence for this bin
-      bins.put(new Integer(binNumber), new Double(numberOfoccurrences));
-    } else {
-      // need to put Objects in HashMap, but can only add doubles
-      numberOfoccurrences += occurrences.doubleValue(); // increase occurrences for bin by numberOfoccurrences
-      bins.put(new Integer(binNumber), new Double(numberOfoccurrences));
+    if(localBins!=null) {
+      HistogramBins local = localBins.get();
+      synchronized(local) {
+        local.add(binNumber, numberOfoccurrences);
+      }
+      return;
+    }
+    synchronized(this) {
+      appendBin(binNumber, numberOfoccurrences);
     }
+  }
+
+  /**
+   *  Adds occurrences to a bin and updates the sum and the limits.
+   *
+   * @param  binNumber
+   * @param  numberOfoccurrences
+   */
+  void appendBin(int binNumber, double numberOfoccurrences) {
+    sum += numberOfoccurrences;
+    numberOfoccurrences = bins.add(binNumber, numberOfoccurrences); // increase occurrences for bin by numberOfoccurrences
     ymax = Math.max(numberOfoccurrences, ymax);
     xmin = Math.min(binNumber*binWidth+binOffset, xmin);
     xmax = Math.max(binNumber*binWidth+binWidth+binOffset, xmax);
@@ -298,8 +310,130 @@ public class Histogram extends AbstractTableModel implements Measurable, LogMeas
    * @param  values
    */
   public void append(double[] values) {
-    for(int i = 0; i<values.length; i++) {
-      append(values[i], 1);
+    if(localBins!=null) {
+      HistogramBins local = localBins.get();
+      synchronized(local) {
+        for(int i = 0; i<values.length; i++) {
+          local.add(hashCode(values[i]), 1);
+        }
+      }
+      return;
+    }
+    if(values.length==0) {
+      return;
+    }
+    synchronized(this) {
+      // track the limits in local variables and update the fields once
+      int minBin = Integer.MAX_VALUE, maxBin = Integer.MIN_VALUE;
+      double max = ymax;
+      for(int i = 0; i<values.length; i++) {
+        int binNumber = hashCode(values[i]);
+        double occurrences = bins.add(binNumber, 1);
+        if(occurrences>max) {
+          max = occurrences;
+        }
+        if(binNumber<minBin) {
+          minBin = binNumber;
+        }
+        if(binNumber>maxBin) {
+          maxBin = binNumber;
+        }
+      }
+      sum += values.length;
+      ymax = max;
+      xmin = Math.min(minBin*binWidth+binOffset, xmin);
+      xmax = Math.max(maxBin*binWidth+binWidth+binOffset, xmax);
+      dataChanged = true;
+    }
+  }
+
+  /**
+   *  Stores the bins between two values in a dense array, which is faster
+   *  than the default sparse storage when the range of the data is known.
+   *  Values outside the range are still accepted.
+   *
+   * @param  min the minimum value
+   * @param  max the maximum value
+   */
+  public synchronized void setDenseRange(double min, double max) {
+    mergeLocalBins();
+    denseFirst = hashCode(min);
+    denseCount = Math.max(0, hashCode(max)-denseFirst+1);
+    bins.setDenseRange(denseFirst, denseCount);
+    synchronized(localBinsList) {
+      for(HistogramBins local : localBinsList) {
+        synchronized(local) {
+          local.setDenseRange(denseFirst, denseCount);
+        }
+      }
+    }
+  }
+
+  /**
+   *  Sets whether values are appended concurrently. When true, each thread
+   *  appends to its own sub-histogram without contending for a lock, and the
+   *  sub-histograms are merged into this histogram whenever it is read or
+   *  drawn. Default is false.
+   *
+   * @param  concurrent <code>true<\code> to append concurrently
+   */
+  public synchronized void setConcurrent(boolean concurrent) {
+    if(concurrent==(localBins!=null)) {
+      return;
+    }
+    mergeLocalBins();
+    if(concurrent) {
+      localBins = new ThreadLocal<HistogramBins>() {
+        protected HistogramBins initialValue() {
+          HistogramBins local = new HistogramBins();
+          synchronized(localBinsList) {
+            local.setDenseRange(denseFirst, denseCount);
+            localBinsList.add(local);
+          }
+          return local;
+        }
+
+      };
+    } else {
+      localBins = null;
+      synchronized(localBinsList) {
+        localBinsList.clear();
+      }
+    }
+  }
+
+  /**
+   *  Gets whether values are appended concurrently.
+   *
+   * @return  <code>true<\code> if appending concurrently
+   */
+  public boolean isConcurrent() {
+    return localBins!=null;
+  }
+
+  /**
+   *  Merges the per-thread sub-histograms and accumulators, if any, into this histogram.
+   */
+  protected synchronized void mergeLocalBins() {
+    for(int i = 0, n = accumulators.size(); i<n; i++) {
+      accumulators.get(i).mergeInto();
+    }
+    synchronized(localBinsList) {
+      if(localBinsList.isEmpty()) {
+        return;
+      }
+      for(HistogramBins local : localBinsList) {
+        synchronized(local) {
+          if(local.size()==0) {
+            continue;
+          }
+          int[] binNumbers = local.getBinNumbers();
+          for(int i = 0; i<binNumbers.length; i++) {
+            appendBin(binNumbers[i], local.get(binNumbers[i]));
+          }
+          local.clear();
+        }
+      }
     }
   }
 
@@ -318,26 +452,24 @@ public class Histogram extends AbstractTableModel implements Measurable, LogMeas
    * @param  g
    */
   public synchronized void draw(DrawingPanel drawingPanel, Graphics g) {
+    mergeLocalBins();
     if(bins.size()==0 || !visible) {
       return;
     }
     Shape oldClip = g.getClip();
     g.setColor(binFillColor);
     g.clipRect(0, 0, drawingPanel.getWidth(), drawingPanel.getHeight());
-    for(Iterator<Integer> keys = bins.keySet().iterator(); keys.hasNext(); ) {
-      Integer binNumber = keys.next();
-      Double d = (bins.get(binNumber));
-      if(d==null) {
-        return;
-      }
-      double occurrences = d.doubleValue();
+    int[] binNumbers = bins.getBinNumbers();
+    for(int i = 0; i<binNumbers.length; i++) {
+      int binNumber = binNumbers[i];
+      double occurrences = bins.get(binNumber);
       if(normalizedToOne) {
         occurrences /= sum;
       }
       if(binStyle==DRAW_BIN) {
-        drawBin(drawingPanel, g, binNumber.intValue(), occurrences);
+        drawBin(drawingPanel, g, binNumber, occurrences);
       } else {
-        drawPoint(drawingPanel, g, binNumber.intValue(), occurrences);
+        drawPoint(drawingPanel, g, binNumber, occurrences);
       }
     }
     g.setClip(oldClip);
@@ -345,7 +477,31 @@ public class Histogram extends AbstractTableModel implements Measurable, LogMeas
 
   /** Clears all data from this histogram and resets min and max values. */
   public synchronized void clear() {
-    bins = new HashMap<Integer, Double>();
+    synchronized(localBinsList) {
+      for(HistogramBins local : localBinsList) {
+        synchronized(local) {
+          local.clear();
+        }
+      }
+    }
+    for(int i = 0, n = accumulators.size(); i<n; i++) {
+      accumulators.get(i).clear();
+    }
+    clearBins();
+  }
+
+  /**
+   *  Adds an accumulator that is merged into this histogram whenever it is read or drawn.
+   *
+   * @param  accumulator the accumulator
+   */
+  synchronized void addAccumulator(HistogramAccumulator accumulator) {
+    accumulators.add(accumulator);
+  }
+
+  /** Clears the bins and resets min and max values without clearing sub-histograms or accumulators. */
+  synchronized void clearBins() {
+    bins.clear();
     xmin = Integer.MAX_VALUE;
     xmax = Integer.MIN_VALUE;
     ymax = Integer.MIN_VALUE;
@@ -557,6 +713,7 @@ public class Histogram extends AbstractTableModel implements Measurable, LogMeas
    * @return    xmin
    */
   public double getXMin() {
+    mergeLocalBins();
     return(discrete&&(bins.size()>1)) ? xmin-binWidth : xmin;
   }
 
@@ -566,6 +723,7 @@ public class Histogram extends AbstractTableModel implements Measurable, LogMeas
    * @return    xmax
    */
   public double getXMax() {
+    mergeLocalBins();
     return xmax;
   }
 
@@ -584,6 +742,7 @@ public class Histogram extends AbstractTableModel implements Measurable, LogMeas
    * @return    xmax
    */
   public double getYMax() {
+    mergeLocalBins();
     double max = (normalizedToOne ? ymax/sum : ymax);
     if(adjustForWidth) {
       max = max/getBinWidth();
@@ -641,6 +800,7 @@ public class Histogram extends AbstractTableModel implements Measurable, LogMeas
    * @return    <code>true<\code> if measure is valid.
    */
   public boolean isMeasured() {
+    mergeLocalBins();
     return bins.size()>0 && measured; // Paco
   }
 
@@ -674,6 +834,7 @@ public class Histogram extends AbstractTableModel implements Measurable, LogMeas
    * @return    the count
    */
   public int getRowCount() {
+    mergeLocalBins();
     return bins.size();
   }
 
@@ -801,7 +962,8 @@ public class Histogram extends AbstractTableModel implements Measurable, LogMeas
    *
    * @return   the bins
    */
-  public double[] getXPoints() {
+  public synchronized double[] getXPoints() {
+    mergeLocalBins();
     int nbins = 1+(int) ((xmax-xmin)/binWidth);
     if(nbins<1) {
       return new double[0];
@@ -819,16 +981,15 @@ public class Histogram extends AbstractTableModel implements Measurable, LogMeas
    *
    * @return    the values of the bins
    */
-  public double[] getYPoints() {
+  public synchronized double[] getYPoints() {
+    mergeLocalBins();
     int nbins = 1+(int) ((xmax-xmin)/binWidth);
     if(nbins<1) {
       return new double[0];
     }
     double[] ydata = new double[nbins];
     for(int i = 0; i<nbins; i++) {
-      Integer binNumber = new Integer(i);
-      Double bin = bins.get(binNumber);
-      ydata[i] = (bin==null) ? 0 : bin.doubleValue();
+      ydata[i] = bins.get(i);
       //System.out.println("number"+binNumber.intValue()+"  x="+data[0][i]+ "  occurrences="+data[1][i]);
     }
     return ydata;
@@ -839,7 +1000,8 @@ public class Histogram extends AbstractTableModel implements Measurable, LogMeas
    *
    * @return a double[index][2] array of data
    */
-  public double[][] getPoints() {
+  public synchronized double[][] getPoints() {
+    mergeLocalBins();
     int nbins = 1+(int) ((xmax-xmin)/binWidth);
     if(nbins<1) {
       return new double[2][0];
@@ -847,10 +1009,8 @@ public class Histogram extends AbstractTableModel implements Measurable, LogMeas
     double[][] data = new double[2][nbins];
     int iStart = (int) (xmin/binWidth);
     for(int i = 0; i<nbins; i++) {
-      Integer binNumber = new Integer(i+iStart);
-      Double bin = bins.get(binNumber);
       data[0][i] = xmin+i*binWidth+binOffset+binWidth/2;
-      data[1][i] = (bin==null) ? 0 : bin.doubleValue();
+      data[1][i] = bins.get(i+iStart);
       // System.out.println("number"+binNumber.intValue()+"  x="+data[0][i]+ "  occurances="+data[1][i]);
     }
     return data;
@@ -861,7 +1021,8 @@ public class Histogram extends AbstractTableModel implements Measurable, LogMeas
    *
    * @return a double[index][2] array of data
    */
-  public double[][] getLogPoints() {
+  public synchronized double[][] getLogPoints() {
+    mergeLocalBins();
     int nbins = (int) Math.round((xmax-xmin)/binWidth);
     if(nbins<1) {
       return new double[2][0];
@@ -869,10 +1030,8 @@ public class Histogram extends AbstractTableModel implements Measurable, LogMeas
     double[][] data = new double[2][nbins];
     int iStart = (int) (xmin/binWidth);
     for(int i = 0; i<nbins; i++) {
-      Integer binNumber = new Integer(i+iStart);
-      Double bin = bins.get(binNumber);
       data[0][i] = xmin+i*binWidth+binOffset+binWidth/2;
-      data[1][i] = (bin==null) ? 0 : bin.doubleValue();
+      data[1][i] = bins.get(i+iStart);
       data[1][i] = (data[1][i]>0) ? Math.log(data[1][i]) : 0;
     }
     return data;
@@ -905,8 +1064,13 @@ public class Histogram extends AbstractTableModel implements Measurable, LogMeas
    *  update
    */
   private synchronized void updateEntries() {
+    mergeLocalBins();
     if(dataChanged) {
-      entries = bins.entrySet().toArray(entries);
+      int[] binNumbers = bins.getBinNumbers();
+      entries = new Map.Entry<?, ?>[binNumbers.length];
+      for(int i = 0; i<binNumbers.length; i++) {
+        entries[i] = new BinEntry(binNumbers[i], bins.get(binNumbers[i]));
+      }
       dataChanged = false;
     }
   }
@@ -946,6 +1110,54 @@ public class Histogram extends AbstractTableModel implements Measurable, LogMeas
     return list;
   }
 
+  /**
+   * A bin number-occurrences pair. Setting the value sets the occurrences of the bin.
+   */
+  private class BinEntry implements Map.Entry<Integer, Double> {
+    Integer binNumber;
+    Double occurrences;
+
+    BinEntry(int binNumber, double occurrences) {
+      this.binNumber = new Integer(binNumber);
+      this.occurrences = new Double(occurrences);
+    }
+
+    public Integer getKey() {
+      return binNumber;
+    }
+
+    public Double getValue() {
+      return occurrences;
+    }
+
+    public Double setValue(Double value) {
+      Double prev = occurrences;
+      synchronized(Histogram.this) {
+        mergeLocalBins();
+        appendBin(binNumber.intValue(), value.doubleValue()-bins.get(binNumber.intValue()));
+      }
+      occurrences = value;
+      return prev;
+    }
+
+    public boolean equals(Object obj) {
+      if(!(obj instanceof Map.Entry<?, ?>)) {
+        return false;
+      }
+      Map.Entry<?, ?> entry = (Map.Entry<?, ?>) obj;
+      return binNumber.equals(entry.getKey())&&occurrences.equals(entry.getValue());
+    }
+
+    public int hashCode() {
+      return binNumber.hashCode()^occurrences.hashCode();
+    }
+
+    public String toString() {
+      return binNumber+"="+occurrences; //$NON-NLS-1$
+    }
+
+  }
+
   /**
 * Returns the XML.ObjectLoader for this class.
 *
@@ -0,0 +1,386 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.display;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * HistogramAccumulator collects samples from many threads for a Histogram.
+ * Each producer thread gets its own Handle and appends to it without
+ * contending with other producers. The handles are merged into the histogram
+ * whenever the histogram is drawn or read, or when merge() is called. A merge
+ * swaps each handle's bins for empty ones and adds them to the histogram
+ * afterwards, so producers only wait for the swap. The bin width and offset of
+ * the histogram should not be changed while an accumulator is in use.
+ *
+ * A handle stays registered until it is closed, so a thread of a long-lived pool
+ * should call releaseHandle when it is done appending. The values of a closed
+ * handle are kept until the next merge, which then removes the handle.
+ *
+ * Three binning modes are supported:
+ * <ul>
+ * <li>FIXED bins have the width and offset of the histogram.</li>
+ * <li>LOG bins have a fixed width in log10(x). The histogram shows log10(x) and
+ * values that are not positive are ignored.</li>
+ * <li>ADAPTIVE bins start with a given width that doubles, merging pairs of bins,
+ * whenever the bins span more than the maximum bin count. The histogram is
+ * rebuilt from the accumulated bins when the width changes, so values appended
+ * directly to the histogram are discarded.</li>
+ * </ul>
+ *
+ * @version 1.0
+ */
+public class HistogramAccumulator {
+  /** bins of fixed width */
+  public static final int FIXED = 0;
+
+  /** bins of fixed width in log10(x) */
+  public static final int LOG = 1;
+
+  /** bins whose width doubles as the range of the data grows */
+  public static final int ADAPTIVE = 2;
+  // instance fields
+  private Histogram histogram;
+  private int mode;
+  private double baseWidth, offset;
+  private volatile int level;                   // adaptive bin width is baseWidth*2^level
+  private int histogramLevel;                   // level of the bins shown in the histogram
+  private int maxBinCount = 200;
+  private HistogramBins total = new HistogramBins();
+  private ArrayList<Handle> handles = new ArrayList<Handle>();
+  private ThreadLocal<Handle> threadHandles = new ThreadLocal<Handle>();
+
+  /**
+   * Constructs a FIXED mode accumulator using the bin width and offset of a histogram.
+   *
+   * @param histogram the histogram
+   */
+  public HistogramAccumulator(Histogram histogram) {
+    this(histogram, FIXED, histogram.getBinWidth());
+  }
+
+  /**
+   * Constructs an accumulator. The bin width of the histogram is set to the given
+   * width, which is in log10 units for LOG mode and is the initial width for
+   * ADAPTIVE mode.
+   *
+   * @param histogram the histogram
+   * @param mode FIXED, LOG or ADAPTIVE
+   * @param binWidth the bin width
+   */
+  public HistogramAccumulator(Histogram histogram, int mode, double binWidth) {
+    this.histogram = histogram;
+    this.mode = mode;
+    baseWidth = binWidth;
+    offset = histogram.getBinOffset();
+    histogram.setBinWidth(binWidth);
+    histogram.addAccumulator(this);
+  }
+
+  /**
+   * Creates a handle for a producer. A handle should be used by one thread at a time.
+   *
+   * @return the handle
+   */
+  public Handle createHandle() {
+    Handle handle = new Handle();
+    synchronized(handles) {
+      handles.add(handle);
+    }
+    return handle;
+  }
+
+  /**
+   * Gets the handle of the current thread, creating it if needed.
+   *
+   * @return the handle
+   */
+  public Handle getHandle() {
+    Handle handle = threadHandles.get();
+    if(handle==null) {
+      handle = createHandle();
+      threadHandles.set(handle);
+    }
+    return handle;
+  }
+
+  /**
+   * Closes the handle of the current thread, if any. Values appended by the thread
+   * are merged by the next merge, and a later append creates a new handle.
+   */
+  public void releaseHandle() {
+    Handle handle = threadHandles.get();
+    if(handle!=null) {
+      threadHandles.remove();
+      handle.close();
+    }
+  }
+
+  /**
+   * Appends a value using the handle of the current thread.
+   *
+   * @param value the value
+   */
+  public void append(double value) {
+    getHandle().append(value, 1);
+  }
+
+  /**
+   * Appends values using the handle of the current thread.
+   *
+   * @param values the values
+   */
+  public void append(double[] values) {
+    getHandle().append(values);
+  }
+
+  /**
+   * Sets the maximum number of bins spanned in ADAPTIVE mode. Default is 200.
+   *
+   * @param count the maximum bin count
+   */
+  public void setMaxBinCount(int count) {
+    maxBinCount = Math.max(2, count);
+  }
+
+  /**
+   * Gets the binning mode.
+   *
+   * @return FIXED, LOG or ADAPTIVE
+   */
+  public int getMode() {
+    return mode;
+  }
+
+  /**
+   * Gets the current bin width. This is in log10 units for LOG mode.
+   *
+   * @return the bin width
+   */
+  public double getBinWidth() {
+    return baseWidth*(1L<<level);
+  }
+
+  /**
+   * Merges the handles into the histogram.
+   */
+  public void merge() {
+    synchronized(histogram) {
+      mergeInto();
+    }
+  }
+
+  /**
+   * Merges the handles into the histogram. Called by the histogram with its lock held.
+   */
+  synchronized void mergeInto() {
+    HistogramBins delta = new HistogramBins();
+    Handle[] all;
+    synchronized(handles) {
+      all = handles.toArray(new Handle[handles.size()]);
+    }
+    for(int i = 0; i<all.length; i++) {
+      HistogramBins taken;
+      int takenLevel;
+      synchronized(all[i]) {
+        if(all[i].closed) {
+          removeHandle(all[i]); // a closed handle receives no more values
+        }
+        if(all[i].bins.size()==0) {
+          continue;
+        }
+        taken = all[i].bins;
+        takenLevel = all[i].level;
+        all[i].bins = new HistogramBins();
+      }
+      addCoarsened(delta, taken, level-takenLevel);
+    }
+    total.addAll(delta);
+    if(mode==ADAPTIVE) {
+      int[] binNumbers = total.getBinNumbers();
+      int shift = 0;
+      while((binNumbers.length>0)&&(((long) binNumbers[binNumbers.length-1]>>shift)-((long) binNumbers[0]>>shift)+1>maxBinCount)) {
+        shift++;
+      }
+      if(shift>0) {
+        HistogramBins coarse = new HistogramBins();
+        addCoarsened(coarse, total, shift);
+        total = coarse;
+        level += shift;
+      }
+    }
+    if(level!=histogramLevel) {
+      // the bin width changed, so rebuild the histogram
+      histogram.clearBins();
+      histogram.setBinWidth(getBinWidth());
+      delta = total;
+      histogramLevel = level;
+    }
+    int[] binNumbers = delta.getBinNumbers();
+    for(int i = 0; i<binNumbers.length; i++) {
+      histogram.appendBin(binNumbers[i], delta.get(binNumbers[i]));
+    }
+  }
+
+  /**
+   * Clears the handles and merged bins. Called by the histogram when it is cleared.
+   */
+  synchronized void clear() {
+    synchronized(handles) {
+      for(Iterator<Handle> it = handles.iterator(); it.hasNext(); ) {
+        Handle next = it.next();
+        synchronized(next) {
+          next.bins = new HistogramBins();
+          if(next.closed) {
+            it.remove();
+          }
+        }
+      }
+    }
+    total = new HistogramBins();
+  }
+
+  private void removeHandle(Handle handle) {
+    synchronized(handles) {
+      handles.remove(handle);
+    }
+  }
+
+  /**
+   * Adds bins to a target, dividing the bin numbers by 2^shift.
+   */
+  private static void addCoarsened(HistogramBins target, HistogramBins source, int shift) {
+    if(shift==0) {
+      target.addAll(source);
+      return;
+    }
+    int[] binNumbers = source.getBinNumbers();
+    for(int i = 0; i<binNumbers.length; i++) {
+      target.add(binNumbers[i]>>shift, source.get(binNumbers[i]));
+    }
+  }
+
+  /**
+   * A producer's handle. Appending locks only the handle, which is
+   * uncontended except while a merge swaps its bins.
+   */
+  public class Handle {
+    HistogramBins bins = new HistogramBins();
+    int level;
+    boolean closed;
+
+    Handle() {
+      level = HistogramAccumulator.this.level;
+    }
+
+    /**
+     * Closes this handle. Its values are merged and the handle is removed from the
+     * accumulator by the next merge.
+     */
+    public synchronized void close() {
+      closed = true;
+    }
+
+    /**
+     * Appends a value with 1 occurrence.
+     *
+     * @param value the value
+     */
+    public void append(double value) {
+      append(value, 1);
+    }
+
+    /**
+     * Appends a value with a number of occurrences.
+     *
+     * @param value the value
+     * @param occurrences the number of occurrences
+     */
+    public synchronized void append(double value, double occurrences) {
+      checkOpen();
+      double width = binWidth(); // may replace the bins, so call it first
+      double x = x(value);
+      if(!Double.isNaN(x)) {
+        bins.add((int) Math.floor(x/width), occurrences);
+      }
+    }
+
+    /**
+     * Appends values with 1 occurrence each.
+     *
+     * @param values the values
+     */
+    public synchronized void append(double[] values) {
+      checkOpen();
+      double width = binWidth();
+      for(int i = 0; i<values.length; i++) {
+        double x = x(values[i]);
+        if(!Double.isNaN(x)) {
+          bins.add((int) Math.floor(x/width), 1);
+        }
+      }
+    }
+
+    private void checkOpen() {
+      if(closed) {
+        throw new IllegalStateException("The handle is closed"); //$NON-NLS-1$
+      }
+    }
+
+    /**
+     * Gets the bin width, first coarsening the bins if the level has changed.
+     */
+    private double binWidth() {
+      int current = HistogramAccumulator.this.level;
+      if(level!=current) {
+        HistogramBins coarse = new HistogramBins();
+        addCoarsened(coarse, bins, current-level);
+        bins = coarse;
+        level = current;
+      }
+      return baseWidth*(1L<<level);
+    }
+
+    /**
+     * Gets the binned coordinate of a value relative to the bin offset, or NaN
+     * if the value is ignored.
+     */
+    private double x(double value) {
+      if(mode==LOG) {
+        return(value>0) ? Math.log10(value)-offset : Double.NaN;
+      }
+      return value-offset;
+    }
+
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,234 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.display;
+import java.util.Arrays;
+
+/**
+ * HistogramBins maps int bin numbers to double occurrences without boxing.
+ * Bins are stored in an open-addressing hash table with linear probing. If the
+ * range of bin numbers is known, bins in that range are stored in a dense array
+ * and only bins outside the range use the hash table.
+ *
+ * A bin exists once a value has been added to it, even if the value is zero.
+ * This class is not synchronized.
+ *
+ * @version 1.0
+ */
+public class HistogramBins {
+  private static final int MIN_CAPACITY = 16;
+  // sparse bins
+  private int[] keys = new int[MIN_CAPACITY];
+  private double[] values = new double[MIN_CAPACITY];
+  private boolean[] filled = new boolean[MIN_CAPACITY];
+  private int sparseCount;
+  // dense bins
+  private int denseStart;
+  private double[] dense = new double[0];
+  private boolean[] denseFilled = new boolean[0];
+  private int denseCount;
+
+  /**
+   * Stores the bins from first to first+count-1 in a dense array. Existing bins
+   * are kept.
+   *
+   * @param first the first bin number
+   * @param count the number of bins
+   */
+  public void setDenseRange(int first, int count) {
+    int[] binNumbers = getBinNumbers();
+    double[] binValues = new double[binNumbers.length];
+    for(int i = 0; i<binNumbers.length; i++) {
+      binValues[i] = get(binNumbers[i]);
+    }
+    denseStart = first;
+    dense = new double[Math.max(0, count)];
+    denseFilled = new boolean[dense.length];
+    clear();
+    for(int i = 0; i<binNumbers.length; i++) {
+      add(binNumbers[i], binValues[i]);
+    }
+  }
+
+  /**
+   * Adds an amount to a bin, creating the bin if needed.
+   *
+   * @param bin the bin number
+   * @param amount the amount
+   * @return the new value of the bin
+   */
+  public double add(int bin, double amount) {
+    int i = bin-denseStart;
+    if((i>=0)&&(i<dense.length)) {
+      if(!denseFilled[i]) {
+        denseFilled[i] = true;
+        denseCount++;
+      }
+      return dense[i] += amount;
+    }
+    int slot = findSlot(bin);
+    if(!filled[slot]) {
+      if(2*(sparseCount+1)>keys.length) {
+        rehash(2*keys.length);
+        slot = findSlot(bin);
+      }
+      filled[slot] = true;
+      keys[slot] = bin;
+      values[slot] = 0;
+      sparseCount++;
+    }
+    return values[slot] += amount;
+  }
+
+  /**
+   * Gets the value of a bin.
+   *
+   * @param bin the bin number
+   * @return the value, or 0 if the bin does not exist
+   */
+  public double get(int bin) {
+    int i = bin-denseStart;
+    if((i>=0)&&(i<dense.length)) {
+      return dense[i];
+    }
+    int slot = findSlot(bin);
+    return filled[slot] ? values[slot] : 0;
+  }
+
+  /**
+   * Determines if a bin exists.
+   *
+   * @param bin the bin number
+   * @return true if a value has been added to the bin
+   */
+  public boolean contains(int bin) {
+    int i = bin-denseStart;
+    if((i>=0)&&(i<dense.length)) {
+      return denseFilled[i];
+    }
+    return filled[findSlot(bin)];
+  }
+
+  /**
+   * Gets the number of bins.
+   *
+   * @return the number of bins
+   */
+  public int size() {
+    return sparseCount+denseCount;
+  }
+
+  /**
+   * Removes all bins. The dense range is kept.
+   */
+  public void clear() {
+    Arrays.fill(dense, 0);
+    Arrays.fill(denseFilled, false);
+    denseCount = 0;
+    keys = new int[MIN_CAPACITY];
+    values = new double[MIN_CAPACITY];
+    filled = new boolean[MIN_CAPACITY];
+    sparseCount = 0;
+  }
+
+  /**
+   * Gets the bin numbers in ascending order.
+   *
+   * @return the bin numbers
+   */
+  public int[] getBinNumbers() {
+    int[] bins = new int[size()];
+    int n = 0;
+    for(int i = 0; i<keys.length; i++) {
+      if(filled[i]) {
+        bins[n++] = keys[i];
+      }
+    }
+    for(int i = 0; i<dense.length; i++) {
+      if(denseFilled[i]) {
+        bins[n++] = denseStart+i;
+      }
+    }
+    Arrays.sort(bins);
+    return bins;
+  }
+
+  /**
+   * Adds the bins of another HistogramBins to this one.
+   *
+   * @param other the other bins
+   */
+  public void addAll(HistogramBins other) {
+    for(int i = 0; i<other.keys.length; i++) {
+      if(other.filled[i]) {
+        add(other.keys[i], other.values[i]);
+      }
+    }
+    for(int i = 0; i<other.dense.length; i++) {
+      if(other.denseFilled[i]) {
+        add(other.denseStart+i, other.dense[i]);
+      }
+    }
+  }
+
+  //_____________________________ private methods ___________________________
+
+  /**
+   * Finds the slot that holds a bin or the empty slot where it belongs.
+   */
+  private int findSlot(int bin) {
+    int mask = keys.length-1;
+    int h = bin*0x9E3779B9;                // Fibonacci hashing spreads runs of bins
+    int slot = (h^(h>>>16))&mask;
+    while(filled[slot]&&(keys[slot]!=bin)) {
+      slot = (slot+1)&mask;
+    }
+    return slot;
+  }
+
+  private void rehash(int capacity) {
+    int[] oldKeys = keys;
+    double[] oldValues = values;
+    boolean[] oldFilled = filled;
+    keys = new int[capacity];
+    values = new double[capacity];
+    filled = new boolean[capacity];
+    for(int i = 0; i<oldKeys.length; i++) {
+      if(oldFilled[i]) {
+        int slot = findSlot(oldKeys[i]);
+        filled[slot] = true;
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
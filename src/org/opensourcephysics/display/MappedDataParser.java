@@ -0,0 +1,643 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.display;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import org.opensourcephysics.controls.OSPLog;
+import org.opensourcephysics.controls.XML;
+import org.opensourcephysics.numerics.ParallelLoop;
+import org.opensourcephysics.tools.Resource;
+
+/**
+ * MappedDataParser imports large character-delimited data files without reading
+ * them into strings. The header lines (title, column names and comments) are
+ * recognized by the same rules as DataTool.parseData. The remaining lines are
+ * read from memory-mapped chunks of the file on multiple threads:
+ * <ol>
+ * <li>each chunk counts its lines, which sizes the column arrays,</li>
+ * <li>each chunk parses its lines directly into column-major double arrays,</li>
+ * <li>rows skipped because they contain unparsable entries are compacted away.</li>
+ * </ol>
+ * A number is converted without creating any objects if its significant digits form
+ * an integer no greater than 2^53, which includes every number with up to 15
+ * significant digits, and its value is that integer times a power of ten from
+ * 10^-22 to 10^22 (1.25e3 is 125 times 10^1). Both factors are then exact, so the
+ * result is correctly rounded. Other entries fall back to Double.parseDouble, so
+ * every number gets the value Double.parseDouble gives.
+ *
+ * Blank data lines become rows of NaN, lines starting with # or // are skipped,
+ * and a line with an entry that is neither empty nor a number is skipped.
+ *
+ * @version 1.0
+ */
+public class MappedDataParser {
+  // static fields
+  public static long minimumFileSize = 1024*1024; // smaller files are parsed as strings
+  protected static long chunkSize = 16*1024*1024;
+  protected static int headerSize = 256*1024;      // bytes searched for the first data line
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19,
+    1e20, 1e21, 1e22
+  };
+  // instance fields
+  protected File file;
+  private byte delimiter;
+  private String title;
+  private String[] columnNames;
+  private double[][] columns;
+  private int rowCount;
+  private long parseTime; // nanoseconds
+
+  /**
+   * Constructs a MappedDataParser for a file.
+   *
+   * @param file the data file
+   */
+  public MappedDataParser(File file) {
+    this.file = file;
+  }
+
+  /**
+   * Parses the file.
+   *
+   * @return true if data was found
+   * @throws IOException
+   */
+  public boolean parse() throws IOException {
+    long t0 = System.nanoTime();
+    columns = null;
+    rowCount = 0;
+    RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+    try {
+      FileChannel channel = raf.getChannel();
+      long dataStart = readHeader(channel);
+      if(dataStart<0) {
+        return false;
+      }
+      parseData(channel, dataStart);
+    } finally {
+      raf.close();
+    }
+    parseTime = System.nanoTime()-t0;
+    OSPLog.fine("parsed "+rowCount+" rows from "+file.getName() //$NON-NLS-1$ //$NON-NLS-2$
+                +" at "+(long) getRowsPerSecond()+" rows/s"); //$NON-NLS-1$ //$NON-NLS-2$
+    return(columns!=null)&&(columns.length>0)&&(rowCount>0);
+  }
+
+  /**
+   * Gets the parsed columns. The arrays may be longer than the row count.
+   *
+   * @return the columns, or null if none were found
+   */
+  public double[][] getColumns() {
+    return columns;
+  }
+
+  /**
+   * Gets the number of parsed rows.
+   *
+   * @return the row count
+   */
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * Gets the title found in the header, if any.
+   *
+   * @return the title, may be null
+   */
+  public String getTitle() {
+    return title;
+  }
+
+  /**
+   * Gets the column names found in the header, if any.
+   *
+   * @return the column names, may be null
+   */
+  public String[] getColumnNames() {
+    return columnNames;
+  }
+
+  /**
+   * Gets the rate of the last parse.
+   *
+   * @return rows parsed per second
+   */
+  public double getRowsPerSecond() {
+    return(parseTime==0) ? 0 : rowCount/(parseTime/1.0e9);
+  }
+
+  /**
+   * Creates a DatasetManager with one dataset per column, as DataTool.parseData does.
+   * The datasets use the parsed arrays directly.
+   *
+   * @param fileName the file name used if no title was found
+   * @return the DatasetManager
+   */
+  public DatasetManager createDatasetManager(String fileName) {
+    DatasetManager data = new DatasetManager();
+    data.setName((title==null) ? XML.getName(fileName) : title);
+    double[] rowColumn = DataFile.getRowArray(rowCount);
+    for(int j = 0; j<columns.length; j++) {
+      Dataset dataset = data.getDataset(j);
+      String yColName = ((columnNames!=null)&&(columnNames.length>j)) ? columnNames[j] : ((j==0)&&(title!=null)) ? title : "?"; //$NON-NLS-1$
+      dataset.setXYColumnNames("row", yColName); //$NON-NLS-1$
+      dataset.setXColumnVisible(false);
+      dataset.setPoints(rowColumn, columns[j], rowCount);
+    }
+    return data;
+  }
+
+  //_____________________________ private methods ___________________________
+
+  /**
+   * Finds the delimiter, title, column names and first data line by applying
+   * the DataTool.parseData rules to the lines at the start of the file.
+   *
+   * @param channel the file channel
+   * @return the byte position of the first data line, or -1 if none found
+   * @throws IOException
+   */
+  private long readHeader(FileChannel channel) throws IOException {
+    int size = (int) Math.min(headerSize, channel.size());
+    ByteBuffer buf = ByteBuffer.allocate(size);
+    while(buf.hasRemaining()&&(channel.read(buf, buf.position())>0)) {
+
+    /** empty block */
+    }
+    byte[] bytes = buf.array();
+    // collect complete lines and their start positions
+    ArrayList<String> lines = new ArrayList<String>();
+    ArrayList<Integer> starts = new ArrayList<Integer>();
+    Charset charset = Resource.getCharset();
+    int start = 0;
+    for(int i = 0; i<size; i++) {
+      if(bytes[i]=='\r'&&(i+1<size)&&(bytes[i+1]!='\n')) {
+        return -1; // lines separated by \r alone are left to the string parser
+      }
+      if(bytes[i]=='\n') {
+        int end = ((i>start)&&(bytes[i-1]=='\r')) ? i-1 : i;
+        lines.add(new String(bytes, start, end-start, charset));
+        starts.add(start);
+        start = i+1;
+      }
+    }
+    String[] delimiters = DataFile.delimiters;
+    for(int d = 0; d<delimiters.length; d++) {
+      title = null;
+      columnNames = null;
+      int lineCount = 0;
+      for(int n = 0; n<lines.size(); n++) {
+        String textLine = lines.get(n);
+        if(textLine.startsWith("//")) { //$NON-NLS-1$
+          continue;
+        }
+        if(textLine.contains("#")) {    //$NON-NLS-1$
+          textLine = textLine.trim();
+        }
+        if(textLine.startsWith("#")) {  //$NON-NLS-1$
+          int k = textLine.indexOf("name:"); //$NON-NLS-1$
+          if(k>-1) {
+            title = textLine.substring(k+5).trim();
+          }
+          k = textLine.indexOf("columnNames:"); //$NON-NLS-1$
+          if(k>-1) {
+            textLine = textLine.substring(k+12).trim();
+          } else {
+            continue;
+          }
+        }
+        if((textLine.indexOf("Vernier Format")>-1)||(textLine.indexOf(".cmbl")>-1)) { //$NON-NLS-1$ //$NON-NLS-2$
+          continue;
+        }
+        String[] strings = DataFile.parseStrings(textLine, delimiters[d]);
+        double[] rowData = DataFile.parseDoubles(strings);
+        // title: only one entry is not a number and not ""
+        if((strings.length>0)&&(title==null)) {
+          String s = ""; //$NON-NLS-1$
+          for(int k = 0; k<strings.length; k++) {
+            if(Double.isNaN(rowData[k])&&!strings[k].equals("")) { //$NON-NLS-1$
+              if(s.equals("")) { //$NON-NLS-1$
+                s = strings[k];
+              } else {
+                s = ""; //$NON-NLS-1$
+                break;
+              }
+            }
+          }
+          if(!s.equals("")) { //$NON-NLS-1$
+            title = s;
+            continue;
+          }
+        }
+        // column names: all entries are not numbers and none is ""
+        if((strings.length>0)&&(columnNames==null)) {
+          boolean valid = true;
+          for(int k = 0; k<strings.length; k++) {
+            if(!Double.isNaN(rowData[k])||strings[k].equals("")) { //$NON-NLS-1$
+              valid = false;
+              break;
+            }
+          }
+          if(valid) {
+            columnNames = strings;
+            continue;
+          }
+        }
+        // first data row
+        if(strings.length>0) {
+          lineCount++;
+          boolean validData = true;
+          boolean emptyData = true;
+          for(int k = 0; k<strings.length; k++) {
+            if(Double.isNaN(rowData[k])&&!strings[k].equals("")) { //$NON-NLS-1$
+              validData = false;
+            }
+            if(!strings[k].equals("")) { //$NON-NLS-1$
+              emptyData = false;
+            }
+          }
+          if(emptyData&&(title==null)&&((columnNames==null)||(columnNames.length!=1))) {
+            validData = false;
+          }
+          if(validData&&!emptyData&&(lines.get(n)==textLine)) {
+            delimiter = (byte) delimiters[d].charAt(0);
+            columns = new double[rowData.length][];
+            return starts.get(n);
+          }
+        }
+        if(lineCount>10) {
+          break;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Parses the data lines in parallel chunks.
+   *
+   * @param channel the file channel
+   * @param dataStart the position of the first data line
+   * @throws IOException
+   */
+  private void parseData(final FileChannel channel, long dataStart) throws IOException {
+    // split the data into chunks that start at line boundaries
+    long length = channel.size();
+    ArrayList<Chunk> list = new ArrayList<Chunk>();
+    long size = Math.min(chunkSize, Math.max(64*1024, (length-dataStart)/(4*ParallelLoop.getThreadCount())));
+    long start = dataStart;
+    while(start<length) {
+      long end = (length-start<=size) ? length : nextLine(channel, start+size);
+      Chunk chunk = new Chunk();
+      chunk.start = start;
+      chunk.end = end;
+      list.add(chunk);
+      start = end;
+    }
+    final Chunk[] chunks = list.toArray(new Chunk[0]);
+    final IOException[] failure = new IOException[1];
+    // first pass: count lines
+    new ParallelLoop() {
+      public void run(int from, int to) {
+        for(int i = from; i<to; i++) {
+          try {
+            chunks[i].countLines(channel);
+          } catch(IOException ex) {
+            failure[0] = ex;
+          }
+        }
+      }
+
+    }.setMinChunkSize(1).execute(chunks.length);
+    if(failure[0]!=null) {
+      throw failure[0];
+    }
+    long lines = 0;
+    for(int i = 0; i<chunks.length; i++) {
+      chunks[i].rowStart = (int) lines;
+      lines += chunks[i].lines;
+    }
+    if(lines>Integer.MAX_VALUE) {
+      throw new IOException("too many rows: "+lines); //$NON-NLS-1$
+    }
+    final double[][] data = columns;
+    for(int j = 0; j<data.length; j++) {
+      data[j] = new double[(int) lines];
+    }
+    // second pass: parse lines into the columns
+    new ParallelLoop() {
+      public void run(int from, int to) {
+        for(int i = from; i<to; i++) {
+          try {
+            chunks[i].parse(channel, data, delimiter);
+          } catch(IOException ex) {
+            failure[0] = ex;
+          }
+        }
+      }
+
+    }.setMinChunkSize(1).execute(chunks.length);
+    if(failure[0]!=null) {
+      throw failure[0];
+    }
+    // compact the rows and find the number of columns common to all rows
+    int rows = 0;
+    int columnCount = data.length;
+    for(int i = 0; i<chunks.length; i++) {
+      Chunk chunk = chunks[i];
+      if(chunk.rowStart!=rows) {
+        for(int j = 0; j<data.length; j++) {
+          System.arraycopy(data[j], chunk.rowStart, data[j], rows, chunk.rows);
+        }
+      }
+      rows += chunk.rows;
+      columnCount = Math.min(columnCount, chunk.minColumns);
+    }
+    rowCount = rows;
+    if(columnCount<data.length) {
+      double[][] fewer = new double[columnCount][];
+      System.arraycopy(data, 0, fewer, 0, columnCount);
+      columns = fewer;
+    }
+  }
+
+  /**
+   * Finds the start of the line after the specified position.
+   *
+   * @param channel the file channel
+   * @param position the position
+   * @return the position after the next newline, or the file length
+   * @throws IOException
+   */
+  private static long nextLine(FileChannel channel, long position) throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(8192);
+    long length = channel.size();
+    while(position<length) {
+      buf.clear();
+      int n = channel.read(buf, position);
+      if(n<=0) {
+        break;
+      }
+      for(int i = 0; i<n; i++) {
+        if(buf.get(i)=='\n') {
+          return position+i+1;
+        }
+      }
+      position += n;
+    }
+    return length;
+  }
+
+  /**
+   * A chunk of whole lines parsed by a single thread.
+   */
+  private static class Chunk {
+    long start, end;          // byte range in the file
+    int lines;                // line count
+    int rowStart;             // first row written by this chunk
+    int rows;                 // rows written
+    int minColumns = Integer.MAX_VALUE;
+    boolean failed;           // set by parseNumber
+    boolean blank;            // set by parseNumber
+    char[] chars;             // buffer for numbers parsed by Double.parseDouble
+
+    void countLines(FileChannel channel) throws IOException {
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, start, end-start);
+      int n = buf.limit();
+      int count = 0;
+      for(int i = 0; i<n; i++) {
+        if(buf.get(i)=='\n') {
+          count++;
+        }
+      }
+      if((n>0)&&(buf.get(n-1)!='\n')) {
+        count++; // last line has no newline
+      }
+      lines = count;
+    }
+
+    void parse(FileChannel channel, double[][] data, byte delimiter) throws IOException {
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, start, end-start);
+      int n = buf.limit();
+      int columns = data.length;
+      int row = rowStart;
+      int lineStart = 0;
+      while(lineStart<n) {
+        int lineEnd = lineStart;
+        while((lineEnd<n)&&(buf.get(lineEnd)!='\n')) {
+          lineEnd++;
+        }
+        int next = lineEnd+1;
+        if((lineEnd>lineStart)&&(buf.get(lineEnd-1)=='\r')) {
+          lineEnd--;
+        }
+        if(parseLine(buf, lineStart, lineEnd, data, row, columns, delimiter)) {
+          row++;
+        }
+        lineStart = next;
+      }
+      rows = row-rowStart;
+    }
+
+    /**
+     * Parses a line into a row.
+     *
+     * @return true if the row is valid
+     */
+    boolean parseLine(ByteBuffer buf, int s, int e, double[][] data, int row, int columns, byte delimiter) {
+      // skip comment lines
+      int first = s;
+      while((first<e)&&(buf.get(first)==' ')) {
+        first++;
+      }
+      if((first<e)&&((buf.get(first)=='#')||((first+1<e)&&(buf.get(first)=='/')&&(buf.get(first+1)=='/')))) {
+        return false;
+      }
+      // blank lines are rows of NaN
+      if(s==e) {
+        for(int j = 0; j<columns; j++) {
+          data[j][row] = Double.NaN;
+        }
+        return true;
+      }
+      int column = 0;
+      boolean emptyData = true;
+      int tokenStart = s;
+      while(true) {
+        int tokenEnd = tokenStart;
+        while((tokenEnd<e)&&(buf.get(tokenEnd)!=delimiter)) {
+          tokenEnd++;
+        }
+        if(column<columns) {
+          double value = parseNumber(buf, tokenStart, tokenEnd);
+          if(failed) {
+            return false;
+          }
+          data[column][row] = value;
+          emptyData = emptyData&&blank;
+        }
+        column++;
+        if(tokenEnd>=e) {
+          break;
+        }
+        tokenStart = tokenEnd+1;
+      }
+      if(!emptyData) {
+        minColumns = Math.min(minColumns, column); // rows of empty entries are padded
+      }
+      for(int j = column; j<columns; j++) {
+        data[j][row] = Double.NaN;
+      }
+      return true;
+    }
+
+    /**
+     * Parses a number without creating objects when possible. Empty entries are NaN.
+     * Sets the failed flag if the entry is not a number.
+     */
+    double parseNumber(ByteBuffer buf, int s, int e) {
+      failed = false;
+      blank = false;
+      // trim spaces and quotes
+      while((s<e)&&(buf.get(s)==' ')) {
+        s++;
+      }
+      while((e>s)&&(buf.get(e-1)==' ')) {
+        e--;
+      }
+      if((e-s>=2)&&(buf.get(s)=='"')&&(buf.get(e-1)=='"')) {
+        s++;
+        e--;
+      }
+      if(s==e) {
+        blank = true;
+        return Double.NaN;
+      }
+      int i = s;
+      boolean negative = false;
+      byte b = buf.get(i);
+      if((b=='-')||(b=='+')) {
+        negative = (b=='-');
+        i++;
+      }
+      long mantissa = 0;
+      int digits = 0;      // significant digits in mantissa
+      int exponent = 0;
+      boolean anyDigits = false;
+      boolean point = false;
+      for(; i<e; i++) {
+        b = buf.get(i);
+        if((b>='0')&&(b<='9')) {
+          anyDigits = true;
+          if((digits>0)||(b!='0')) {
+            if(digits>=18) {
+              return parseSlowly(buf, s, e);
+            }
+            mantissa = 10*mantissa+(b-'0');
+            digits++;
+          }
+          if(point) {
+            exponent--;
+          }
+        } else if((b=='.')&&!point) {
+          point = true;
+        } else {
+          break;
+        }
+      }
+      if(!anyDigits) {
+        return parseSlowly(buf, s, e);
+      }
+      if((i<e)&&((buf.get(i)=='e')||(buf.get(i)=='E'))) {
+        i++;
+        boolean negativeExp = false;
+        if((i<e)&&((buf.get(i)=='-')||(buf.get(i)=='+'))) {
+          negativeExp = (buf.get(i)=='-');
+          i++;
+        }
+        int exp = 0;
+        int expDigits = 0;
+        for(; (i<e)&&(buf.get(i)>='0')&&(buf.get(i)<='9'); i++) {
+          if(exp<10000) {
+            exp = 10*exp+(buf.get(i)-'0');
+          }
+          expDigits++;
+        }
+        if(expDigits==0) {
+          return parseSlowly(buf, s, e);
+        }
+        exponent += negativeExp ? -exp : exp;
+      }
+      if(i<e) {
+        return parseSlowly(buf, s, e); // suffixes, NaN, Infinity or invalid
+      }
+      if((mantissa>(1L<<53))||(exponent< -22)||(exponent>22)) {
+        return parseSlowly(buf, s, e);
+      }
+      // exact mantissa and power of ten give a correctly rounded result
+      double value = (exponent<0) ? mantissa/POWERS_OF_TEN[-exponent] : mantissa*POWERS_OF_TEN[exponent];
+      return negative ? -value : value;
+    }
+
+    double parseSlowly(ByteBuffer buf, int s, int e) {
+      if((chars==null)||(chars.length<e-s)) {
+        chars = new char[Math.max(64, e-s)];
+      }
+      for(int i = s; i<e; i++) {
+        chars[i-s] = (char) (buf.get(i)&0xff);
+        if(chars[i-s]=='\t') {
+          failed = true; // as in DataTool.parseDoubles
+          return Double.NaN;
+        }
+      }
+      try {
+        double value = Double.parseDouble(new String(chars, 0, e-s));
+        failed = Double.isNaN(value); // "NaN" is not valid data
+        return value;
+      } catch(NumberFormatException ex) {
+        failed = true;
+        return Double.NaN;
+      }
+    }
+
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
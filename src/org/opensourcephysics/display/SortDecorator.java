@@ -6,9 +6,12 @@
  */
 
 package org.opensourcephysics.display;
+import java.util.Arrays;
+import java.util.Comparator;
 import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
 import javax.swing.table.TableModel;
+import org.opensourcephysics.numerics.ArrayLib;
 
 /**
  * Sorts table column based on their numeric values if the table's values are
@@ -54,18 +57,73 @@ public class SortDecorator implements TableModel, TableModelListener {
   }
 
   public void sort(int column) {
-  	sortedColumn = column;
+    setSortedIndexes(getSortedIndexes(column), column);
+  }
+
+  /**
+   * Gets the model rows in the order sorted by a column, without changing the
+   * current order. Numeric columns are sorted as primitive keys on multiple threads;
+   * other columns are sorted by compare(). Null values are placed last.
+   * This reads the model but does not modify this decorator, so it may be
+   * called from a worker thread.
+   *
+   * @param column the column to sort by
+   * @return the model rows in sorted order
+   */
+  public int[] getSortedIndexes(int column) {
     int rowCount = getRowCount();
-    if(indexes.length<=rowCount) {
-      allocate();
+    double[] keys = new double[rowCount];
+    int[] sorted = new int[rowCount];
+    boolean numeric = true;
+    for(int i = 0; i<rowCount; i++) {
+      sorted[i] = i;
+      Object value = realModel.getValueAt(i, column);
+      if(value==null) {
+        keys[i] = Double.NaN;
+      } else if(value instanceof Number) {
+        keys[i] = ((Number) value).doubleValue();
+      } else {
+        numeric = false;
+        break;
+      }
+    }
+    if(numeric) {
+      ArrayLib.parallelSort(keys, sorted);
+      return sorted;
     }
+    // sort boxed rows for non-numeric columns
+    final int col = column;
+    Integer[] rows = new Integer[rowCount];
     for(int i = 0; i<rowCount; i++) {
-      for(int j = i+1; j<rowCount; j++) {
-        if(compare(indexes[i], indexes[j], column)<0) {
-          swap(i, j);
-        }
+      rows[i] = new Integer(i);
+    }
+    Arrays.sort(rows, new Comparator<Integer>() {
+      public int compare(Integer i, Integer j) {
+        return -SortDecorator.this.compare(i.intValue(), j.intValue(), col);
       }
+
+    });
+    for(int i = 0; i<rowCount; i++) {
+      sorted[i] = rows[i].intValue();
     }
+    return sorted;
+  }
+
+  /**
+   * Sets the sorted order of the model rows. The order is ignored if the
+   * number of rows has changed.
+   *
+   * @param sorted the model rows in sorted order
+   * @param column the sorted column
+   * @return true if the order was set
+   */
+  public boolean setSortedIndexes(int[] sorted, int column) {
+    if(sorted.length!=getRowCount()) {
+      return false;
+    }
+    sortedColumn = column;
+    indexes = sorted;
+    return true;
   }
   
   // added by D Brown 2010-10-24
@@ -73,6 +131,19 @@ public class SortDecorator implements TableModel, TableModelListener {
   	return sortedColumn;
   }
 
+  /**
+   * Gets the model row displayed in a sorted row.
+   *
+   * @param row the sorted row
+   * @return the model row
+   */
+  public int getModelRow(int row) {
+    if(indexes.length<=row) {
+      allocate();
+    }
+    return indexes[row];
+  }
+
   public void swap(int i, int j) {
     int tmp = indexes[i];
     indexes[i] = indexes[j];
@@ -0,0 +1,803 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.display2d;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+import javax.swing.JFrame;
+import org.opensourcephysics.display.DrawingPanel;
+import org.opensourcephysics.display.Grid;
+import org.opensourcephysics.display.MeasuredImage;
+import org.opensourcephysics.display.OSPRuntime;
+import org.opensourcephysics.numerics.ParallelLoop;
+
+/**
+ * A BitLattice is a binary lattice that stores one bit per site and provides fast,
+ * multi-threaded kernels for cellular automata and Ising models.
+ *
+ * The packed data is the data buffer of the image that is drawn, so there is no
+ * copy between the model and the display. The layout is that of BinaryLattice:
+ * each row starts on a byte boundary, the leftmost site of a byte is its most
+ * significant bit, and rows are stored from the top of the lattice (iy = ny-1)
+ * to the bottom (iy = 0).
+ *
+ * The kernels operate on 64 sites at a time by bitwise logic on long words, use
+ * periodic boundary conditions and require nx to be a multiple of 64. Rows are
+ * processed in parallel on the ParallelLoop pool.
+ *
+ * @version 1.0
+ */
+public class BitLattice extends MeasuredImage implements ByteLattice {
+  static final int RANDOM_BITS = 24; // resolution of Metropolis acceptance probabilities
+  Grid grid;
+  int nx, ny, bytesPerRow, wordsPerRow;
+  byte[] packedData, spareData;      // spareData is the next state during a CA step
+  BufferedImage spareImage;
+  Color zeroColor = Color.red, oneColor = Color.blue;
+  long seed = new Random().nextLong();
+  long sweepCount;
+
+  /**
+   * Constructs a bit lattice with the given size.
+   * @param _nx the number of values in x direction
+   * @param _ny the number of values in y direction
+   */
+  public BitLattice(int _nx, int _ny) {
+    xmin = 0;
+    xmax = _nx;
+    ymin = 0;
+    ymax = _ny;
+    grid = new Grid(_nx, _ny, xmin, xmax, ymin, ymax);
+    grid.setColor(Color.lightGray);
+    grid.setVisible(false);
+    resizeLattice(_nx, _ny);
+  }
+
+  /**
+   * Resizes the lattice. All sites are set to zero.
+   * @param _nx number of x sites
+   * @param _ny number of y sites
+   */
+  public void resizeLattice(int _nx, int _ny) {
+    nx = _nx;
+    ny = _ny;
+    bytesPerRow = (nx+7)/8;
+    wordsPerRow = nx/64;
+    packedData = new byte[bytesPerRow*ny];
+    spareData = null;
+    spareImage = null;
+    image = createImage(packedData);
+    Color color = grid.getColor();
+    boolean showGrid = grid.isVisible();
+    grid = new Grid(nx, ny, xmin, xmax, ymin, ymax);
+    grid.setColor(color);
+    grid.setVisible(showGrid);
+    setMinMax(xmin, xmax, ymin, ymax);
+  }
+
+  /**
+   * Gets the packed data that stores the sites. The array is shared with the image
+   * and is replaced by each CA step.
+   *
+   * @return the packed data
+   */
+  public byte[] getPackedData() {
+    return packedData;
+  }
+
+  /**
+   * Gets the number of bytes in each row of the packed data.
+   *
+   * @return the bytes per row
+   */
+  public int getBytesPerRow() {
+    return bytesPerRow;
+  }
+
+  /**
+   * Sets the seed of the random numbers used by the Metropolis sweeps.
+   *
+   * @param seed the seed
+   */
+  public void setSeed(long seed) {
+    this.seed = seed;
+    sweepCount = 0;
+  }
+
+  /**
+   * Creates the default palette.
+   */
+  public void createDefaultColors() {
+    zeroColor = Color.red;
+    oneColor = Color.blue;
+    updateColors();
+  }
+
+  /**
+   * Randomizes the lattice values.
+   */
+  public void randomize() {
+    new Random().nextBytes(packedData);
+    clearPadding();
+  }
+
+  /**
+   * Draws the lattice and the grid.
+   * @param panel
+   * @param g
+   */
+  public void draw(DrawingPanel panel, Graphics g) {
+    if(!visible) {
+      return;
+    }
+    if(!OSPRuntime.isMac()) { //Rendering hint bug in Mac Snow Leopard
+      Graphics2D g2 = ((Graphics2D) g);
+      g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+      g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+    }
+    super.draw(panel, g);
+    grid.draw(panel, g);
+  }
+
+  /**
+   * Sets the lattice values. The lattice is resized to fit the new data if needed.
+   *
+   * @param val the new values
+   */
+  public void setAll(byte val[][]) {
+    if((getNx()!=val.length)||(getNy()!=val[0].length)) {
+      resizeLattice(val.length, val[0].length);
+    }
+    setBlock(0, 0, val);
+  }
+
+  /**
+   * Sets the lattice values and scale. The lattice is resized to fit the new data if needed.
+   *
+   * @param val the new values
+   * @param xmin double
+   * @param xmax double
+   * @param ymin double
+   * @param ymax double
+   */
+  public void setAll(byte val[][], double xmin, double xmax, double ymin, double ymax) {
+    setAll(val);
+    setMinMax(xmin, xmax, ymin, ymax);
+  }
+
+  /**
+   * Scales the grid to the given values in world units.
+   * @param xmin
+   * @param xmax
+   * @param ymin
+   * @param ymax
+   */
+  public void setMinMax(double xmin, double xmax, double ymin, double ymax) {
+    super.setMinMax(xmin, xmax, ymin, ymax);
+    grid.setMinMax(xmin, xmax, ymin, ymax);
+  }
+
+  /**
+   * Sets a block of cells to new values. A cell is set to 1 if the value is >0;
+   * the cell is set to zero otherwise.
+   *
+   * @param ix_offset
+   * @param iy_offset
+   * @param val the value array
+   */
+  public void setBlock(int ix_offset, int iy_offset, byte val[][]) {
+    if((iy_offset<0)||(iy_offset+val[0].length>ny)) {
+      throw new IllegalArgumentException("Row index out of range in bit lattice setBlock."); //$NON-NLS-1$
+    }
+    if((ix_offset<0)||(ix_offset+val.length>nx)) {
+      throw new IllegalArgumentException("Column index out of range in bit lattice setBlock."); //$NON-NLS-1$
+    }
+    for(int ix = 0; ix<val.length; ix++) {
+      for(int iy = 0; iy<val[0].length; iy++) {
+        setBit(ix+ix_offset, iy+iy_offset, val[ix][iy]>0);
+      }
+    }
+  }
+
+  /**
+   * Sets a block of data starting at (0,0) to new values.
+   *
+   * @param val
+   */
+  public void setBlock(byte[][] val) {
+    setBlock(0, 0, val);
+  }
+
+  /**
+   * Sets a column of cells to new values. A cell is set to 1 if the value is >0;
+   * the cell is set to zero otherwise.
+   *
+   * @param ix
+   * @param iy_offset
+   * @param val the array of values
+   */
+  public void setCol(int ix, int iy_offset, byte val[]) {
+    if((iy_offset<0)||(iy_offset+val.length>ny)) {
+      throw new IllegalArgumentException("Row index out of range in bit lattice setCol."); //$NON-NLS-1$
+    }
+    if((ix<0)||(ix>=nx)) {
+      throw new IllegalArgumentException("Column index out of range in bit lattice setCol."); //$NON-NLS-1$
+    }
+    for(int i = 0; i<val.length; i++) {
+      setBit(ix, iy_offset+i, val[i]>0);
+    }
+  }
+
+  /**
+   * Sets a row of cells to new values starting at the given column. A cell is set
+   * to 1 if the value is >0; the cell is set to zero otherwise.
+   *
+   * @param iy
+   * @param ix_offset the x offset
+   * @param val the value array
+   */
+  public void setRow(int iy, int ix_offset, byte val[]) {
+    if((iy<0)||(iy>=ny)) {
+      throw new IllegalArgumentException("Row index out of range in bit lattice setRow."); //$NON-NLS-1$
+    }
+    if((ix_offset<0)||(ix_offset+val.length>nx)) {
+      throw new IllegalArgumentException("Column index out of range in bit lattice setRow."); //$NON-NLS-1$
+    }
+    for(int i = 0; i<val.length; i++) {
+      setBit(ix_offset+i, iy, val[i]>0);
+    }
+  }
+
+  /**
+   * Sets a cell at the given location to a new value. A cell is set to 1 if the
+   * value is >0; the cell is set to zero otherwise.
+   *
+   * @param ix
+   * @param iy
+   * @param val
+   */
+  public void setValue(int ix, int iy, byte val) {
+    if((iy<0)||(iy>=ny)||(ix<0)||(ix>=nx)) {
+      throw new IllegalArgumentException("Cell row or column index out of range.  row="+iy+"  col="+ix); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    setBit(ix, iy, val>0);
+  }
+
+  /**
+   * Gets a value from the given location.
+   *
+   * @param ix
+   * @param iy
+   * @return the cell value, 0 or 1
+   */
+  public byte getValue(int ix, int iy) {
+    int b = packedData[(ny-iy-1)*bytesPerRow+(ix>>>3)];
+    return (byte) ((b>>>(7-(ix&7)))&1);
+  }
+
+  /**
+   * Gets the number of x entries.
+   * @return nx
+   */
+  public int getNx() {
+    return nx;
+  }
+
+  /**
+   * Gets the number of y entries.
+   * @return ny
+   */
+  public int getNy() {
+    return ny;
+  }
+
+  /**
+   * Sets the color palette.
+   *
+   * @param colors the colors of 0 and 1
+   */
+  public void setColorPalette(Color[] colors) {
+    zeroColor = colors[0];
+    oneColor = colors[1];
+    updateColors();
+  }
+
+  /**
+   * Sets the color for a single index.
+   * @param i
+   * @param color
+   */
+  public void setIndexedColor(int i, Color color) {
+    if(i==0) {
+      zeroColor = color;
+    } else {
+      oneColor = color;
+    }
+    updateColors();
+  }
+
+  /**
+   * Sets the grid color.
+   * @param color
+   */
+  public void setGridLineColor(Color color) {
+    grid.setColor(color);
+  }
+
+  public void setShowGridLines(boolean showGridLines) {
+    grid.setVisible(showGridLines);
+  }
+
+  /**
+   * Gets closest index from the given x world coordinate.
+   *
+   * @param x double the coordinate
+   * @return int the index
+   */
+  public int xToIndex(double x) {
+    int ix = (int) ((x-xmin)/(xmax-xmin)*nx);
+    return Math.max(0, Math.min(nx-1, ix));
+  }
+
+  /**
+   * Gets closest index from the given y world coordinate.
+   *
+   * @param y double the coordinate
+   * @return int the index
+   */
+  public int yToIndex(double y) {
+    int iy = (int) ((y-ymin)/(ymax-ymin)*ny);
+    return Math.max(0, Math.min(ny-1, iy));
+  }
+
+  /**
+   * Determines the lattice index (row-major order) from given x and y world coordinates
+   * Returns -1 if the world coordinates are outside the lattice.
+   *
+   * @param x
+   * @param y
+   * @return index
+   */
+  public int indexFromPoint(double x, double y) {
+    int ix = (int) ((x-xmin)/(xmax-xmin)*nx);
+    int iy = (int) ((y-ymin)/(ymax-ymin)*ny);
+    if((ix<0)||(iy<0)||(ix>=nx)||(iy>=ny)) {
+      return -1;
+    }
+    return iy*nx+ix;
+  }
+
+  public JFrame showLegend() {
+    return null;
+  }
+
+  //_____________________________ kernels ___________________________
+
+  /**
+   * Counts the number of nonzero sites among the eight nearest neighbors of every site.
+   *
+   * @param counts the array for the counts indexed by iy*nx+ix, or null to create one
+   * @return the counts
+   */
+  public byte[] countNeighbors(byte[] counts) {
+    checkKernelSize();
+    if(counts==null) {
+      counts = new byte[nx*ny];
+    }
+    final byte[] result = counts;
+    final byte[] data = packedData;
+    new ParallelLoop() {
+      public void run(int start, int end) {
+        long[] up = new long[wordsPerRow], here = new long[wordsPerRow], down = new long[wordsPerRow];
+        long[] planes = new long[4];
+        for(int row = start; row<end; row++) {
+          loadRows(data, row, up, here, down);
+          int offset = (ny-row-1)*nx; // row 0 is at the top
+          for(int w = 0; w<wordsPerRow; w++) {
+            mooreCount(up, here, down, w, planes);
+            for(int bit = 0; bit<64; bit++) {
+              int shift = 63-bit;
+              result[offset+64*w+bit] = (byte) (((planes[0]>>>shift)&1)+2*((planes[1]>>>shift)&1)+4*((planes[2]>>>shift)&1)+8*((planes[3]>>>shift)&1));
+            }
+          }
+        }
+      }
+
+    }.setMinChunkSize(16).execute(ny);
+    return result;
+  }
+
+  /**
+   * Advances a life-like cellular automaton by one generation. Bit c of the birth mask is
+   * set if a zero site with c nonzero Moore neighbors becomes 1, and bit c of the survival
+   * mask is set if a 1 site with c nonzero neighbors stays 1. Conway's Life is birth mask
+   * 1<<3 and survival mask (1<<2)|(1<<3).
+   *
+   * The next generation is written to a second buffer, which then becomes the lattice's
+   * packed data and image, so no sites are copied.
+   *
+   * @param birthMask the counts that create a 1
+   * @param survivalMask the counts that keep a 1
+   */
+  public void step(final int birthMask, final int survivalMask) {
+    checkKernelSize();
+    if(spareData==null) {
+      spareData = new byte[packedData.length];
+      spareImage = createImage(spareData);
+    }
+    final byte[] data = packedData;
+    final byte[] next = spareData;
+    new ParallelLoop() {
+      public void run(int start, int end) {
+        long[] up = new long[wordsPerRow], here = new long[wordsPerRow], down = new long[wordsPerRow];
+        long[] result = new long[wordsPerRow];
+        long[] planes = new long[4];
+        for(int row = start; row<end; row++) {
+          loadRows(data, row, up, here, down);
+          for(int w = 0; w<wordsPerRow; w++) {
+            mooreCount(up, here, down, w, planes);
+            long born = 0, survive = 0;
+            for(int c = 0; c<=8; c++) {
+              long b = (((birthMask>>c)&1)!=0) ? -1L : 0L;
+              long s = (((survivalMask>>c)&1)!=0) ? -1L : 0L;
+              if((b|s)!=0) {
+                long eq = countMask(planes, c);
+                born |= eq&b;
+                survive |= eq&s;
+              }
+            }
+            result[w] = (here[w]&survive)|(~here[w]&born);
+          }
+          storeRow(result, next, row);
+        }
+      }
+
+    }.setMinChunkSize(16).execute(ny);
+    spareData = packedData;
+    packedData = next;
+    BufferedImage temp = image;
+    image = spareImage;
+    spareImage = temp;
+  }
+
+  /**
+   * Advances a life-like cellular automaton using a rule in B/S notation, such as "B3/S23".
+   *
+   * @param rule the rule
+   */
+  public void step(String rule) {
+    int birth = 0, survival = 0;
+    int current = 0; // 1 for births, 2 for survivals
+    for(int i = 0; i<rule.length(); i++) {
+      char c = Character.toUpperCase(rule.charAt(i));
+      if(c=='B') {
+        current = 1;
+      } else if(c=='S') {
+        current = 2;
+      } else if((c>='0')&&(c<='8')) {
+        if(current==1) {
+          birth |= 1<<(c-'0');
+        } else if(current==2) {
+          survival |= 1<<(c-'0');
+        }
+      }
+    }
+    step(birth, survival);
+  }
+
+  /**
+   * Performs one Metropolis sweep of the Ising model with coupling J = 1 and the given field,
+   * where a site value of 1 is spin up. The lattice is updated as a checkerboard: all sites
+   * of one color are updated in parallel, then all sites of the other color. Acceptance
+   * probabilities are resolved to 2^-24. Requires an even number of rows.
+   *
+   * @param beta the inverse temperature
+   * @param h the magnetic field
+   * @return the number of accepted flips
+   */
+  public long sweepIsing(double beta, double h) {
+    checkKernelSize();
+    if(ny%2!=0) {
+      throw new IllegalStateException("Ising sweeps need an even number of rows"); //$NON-NLS-1$
+    }
+    // thresholds indexed by 2*alignedNeighbors+spin; -1 means always accept
+    final int[] thresholds = new int[10];
+    for(int aligned = 0; aligned<=4; aligned++) {
+      for(int spin = 0; spin<=1; spin++) {
+        double dE = 2*(2*aligned-4)+2*h*(2*spin-1);
+        double p = Math.exp(-beta*dE);
+        thresholds[2*aligned+spin] = (p>=1) ? -1 : (int) (p*(1<<RANDOM_BITS));
+      }
+    }
+    final byte[] data = packedData;
+    final long[] counts = new long[ny];
+    long accepted = 0;
+    for(int color = 0; color<2; color++) {
+      final int c = color;
+      final long sweepSeed = seed+0x9E3779B97F4A7C15L*(2*sweepCount+color+1);
+      new ParallelLoop() {
+        public void run(int start, int end) {
+          long[] up = new long[wordsPerRow], here = new long[wordsPerRow], down = new long[wordsPerRow];
+          for(int row = start; row<end; row++) {
+            // neighbors have the other color, so rows being updated by other threads may be read
+            loadRows(data, row, up, here, down);
+            counts[row] = metropolisRow(up, here, down, row, c, thresholds, sweepSeed);
+            storeRow(here, data, row);
+          }
+        }
+
+      }.setMinChunkSize(16).execute(ny);
+      for(int i = 0; i<ny; i++) {
+        accepted += counts[i];
+      }
+    }
+    sweepCount++;
+    return accepted;
+  }
+
+  /**
+   * Gets the Ising magnetization, the number of 1 sites minus the number of 0 sites.
+   *
+   * @return the magnetization
+   */
+  public long getMagnetization() {
+    long ones = 0;
+    for(int i = 0; i<packedData.length; i++) {
+      ones += Integer.bitCount(packedData[i]&0xFF);
+    }
+    return 2*ones-(long) nx*ny;
+  }
+
+  /**
+   * Gets the Ising energy with coupling J = 1 and periodic boundaries.
+   *
+   * @param h the magnetic field
+   * @return the energy
+   */
+  public double getIsingEnergy(double h) {
+    checkKernelSize();
+    long[] here = new long[wordsPerRow], down = new long[wordsPerRow];
+    long aligned = 0;
+    for(int row = 0; row<ny; row++) {
+      loadRow(packedData, row, here);
+      loadRow(packedData, (row+1)%ny, down);
+      for(int w = 0; w<wordsPerRow; w++) {
+        long s = here[w];
+        long east = (s<<1)|(here[(w+1)%wordsPerRow]>>>63);
+        aligned += Long.bitCount(~(s^east))+Long.bitCount(~(s^down[w]));
+      }
+    }
+    long bonds = 2L*nx*ny;
+    return -(2*aligned-bonds)-h*getMagnetization();
+  }
+
+  //_____________________________ private methods ___________________________
+
+  /**
+   * Computes the Moore neighbor count of the 64 sites of a word as four bit planes.
+   */
+  private void mooreCount(long[] up, long[] here, long[] down, int w, long[] planes) {
+    int left = (w==0) ? wordsPerRow-1 : w-1;
+    int right = (w==wordsPerRow-1) ? 0 : w+1;
+    long u = up[w], d = down[w], c = here[w];
+    long uw = (u>>>1)|(up[left]<<63), ue = (u<<1)|(up[right]>>>63);
+    long dw = (d>>>1)|(down[left]<<63), de = (d<<1)|(down[right]>>>63);
+    long cw = (c>>>1)|(here[left]<<63), ce = (c<<1)|(here[right]>>>63);
+    // sum each row of neighbors, then add the partial sums with bitwise adders
+    long s1 = uw^u^ue, c1 = (uw&u)|(ue&(uw^u));
+    long s2 = dw^d^de, c2 = (dw&d)|(de&(dw^d));
+    long s3 = cw^ce, c3 = cw&ce;
+    long carry = (s1&s2)|(s3&(s1^s2));
+    long t = c1^c2^c3, k = (c1&c2)|(c3&(c1^c2));
+    planes[0] = s1^s2^s3;
+    planes[1] = t^carry;
+    long k2 = t&carry;
+    planes[2] = k^k2;
+    planes[3] = k&k2;
+  }
+
+  /**
+   * Gets a mask of the lanes whose count in the bit planes equals c.
+   */
+  private static long countMask(long[] planes, int c) {
+    long eq = -1L;
+    for(int bit = 0; bit<planes.length; bit++) {
+      eq &= (((c>>bit)&1)!=0) ? planes[bit] : ~planes[bit];
+    }
+    return eq;
+  }
+
+  /**
+   * Updates the sites of one color in a row and returns the number of flips.
+   */
+  private long metropolisRow(long[] up, long[] here, long[] down, int row, int color, int[] thresholds, long sweepSeed) {
+    // the leftmost site of a word is the most significant bit and has an even x
+    long colorMask = (((row+color)&1)==0) ? 0xAAAAAAAAAAAAAAAAL : 0x5555555555555555L;
+    long state = mix(sweepSeed+0x632BE59BD9B4E019L*row);
+    long[] laneMasks = new long[10];
+    int[] laneThresholds = new int[10];
+    long flips = 0;
+    for(int w = 0; w<wordsPerRow; w++) {
+      int left = (w==0) ? wordsPerRow-1 : w-1;
+      int right = (w==wordsPerRow-1) ? 0 : w+1;
+      long s = here[w];
+      long west = (s>>>1)|(here[left]<<63);
+      long east = (s<<1)|(here[right]>>>63);
+      long aN = ~(s^up[w]), aS = ~(s^down[w]), aW = ~(s^west), aE = ~(s^east);
+      // count aligned neighbors 0..4 as three bit planes
+      long s01 = aN^aS, c01 = aN&aS, s23 = aW^aE, c23 = aW&aE;
+      long b0 = s01^s23, carry = s01&s23;
+      long b1 = c01^c23^carry, b2 = (c01&c23)|(carry&(c01^c23));
+      long accept = 0;
+      int n = 0;
+      for(int aligned = 0; aligned<=4; aligned++) {
+        long eq = colorMask&(((aligned&1)!=0) ? b0 : ~b0)&(((aligned&2)!=0) ? b1 : ~b1)&(((aligned&4)!=0) ? b2 : ~b2);
+        if(eq==0) {
+          continue;
+        }
+        for(int spin = 0; spin<=1; spin++) {
+          long lanes = eq&((spin==1) ? s : ~s);
+          int threshold = thresholds[2*aligned+spin];
+          if((lanes==0)||(threshold==0)) {
+            continue;
+          }
+          if(threshold<0) {
+            accept |= lanes;
+          } else {
+            laneMasks[n] = lanes;
+            laneThresholds[n] = threshold;
+            n++;
+          }
+        }
+      }
+      if(n>0) {
+        // compare a random 24 bit number in every lane with the lane's threshold, most
+        // significant bit first, until every lane is decided
+        long undecided = 0;
+        for(int i = 0; i<n; i++) {
+          undecided |= laneMasks[i];
+        }
+        long less = 0;
+        for(int k = RANDOM_BITS-1; (k>=0)&&(undecided!=0); k--) {
+          state += 0x9E3779B97F4A7C15L;
+          long r = mix(state);
+          long p = 0;
+          for(int i = 0; i<n; i++) {
+            if(((laneThresholds[i]>>k)&1)!=0) {
+              p |= laneMasks[i];
+            }
+          }
+          less |= undecided&p&~r;
+          undecided &= ~(p^r);
+        }
+        accept |= less;
+      }
+      if(accept!=0) {
+        here[w] = s^accept;
+        flips += Long.bitCount(accept);
+      }
+    }
+    return flips;
+  }
+
+  /**
+   * Mixes the bits of a long (the SplitMix64 finalizer).
+   */
+  private static long mix(long z) {
+    z = (z^(z>>>30))*0xBF58476D1CE4E5B9L;
+    z = (z^(z>>>27))*0x94D049BB133111EBL;
+    return z^(z>>>31);
+  }
+
+  private void loadRows(byte[] data, int row, long[] up, long[] here, long[] down) {
+    loadRow(data, (row==0) ? ny-1 : row-1, up);
+    loadRow(data, row, here);
+    loadRow(data, (row==ny-1) ? 0 : row+1, down);
+  }
+
+  private void loadRow(byte[] data, int row, long[] words) {
+    int index = row*bytesPerRow;
+    for(int w = 0; w<wordsPerRow; w++) {
+      long word = 0;
+      for(int k = 0; k<8; k++) {
+        word = (word<<8)|(data[index++]&0xFF);
+      }
+      words[w] = word;
+    }
+  }
+
+  private void storeRow(long[] words, byte[] data, int row) {
+    int index = row*bytesPerRow;
+    for(int w = 0; w<wordsPerRow; w++) {
+      long word = words[w];
+      for(int shift = 56; shift>=0; shift -= 8) {
+        data[index++] = (byte) (word>>>shift);
+      }
+    }
+  }
+
+  private void setBit(int ix, int iy, boolean one) {
+    int index = (ny-iy-1)*bytesPerRow+(ix>>>3);
+    int mask = 0x80>>>(ix&7);
+    if(one) {
+      packedData[index] |= mask;
+    } else {
+      packedData[index] &= ~mask;
+    }
+  }
+
+  private void clearPadding() {
+    int extra = bytesPerRow*8-nx;
+    if(extra==0) {
+      return;
+    }
+    byte mask = (byte) (0xFF<<extra);
+    for(int row = 0; row<ny; row++) {
+      packedData[row*bytesPerRow+bytesPerRow-1] &= mask;
+    }
+  }
+
+  private void checkKernelSize() {
+    if(nx%64!=0) {
+      throw new IllegalStateException("Lattice kernels need nx to be a multiple of 64"); //$NON-NLS-1$
+    }
+  }
+
+  private BufferedImage createImage(byte[] data) {
+    DataBuffer buffer = new DataBufferByte(data, data.length);
+    WritableRaster raster = Raster.createPackedRaster(buffer, nx, ny, 1, null);
+    return new BufferedImage(createColorModel(), raster, false, null);
+  }
+
+  private IndexColorModel createColorModel() {
+    byte[] reds = new byte[] {(byte) zeroColor.getRed(), (byte) oneColor.getRed()};
+    byte[] greens = new byte[] {(byte) zeroColor.getGreen(), (byte) oneColor.getGreen()};
+    byte[] blues = new byte[] {(byte) zeroColor.getBlue(), (byte) oneColor.getBlue()};
+    return new IndexColorModel(1, 2, reds, greens, blues);
+  }
+
+  private void updateColors() {
+    image = new BufferedImage(createColorModel(), image.getRaster(), false, null);
+    if(spareImage!=null) {
+      spareImage = new BufferedImage(createColorModel(), spareImage.getRaster(), false, null);
+    }
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
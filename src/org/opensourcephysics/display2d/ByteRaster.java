@@ -48,6 +48,7 @@ public class ByteRaster extends MeasuredImage implements Dimensioned, ByteLattic
   byte[] reds = new byte[256];
   byte[] greens = new byte[256];
   byte[] blues = new byte[256];
+  ScaledImageCache scaledImage = new ScaledImageCache();
   private JFrame legendFrame;
 
   /**
@@ -121,6 +122,37 @@ public class ByteRaster extends MeasuredImage implements Dimensioned, ByteLattic
     return ny;
   }
 
+  /**
+   * Leases the packed data for writing values directly into the image buffer.
+   *
+   * The value at (ix, iy) is at index (ny-iy-1)*nx+ix, so row 0 of the packed
+   * data is the top row of the image. Call commit with the rows that were written
+   * before the raster is drawn. The array is replaced when the raster is resized.
+   *
+   * @return the packed data
+   */
+  public byte[] lease() {
+    return packedData;
+  }
+
+  /**
+   * Commits values written into the leased data. Only the given rows of the
+   * packed data are rescaled when the raster is drawn.
+   *
+   * @param firstRow the first row of the packed data that changed
+   * @param lastRow the last row of the packed data that changed
+   */
+  public void commit(int firstRow, int lastRow) {
+    scaledImage.markDirty(firstRow, lastRow);
+  }
+
+  /**
+   * Commits values written anywhere in the leased data.
+   */
+  public void commit() {
+    scaledImage.markAllDirty();
+  }
+
   private boolean isUnderEjs = false;
 
   public void setUnderEjs(boolean underEjs) {
@@ -139,7 +171,7 @@ public class ByteRaster extends MeasuredImage implements Dimensioned, ByteLattic
     }
     g.setColor(gridColor);
     if((scaleFactor<1)&&!isUnderEjs) {
-      g.drawImage(image.getScaledInstance((int) (scaleFactor*image.getWidth()), (int) (scaleFactor*image.getHeight()), java.awt.Image.SCALE_REPLICATE), panel.getLeftGutter(), panel.getTopGutter(), panel);
+      g.drawImage(scaledImage.getScaledImage(image, (int) (scaleFactor*image.getWidth()), (int) (scaleFactor*image.getHeight())), panel.getLeftGutter(), panel.getTopGutter(), panel);
     } else {
       g.drawImage(image, panel.getLeftGutter(), panel.getTopGutter(), panel);
     }
@@ -154,6 +186,7 @@ public class ByteRaster extends MeasuredImage implements Dimensioned, ByteLattic
   public void randomize() {
     Random random = new Random();
     random.nextBytes(packedData);
+    scaledImage.markAllDirty();
   }
 
   /**
@@ -233,6 +266,7 @@ public class ByteRaster extends MeasuredImage implements Dimensioned, ByteLattic
         packedData[(ny-iy-1)*nx+ix] = val[ix-ix_offset][iy-iy_offset];
       }
     }
+    scaledImage.markDirty(ny-iy_offset-val[0].length, ny-iy_offset-1);
   }
 
   /**
@@ -255,6 +289,7 @@ public class ByteRaster extends MeasuredImage implements Dimensioned, ByteLattic
         packedData[(ny-iy-1)*nx+ix] = (byte) val[ix-ix_offset][iy-iy_offset]; // only change = typecast
       }
     }
+    scaledImage.markDirty(ny-iy_offset-val[0].length, ny-iy_offset-1);
   }
 
   /**
@@ -274,6 +309,7 @@ public class ByteRaster extends MeasuredImage implements Dimensioned, ByteLattic
     for(int iy = iy_offset, my = val.length+iy_offset; iy<my; iy++) {
       packedData[(ny-iy-1)*nx+ix] = val[iy-iy_offset];
     }
+    scaledImage.markDirty(ny-iy_offset-val.length, ny-iy_offset-1);
   }
 
   /**
@@ -295,6 +331,7 @@ public class ByteRaster extends MeasuredImage implements Dimensioned, ByteLattic
     for(int ix = ix_offset, mx = val.length+ix_offset; ix<mx; ix++) {
       packedData[(ny-iy-1)*nx+ix] = val[ix-ix_offset];
     }
+    scaledImage.markDirty(ny-iy-1, ny-iy-1);
   }
 
   /**
@@ -306,6 +343,7 @@ public class ByteRaster extends MeasuredImage implements Dimensioned, ByteLattic
    */
   public void setValue(int ix, int iy, byte val) {
     packedData[(ny-iy-1)*nx+ix] = val;
+    scaledImage.markDirty(ny-iy-1, ny-iy-1);
   }
 
   /**
@@ -8,15 +8,8 @@
 package org.opensourcephysics.display2d;
 import java.awt.Dimension;
 import java.awt.Graphics;
-import java.awt.Point;
-import java.awt.Transparency;
-import java.awt.color.ColorSpace;
-import java.awt.image.BandedSampleModel;
 import java.awt.image.BufferedImage;
-import java.awt.image.ComponentColorModel;
-import java.awt.image.DataBuffer;
-import java.awt.image.DataBufferByte;
-import java.awt.image.Raster;
+import java.awt.image.DataBufferInt;
 import java.awt.image.WritableRaster;
 import org.opensourcephysics.display.Dimensioned;
 import org.opensourcephysics.display.DrawingPanel;
@@ -35,11 +28,12 @@ import org.opensourcephysics.display.MeasuredImage;
 public class IntegerRaster extends MeasuredImage implements Dimensioned {
   public static int WHITE = 0xFFFFFF;
   WritableRaster raster;
-  byte[][] rgbData;
+  int[] rgbData;
   int nrow, ncol;
   boolean visible = true;
   Dimension dimension;
   protected double scaleFactor = 1;
+  ScaledImageCache scaledImage = new ScaledImageCache();
 
   /**
    * Constructs IntegerRaster with the given size.
@@ -50,14 +44,9 @@ public class IntegerRaster extends MeasuredImage implements Dimensioned {
     nrow = _nrow;
     ncol = _ncol;
     dimension = new Dimension(ncol, nrow);
-    int size = nrow*ncol;
-    ComponentColorModel ccm = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), new int[] {8, 8, 8}, false, // hasAlpha
-      false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
-    BandedSampleModel csm = new BandedSampleModel(DataBuffer.TYPE_BYTE, ncol, nrow, ncol, new int[] {0, 1, 2}, new int[] {0, 0, 0});
-    rgbData = new byte[3][size];
-    DataBuffer databuffer = new DataBufferByte(rgbData, size);
-    WritableRaster raster = Raster.createWritableRaster(csm, databuffer, new Point(0, 0));
-    image = new BufferedImage(ccm, raster, false, null);
+    image = new BufferedImage(ncol, nrow, BufferedImage.TYPE_INT_RGB);
+    raster = image.getRaster();
+    rgbData = ((DataBufferInt) raster.getDataBuffer()).getData();
     // col in x direction, row in y direction
     xmin = 0;
     xmax = ncol;
@@ -81,13 +70,10 @@ public class IntegerRaster extends MeasuredImage implements Dimensioned {
     }
     for(int rindex = row_offset, nr = val.length+row_offset; rindex<nr; rindex++) {
       for(int cindex = col_offset, nc = val[0].length+col_offset; cindex<nc; cindex++) {
-        int index = rindex*ncol+cindex;
-        int pixval = val[rindex-row_offset][cindex-col_offset];
-        rgbData[0][index] = (byte) ((pixval>>16)&0xFF); // red
-        rgbData[1][index] = (byte) ((pixval>>8)&0xFF);  // green
-        rgbData[2][index] = (byte) ((pixval>>0)&0xFF);  // blue
+        rgbData[rindex*ncol+cindex] = val[rindex-row_offset][cindex-col_offset];
       }
     }
+    scaledImage.markDirty(row_offset, row_offset+val.length-1);
   }
 
   /**
@@ -105,12 +91,9 @@ public class IntegerRaster extends MeasuredImage implements Dimensioned {
       throw new IllegalArgumentException("Column index out of range in integer raster setBlock."); //$NON-NLS-1$
     }
     for(int cindex = col_offset, nc = val.length+col_offset; cindex<nc; cindex++) {
-      int index = row*ncol+cindex;
-      int pixval = val[cindex-col_offset];
-      rgbData[0][index] = (byte) ((pixval>>16)&0xFF); // red
-      rgbData[1][index] = (byte) ((pixval>>8)&0xFF);  // green
-      rgbData[2][index] = (byte) ((pixval>>0)&0xFF);  // blue
+      rgbData[row*ncol+cindex] = val[cindex-col_offset];
     }
+    scaledImage.markDirty(row, row);
   }
 
   /**
@@ -128,22 +111,17 @@ public class IntegerRaster extends MeasuredImage implements Dimensioned {
       throw new IllegalArgumentException("Column index out of range in integer raster setBlock."); //$NON-NLS-1$
     }
     for(int rindex = row_offset, nr = val.length+row_offset; rindex<nr; rindex++) {
-      int index = rindex*ncol+col;
-      int pixval = val[rindex-row_offset];
-      rgbData[0][index] = (byte) ((pixval>>16)&0xFF); // red
-      rgbData[1][index] = (byte) ((pixval>>8)&0xFF);  // green
-      rgbData[2][index] = (byte) ((pixval>>0)&0xFF);  // blue
+      rgbData[rindex*ncol+col] = val[rindex-row_offset];
     }
+    scaledImage.markDirty(row_offset, row_offset+val.length-1);
   }
 
   /**
    * Sets a lattice cell to a new value.
    */
   public void setCell(int _row, int _col, int val) {
-    int index = _row*ncol+_col;
-    rgbData[0][index] = (byte) ((val>>16)&0xFF); // red
-    rgbData[1][index] = (byte) ((val>>8)&0xFF);  // green
-    rgbData[2][index] = (byte) ((val>>0)&0xFF);  // blue
+    rgbData[_row*ncol+_col] = val;
+    scaledImage.markDirty(_row, _row);
   }
 
   /**
@@ -152,8 +130,37 @@ public class IntegerRaster extends MeasuredImage implements Dimensioned {
    * @return the cell value.
    */
   public int getCell(int _row, int _col) {
-    int index = _row*ncol+_col;
-    return((rgbData[0][index]&0xFF)<<16)|((rgbData[1][index]&0xFF)<<8)|((rgbData[2][index]&0xFF)<<0);
+    return rgbData[_row*ncol+_col]&0xFFFFFF;
+  }
+
+  /**
+   * Leases the pixel data for writing RGB values directly into the image buffer.
+   *
+   * The value of the cell at (row, col) is at index row*ncol+col. Call commit with
+   * the rows that were written before the raster is drawn.
+   *
+   * @return the pixel data
+   */
+  public int[] lease() {
+    return rgbData;
+  }
+
+  /**
+   * Commits values written into the leased data. Only the given rows are rescaled
+   * when the raster is drawn.
+   *
+   * @param firstRow the first row that changed
+   * @param lastRow the last row that changed
+   */
+  public void commit(int firstRow, int lastRow) {
+    scaledImage.markDirty(firstRow, lastRow);
+  }
+
+  /**
+   * Commits values written anywhere in the leased data.
+   */
+  public void commit() {
+    scaledImage.markAllDirty();
   }
 
   /**
@@ -180,7 +187,7 @@ public class IntegerRaster extends MeasuredImage implements Dimensioned {
    */
   public void draw(DrawingPanel panel, Graphics g) {
     if(scaleFactor<1) {
-      g.drawImage(image.getScaledInstance((int) (scaleFactor*image.getWidth()), (int) (scaleFactor*image.getHeight()), java.awt.Image.SCALE_REPLICATE), panel.getLeftGutter(), panel.getTopGutter(), panel);
+      g.drawImage(scaledImage.getScaledImage(image, (int) (scaleFactor*image.getWidth()), (int) (scaleFactor*image.getHeight())), panel.getLeftGutter(), panel.getTopGutter(), panel);
     } else {
       //g.drawImage(image, 1+panel.xToPix(xmin), 1+panel.yToPix(ymax), panel);
       g.drawImage(image, panel.getLeftGutter(), panel.getTopGutter(), panel);
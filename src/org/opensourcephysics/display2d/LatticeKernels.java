@@ -0,0 +1,251 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.display2d;
+import org.opensourcephysics.numerics.ParallelLoop;
+
+/**
+ * LatticeKernels provides multi-threaded cellular automaton and Ising kernels for
+ * lattices that store a byte per site, such as the packed data of a ByteRaster.
+ *
+ * Sites are stored in row-major order, index = row*nx+column, and the boundaries are
+ * periodic. Rows are processed in parallel on the ParallelLoop pool. BitLattice
+ * provides the same kernels for lattices that store one bit per site.
+ *
+ * @version 1.0
+ */
+public class LatticeKernels {
+  private LatticeKernels() {}
+
+  /**
+   * Counts the number of nonzero sites among the eight nearest neighbors of every site.
+   *
+   * @param cells the sites
+   * @param nx the number of columns
+   * @param ny the number of rows
+   * @param counts the array for the counts, or null to create one
+   * @return the counts
+   */
+  public static byte[] countNeighbors(final byte[] cells, final int nx, int ny, byte[] counts) {
+    if(counts==null) {
+      counts = new byte[nx*ny];
+    }
+    final byte[] result = counts;
+    final int rows = ny;
+    new ParallelLoop() {
+      public void run(int start, int end) {
+        for(int row = start; row<end; row++) {
+          int up = ((row==0) ? rows-1 : row-1)*nx;
+          int down = ((row==rows-1) ? 0 : row+1)*nx;
+          int here = row*nx;
+          for(int ix = 0; ix<nx; ix++) {
+            result[here+ix] = (byte) mooreCount(cells, nx, up, here, down, ix);
+          }
+        }
+      }
+
+    }.setMinChunkSize(16).execute(ny);
+    return result;
+  }
+
+  /**
+   * Advances a cellular automaton by one generation using a rule table. The next state of
+   * a site in state s with c nonzero Moore neighbors is table[9*s+c]. States are unsigned,
+   * from 0 to 255, and the table must have a row of nine entries for every state that occurs.
+   *
+   * @param cells the sites
+   * @param next the array for the next generation, which must not be the cells array
+   * @param nx the number of columns
+   * @param ny the number of rows
+   * @param table the rule table
+   */
+  public static void step(final byte[] cells, final byte[] next, final int nx, int ny, final byte[] table) {
+    if(cells==next) {
+      throw new IllegalArgumentException("The next generation needs its own array"); //$NON-NLS-1$
+    }
+    if((table.length==0)||(table.length%9!=0)||(table.length>9*256)) {
+      throw new IllegalArgumentException("The rule table needs nine entries for each of 1 to 256 states"); //$NON-NLS-1$
+    }
+    final int states = table.length/9;
+    final int rows = ny;
+    new ParallelLoop() {
+      public void run(int start, int end) {
+        for(int row = start; row<end; row++) {
+          int up = ((row==0) ? rows-1 : row-1)*nx;
+          int down = ((row==rows-1) ? 0 : row+1)*nx;
+          int here = row*nx;
+          for(int ix = 0; ix<nx; ix++) {
+            int s = cells[here+ix]&0xFF;
+            if(s>=states) {
+              throw new IllegalArgumentException("State "+s+" is not in the rule table"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            next[here+ix] = table[9*s+mooreCount(cells, nx, up, here, down, ix)];
+          }
+        }
+      }
+
+    }.setMinChunkSize(16).execute(ny);
+  }
+
+  /**
+   * Creates the rule table of a two-state life-like automaton from a rule in B/S notation,
+   * such as "B3/S23" for Conway's Life.
+   *
+   * @param rule the rule
+   * @return the rule table
+   */
+  public static byte[] createRuleTable(String rule) {
+    byte[] table = new byte[18];
+    int current = 0; // 1 for births, 2 for survivals
+    for(int i = 0; i<rule.length(); i++) {
+      char c = Character.toUpperCase(rule.charAt(i));
+      if(c=='B') {
+        current = 1;
+      } else if(c=='S') {
+        current = 2;
+      } else if((c>='0')&&(c<='8')&&(current>0)) {
+        table[9*(current-1)+c-'0'] = 1;
+      }
+    }
+    return table;
+  }
+
+  /**
+   * Performs one Metropolis sweep of the Ising model with coupling J = 1 and the given field,
+   * where a nonzero site is spin up. The sites of one checkerboard color are updated in
+   * parallel, then the sites of the other color. Requires an even number of rows and columns.
+   *
+   * @param spins the sites
+   * @param nx the number of columns
+   * @param ny the number of rows
+   * @param beta the inverse temperature
+   * @param h the magnetic field
+   * @param seed the seed of the random numbers, which should change every sweep
+   * @return the number of accepted flips
+   */
+  public static long sweepIsing(final byte[] spins, final int nx, final int ny, double beta, double h, final long seed) {
+    if((nx%2!=0)||(ny%2!=0)) {
+      throw new IllegalArgumentException("Ising sweeps need an even number of rows and columns"); //$NON-NLS-1$
+    }
+    // acceptance probabilities indexed by 5*spin+aligned neighbors
+    final double[] w = new double[10];
+    for(int spin = 0; spin<=1; spin++) {
+      for(int aligned = 0; aligned<=4; aligned++) {
+        w[5*spin+aligned] = Math.exp(-beta*(2*(2*aligned-4)+2*h*(2*spin-1)));
+      }
+    }
+    final long[] counts = new long[ny];
+    long accepted = 0;
+    for(int color = 0; color<2; color++) {
+      final int c = color;
+      new ParallelLoop() {
+        public void run(int start, int end) {
+          for(int row = start; row<end; row++) {
+            int up = ((row==0) ? ny-1 : row-1)*nx;
+            int down = ((row==ny-1) ? 0 : row+1)*nx;
+            int here = row*nx;
+            long state = mix(seed+0x632BE59BD9B4E019L*(2*row+c+1));
+            long flips = 0;
+            for(int ix = (row+c)&1; ix<nx; ix += 2) {
+              int s = (spins[here+ix]!=0) ? 1 : 0;
+              int west = (ix==0) ? nx-1 : ix-1;
+              int east = (ix==nx-1) ? 0 : ix+1;
+              int up1 = (spins[up+ix]!=0) ? 1 : 0;
+              int down1 = (spins[down+ix]!=0) ? 1 : 0;
+              int west1 = (spins[here+west]!=0) ? 1 : 0;
+              int east1 = (spins[here+east]!=0) ? 1 : 0;
+              int aligned = 4-((s^up1)+(s^down1)+(s^west1)+(s^east1));
+              double p = w[5*s+aligned];
+              boolean flip = p>=1;
+              if(!flip) {
+                state += 0x9E3779B97F4A7C15L;
+                flip = (mix(state)>>>11)*0x1.0p-53<p;
+              }
+              if(flip) {
+                spins[here+ix] = (byte) (1-s);
+                flips++;
+              }
+            }
+            counts[row] = flips;
+          }
+        }
+
+      }.setMinChunkSize(16).execute(ny);
+      for(int i = 0; i<ny; i++) {
+        accepted += counts[i];
+      }
+    }
+    return accepted;
+  }
+
+  //_____________________________ private methods ___________________________
+
+  private static int mooreCount(byte[] cells, int nx, int up, int here, int down, int ix) {
+    int west = (ix==0) ? nx-1 : ix-1;
+    int east = (ix==nx-1) ? 0 : ix+1;
+    int count = 0;
+    if(cells[up+west]!=0) {
+      count++;
+    }
+    if(cells[up+ix]!=0) {
+      count++;
+    }
+    if(cells[up+east]!=0) {
+      count++;
+    }
+    if(cells[here+west]!=0) {
+      count++;
+    }
+    if(cells[here+east]!=0) {
+      count++;
+    }
+    if(cells[down+west]!=0) {
+      count++;
+    }
+    if(cells[down+ix]!=0) {
+      count++;
+    }
+    if(cells[down+east]!=0) {
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Mixes the bits of a long (the SplitMix64 finalizer).
+   */
+  private static long mix(long z) {
+    z = (z^(z>>>30))*0xBF58476D1CE4E5B9L;
+    z = (z^(z>>>27))*0x94D049BB133111EBL;
+    return z^(z>>>31);
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,112 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.display2d;
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * ScaledImageCache keeps a scaled copy of a raster's image and rescales only the
+ * rows that have changed since the copy was last drawn.
+ *
+ * Rows are image rows with row 0 at the top. Rows may be marked dirty from any
+ * thread while the image is drawn on the event dispatch thread.
+ *
+ * @version 1.0
+ */
+class ScaledImageCache {
+  private BufferedImage source, scaled;
+  private int firstDirty = 0, lastDirty = Integer.MAX_VALUE; // firstDirty>lastDirty if clean
+
+  /**
+   * Marks a range of rows as changed.
+   *
+   * @param first the first row
+   * @param last the last row
+   */
+  synchronized void markDirty(int first, int last) {
+    if(firstDirty>lastDirty) {
+      firstDirty = first;
+      lastDirty = last;
+    } else {
+      firstDirty = Math.min(firstDirty, first);
+      lastDirty = Math.max(lastDirty, last);
+    }
+  }
+
+  /**
+   * Marks every row as changed.
+   */
+  synchronized void markAllDirty() {
+    firstDirty = 0;
+    lastDirty = Integer.MAX_VALUE;
+  }
+
+  /**
+   * Gets the image scaled to the given size, rescaling the rows that have changed.
+   *
+   * @param image the source image
+   * @param width the scaled width
+   * @param height the scaled height
+   * @return the scaled image
+   */
+  synchronized BufferedImage getScaledImage(BufferedImage image, int width, int height) {
+    width = Math.max(1, width);
+    height = Math.max(1, height);
+    if((scaled==null)||(scaled.getWidth()!=width)||(scaled.getHeight()!=height)) {
+      scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+      markAllDirty();
+    }
+    if(image!=source) { // a new palette or size
+      source = image;
+      markAllDirty();
+    }
+    if(firstDirty>lastDirty) {
+      return scaled;
+    }
+    int rows = image.getHeight();
+    // the scaled rows that may show the dirty rows, with a margin for rounding
+    int y0 = Math.max(0, (int) ((long) firstDirty*height/rows)-1);
+    int y1 = (int) Math.min(height, (Math.min((long) lastDirty, rows-1)+1)*height/rows+2);
+    Graphics2D g2 = scaled.createGraphics();
+    g2.setComposite(AlphaComposite.Src);
+    g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+    g2.setClip(0, y0, width, y1-y0);
+    g2.drawImage(image, 0, 0, width, height, null);
+    g2.dispose();
+    firstDirty = 1;
+    lastDirty = 0;
+    return scaled;
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -27,6 +27,7 @@ import org.opensourcephysics.display.DisplayRes;
 import org.opensourcephysics.display.Drawable;
 import org.opensourcephysics.display.DrawingFrame;
 import org.opensourcephysics.display.Histogram;
+import org.opensourcephysics.display.HistogramAccumulator;
 import org.opensourcephysics.display.HistogramDataset;
 import org.opensourcephysics.display.OSPFrame;
 import org.opensourcephysics.display.OSPRuntime;
@@ -306,6 +307,28 @@ public class HistogramFrame extends DrawingFrame {
     }
   }
 
+  /**
+   *  Creates an accumulator that lets many threads append to the histogram
+   *  using the current bin width. The accumulated values are merged when the
+   *  frame is repainted.
+   *
+   * @return the accumulator
+   */
+  public HistogramAccumulator createAccumulator() {
+    return new HistogramAccumulator(histogram);
+  }
+
+  /**
+   *  Creates an accumulator that lets many threads append to the histogram.
+   *
+   * @param  mode HistogramAccumulator.FIXED, LOG or ADAPTIVE
+   * @param  binWidth the bin width
+   * @return the accumulator
+   */
+  public HistogramAccumulator createAccumulator(int mode, double binWidth) {
+    return new HistogramAccumulator(histogram, mode, binWidth);
+  }
+
   /**
    *  Sets the discrete flag in the histogram.
    *
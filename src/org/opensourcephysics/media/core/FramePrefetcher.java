@@ -0,0 +1,348 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.media.core;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A FramePrefetcher decodes the frames of a VideoAdapter ahead of playback.
+ * A producer thread walks the steps of a VideoClip, asks the video for the raw
+ * image of each frame and renders it into a buffered image. Ready frames wait in
+ * a bounded queue until the clip control swaps them in on the event dispatch thread.
+ *
+ * Filters are still applied on the event dispatch thread since filters such as
+ * GhostFilter and SumFilter depend on the order in which frames are displayed.
+ *
+ * @version 1.0
+ */
+public class FramePrefetcher {
+  // instance fields
+  protected VideoAdapter video;
+  protected int capacity = 8;
+  private volatile ArrayBlockingQueue<Frame> queue = new ArrayBlockingQueue<Frame>(capacity);
+  private volatile Thread producer;
+  private volatile boolean running;
+  private VideoClip clip;
+  private boolean looping;
+  // metrics
+  private volatile long decodeNanos;
+  private volatile int decodedCount;
+  private volatile int deliveredCount;
+  private volatile int lateCount;
+  private int lateFrame = -1; // the last frame counted as late
+
+  /**
+   * A decoded frame waiting to be displayed.
+   */
+  static class Frame {
+    int frameNumber;
+    Image raw;
+    BufferedImage buffered;
+
+    Frame(int n, Image raw, BufferedImage buffered) {
+      frameNumber = n;
+      this.raw = raw;
+      this.buffered = buffered;
+    }
+
+  }
+
+  /**
+   * Constructs a FramePrefetcher for a video.
+   *
+   * @param video the video
+   */
+  public FramePrefetcher(VideoAdapter video) {
+    this.video = video;
+  }
+
+  /**
+   * Sets the maximum number of decoded frames held ahead of playback.
+   * Takes effect the next time the prefetcher is started.
+   *
+   * @param n the queue capacity
+   */
+  public synchronized void setCapacity(int n) {
+    capacity = Math.max(1, n);
+  }
+
+  /**
+   * Gets the maximum number of decoded frames held ahead of playback.
+   *
+   * @return the queue capacity
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Starts decoding the steps of a clip beginning with the specified step.
+   * Any frames already queued are discarded.
+   *
+   * @param videoClip the clip that defines the frame sequence
+   * @param step the first step to decode
+   * @param loops true to continue from step 0 after the last step
+   */
+  public synchronized void start(final VideoClip videoClip, int step, final boolean loops) {
+    stop();
+    clip = videoClip;
+    looping = loops;
+    // each producer gets its own queue so a stopped producer cannot add stale frames
+    final ArrayBlockingQueue<Frame> frames = new ArrayBlockingQueue<Frame>(capacity);
+    queue = frames;
+    running = true;
+    final int firstStep = step;
+    producer = new Thread(new Runnable() {
+      public void run() {
+        produce(frames, videoClip, firstStep, loops);
+      }
+
+    }, "FramePrefetcher"); //$NON-NLS-1$
+    producer.setDaemon(true);
+    producer.setPriority(Thread.NORM_PRIORITY-1);
+    producer.start();
+  }
+
+  /**
+   * Stops decoding and discards queued frames.
+   */
+  public synchronized void stop() {
+    running = false;
+    if(producer!=null) {
+      producer.interrupt();
+      producer = null;
+    }
+    queue.clear();
+  }
+
+  /**
+   * Gets the running state.
+   *
+   * @return true if frames are being decoded ahead
+   */
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Determines whether frames are still being decoded. Returns false when
+   * stopped, after the last step of a clip that does not loop, or if the
+   * video could not supply a frame.
+   *
+   * @return true if the producer thread is decoding or waiting to queue a frame
+   */
+  public boolean isDecoding() {
+    Thread thread = producer;
+    return running&&(thread!=null)&&thread.isAlive();
+  }
+
+  /**
+   * Determines whether the specified frame is decoded and next in the queue.
+   * If a different frame is next, playback and decoding are out of step so
+   * decoding restarts from the specified frame.
+   *
+   * @param frameNumber the frame number
+   * @return true if the frame is ready
+   */
+  public synchronized boolean isReady(int frameNumber) {
+    if(!running) {
+      return false;
+    }
+    Frame next = queue.peek();
+    if(next==null) {
+      return false;
+    }
+    if(next.frameNumber!=frameNumber) {
+      restart(frameNumber);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Removes and returns the decoded frame with the specified frame number
+   * if it is next in the queue. If a different frame is next, decoding restarts
+   * from the specified frame. A frame is counted as delivered or late only once,
+   * so a frame already counted by frameLate is not counted again.
+   *
+   * @param frameNumber the frame number
+   * @return the frame, or null if not ready
+   */
+  synchronized Frame take(int frameNumber) {
+    if(!running) {
+      return null;
+    }
+    Frame next = queue.peek();
+    boolean counted = (lateFrame==frameNumber);
+    lateFrame = -1;
+    if((next!=null)&&(next.frameNumber==frameNumber)) {
+      if(!counted) {
+        deliveredCount++;
+      }
+      return queue.poll();
+    }
+    if(!counted) {
+      lateCount++;
+    }
+    if(next!=null) {
+      restart(frameNumber);
+    }
+    return null;
+  }
+
+  /**
+   * Counts a frame that was not ready when its display time arrived.
+   *
+   * @param frameNumber the frame number
+   */
+  synchronized void frameLate(int frameNumber) {
+    if(lateFrame!=frameNumber) {
+      lateFrame = frameNumber;
+      lateCount++;
+    }
+  }
+
+  /**
+   * Gets the number of decoded frames waiting in the queue.
+   *
+   * @return the queue depth
+   */
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  /**
+   * Gets the mean time spent decoding a frame.
+   *
+   * @return the mean decode time in milliseconds
+   */
+  public double getMeanDecodeTime() {
+    int n = decodedCount;
+    return(n==0) ? 0 : decodeNanos/1.0e6/n;
+  }
+
+  /**
+   * Gets the number of frames swapped in from the queue on time.
+   *
+   * @return the delivered frame count
+   */
+  public int getDeliveredFrameCount() {
+    return deliveredCount;
+  }
+
+  /**
+   * Gets the number of frames that were not ready when needed.
+   *
+   * @return the late frame count
+   */
+  public int getLateFrameCount() {
+    return lateCount;
+  }
+
+  /**
+   * Resets the decode time and frame counts.
+   */
+  public synchronized void resetMetrics() {
+    decodeNanos = 0;
+    decodedCount = deliveredCount = lateCount = 0;
+    lateFrame = -1;
+  }
+
+  /**
+   * Restarts decoding from the step that shows the specified frame.
+   *
+   * @param frameNumber the frame number
+   */
+  private void restart(int frameNumber) {
+    if((clip!=null)&&clip.includesFrame(frameNumber)) {
+      start(clip, clip.frameToStep(frameNumber), looping);
+    } else {
+      stop();
+    }
+  }
+
+  /**
+   * Decodes frames into a queue. Runs on the producer thread.
+   *
+   * @param frames the queue
+   * @param videoClip the clip that defines the frame sequence
+   * @param step the first step to decode
+   * @param loops true to continue from step 0 after the last step
+   */
+  private void produce(ArrayBlockingQueue<Frame> frames, VideoClip videoClip, int step, boolean loops) {
+    Thread thread = Thread.currentThread();
+    while(running&&(producer==thread)) {
+      if(step>=videoClip.getStepCount()) {
+        if(!loops) {
+          return;
+        }
+        step = 0;
+      }
+      int n = videoClip.stepToFrame(step++);
+      long t0 = System.nanoTime();
+      Frame frame = decode(n);
+      if(frame==null) {
+        return;
+      }
+      decodeNanos += System.nanoTime()-t0;
+      decodedCount++;
+      try {
+        frames.put(frame);
+      } catch(InterruptedException ex) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Decodes a single frame.
+   *
+   * @param n the frame number
+   * @return the frame, or null if the video cannot supply it
+   */
+  private Frame decode(int n) {
+    Image raw = video.getFrameImage(n);
+    Dimension size = video.size;
+    if((raw==null)||(size==null)) {
+      return null;
+    }
+    BufferedImage buffered = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = buffered.createGraphics();
+    g.drawImage(raw, 0, 0, null);
+    g.dispose();
+    return new Frame(n, raw, buffered);
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -43,6 +43,7 @@ import java.util.TreeSet;
 import javax.swing.event.SwingPropertyChangeSupport;
 import org.opensourcephysics.controls.XML;
 import org.opensourcephysics.controls.XMLControl;
+import org.opensourcephysics.numerics.ParallelLoop;
 
 /**
  * This manages point and vector transformations between imagespace and
@@ -63,6 +64,7 @@ public class ImageCoordSystem {
   // static fields and initializer
   protected static NumberFormat decimal = NumberFormat.getNumberInstance(Locale.US);
   protected static NumberFormat sci = NumberFormat.getNumberInstance(Locale.US);
+  protected static int parallelThreshold = 20000; // points converted per bulk call before using multiple threads
 
   static {
     ((DecimalFormat) decimal).applyPattern("0.00"); //$NON-NLS-1$
@@ -85,6 +87,9 @@ public class ImageCoordSystem {
   private boolean fixedScale = true;
   private boolean locked = false;
   private boolean updateToKeyFrames = true;
+  // transform coefficients m00, m10, m01, m11, m02, m12 for each frame
+  private double[] toImageCoefs, toWorldCoefs;
+  private volatile boolean coefsValid = false;
 
   /**
    * Constructs an ImageCoordSystem with a default initial array length.
@@ -817,6 +822,7 @@ public class ImageCoordSystem {
     originY.setLength(length);
     cosine.setLength(length);
     sine.setLength(length);
+    coefsValid = false;
   }
 
   /**
@@ -972,6 +978,66 @@ public class ImageCoordSystem {
     return point.getY();
   }
 
+  /**
+   * Converts arrays of image positions to world positions. Point i is
+   * converted using the transform of frame start+i. The output arrays
+   * may be the same as the input arrays.
+   *
+   * @param start the frame number of the first point
+   * @param imageX the image x positions
+   * @param imageY the image y positions
+   * @param worldX the array to fill with world x positions
+   * @param worldY the array to fill with world y positions
+   */
+  public void imageToWorld(int start, double[] imageX, double[] imageY, double[] worldX, double[] worldY) {
+    convert(getCoefficients(start+imageX.length-1, false), null, start, imageX, imageY, worldX, worldY);
+  }
+
+  /**
+   * Converts arrays of image positions to world positions. Point i is
+   * converted using the transform of frame frames[i]. The output arrays
+   * may be the same as the input arrays.
+   *
+   * @param frames the frame number of each point
+   * @param imageX the image x positions
+   * @param imageY the image y positions
+   * @param worldX the array to fill with world x positions
+   * @param worldY the array to fill with world y positions
+   */
+  public void imageToWorld(int[] frames, double[] imageX, double[] imageY, double[] worldX, double[] worldY) {
+    convert(getCoefficients(max(frames), false), frames, 0, imageX, imageY, worldX, worldY);
+  }
+
+  /**
+   * Converts arrays of world positions to image positions. Point i is
+   * converted using the transform of frame start+i. The output arrays
+   * may be the same as the input arrays.
+   *
+   * @param start the frame number of the first point
+   * @param worldX the world x positions
+   * @param worldY the world y positions
+   * @param imageX the array to fill with image x positions
+   * @param imageY the array to fill with image y positions
+   */
+  public void worldToImage(int start, double[] worldX, double[] worldY, double[] imageX, double[] imageY) {
+    convert(getCoefficients(start+worldX.length-1, true), null, start, worldX, worldY, imageX, imageY);
+  }
+
+  /**
+   * Converts arrays of world positions to image positions. Point i is
+   * converted using the transform of frame frames[i]. The output arrays
+   * may be the same as the input arrays.
+   *
+   * @param frames the frame number of each point
+   * @param worldX the world x positions
+   * @param worldY the world y positions
+   * @param imageX the array to fill with image x positions
+   * @param imageY the array to fill with image y positions
+   */
+  public void worldToImage(int[] frames, double[] worldX, double[] worldY, double[] imageX, double[] imageY) {
+    convert(getCoefficients(max(frames), true), frames, 0, worldX, worldY, imageX, imageY);
+  }
+
   /**
    * Gets a copy of the affine transform used to convert from worldspace
    * to imagespace for the specified frame number.
@@ -1162,6 +1228,7 @@ public class ImageCoordSystem {
     at.setTransform(sx*cos, -sy*sin, -sx*sin, -sy*cos, tx, ty);
     // toWorld is inverse of toImage
     toWorld.get(n).setTransform(at.createInverse());
+    coefsValid = false;
     // fire property change
     if(firePropChange) {
       support.firePropertyChange("transform", null, new Integer(n)); //$NON-NLS-1$
@@ -1189,6 +1256,83 @@ public class ImageCoordSystem {
     }
   }
 
+  /**
+   * Gets the cached transform coefficients, first extending the length
+   * to include the specified frame and refreshing the cache if the
+   * transforms have changed since it was filled.
+   *
+   * @param maxFrame the highest frame number to be converted
+   * @param worldToImage true for the toImage coefficients
+   * @return six coefficients per frame
+   */
+  private synchronized double[] getCoefficients(int maxFrame, boolean worldToImage) {
+    if(maxFrame>=length) {
+      setLength(maxFrame+1);
+    }
+    // a locked system does not change length, so frames past the end get their own entries
+    int count = Math.max(length, maxFrame+1);
+    if(!coefsValid||(toImageCoefs.length<6*count)) {
+      coefsValid = true; // set first so changes made during the refresh invalidate it
+      double[] imageCoefs = new double[6*count];
+      double[] worldCoefs = new double[6*count];
+      double[] matrix = new double[6];
+      for(int i = 0; i<count; i++) {
+        toImage.get(i).getMatrix(matrix);
+        System.arraycopy(matrix, 0, imageCoefs, 6*i, 6);
+        toWorld.get(i).getMatrix(matrix);
+        System.arraycopy(matrix, 0, worldCoefs, 6*i, 6);
+      }
+      toImageCoefs = imageCoefs;
+      toWorldCoefs = worldCoefs;
+    }
+    return worldToImage ? toImageCoefs : toWorldCoefs;
+  }
+
+  /**
+   * Applies per-frame transform coefficients to arrays of points,
+   * using multiple threads for large arrays.
+   *
+   * @param coefs six coefficients per frame
+   * @param frames the frame number of each point, or null to use start+i
+   * @param start the frame number of the first point when frames is null
+   * @param x the input x values
+   * @param y the input y values
+   * @param outX the array to fill with output x values
+   * @param outY the array to fill with output y values
+   */
+  private void convert(final double[] coefs, final int[] frames, final int start, final double[] x, final double[] y, final double[] outX, final double[] outY) {
+    ParallelLoop loop = new ParallelLoop() {
+      public void run(int from, int to) {
+        for(int i = from; i<to; i++) {
+          int k = 6*((frames==null) ? start+i : frames[i]);
+          double px = x[i], py = y[i];
+          outX[i] = coefs[k]*px+coefs[k+2]*py+coefs[k+4];
+          outY[i] = coefs[k+1]*px+coefs[k+3]*py+coefs[k+5];
+        }
+      }
+
+    };
+    if(x.length<parallelThreshold) {
+      loop.run(0, x.length);
+    } else {
+      loop.setMinChunkSize(parallelThreshold/2).execute(x.length);
+    }
+  }
+
+  /**
+   * Returns the largest value in an array of frame numbers.
+   *
+   * @param frames the frame numbers
+   * @return the maximum, or 0 if the array is empty
+   */
+  private static int max(int[] frames) {
+    int max = 0;
+    for(int i = 0; i<frames.length; i++) {
+      max = Math.max(max, frames[i]);
+    }
+    return max;
+  }
+
   /**
    * Inner class containing the coords data for a single frame number.
    */
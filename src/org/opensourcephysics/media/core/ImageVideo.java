@@ -109,12 +109,37 @@ public class ImageVideo extends VideoAdapter {
   public void setFrameNumber(int n) {
     super.setFrameNumber(n);
     int index = Math.min(getFrameNumber(), images.length-1);
-    rawImage = images[index];
-    isValidImage = false;
-    isValidFilteredImage = false;
+    if(!usePrefetchedFrame(index)) {
+      rawImage = images[index];
+      isValidImage = false;
+      isValidFilteredImage = false;
+    }
     firePropertyChange("framenumber", null, new Integer(getFrameNumber())); //$NON-NLS-1$
   }
 
+  /**
+   * Gets the image of the specified frame.
+   *
+   * @param n the frame number
+   * @return the image, or null if n is out of range
+   */
+  protected Image getFrameImage(int n) {
+    BufferedImage[] frames = images;
+    if((n<0)||(n>=frames.length)) {
+      return null;
+    }
+    return frames[n];
+  }
+
+  /**
+   * ImageVideo frames can be prefetched.
+   *
+   * @return true
+   */
+  protected boolean isPrefetchable() {
+    return true;
+  }
+
   /**
    * Gets the image array.
    *
@@ -86,6 +86,7 @@ public class ImageVideoRecorder extends ScratchVideoRecorder {
       return videoType.getVideo(saveFile.getAbsolutePath());
     }
     if (saveFile!=null) {
+    	finishRawFrames();
     	saveScratch();
     	if (savedFilePaths!=null && savedFilePaths.length>0) {
       	return new ImageVideo(savedFilePaths[0], savedFilePaths.length>1);    		
@@ -109,6 +110,7 @@ public class ImageVideoRecorder extends ScratchVideoRecorder {
     if(saveFile==null) {
       throw new IOException("Read-only file"); //$NON-NLS-1$
     }
+    finishRawFrames();
     saveScratch();
     isSaved = true;
     return (savedFilePaths==null || savedFilePaths.length==0)? 
@@ -0,0 +1,252 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.media.core;
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+/**
+ * A RawFrameStore appends uncompressed frames to a memory-mapped scratch file.
+ * Adding a frame is a single bulk copy of its int pixels into the mapped file, so
+ * frames can be captured at high rates and encoded later on another thread.
+ * The frame index (position, size and image type of each frame) is kept in memory.
+ *
+ * Frames may be added by one thread while another reads earlier frames.
+ *
+ * @version 1.0
+ */
+public class RawFrameStore {
+  // static fields
+  protected static final long REGION_SIZE = 64L*1024*1024; // bytes mapped at a time
+  // instance fields
+  protected File file;
+  private RandomAccessFile raf;
+  private FileChannel channel;
+  private ArrayList<MappedByteBuffer> regions = new ArrayList<MappedByteBuffer>();
+  private long[] regionStarts = new long[8];
+  private long mappedLength;                                // end of last mapped region
+  private long length;                                      // bytes written
+  private int[] frameRegion = new int[64];
+  private int[] frameOffset = new int[64];                  // byte offset in region
+  private int[] frameWidth = new int[64];
+  private int[] frameHeight = new int[64];
+  private int[] frameType = new int[64];
+  private volatile int frameCount;
+  private BufferedImage converter;                          // reused to convert other image types
+
+  /**
+   * Creates a RawFrameStore backed by the specified file. The file is
+   * overwritten if it exists.
+   *
+   * @param file the scratch file
+   * @throws IOException
+   */
+  public RawFrameStore(File file) throws IOException {
+    this.file = file;
+    raf = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+    raf.setLength(0);
+    channel = raf.getChannel();
+  }
+
+  /**
+   * Appends a frame. Images of type TYPE_INT_RGB and TYPE_INT_ARGB are copied
+   * directly from their data buffers; other images are first drawn into an
+   * int ARGB image.
+   *
+   * @param image the image
+   * @throws IOException
+   */
+  public synchronized void append(Image image) throws IOException {
+    BufferedImage source = getIntImage(image);
+    int w = source.getWidth();
+    int h = source.getHeight();
+    int[] pixels = ((DataBufferInt) source.getRaster().getDataBuffer()).getData();
+    int bytes = 4*w*h;
+    MappedByteBuffer region = getRegion(bytes);
+    int offset = (int) (length-regionStarts[regions.size()-1]);
+    ByteBuffer buf = region.duplicate();
+    buf.position(offset);
+    buf.order(ByteOrder.nativeOrder()).asIntBuffer().put(pixels, 0, w*h);
+    int n = frameCount;
+    ensureIndexCapacity(n+1);
+    frameRegion[n] = regions.size()-1;
+    frameOffset[n] = offset;
+    frameWidth[n] = w;
+    frameHeight[n] = h;
+    frameType[n] = (source.getType()==BufferedImage.TYPE_INT_RGB) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+    length += bytes;
+    frameCount = n+1;
+  }
+
+  /**
+   * Gets the number of frames in the store.
+   *
+   * @return the frame count
+   */
+  public int getFrameCount() {
+    return frameCount;
+  }
+
+  /**
+   * Gets a copy of the specified frame.
+   *
+   * @param n the frame number
+   * @return the frame image, or null if n is out of range
+   */
+  public synchronized BufferedImage getFrame(int n) {
+    if((n<0)||(n>=frameCount)) {
+      return null;
+    }
+    BufferedImage image = new BufferedImage(frameWidth[n], frameHeight[n], frameType[n]);
+    int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    ByteBuffer buf = regions.get(frameRegion[n]).duplicate();
+    buf.position(frameOffset[n]);
+    buf.order(ByteOrder.nativeOrder()).asIntBuffer().get(pixels, 0, pixels.length);
+    return image;
+  }
+
+  /**
+   * Gets the number of bytes of frame data in the store.
+   *
+   * @return the length in bytes
+   */
+  public long getLength() {
+    return length;
+  }
+
+  /**
+   * Closes the store and deletes the scratch file. Mapped regions are released
+   * when garbage collected, so the file is also marked for deletion on exit.
+   */
+  public synchronized void delete() {
+    regions.clear();
+    frameCount = 0;
+    try {
+      channel.close();
+      raf.close();
+    } catch(IOException ex) {
+
+    /** empty block */
+    }
+    if(!file.delete()) {
+      file.deleteOnExit();
+    }
+  }
+
+  /**
+   * Returns an int RGB or ARGB image with the contents of the specified image.
+   *
+   * @param image the image
+   * @return the image itself if it has a packed int raster, otherwise a converted copy
+   */
+  private BufferedImage getIntImage(Image image) {
+    if(image instanceof BufferedImage) {
+      BufferedImage bi = (BufferedImage) image;
+      int type = bi.getType();
+      if(((type==BufferedImage.TYPE_INT_RGB)||(type==BufferedImage.TYPE_INT_ARGB))&&(bi.getRaster().getParent()==null)
+         &&(bi.getSampleModel() instanceof SinglePixelPackedSampleModel)
+         &&(((SinglePixelPackedSampleModel) bi.getSampleModel()).getScanlineStride()==bi.getWidth())
+         &&(((DataBufferInt) bi.getRaster().getDataBuffer()).getOffset()==0)) {
+        return bi;
+      }
+    }
+    int w = image.getWidth(null);
+    int h = image.getHeight(null);
+    if((converter==null)||(converter.getWidth()!=w)||(converter.getHeight()!=h)) {
+      converter = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+    }
+    Graphics2D g = converter.createGraphics();
+    g.setComposite(AlphaComposite.Src);
+    g.drawImage(image, 0, 0, null);
+    g.dispose();
+    return converter;
+  }
+
+  /**
+   * Gets the mapped region that will receive the next frame, mapping a new
+   * region if the current one does not have room.
+   *
+   * @param bytes the frame size in bytes
+   * @return the region
+   * @throws IOException
+   */
+  private MappedByteBuffer getRegion(int bytes) throws IOException {
+    if(regions.isEmpty()||(length+bytes>mappedLength)) {
+      long size = Math.max(REGION_SIZE, bytes);
+      MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, length, size);
+      if(regions.size()==regionStarts.length) {
+        long[] starts = new long[2*regionStarts.length];
+        System.arraycopy(regionStarts, 0, starts, 0, regionStarts.length);
+        regionStarts = starts;
+      }
+      regionStarts[regions.size()] = length;
+      regions.add(region);
+      mappedLength = length+size;
+    }
+    return regions.get(regions.size()-1);
+  }
+
+  /**
+   * Grows the frame index arrays if needed.
+   *
+   * @param n the required capacity
+   */
+  private void ensureIndexCapacity(int n) {
+    if(n<=frameOffset.length) {
+      return;
+    }
+    int size = Math.max(n, 2*frameOffset.length);
+    frameRegion = grow(frameRegion, size);
+    frameOffset = grow(frameOffset, size);
+    frameWidth = grow(frameWidth, size);
+    frameHeight = grow(frameHeight, size);
+    frameType = grow(frameType, size);
+  }
+
+  private static int[] grow(int[] array, int size) {
+    int[] newArray = new int[size];
+    System.arraycopy(array, 0, newArray, 0, array.length);
+    return newArray;
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -36,14 +36,8 @@ import java.awt.Dimension;
 import java.awt.Image;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -83,13 +77,19 @@ public abstract class ScratchVideoRecorder implements VideoRecorder {
   protected String scratchName;          // base name of scratch files
   protected int scratchNumber = 0;       // appended to base name for uniqueness
   protected File scratchFile;            // active scratch file
-  protected boolean canRecord;           // scratch file ready to accept added frames
+  protected volatile boolean canRecord;  // scratch file ready to accept added frames
   protected boolean hasContent;          // scratch file has added frames
   protected boolean isSaved;             // scratch file has been saved to saveFile
   protected File saveFile = null;        // file to which scratch will be copied
   protected boolean saveChanges = false; // true to ask to save changes
 	protected ArrayList<File> tempFiles = new ArrayList<File>();
 	protected String suggestedFileName;
+  protected boolean fastScratch = false;   // true to capture raw frames for background encoding
+  protected RawFrameStore rawFrames;       // raw frames waiting to be encoded
+  private Thread rawEncoder;               // encodes raw frames in the background
+  private int rawEncodedCount;             // number of raw frames encoded
+  private boolean rawFinished;             // no more raw frames will be added
+  private IOException rawFailure;          // error thrown while encoding raw frames
   
   static {
     tempDirectory = System.getProperty("java.io.tmpdir"); //$NON-NLS-1$
@@ -201,6 +201,33 @@ public abstract class ScratchVideoRecorder implements VideoRecorder {
     frameDuration = millis;
   }
 
+  /**
+   * Turns on/off fast scratch mode. In fast scratch mode added frames are copied
+   * uncompressed to a memory-mapped scratch file and encoded in the background,
+   * so addFrame returns as soon as the pixels are copied. Saving waits for the
+   * remaining frames to be encoded. If the raw frame store cannot be created or
+   * mapped, fast scratch mode is turned off and frames are encoded as they are added.
+   *
+   * @param fast <code>true</code> to capture raw frames
+   * @throws IOException
+   */
+  public void setFastScratch(boolean fast) throws IOException {
+    if(fast==fastScratch) {
+      return;
+    }
+    finishRawFrames();
+    fastScratch = fast;
+  }
+
+  /**
+   * Gets the fast scratch mode.
+   *
+   * @return <code>true</code> if raw frames are captured and encoded in the background
+   */
+  public boolean isFastScratch() {
+    return fastScratch;
+  }
+
   /**
    * Adds a video frame with the specified image.
    *
@@ -211,13 +238,17 @@ public abstract class ScratchVideoRecorder implements VideoRecorder {
     if(image==null) {
       return;
     }
-    frameImage = image;
     if((scratchFile==null)||(hasContent&&isSaved)) {
+      frameImage = image;
       createVideo();
     }
     if(scratchFile==null) {
       return;
     }
+    if(fastScratch&&addRawFrame(image)) {
+      return;
+    }
+    frameImage = image;
     if(!canRecord) {
       canRecord = startRecording();
       isSaved = false;
@@ -236,6 +267,7 @@ public abstract class ScratchVideoRecorder implements VideoRecorder {
    * @throws IOException
    */
   public Video getVideo() throws IOException {
+    finishRawFrames();
     saveScratch();
     return videoType.getVideo(scratchFile.getAbsolutePath());
   }
@@ -271,23 +303,10 @@ public abstract class ScratchVideoRecorder implements VideoRecorder {
     if(saveFile==null) {
       throw new IOException("could not write to read-only file"); //$NON-NLS-1$
     }
+    finishRawFrames();
     saveScratch();
     // copy scratch to fileName
-    int buffer = 8192;
-    byte[] data = new byte[buffer];
-    int count = 0;
-    int total = 0;
-    FileInputStream fin = new FileInputStream(scratchFile);
-    InputStream in = new BufferedInputStream(fin);
-    FileOutputStream fout = new FileOutputStream(saveFile);
-    OutputStream out = new BufferedOutputStream(fout);
-    while((count = in.read(data, 0, buffer))!=-1) {
-      out.write(data, 0, count);
-      total += count;
-    }
-    out.flush();
-    out.close();
-    in.close();
+    long total = VideoIO.transferFile(scratchFile, saveFile);
     isSaved = true;
     OSPLog.fine("copied "+total+" bytes from "+                 //$NON-NLS-1$ //$NON-NLS-2$
       scratchFile.getName()+" to "+saveFile.getAbsolutePath()); //$NON-NLS-1$
@@ -345,6 +364,7 @@ public abstract class ScratchVideoRecorder implements VideoRecorder {
    * Discards the current video and resets the recorder to a ready state.
    */
   public void reset() {
+    discardRawFrames();
     if(scratchFile!=null) {
       try {
         saveScratch();
@@ -354,6 +374,146 @@ public abstract class ScratchVideoRecorder implements VideoRecorder {
     hasContent = false;
   }
 
+  //________________________________ protected methods _________________________________
+
+  /**
+   * Copies a frame to the raw frame store and starts the background encoder if needed.
+   * If the store cannot be created or mapped, the frames already stored are encoded
+   * and fast scratch mode is turned off, so the frame must be added normally.
+   *
+   * @param image the image to add
+   * @return true if the frame was added, false if fast scratch mode was turned off
+   * @throws IOException if an earlier frame could not be encoded
+   */
+  protected boolean addRawFrame(Image image) throws IOException {
+    synchronized(this) {
+      if(rawFailure!=null) {
+        IOException ex = rawFailure;
+        rawFailure = null;
+        throw ex;
+      }
+    }
+    try {
+      synchronized(this) {
+        if(rawFrames==null) {
+          rawFrames = new RawFrameStore(new File(scratchFile.getAbsolutePath()+".raw")); //$NON-NLS-1$
+          rawEncodedCount = 0;
+          rawFinished = false;
+        }
+      }
+      rawFrames.append(image);
+    } catch(IOException ex) {
+      OSPLog.warning("fast scratch mode not available: "+ex.getMessage()); //$NON-NLS-1$
+      finishRawFrames();
+      fastScratch = false;
+      return false;
+    }
+    hasContent = true;
+    isSaved = false;
+    frameCount++;
+    synchronized(this) {
+      if(rawEncoder==null) {
+        rawEncoder = new Thread(new Runnable() {
+          public void run() {
+            encodeRawFrames();
+          }
+
+        }, "ScratchVideoRecorder encoder"); //$NON-NLS-1$
+        rawEncoder.setDaemon(true);
+        rawEncoder.start();
+      }
+      notifyAll();
+    }
+    return true;
+  }
+
+  /**
+   * Waits until all raw frames have been encoded to the scratch file, then
+   * deletes the raw frame store. Does nothing if no raw frames were added.
+   *
+   * @throws IOException if a frame could not be encoded
+   */
+  protected void finishRawFrames() throws IOException {
+    Thread encoder;
+    synchronized(this) {
+      rawFinished = true;
+      notifyAll();
+      encoder = rawEncoder;
+    }
+    if(encoder!=null) {
+      try {
+        encoder.join();
+      } catch(InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    IOException failure;
+    synchronized(this) {
+      rawEncoder = null;
+      if(rawFrames!=null) {
+        rawFrames.delete();
+        rawFrames = null;
+      }
+      failure = rawFailure;
+      rawFailure = null;
+    }
+    if(failure!=null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Stops the background encoder and discards any raw frames not yet encoded.
+   */
+  protected void discardRawFrames() {
+    synchronized(this) {
+      if(rawFrames!=null) {
+        rawEncodedCount = rawFrames.getFrameCount();
+      }
+    }
+    try {
+      finishRawFrames();
+    } catch(IOException ex) {
+
+    /** empty block */
+    }
+  }
+
+  /**
+   * Encodes raw frames to the scratch file as they are added. Runs on the
+   * encoder thread until finishRawFrames is called and all frames are encoded.
+   */
+  private void encodeRawFrames() {
+    while(true) {
+      int n;
+      synchronized(this) {
+        while((rawEncodedCount>=rawFrames.getFrameCount())&&!rawFinished) {
+          try {
+            wait();
+          } catch(InterruptedException ex) {
+            return;
+          }
+        }
+        if(rawEncodedCount>=rawFrames.getFrameCount()) {
+          return;
+        }
+        n = rawEncodedCount;
+      }
+      Image image = rawFrames.getFrame(n);
+      if(!canRecord) {
+        frameImage = image;
+        canRecord = startRecording();
+      }
+      boolean appended = canRecord&&append(image);
+      synchronized(this) {
+        rawEncodedCount++;
+        if(!appended&&(rawFailure==null)) {
+          rawFailure = new IOException("unable to encode frame "+n); //$NON-NLS-1$
+        }
+      }
+    }
+  }
+
   //________________________________ static methods _________________________________
 
   /**
@@ -52,6 +52,8 @@ public class StepperClipControl extends ClipControl {
   private boolean stepDisplayed = true;
   private int minDelay = 10;          // milliseconds
   private int maxDelay = 5000;        // milliseconds
+  private boolean prefetching = true;
+  private javax.swing.Timer retryTimer;
 
   /**
    * Constructs a TimerClipControl object.
@@ -75,14 +77,22 @@ public class StepperClipControl extends ClipControl {
 //    int delay = (int) (frameDuration*clip.getStepSize());
 //    delay = Math.min(delay, maxDelay);
 //    delay = Math.max(delay, minDelay);
-    timer = new javax.swing.Timer(getTimerDelay(), new ActionListener() {
+    ActionListener stepper = new ActionListener() {
       public void actionPerformed(ActionEvent e) {
+        if(!isNextFrameReady(e.getSource()==timer)) {
+          // wait for the prefetcher rather than decode on the event thread
+          retryTimer.restart();
+          return;
+        }
         readyToStep = true;
         step();
       }
 
-    });
+    };
+    timer = new javax.swing.Timer(getTimerDelay(), stepper);
     timer.setRepeats(false);
+    retryTimer = new javax.swing.Timer(minDelay, stepper);
+    retryTimer.setRepeats(false);
   }
 
   /**
@@ -95,8 +105,10 @@ public class StepperClipControl extends ClipControl {
     playing = true;
     readyToStep = true;
     if(stepNumber==clip.getStepCount()-1) {
+      startPrefetching(0);
       setStepNumber(0);
     } else {
+      startPrefetching(stepNumber+1);
       step();
     }
     support.firePropertyChange("playing", null, new Boolean(true)); //$NON-NLS-1$
@@ -107,6 +119,11 @@ public class StepperClipControl extends ClipControl {
    */
   public void stop() {
     timer.stop();
+    retryTimer.stop();
+    FramePrefetcher prefetcher = getFramePrefetcher();
+    if(prefetcher!=null) {
+      prefetcher.stop();
+    }
     readyToStep = true;
     stepDisplayed = true;
     playing = false;
@@ -249,9 +266,54 @@ public class StepperClipControl extends ClipControl {
       return;
     }
     looping = loops;
+    if(playing) {
+      startPrefetching(stepNumber+1);
+    }
     support.firePropertyChange("looping", null, new Boolean(loops)); //$NON-NLS-1$
   }
 
+  /**
+   * Turns on/off decoding frames ahead of playback. Prefetching is only
+   * used for videos that support it.
+   *
+   * @param prefetch <code>true</code> to decode frames ahead
+   */
+  public void setPrefetching(boolean prefetch) {
+    if(prefetch==prefetching) {
+      return;
+    }
+    prefetching = prefetch;
+    FramePrefetcher prefetcher = getFramePrefetcher();
+    if(prefetcher!=null) {
+      prefetcher.stop();
+    }
+    if(playing) {
+      startPrefetching(stepNumber+1);
+    }
+  }
+
+  /**
+   * Gets the prefetching status.
+   *
+   * @return <code>true</code> if frames are decoded ahead of playback
+   */
+  public boolean isPrefetching() {
+    return prefetching&&(getFramePrefetcher()!=null);
+  }
+
+  /**
+   * Gets the frame prefetcher for the video, which reports the queue depth,
+   * mean decode time and number of late frames.
+   *
+   * @return the prefetcher, or null if the video does not support prefetching
+   */
+  public FramePrefetcher getFramePrefetcher() {
+    if(video instanceof VideoAdapter) {
+      return((VideoAdapter) video).getFramePrefetcher();
+    }
+    return null;
+  }
+
   /**
    * Gets the playing status.
    *
@@ -300,6 +362,9 @@ public class StepperClipControl extends ClipControl {
 //      delay = Math.min(delay, maxDelay);
 //      delay = Math.max(delay, minDelay);
       timer.setInitialDelay(getTimerDelay());
+      if(playing) {
+        startPrefetching(stepNumber+1);
+      }
     } 
     else if(name.equals("framenumber")) {           // from video //$NON-NLS-1$
     	int n = ((Integer) e.getNewValue()).intValue();
@@ -315,6 +380,51 @@ public class StepperClipControl extends ClipControl {
     else super.propertyChange(e);
   }
 
+  /**
+   * Starts the prefetcher at the specified step if prefetching is on.
+   *
+   * @param step the first step to decode
+   */
+  private void startPrefetching(int step) {
+    FramePrefetcher prefetcher = getFramePrefetcher();
+    if(!prefetching||(prefetcher==null)) {
+      return;
+    }
+    if(step>=clip.getStepCount()) {
+      step = 0;
+    }
+    prefetcher.start(clip, step, looping);
+  }
+
+  /**
+   * Determines whether the frame for the next step is ready to display.
+   * Always true when not prefetching.
+   *
+   * @param onTime true if the frame's display time just arrived
+   * @return true if the next step can be displayed without decoding
+   */
+  private boolean isNextFrameReady(boolean onTime) {
+    FramePrefetcher prefetcher = getFramePrefetcher();
+    if(!playing||!prefetching||(prefetcher==null)||!prefetcher.isRunning()) {
+      return true;
+    }
+    int next = stepNumber+1;
+    if(next>=clip.getStepCount()) {
+      if(!looping) {
+        return true;
+      }
+      next = 0;
+    }
+    int frame = clip.stepToFrame(next);
+    if(prefetcher.isReady(frame)||!prefetcher.isDecoding()) {
+      return true;
+    }
+    if(onTime) {
+      prefetcher.frameLate(frame);
+    }
+    return false;
+  }
+
   /**
    * Gets the timer delay.
    *
@@ -82,6 +82,7 @@ public class VideoAdapter implements Video, PropertyChangeListener {
   protected HashMap<String, Object> properties = new HashMap<String, Object>();
   protected FilterStack filterStack = new FilterStack();
   protected Raster clearRaster;
+  protected FramePrefetcher prefetcher;
 
   /**
    * Protected constructor creates an empty VideoAdapter
@@ -965,10 +966,25 @@ public class VideoAdapter implements Video, PropertyChangeListener {
     support.removePropertyChangeListener(property, listener);
   }
 
+  /**
+   * Gets the frame prefetcher used to decode frames ahead of playback.
+   *
+   * @return the prefetcher, or null if this video cannot be prefetched
+   */
+  public FramePrefetcher getFramePrefetcher() {
+    if((prefetcher==null)&&isPrefetchable()) {
+      prefetcher = new FramePrefetcher(this);
+    }
+    return prefetcher;
+  }
+
   /**
    * Disposes of this video.
    */
   public void dispose() {
+    if(prefetcher!=null) {
+      prefetcher.stop();
+    }
   	if (coords!=null)
   		coords.removePropertyChangeListener(this);
     getFilterStack().setInspectorsVisible(false);
@@ -993,6 +1009,53 @@ public class VideoAdapter implements Video, PropertyChangeListener {
 
   //____________________________ protected methods ____________________________
 
+  /**
+   * Determines whether getFrameImage can supply frames to a FramePrefetcher.
+   * Subclasses that override getFrameImage should return true.
+   *
+   * @return true if frames can be decoded ahead of playback
+   */
+  protected boolean isPrefetchable() {
+    return false;
+  }
+
+  /**
+   * Gets the raw image of the specified frame without changing the current frame.
+   * This is called by FramePrefetcher on its own thread so implementations
+   * must be thread safe.
+   *
+   * @param n the frame number
+   * @return the raw image, or null if not available
+   */
+  protected Image getFrameImage(int n) {
+    return null;
+  }
+
+  /**
+   * Replaces the raw image with the prefetched image of the specified frame and
+   * copies its pixels into the buffered image, if the frame is ready. The buffered
+   * image itself is kept so filters that compare it with their last source, such as
+   * GhostFilter and SumFilter, continue to accumulate frames.
+   *
+   * @param n the frame number
+   * @return true if prefetched images were used
+   */
+  protected boolean usePrefetchedFrame(int n) {
+    if((prefetcher==null)||!prefetcher.isRunning()) {
+      return false;
+    }
+    FramePrefetcher.Frame frame = prefetcher.take(n);
+    if((frame==null)||(frame.buffered.getWidth()!=size.width)||(frame.buffered.getHeight()!=size.height)) {
+      return false;
+    }
+    refreshBufferedImage();
+    bufferedImage.getRaster().setDataElements(0, 0, frame.buffered.getRaster());
+    rawImage = frame.raw;
+    isValidImage = true;
+    isValidFilteredImage = false;
+    return true;
+  }
+
   /**
    * Sends a PropertyChangeEvent to registered listeners. No event is sent
    * if oldVal and newVal are equal, unless they are both null.
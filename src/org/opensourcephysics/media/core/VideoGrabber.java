@@ -32,6 +32,7 @@ import javax.swing.JPanel;
 import javax.swing.JToolBar;
 import javax.swing.SwingUtilities;
 import javax.swing.WindowConstants;
+import org.opensourcephysics.controls.OSPLog;
 import org.opensourcephysics.controls.XML;
 import org.opensourcephysics.display.Drawable;
 import org.opensourcephysics.media.gif.GifVideoRecorder;
@@ -251,6 +252,18 @@ public class VideoGrabber extends VideoCaptureTool {
     }
     videoType = type;
     recorder = type.getRecorder();
+    if(recorder instanceof ScratchVideoRecorder) {
+      // capture raw frames and encode them in the background
+      ScratchVideoRecorder scratch = (ScratchVideoRecorder) recorder;
+      try {
+        scratch.setFastScratch(true);
+      } catch(IOException ex) {
+        // raw frames of an earlier recording could not be encoded, so use normal scratch mode
+        OSPLog.warning("fast scratch mode not available: "+ex.getMessage()); //$NON-NLS-1$
+        scratch.discardRawFrames();
+        scratch.fastScratch = false;
+      }
+    }
     clearAction.actionPerformed(null);
   }
 
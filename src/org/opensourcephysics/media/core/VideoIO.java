@@ -39,6 +39,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -371,21 +372,8 @@ public class VideoIO {
    * @return true if successfully copied
    */
   public static boolean copyFile(File inFile, File outFile) {
-  	byte[] buffer = new byte[100000];
     try {
-    	InputStream in = new FileInputStream(inFile);
-    	OutputStream out = new FileOutputStream(outFile);
-			while (true) {
-				synchronized (buffer) {
-					int amountRead = in.read(buffer);
-					if (amountRead == -1) {
-						break;
-					}
-					out.write(buffer, 0, amountRead);
-				}
-			}
-			in.close();
-			out.close();
+    	transferFile(inFile, outFile);
 			outFile.setLastModified(inFile.lastModified());
 		}                   
     catch (IOException ex) {
@@ -394,6 +382,38 @@ public class VideoIO {
   	return true;
   }
 
+  /**
+   * Copies the contents of a source file to a target file with FileChannel.transferTo,
+   * repeating the transfer until every byte is copied.
+   *
+   * @param inFile the source
+   * @param outFile the target
+   * @return the number of bytes copied
+   * @throws IOException if the file cannot be copied completely
+   */
+  static long transferFile(File inFile, File outFile) throws IOException {
+  	FileChannel in = new FileInputStream(inFile).getChannel();
+  	FileChannel out = null;
+  	try {
+  		out = new FileOutputStream(outFile).getChannel();
+  		long size = in.size();
+  		long total = 0;
+  		while (total<size) {
+  			long count = in.transferTo(total, size-total, out);
+  			if (count<=0) {
+  				throw new IOException("copied only "+total+" of "+size+" bytes to "+outFile.getName()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+  			}
+  			total += count;
+  		}
+  		return total;
+  	} finally {
+  		in.close();
+  		if (out!=null) {
+  			out.close();
+  		}
+  	}
+  }
+
   /**
    * Returns the currently supported video file extensions
    *
@@ -155,20 +155,7 @@ public class AnimatedGifEncoder {
       image = im;
       getImagePixels();      // convert to correct format if necessary
       analyzePixels();       // build color table & map pixels
-      if(firstFrame) {
-        writeLSD();          // logical screen descriptior
-        writePalette();      // global color table
-        if(repeat>=0) {
-          // use NS app extension to indicate reps
-          writeNetscapeExt();
-        }
-      }
-      writeGraphicCtrlExt(); // write graphic control extension
-      writeImageDesc();      // image descriptor
-      if(!firstFrame) {
-        writePalette();      // local color table
-      }
-      writePixels();         // encode and write pixel data
+      writeFrame();          // write frame blocks to the output stream
       firstFrame = false;
     } catch(Exception e) {
       return false;
@@ -176,6 +163,27 @@ public class AnimatedGifEncoder {
     return true;
   }
 
+  /**
+   * Writes the blocks of the current analyzed frame. The first frame
+   * also writes the logical screen descriptor and global color table.
+   */
+  protected void writeFrame() throws IOException {
+    if(firstFrame) {
+      writeLSD();          // logical screen descriptior
+      writePalette();      // global color table
+      if(repeat>=0) {
+        // use NS app extension to indicate reps
+        writeNetscapeExt();
+      }
+    }
+    writeGraphicCtrlExt(); // write graphic control extension
+    writeImageDesc();      // image descriptor
+    if(!firstFrame) {
+      writePalette();      // local color table
+    }
+    writePixels();         // encode and write pixel data
+  }
+
   /**
    * Flushes any pending data and closes output file.
    * If writing to an OutputStream, the stream is not closed.
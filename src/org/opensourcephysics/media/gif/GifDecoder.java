@@ -107,6 +107,7 @@ public class GifDecoder {
   protected boolean transparency = false; // use transparent color
   protected int delay = 0;                // delay in milliseconds
   protected int transIndex;               // transparent color index
+  protected int savedTransColor;          // active color replaced by transparency
   protected static final int MaxStackSize = 4096;
   // max decoder pixel stack size
 
@@ -612,6 +613,26 @@ public class GifDecoder {
    * Reads next frame image
    */
   protected void readImage() {
+    if(!readImageData()) {
+      return;
+    }
+    frameCount++;
+    // create new image to receive frame data
+    image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+    setPixels();                            // transfer pixel data to image
+    frames.add(new GifFrame(image, delay)); // add image to frame list
+    restoreTransparentColor();
+    resetFrame();
+  }
+
+  /**
+   * Reads the image descriptor, color table and LZW data of the next frame
+   * into the pixel array. The transparent color, if any, is cleared in the
+   * active color table until restoreTransparentColor is called.
+   *
+   * @return true if the frame data was read without errors
+   */
+  protected boolean readImageData() {
     ix = readShort(); // (sub)image position & size
     iy = readShort();
     iw = readShort();
@@ -631,31 +652,32 @@ public class GifDecoder {
         bgColor = 0;
       }
     }
-    int save = 0;
-    if(transparency) {
-      save = act[transIndex];
-      act[transIndex] = 0; // set transparent color if specified
-    }
     if(act==null) {
       status = STATUS_FORMAT_ERROR; // no color table defined
     }
     if(err()) {
-      return;
+      return false;
+    }
+    if(transparency) {
+      savedTransColor = act[transIndex];
+      act[transIndex] = 0; // set transparent color if specified
     }
     decodeImageData(); // decode pixel data
     skip();
     if(err()) {
-      return;
+      restoreTransparentColor();
+      return false;
     }
-    frameCount++;
-    // create new image to receive frame data
-    image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
-    setPixels();                            // transfer pixel data to image
-    frames.add(new GifFrame(image, delay)); // add image to frame list
-    if(transparency) {
-      act[transIndex] = save;
+    return true;
+  }
+
+  /**
+   * Restores the transparent color cleared by readImageData.
+   */
+  protected void restoreTransparentColor() {
+    if(transparency&&(act!=null)) {
+      act[transIndex] = savedTransColor;
     }
-    resetFrame();
   }
 
   /**
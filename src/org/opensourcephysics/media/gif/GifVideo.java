@@ -32,6 +32,7 @@
 package org.opensourcephysics.media.gif;
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.Image;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.image.BufferedImage;
@@ -128,9 +129,11 @@ public class GifVideo extends VideoAdapter {
     super.setFrameNumber(n);
     n = getFrameNumber();
     int index = Math.min(n, decoder.getFrameCount()-1);
-    rawImage = decoder.getFrame(index);
-    isValidImage = false;
-    isValidFilteredImage = false;
+    if(!usePrefetchedFrame(index)) {
+      rawImage = decoder.getFrame(index);
+      isValidImage = false;
+      isValidFilteredImage = false;
+    }
     support.firePropertyChange("framenumber", null, new Integer(n)); //$NON-NLS-1$
     // repaint panels in case they don't listen
     Iterator<DrawingPanel> it = panels.iterator();
@@ -140,6 +143,26 @@ public class GifVideo extends VideoAdapter {
     }
   }
 
+  /**
+   * Gets the decoded image of the specified frame. The decoder is thread safe
+   * so frames may be prefetched.
+   *
+   * @param n the frame number
+   * @return the image, or null if n is out of range
+   */
+  protected Image getFrameImage(int n) {
+    return decoder.getFrame(n);
+  }
+
+  /**
+   * GifVideo frames can be prefetched when the decoder is thread safe.
+   *
+   * @return true if frames can be decoded ahead of playback
+   */
+  protected boolean isPrefetchable() {
+    return decoder instanceof IndexedGifDecoder;
+  }
+
   /**
    * Gets the start time of the specified frame in milliseconds.
    *
@@ -249,7 +272,7 @@ public class GifVideo extends VideoAdapter {
    * @throws IOException
    */
   protected void load(String gifName) throws IOException {
-    decoder = new GifDecoder();
+    decoder = new IndexedGifDecoder();
     int status = decoder.read(gifName);
     if(status==GifDecoder.STATUS_OPEN_ERROR) {
       throw new IOException("Gif "+gifName+" not found"); //$NON-NLS-1$ //$NON-NLS-2$
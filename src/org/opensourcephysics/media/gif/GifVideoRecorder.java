@@ -44,7 +44,7 @@ import org.opensourcephysics.media.core.ScratchVideoRecorder;
  */
 public class GifVideoRecorder extends ScratchVideoRecorder {
   // instance fields
-  private AnimatedGifEncoder encoder = new AnimatedGifEncoder();
+  private AnimatedGifEncoder encoder = new PipelinedGifEncoder();
 
   /**
    * Constructs a GifVideoRecorder object.
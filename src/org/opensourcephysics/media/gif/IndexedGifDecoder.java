@@ -0,0 +1,354 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.media.gif;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * IndexedGifDecoder is a GifDecoder that decodes frames on demand.
+ * Reading a GIF only scans its blocks and records, for each frame, the byte
+ * offset of the image descriptor, the graphic control settings and whether
+ * the frame depends on the previous one. No pixel data is decoded until a
+ * frame is requested.
+ *
+ * Decoded frames are kept in a small LRU cache whose size is set by a memory
+ * budget. Every keyframeInterval-th frame decoded along the way is cached, so a
+ * random seek only decodes forward from the nearest cached or independent frame.
+ *
+ * @version 1.0
+ */
+public class IndexedGifDecoder extends GifDecoder {
+  protected byte[] data;                                  // raw gif file bytes
+  protected ArrayList<FrameIndex> index = new ArrayList<FrameIndex>();
+  protected int keyframeInterval = 16;                    // frames between cached keyframes
+  protected long memoryBudget = 32*1024*1024;             // bytes of decoded frames to cache
+  private LinkedHashMap<Integer, BufferedImage> cache = new FrameCache();
+  private int maxCachedFrames = 2;
+  private boolean indexing;
+
+  /**
+   * Index entry for a single frame.
+   */
+  static class FrameIndex {
+    int offset;                // position just after the image separator
+    int x, y, w, h;            // image rectangle
+    int dispose;               // disposal code
+    boolean transparency;      // transparent color flag
+    int transIndex;            // transparent color index
+    int delay;                 // delay in milliseconds
+    int bgColor;               // background color in effect for this frame
+    boolean dependsOnPrevious; // false if the frame covers the full image with no transparency
+
+  }
+
+  /**
+   * Sets the maximum number of bytes of decoded frames to keep in the cache.
+   *
+   * @param bytes the memory budget in bytes
+   */
+  public synchronized void setMemoryBudget(long bytes) {
+    memoryBudget = Math.max(0, bytes);
+    refreshCacheSize();
+  }
+
+  /**
+   * Gets the memory budget for decoded frames.
+   *
+   * @return the memory budget in bytes
+   */
+  public long getMemoryBudget() {
+    return memoryBudget;
+  }
+
+  /**
+   * Sets the interval between keyframes cached while decoding forward.
+   *
+   * @param interval the keyframe interval
+   */
+  public void setKeyframeInterval(int interval) {
+    keyframeInterval = Math.max(1, interval);
+  }
+
+  /**
+   * Gets the keyframe interval.
+   *
+   * @return the keyframe interval
+   */
+  public int getKeyframeInterval() {
+    return keyframeInterval;
+  }
+
+  /**
+   * Reads and indexes a GIF image from a stream. Frames are not decoded.
+   *
+   * @param input the BufferedInputStream containing GIF file.
+   * @return read status code (0 = no errors)
+   */
+  public synchronized int read(BufferedInputStream input) {
+    if(input==null) {
+      return super.read(input);
+    }
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buf = new byte[8192];
+      int n;
+      while((n = input.read(buf))!=-1) {
+        bytes.write(buf, 0, n);
+      }
+      input.close();
+      data = bytes.toByteArray();
+    } catch(IOException ex) {
+      init();
+      status = STATUS_OPEN_ERROR;
+      return status;
+    }
+    indexing = true;
+    try {
+      super.read(new BufferedInputStream(new ByteArrayInputStream(data)));
+    } finally {
+      indexing = false;
+    }
+    refreshCacheSize();
+    return status;
+  }
+
+  /**
+   * Gets display duration for specified frame.
+   *
+   * @param n int index of frame
+   * @return delay in milliseconds
+   */
+  public int getDelay(int n) {
+    delay = -1;
+    if((n>=0)&&(n<frameCount)) {
+      delay = index.get(n).delay;
+    }
+    return delay;
+  }
+
+  /**
+   * Gets the image contents of frame n, decoding it if not cached.
+   *
+   * @param n the frame number
+   * @return BufferedImage representation of frame, or null if n is invalid.
+   */
+  public synchronized BufferedImage getFrame(int n) {
+    if((n<0)||(n>=frameCount)) {
+      return null;
+    }
+    BufferedImage im = cache.get(n);
+    if(im!=null) {
+      return im;
+    }
+    // find the nearest frame at or before n from which decoding can start
+    int start = n;
+    BufferedImage last = null, beforeLast = null;
+    while(start>0) {
+      FrameIndex f = index.get(start);
+      if(!f.dependsOnPrevious&&((start==n)||(f.dispose!=3))) {
+        break;
+      }
+      BufferedImage prev = cache.get(start-1);
+      if((prev!=null)&&((index.get(start-1).dispose!=3)||(start<2)||cache.containsKey(start-2))) {
+        last = prev;
+        beforeLast = (start<2) ? null : cache.get(start-2);
+        break;
+      }
+      start--;
+    }
+    for(int i = start; i<=n; i++) {
+      BufferedImage next = decodeFrame(i, last, beforeLast);
+      if(next==null) {
+        return null;
+      }
+      beforeLast = last;
+      last = next;
+      if((i==n)||(i%keyframeInterval==0)) {
+        cache.put(i, next);
+      }
+    }
+    return last;
+  }
+
+  /**
+   * Clears the decoded frame cache.
+   */
+  public synchronized void clearCache() {
+    cache.clear();
+  }
+
+  /**
+   * Initializes or re-initializes reader
+   */
+  protected void init() {
+    super.init();
+    index = new ArrayList<FrameIndex>();
+    cache.clear();
+    bgColor = 0;
+    dispose = lastDispose = 0;
+    transparency = false;
+    delay = 0;
+  }
+
+  /**
+   * Records an index entry for the next frame and skips its pixel data.
+   * Frames are decoded by readImageData when not indexing.
+   */
+  protected void readImage() {
+    if(!indexing) {
+      super.readImage();
+      return;
+    }
+    FrameIndex f = new FrameIndex();
+    f.offset = data.length-available();
+    f.x = readShort();
+    f.y = readShort();
+    f.w = readShort();
+    f.h = readShort();
+    int packed = read();
+    boolean localTable = (packed&0x80)!=0;
+    if(localTable) {
+      readColorTable(2<<(packed&7)); // skip local color table
+    } else if(bgIndex==transIndex) {
+      bgColor = 0;                   // as in readImageData
+    }
+    if(!localTable&&(gct==null)) {
+      status = STATUS_FORMAT_ERROR;  // no color table defined
+    }
+    read(); // LZW minimum code size
+    skip(); // image data
+    if(err()) {
+      return;
+    }
+    f.dispose = dispose;
+    f.transparency = transparency;
+    f.transIndex = transIndex;
+    f.delay = delay;
+    f.bgColor = bgColor;
+    boolean fullImage = (f.x==0)&&(f.y==0)&&(f.w>=width)&&(f.h>=height);
+    f.dependsOnPrevious = (frameCount>0)&&!(fullImage&&!transparency);
+    index.add(f);
+    frameCount++;
+  }
+
+  /**
+   * Decodes frame n on top of the previous decoded frames.
+   *
+   * @param n the frame number
+   * @param last the decoded frame n-1, or null if n does not depend on it
+   * @param beforeLast the decoded frame n-2, used when frame n-1 restores to previous
+   * @return the decoded frame, or null if a format error occurred
+   */
+  protected BufferedImage decodeFrame(int n, BufferedImage last, BufferedImage beforeLast) {
+    FrameIndex f = index.get(n);
+    in = new BufferedInputStream(new ByteArrayInputStream(data, f.offset, data.length-f.offset));
+    status = STATUS_OK;
+    dispose = f.dispose;
+    transparency = f.transparency;
+    transIndex = f.transIndex;
+    delay = f.delay;
+    bgColor = f.bgColor;
+    lastDispose = 0;
+    lastImage = null;
+    if((n>0)&&(last!=null)) {
+      FrameIndex prev = index.get(n-1);
+      lastDispose = prev.dispose;
+      lastRect = new Rectangle(prev.x, prev.y, prev.w, prev.h);
+      lastBgColor = prev.bgColor;
+      lastImage = last;
+      if(lastDispose==3) {
+        // restore to previous: start from the frame before last
+        lastImage = beforeLast;
+        lastDispose = 1;
+      }
+    }
+    if(!readImageData()) {
+      lct = null;
+      return null;
+    }
+    image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+    setPixels();
+    restoreTransparentColor();
+    lct = null;
+    BufferedImage decoded = image;
+    image = null;
+    lastImage = null;
+    return decoded;
+  }
+
+  /**
+   * Returns the number of bytes remaining in the input stream.
+   */
+  private int available() {
+    try {
+      return in.available();
+    } catch(IOException ex) {
+      return 0;
+    }
+  }
+
+  /**
+   * Sets the cache capacity from the memory budget and frame size.
+   */
+  private void refreshCacheSize() {
+    long frameBytes = 4L*Math.max(1, width)*Math.max(1, height);
+    maxCachedFrames = (int) Math.max(2, Math.min(Integer.MAX_VALUE, memoryBudget/frameBytes));
+    while(cache.size()>maxCachedFrames) {
+      Integer eldest = cache.keySet().iterator().next();
+      cache.remove(eldest);
+    }
+  }
+
+  /**
+   * An access-ordered map that discards the least recently used frames.
+   */
+  private class FrameCache extends LinkedHashMap<Integer, BufferedImage> {
+    private static final long serialVersionUID = 1L;
+
+    FrameCache() {
+      super(16, 0.75f, true);
+    }
+
+    protected boolean removeEldestEntry(Map.Entry<Integer, BufferedImage> eldest) {
+      return size()>maxCachedFrames;
+    }
+
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,330 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.media.gif;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PipelinedGifEncoder is an AnimatedGifEncoder that quantizes and compresses
+ * frames on a pool of worker threads. The calling thread only copies the pixels
+ * of each frame. Workers run NeuQuant and LZW compression in parallel and a single
+ * writer thread appends the encoded frames to the output stream in order.
+ *
+ * The number of frames waiting to be written is bounded so memory stays
+ * constant during long exports: addFrame blocks when the pipeline is full.
+ * <pre>
+ * Example:
+ *    PipelinedGifEncoder e = new PipelinedGifEncoder();
+ *    e.start(outputFileName);
+ *    e.setDelay(1000);   // 1 frame per sec
+ *    e.addFrame(image1);
+ *    e.addFrame(image2);
+ *    e.finish();         // waits for all frames to be written
+ * </pre>
+ *
+ * @version 1.0
+ */
+public class PipelinedGifEncoder extends AnimatedGifEncoder {
+  // static fields
+  private static final Future<byte[]> END_OF_FRAMES = new EndOfFrames();
+  // instance fields
+  protected int threadCount = Runtime.getRuntime().availableProcessors();
+  protected int maxPendingFrames = 2*threadCount;
+  private ExecutorService workers;
+  private Semaphore pending;
+  private BlockingQueue<Future<byte[]>> encodedFrames;
+  private Thread writer;
+  private volatile Exception failure;
+
+  /**
+   * Sets the number of worker threads used to quantize and compress frames.
+   * Must be invoked before start.
+   *
+   * @param n the number of worker threads
+   */
+  public void setThreadCount(int n) {
+    if(!started) {
+      threadCount = Math.max(1, n);
+    }
+  }
+
+  /**
+   * Gets the number of worker threads.
+   *
+   * @return the thread count
+   */
+  public int getThreadCount() {
+    return threadCount;
+  }
+
+  /**
+   * Sets the maximum number of frames held in the pipeline. When this many
+   * frames are waiting to be encoded or written, addFrame blocks.
+   * Must be invoked before start.
+   *
+   * @param n the maximum number of pending frames
+   */
+  public void setMaxPendingFrames(int n) {
+    if(!started) {
+      maxPendingFrames = Math.max(1, n);
+    }
+  }
+
+  /**
+   * Gets the maximum number of frames held in the pipeline.
+   *
+   * @return the maximum number of pending frames
+   */
+  public int getMaxPendingFrames() {
+    return maxPendingFrames;
+  }
+
+  /**
+   * Initiates GIF file creation on the given stream and starts the pipeline.
+   * Also invoked by start(String).
+   *
+   * @param os OutputStream on which GIF images are written.
+   * @return false if initial write failed.
+   */
+  public boolean start(OutputStream os) {
+    if(!super.start(os)) {
+      return false;
+    }
+    startPipeline();
+    return true;
+  }
+
+  /**
+   * Adds the next GIF frame. The pixels are copied on the calling thread so the
+   * image may be reused as soon as this returns. Quantization and compression are
+   * done by the worker threads. Blocks while the pipeline is full.
+   *
+   * @param im BufferedImage containing frame to write.
+   * @return true if the frame was queued.
+   */
+  public boolean addFrame(BufferedImage im) {
+    if((im==null)||!started||(failure!=null)) {
+      return false;
+    }
+    if(!sizeSet) {
+      // use first frame's size
+      setSize(im.getWidth(), im.getHeight());
+    }
+    try {
+      pending.acquire();
+    } catch(InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    FrameTask task = new FrameTask(copyPixels(im), firstFrame);
+    firstFrame = false;
+    encodedFrames.add(workers.submit(task));
+    return true;
+  }
+
+  /**
+   * Waits for all queued frames to be written, then flushes any pending data
+   * and closes the output file.
+   *
+   * @return true if all frames were written and the stream successfully flushed
+   */
+  public boolean finish() {
+    if(!started) {
+      return false;
+    }
+    encodedFrames.add(END_OF_FRAMES);
+    try {
+      writer.join();
+    } catch(InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    workers.shutdown();
+    workers = null;
+    writer = null;
+    boolean ok = super.finish()&&(failure==null);
+    failure = null;
+    return ok;
+  }
+
+  /**
+   * Copies the pixels of an image into a new BGR byte array of the current size.
+   *
+   * @param im the image
+   * @return the pixels
+   */
+  protected byte[] copyPixels(BufferedImage im) {
+    BufferedImage copy = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+    if((im.getType()==BufferedImage.TYPE_3BYTE_BGR)&&(im.getWidth()==width)&&(im.getHeight()==height)) {
+      byte[] src = ((DataBufferByte) im.getRaster().getDataBuffer()).getData();
+      byte[] dest = ((DataBufferByte) copy.getRaster().getDataBuffer()).getData();
+      System.arraycopy(src, 0, dest, 0, dest.length);
+    } else {
+      Graphics2D g = copy.createGraphics();
+      g.drawImage(im, 0, 0, null);
+      g.dispose();
+    }
+    return((DataBufferByte) copy.getRaster().getDataBuffer()).getData();
+  }
+
+  /**
+   * Creates the worker pool and the writer thread.
+   */
+  private void startPipeline() {
+    failure = null;
+    pending = new Semaphore(maxPendingFrames);
+    encodedFrames = new LinkedBlockingQueue<Future<byte[]>>();
+    workers = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "GifEncoder worker"); //$NON-NLS-1$
+        t.setDaemon(true);
+        return t;
+      }
+
+    });
+    writer = new Thread(new Runnable() {
+      public void run() {
+        writeFrames();
+      }
+
+    }, "GifEncoder writer");                           //$NON-NLS-1$
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Writes encoded frames to the output stream in the order they were added.
+   * Runs on the writer thread.
+   */
+  private void writeFrames() {
+    while(true) {
+      Future<byte[]> next;
+      try {
+        next = encodedFrames.take();
+      } catch(InterruptedException ex) {
+        failure = ex;
+        return;
+      }
+      if(next==END_OF_FRAMES) {
+        return;
+      }
+      try {
+        byte[] bytes = next.get();
+        if(failure==null) {
+          out.write(bytes);
+        }
+      } catch(ExecutionException ex) {
+        failure = ex;
+      } catch(InterruptedException ex) {
+        failure = ex;
+      } catch(IOException ex) {
+        failure = ex;
+      } finally {
+        pending.release();
+      }
+    }
+  }
+
+  /**
+   * A task that quantizes and compresses a single frame into a byte array.
+   * Each task encodes with its own AnimatedGifEncoder so no state is shared.
+   */
+  private class FrameTask implements Callable<byte[]> {
+    AnimatedGifEncoder frameEncoder = new AnimatedGifEncoder();
+
+    FrameTask(byte[] pixels, boolean first) {
+      // capture the current settings of the outer encoder
+      frameEncoder.width = width;
+      frameEncoder.height = height;
+      frameEncoder.sizeSet = true;
+      frameEncoder.transparent = transparent;
+      frameEncoder.repeat = repeat;
+      frameEncoder.delay = delay;
+      frameEncoder.dispose = dispose;
+      frameEncoder.sample = sample;
+      frameEncoder.firstFrame = first;
+      frameEncoder.pixels = pixels;
+    }
+
+    public byte[] call() throws IOException {
+      int n = frameEncoder.width*frameEncoder.height;
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream(n/2+1024);
+      frameEncoder.out = buffer;
+      frameEncoder.analyzePixels();
+      frameEncoder.writeFrame();
+      frameEncoder.pixels = null;
+      frameEncoder.indexedPixels = null;
+      return buffer.toByteArray();
+    }
+
+  }
+
+  /**
+   * A marker Future that signals the writer that no more frames will be added.
+   */
+  private static class EndOfFrames implements Future<byte[]> {
+    public boolean cancel(boolean mayInterrupt) {
+      return false;
+    }
+
+    public boolean isCancelled() {
+      return false;
+    }
+
+    public boolean isDone() {
+      return true;
+    }
+
+    public byte[] get() {
+      return null;
+    }
+
+    public byte[] get(long timeout, TimeUnit unit) {
+      return null;
+    }
+
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -1112,6 +1112,115 @@ public abstract class ArrayLib {
         }
     }
 
+    // -- Parallel double / int sorting --
+
+    /**
+     * Sort two arrays simultaneously on multiple threads, using the sort order
+     * of the values in the first array to determine the sort order for both
+     * arrays. The sort is stable and NaN values are placed last.
+     * @param a the array to sort by
+     * @param b the array to re-arrange based on the sort order of the
+     * first array.
+     */
+    public static final void parallelSort(final double[] a, final int[] b) {
+        final int n = a.length;
+        final double[] ta = new double[n];
+        final int[] tb = new int[n];
+        // sort runs of at least 8192 elements in parallel
+        int runs = 1;
+        while (runs < 2 * ParallelLoop.getThreadCount() && n / (2 * runs) >= 8192) {
+            runs *= 2;
+        }
+        final int runCount = runs;
+        new ParallelLoop() {
+            public void run(int start, int end) {
+                for (int k = start; k < end; k++) {
+                    stableSort(a, b, ta, tb, (int) ((long) n * k / runCount),
+                            (int) ((long) n * (k + 1) / runCount));
+                }
+            }
+        }.setMinChunkSize(1).execute(runCount);
+        // merge pairs of runs in parallel until a single run remains
+        double[] srcA = a, dstA = ta;
+        int[] srcB = b, dstB = tb;
+        for (int width = 1; width < runCount; width *= 2) {
+            final double[] fromA = srcA, toA = dstA;
+            final int[] fromB = srcB, toB = dstB;
+            final int w = width;
+            new ParallelLoop() {
+                public void run(int start, int end) {
+                    for (int k = start; k < end; k++) {
+                        int lo = (int) ((long) n * (2 * k * w) / runCount);
+                        int mid = (int) ((long) n * Math.min(runCount, (2 * k + 1) * w) / runCount);
+                        int hi = (int) ((long) n * Math.min(runCount, (2 * k + 2) * w) / runCount);
+                        stableMerge(fromA, fromB, toA, toB, lo, mid, hi);
+                    }
+                }
+            }.setMinChunkSize(1).execute((runCount + 2 * w - 1) / (2 * w));
+            srcA = toA;
+            dstA = fromA;
+            srcB = toB;
+            dstB = fromB;
+        }
+        if (srcA != a) {
+            System.arraycopy(srcA, 0, a, 0, n);
+            System.arraycopy(srcB, 0, b, 0, n);
+        }
+    }
+
+    /**
+     * Returns true if x sorts before y, with NaN after all numbers.
+     */
+    private static boolean before(double x, double y) {
+        return x < y || (y != y && x == x);
+    }
+
+    /**
+     * Stable merge sort of the range [lo, hi) using ta and tb as scratch.
+     */
+    private static void stableSort(double[] a, int[] b, double[] ta, int[] tb, int lo, int hi) {
+        if (hi - lo < SORT_THRESHOLD) {
+            for (int j = lo + 1; j < hi; ++j) {
+                double key = a[j];
+                int val = b[j];
+                int i = j - 1;
+                while (i >= lo && before(key, a[i])) {
+                    a[i + 1] = a[i];
+                    b[i + 1] = b[i];
+                    --i;
+                }
+                a[i + 1] = key;
+                b[i + 1] = val;
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        stableSort(a, b, ta, tb, lo, mid);
+        stableSort(a, b, ta, tb, mid, hi);
+        if (!before(a[mid], a[mid - 1])) {
+            return; // already in order
+        }
+        stableMerge(a, b, ta, tb, lo, mid, hi);
+        System.arraycopy(ta, lo, a, lo, hi - lo);
+        System.arraycopy(tb, lo, b, lo, hi - lo);
+    }
+
+    /**
+     * Merges the sorted ranges [lo, mid) and [mid, hi) of a and b into ta and tb.
+     */
+    private static void stableMerge(double[] a, int[] b, double[] ta, int[] tb, int lo, int mid, int hi) {
+        int p1 = lo, p2 = mid;
+        for (int i = lo; i < hi; i++) {
+            if (p2 >= hi || (p1 < mid && !before(a[p2], a[p1]))) {
+                ta[i] = a[p1];
+                tb[i] = b[p1++];
+            } else {
+                ta[i] = a[p2];
+                tb[i] = b[p2++];
+            }
+        }
+    }
+
     // -- float / int sorting -------------------------------------------
 
     /**
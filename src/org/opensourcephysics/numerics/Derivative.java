@@ -143,6 +143,9 @@ public class Derivative {
    * @return double
    */
   static public double firstPartial(MultiVarFunction f, double[] x, int n, double h) {
+    if(f instanceof DifferentiableMultiVarFunction) {
+      return gradient(f, x, h)[n];
+    }
     double[] tempPlus = new double[x.length];
     System.arraycopy(x, 0, tempPlus, 0, x.length);
     tempPlus[n] += h;
@@ -152,6 +155,35 @@ public class Derivative {
     return(f.evaluate(tempPlus)-f.evaluate(tempMinus))/2.0/h;
   }
 
+  /**
+   * Computes the gradient of a multivariable function. The gradient is exact if
+   * the function is a DifferentiableMultiVarFunction, such as a
+   * ParsedMultiVarFunction, and uses centered finite differences otherwise.
+   *
+   * @param f MultiVarFunction
+   * @param x double[] variables
+   * @param h double change in the variables for finite differences
+   * @return double[] the partial derivatives
+   */
+  static public double[] gradient(MultiVarFunction f, double[] x, double h) {
+    double[] grad = new double[x.length];
+    if(f instanceof DifferentiableMultiVarFunction) {
+      ((DifferentiableMultiVarFunction) f).evaluate(x, grad);
+      return grad;
+    }
+    double[] temp = new double[x.length];
+    System.arraycopy(x, 0, temp, 0, x.length);
+    for(int i = 0; i<x.length; i++) {
+      temp[i] = x[i]+h;
+      double fp = f.evaluate(temp);
+      temp[i] = x[i]-h;
+      double fm = f.evaluate(temp);
+      temp[i] = x[i];
+      grad[i] = (fp-fm)/2.0/h;
+    }
+    return grad;
+  }
+
   /**
    * Computes the second derivate using the centered finite difference approximation.
    *
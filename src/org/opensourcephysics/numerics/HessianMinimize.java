@@ -249,6 +249,9 @@ public class HessianMinimize {
     if((xp==null)||(xp.length!=m)) {
       allocateArrays(m);
     }
+    if(Veq instanceof DifferentiableMultiVarFunction) {
+      return getGradientHessian((DifferentiableMultiVarFunction) Veq, x, D, dx);
+    }
     //  Compute the Hessian:
     for(int i = 0; i<m; i++) {
       for(int j = i; j<m; j++) {
@@ -293,6 +296,38 @@ public class HessianMinimize {
     return H;
   }
 
+  /**
+   * Finds the Hessian by centered differences of the exact gradient. This takes
+   * 2m+1 gradient evaluations instead of about 2m*m function evaluations, and D
+   * is exact.
+   */
+  private double[][] getGradientHessian(DifferentiableMultiVarFunction Veq, double[] x, double[] D, double[] dx) {
+    int m = x.length;
+    double[] gp = new double[m];
+    double[] gm = new double[m];
+    for(int i = 0; i<m; i++) {
+      System.arraycopy(x, 0, xp, 0, m);
+      System.arraycopy(x, 0, xm, 0, m);
+      xp[i] = x[i]+dx[i];
+      xm[i] = x[i]-dx[i];
+      Veq.evaluate(xp, gp);
+      Veq.evaluate(xm, gm);
+      for(int j = 0; j<m; j++) {
+        H[i][j] = (gp[j]-gm[j])/(2.0*dx[i]);
+      }
+    }
+    for(int i = 0; i<m; i++) {
+      for(int j = i+1; j<m; j++) {
+        H[i][j] = H[j][i] = (H[i][j]+H[j][i])/2;
+      }
+    }
+    Veq.evaluate(x, gp);
+    for(int i = 0; i<m; i++) {
+      D[i] = -gp[i];
+    }
+    return H;
+  }
+
 }
 
 /*
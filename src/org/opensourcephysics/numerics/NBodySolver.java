@@ -0,0 +1,329 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.numerics;
+
+/**
+ * NBodySolver advances a system of particles with a symplectic integrator.
+ *
+ * Positions, velocities and forces are stored by component in separate arrays, so
+ * r[d][i] is component d of the position of particle i, and the forces are computed
+ * by a pluggable NBodyForce. The updates of positions and velocities run in parallel
+ * on the ParallelLoop pool. The schemes are:
+ * <ul>
+ * <li>VELOCITY_VERLET, second order with one force evaluation per step because the
+ * force at the end of a step is reused at the start of the next step</li>
+ * <li>YOSHIDA4, fourth order composition of three velocity Verlet steps with three
+ * force evaluations per step</li>
+ * <li>RESPA, a multiple time step scheme in which the slow force, set with setSlowForce,
+ * is evaluated once per step and the fast force is integrated with smaller steps</li>
+ * </ul>
+ *
+ * CAUTION! Call initialize after the positions, the forces or the number of particles
+ * change outside the solver, so that the stored forces are recomputed.
+ *
+ * @version 1.0
+ */
+public class NBodySolver implements ODESolver {
+  public static final int VELOCITY_VERLET = 0;
+  public static final int YOSHIDA4 = 1;
+  public static final int RESPA = 2;
+  private static final double W1 = 1/(2-Math.cbrt(2));       // Yoshida coefficients
+  private static final double W0 = -Math.cbrt(2)/(2-Math.cbrt(2));
+  private double[][] r, v, f, slowF;
+  private double[] mass;
+  private int n, dimension;
+  private NBodyForce force, slowForce;
+  private int substeps = 4;
+  private int scheme = VELOCITY_VERLET;
+  private double stepSize = 0.01, time;
+  private double potentialEnergy, slowPotentialEnergy;
+  private boolean forcesValid;
+  private long forceEvaluations;
+
+  /**
+   * Constructs a solver for particles with the given positions and velocities.
+   *
+   * @param r the positions
+   * @param v the velocities
+   * @param mass the particle masses, or null for unit masses
+   * @param force the force
+   */
+  public NBodySolver(double[][] r, double[][] v, double[] mass, NBodyForce force) {
+    this.r = r;
+    this.v = v;
+    this.mass = mass;
+    this.force = force;
+    dimension = r.length;
+    n = r[0].length;
+  }
+
+  /**
+   * Sets the particle count, for arrays that are longer than the number of particles.
+   *
+   * @param n the number of particles
+   */
+  public void setParticleCount(int n) {
+    this.n = n;
+    forcesValid = false;
+  }
+
+  /**
+   * Gets the particle count.
+   *
+   * @return the number of particles
+   */
+  public int getParticleCount() {
+    return n;
+  }
+
+  /**
+   * Sets the integration scheme.
+   *
+   * @param scheme VELOCITY_VERLET, YOSHIDA4 or RESPA
+   */
+  public void setScheme(int scheme) {
+    this.scheme = scheme;
+  }
+
+  /**
+   * Gets the integration scheme.
+   *
+   * @return the scheme
+   */
+  public int getScheme() {
+    return scheme;
+  }
+
+  /**
+   * Sets the force.
+   *
+   * @param force the force, which is the fast force of the RESPA scheme
+   */
+  public void setForce(NBodyForce force) {
+    this.force = force;
+    forcesValid = false;
+  }
+
+  /**
+   * Sets the slow force of the RESPA scheme and the number of fast steps per step.
+   *
+   * @param slowForce the slow force
+   * @param substeps the number of fast steps
+   */
+  public void setSlowForce(NBodyForce slowForce, int substeps) {
+    this.slowForce = slowForce;
+    this.substeps = Math.max(1, substeps);
+    forcesValid = false;
+  }
+
+  /**
+   * Initializes the solver and computes the forces at the current positions.
+   *
+   * @param stepSize the step size
+   */
+  public void initialize(double stepSize) {
+    this.stepSize = stepSize;
+    if((f==null)||(f.length!=dimension)||(f[0].length<n)) {
+      f = new double[dimension][n];
+      slowF = null;
+    }
+    if((slowForce!=null)&&((slowF==null)||(slowF[0].length<n))) {
+      slowF = new double[dimension][n];
+    }
+    computeForces();
+    if(slowForce!=null) {
+      computeSlowForces();
+    }
+    forcesValid = true;
+  }
+
+  /**
+   * Advances the particles by one step.
+   *
+   * @return the step size
+   */
+  public double step() {
+    if(!forcesValid) {
+      initialize(stepSize);
+    }
+    switch(scheme) {
+       case YOSHIDA4 :
+         verletStep(W1*stepSize);
+         verletStep(W0*stepSize);
+         verletStep(W1*stepSize);
+         break;
+       case RESPA :
+         if(slowForce==null) {
+           throw new IllegalStateException("The RESPA scheme needs a slow force"); //$NON-NLS-1$
+         }
+         kick(stepSize/2, slowF);
+         double h = stepSize/substeps;
+         for(int k = 0; k<substeps; k++) {
+           verletStep(h);
+         }
+         computeSlowForces();
+         kick(stepSize/2, slowF);
+         break;
+       default :
+         verletStep(stepSize);
+    }
+    time += stepSize;
+    return stepSize;
+  }
+
+  public void setStepSize(double stepSize) {
+    this.stepSize = stepSize;
+  }
+
+  public double getStepSize() {
+    return stepSize;
+  }
+
+  /**
+   * Gets the time.
+   *
+   * @return the time
+   */
+  public double getTime() {
+    return time;
+  }
+
+  /**
+   * Sets the time.
+   *
+   * @param time the time
+   */
+  public void setTime(double time) {
+    this.time = time;
+  }
+
+  /**
+   * Gets the forces at the current positions, the fast forces for the RESPA scheme.
+   *
+   * @return the forces
+   */
+  public double[][] getForces() {
+    return f;
+  }
+
+  /**
+   * Gets the potential energy at the current positions, including the slow force.
+   *
+   * @return the potential energy
+   */
+  public double getPotentialEnergy() {
+    return potentialEnergy+((slowForce==null) ? 0 : slowPotentialEnergy);
+  }
+
+  /**
+   * Gets the kinetic energy.
+   *
+   * @return the kinetic energy
+   */
+  public double getKineticEnergy() {
+    double sum = 0;
+    for(int i = 0; i<n; i++) {
+      double v2 = 0;
+      for(int d = 0; d<dimension; d++) {
+        v2 += v[d][i]*v[d][i];
+      }
+      sum += ((mass==null) ? 1 : mass[i])*v2;
+    }
+    return sum/2;
+  }
+
+  /**
+   * Gets the number of force evaluations, not counting the slow force.
+   *
+   * @return the number of evaluations
+   */
+  public long getForceEvaluationCount() {
+    return forceEvaluations;
+  }
+
+  //_____________________________ private methods ___________________________
+
+  /**
+   * Advances by one velocity Verlet step, starting and ending with the forces at the
+   * current positions.
+   */
+  private void verletStep(double dt) {
+    kick(dt/2, f);
+    drift(dt);
+    computeForces();
+    kick(dt/2, f);
+  }
+
+  private void kick(final double dt, final double[][] force) {
+    new ParallelLoop() {
+      public void run(int start, int end) {
+        for(int d = 0; d<dimension; d++) {
+          double[] vd = v[d], fd = force[d];
+          if(mass==null) {
+            for(int i = start; i<end; i++) {
+              vd[i] += dt*fd[i];
+            }
+          } else {
+            for(int i = start; i<end; i++) {
+              vd[i] += dt*fd[i]/mass[i];
+            }
+          }
+        }
+      }
+
+    }.setMinChunkSize(4096).execute(n);
+  }
+
+  private void drift(final double dt) {
+    new ParallelLoop() {
+      public void run(int start, int end) {
+        for(int d = 0; d<dimension; d++) {
+          double[] rd = r[d], vd = v[d];
+          for(int i = start; i<end; i++) {
+            rd[i] += dt*vd[i];
+          }
+        }
+      }
+
+    }.setMinChunkSize(4096).execute(n);
+  }
+
+  private void computeForces() {
+    potentialEnergy = force.computeForces(r, f, n);
+    forceEvaluations++;
+  }
+
+  private void computeSlowForces() {
+    slowPotentialEnergy = slowForce.computeForces(r, slowF, n);
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
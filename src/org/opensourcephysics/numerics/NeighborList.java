@@ -0,0 +1,503 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.numerics;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * NeighborList finds the pairs of particles within a cutoff distance in a periodic box
+ * in two or three dimensions.
+ *
+ * Particle coordinates are passed as separate x, y and z arrays. The list contains, for
+ * every particle, the particles within the cutoff plus a skin distance. It is built in
+ * O(N) time from a cell list and is rebuilt by update only after some particle has moved
+ * more than half the skin, so most steps reuse the list. Separations are minimum image
+ * separations, as computed by PBC.separation, so the list radius must not exceed half
+ * the box size.
+ *
+ * The particles are visited in cell order, so particles that are close in space are
+ * close in memory. The list and its pair visits are computed in parallel on the
+ * ParallelLoop pool. visitNeighbors visits every pair twice, once from each particle,
+ * so that a force kernel can run in parallel while changing only the data of the
+ * first particle:
+ *
+ * <pre>
+ *   list.update(x, y, null, n);
+ *   list.visitNeighbors(new PairKernel() {
+ *     public void pair(int i, int j, double dx, double dy, double dz, double r2) {
+ *       double f = force(r2);  // f(r)/r, repulsive if positive
+ *       fx[i] -= f*dx;
+ *       fy[i] -= f*dy;
+ *     }
+ *   });
+ * </pre>
+ *
+ * The force arrays must be cleared before the visit. Visits use the positions passed
+ * to the last update.
+ *
+ * @version 1.0
+ */
+public class NeighborList {
+  private int dimension;
+  private double cutoff, skin;
+  private double[] box = new double[3];
+  private int[] cellCount = new int[3];
+  private double[] cellSize = new double[3];
+  private int n;
+  private double[] x, y, z;                  // positions passed to the last update
+  private double[] x0, y0, z0;               // positions at the last build
+  private double[] px, py, pz;               // positions in cell order
+  private int[] cellOf = new int[0], cellStart = new int[1];
+  private int[] order = new int[0];          // the particle at each position in cell order
+  private int[] rank = new int[0];           // the position of each particle in cell order
+  private int[] start = new int[1], neighbors = new int[0];
+  private boolean valid;
+  private int buildCount;
+  private double maxDisplacement;
+
+  /**
+   * Constructs a neighbor list for a periodic box.
+   *
+   * @param dimension 2 or 3
+   * @param cutoff the interaction cutoff
+   * @param skin the additional distance that particles may move before the list is rebuilt
+   * @param size the box size in each dimension
+   */
+  public NeighborList(int dimension, double cutoff, double skin, double[] size) {
+    if((dimension!=2)&&(dimension!=3)) {
+      throw new IllegalArgumentException("Dimension must be 2 or 3"); //$NON-NLS-1$
+    }
+    this.dimension = dimension;
+    this.cutoff = cutoff;
+    this.skin = Math.max(0, skin);
+    setBoxSize(size);
+  }
+
+  /**
+   * Sets the box size. The list will be rebuilt by the next update.
+   *
+   * @param size the box size in each dimension
+   */
+  public void setBoxSize(double[] size) {
+    for(int d = 0; d<dimension; d++) {
+      if(2*(cutoff+skin)>size[d]) {
+        throw new IllegalArgumentException("The cutoff plus skin must not exceed half the box size"); //$NON-NLS-1$
+      }
+      box[d] = size[d];
+    }
+    valid = false;
+  }
+
+  /**
+   * Sets the cutoff and skin. The list will be rebuilt by the next update.
+   *
+   * @param cutoff the interaction cutoff
+   * @param skin the skin distance
+   */
+  public void setCutoff(double cutoff, double skin) {
+    this.cutoff = cutoff;
+    this.skin = Math.max(0, skin);
+    double[] size = new double[dimension];
+    System.arraycopy(box, 0, size, 0, dimension);
+    setBoxSize(size);
+  }
+
+  /**
+   * Gets the interaction cutoff.
+   *
+   * @return the cutoff
+   */
+  public double getCutoff() {
+    return cutoff;
+  }
+
+  /**
+   * Gets the skin distance.
+   *
+   * @return the skin
+   */
+  public double getSkin() {
+    return skin;
+  }
+
+  /**
+   * Forces the list to be rebuilt by the next update, for example after particles
+   * have been added, removed or moved by more than the skin.
+   */
+  public void invalidate() {
+    valid = false;
+  }
+
+  /**
+   * Updates the list for new particle positions, rebuilding it if a particle has moved
+   * more than half the skin since the last build. Positions may be outside the box.
+   *
+   * @param x the x coordinates
+   * @param y the y coordinates
+   * @param z the z coordinates, or null in two dimensions
+   * @param n the number of particles
+   * @return true if the list was rebuilt
+   */
+  public boolean update(double[] x, double[] y, double[] z, int n) {
+    this.x = x;
+    this.y = y;
+    this.z = z;
+    if(!valid||(n!=this.n)||(2*computeMaxDisplacement()>skin)) {
+      this.n = n;
+      build();
+      return true;
+    }
+    px = gather(x, px, 0);
+    py = gather(y, py, 0);
+    pz = (dimension==3) ? gather(z, pz, 0) : null;
+    return false;
+  }
+
+  /**
+   * Visits every ordered pair of particles within the cutoff in parallel. Every pair is
+   * visited twice, as (i, j) and (j, i), and the visits of particle i run on a single
+   * thread, so the kernel may change the data of particle i but not of particle j.
+   *
+   * @param kernel the kernel
+   */
+  public void visitNeighbors(final PairKernel kernel) {
+    new ParallelLoop() {
+      public void run(int begin, int end) {
+        for(int k = begin; k<end; k++) {
+          visit(kernel, k, false);
+        }
+      }
+
+    }.setMinChunkSize(256).execute(n);
+  }
+
+  /**
+   * Visits every pair of particles within the cutoff once. The visits run on the
+   * calling thread.
+   *
+   * @param kernel the kernel
+   */
+  public void visitPairs(PairKernel kernel) {
+    for(int k = 0; k<n; k++) {
+      visit(kernel, k, true);
+    }
+  }
+
+  /**
+   * Gets the number of particles within the list radius of a particle, which may
+   * include particles beyond the cutoff.
+   *
+   * @param i the particle
+   * @return the neighbor count
+   */
+  public int getNeighborCount(int i) {
+    return start[rank[i]+1]-start[rank[i]];
+  }
+
+  /**
+   * Gets the particles in cell order, the order in which they are visited.
+   *
+   * @return the particle at each position in cell order
+   */
+  public int[] getParticleOrder() {
+    return order;
+  }
+
+  /**
+   * Gets the neighbors of all particles. The neighbors of the particle at position k
+   * in cell order are at the indices getNeighborStart()[k] to getNeighborStart()[k+1]-1,
+   * and are themselves positions in cell order.
+   *
+   * @return the neighbors
+   */
+  public int[] getNeighbors() {
+    return neighbors;
+  }
+
+  /**
+   * Gets the index of the first neighbor of each position in cell order.
+   *
+   * @return the start indices, with n+1 elements
+   */
+  public int[] getNeighborStart() {
+    return start;
+  }
+
+  /**
+   * Gets the number of times the list has been built.
+   *
+   * @return the build count
+   */
+  public int getBuildCount() {
+    return buildCount;
+  }
+
+  //_____________________________ private methods ___________________________
+
+  private void visit(PairKernel kernel, int k, boolean half) {
+    double cutoff2 = cutoff*cutoff;
+    int i = order[k];
+    double xi = px[k], yi = py[k], zi = (dimension==3) ? pz[k] : 0;
+    for(int index = start[k], end = start[k+1]; index<end; index++) {
+      int m = neighbors[index];
+      if(half&&(m<k)) {
+        continue;
+      }
+      double dx = separation(px[m]-xi, box[0]);
+      double dy = separation(py[m]-yi, box[1]);
+      double dz = (dimension==3) ? separation(pz[m]-zi, box[2]) : 0;
+      double r2 = dx*dx+dy*dy+dz*dz;
+      if(r2<cutoff2) {
+        kernel.pair(i, order[m], dx, dy, dz, r2);
+      }
+    }
+  }
+
+  private double computeMaxDisplacement() {
+    if((x0==null)||(x0.length<n)) {
+      return Double.POSITIVE_INFINITY;
+    }
+    maxDisplacement = 0;
+    new ParallelLoop() {
+      public void run(int begin, int end) {
+        double max2 = 0;
+        for(int i = begin; i<end; i++) {
+          double dx = separation(x[i]-x0[i], box[0]);
+          double dy = separation(y[i]-y0[i], box[1]);
+          double dz = (dimension==3) ? separation(z[i]-z0[i], box[2]) : 0;
+          max2 = Math.max(max2, dx*dx+dy*dy+dz*dz);
+        }
+        updateMaxDisplacement(Math.sqrt(max2));
+      }
+
+    }.setMinChunkSize(4096).execute(n);
+    return maxDisplacement;
+  }
+
+  private synchronized void updateMaxDisplacement(double d) {
+    maxDisplacement = Math.max(maxDisplacement, d);
+  }
+
+  private void build() {
+    double radius = cutoff+skin;
+    int cells = 1;
+    for(int d = 0; d<3; d++) {
+      int count = (d<dimension) ? (int) (box[d]/radius) : 1;
+      // with fewer than three cells, neighboring cells would be visited twice
+      cellCount[d] = (count<3) ? 1 : count;
+      cellSize[d] = (d<dimension) ? box[d]/cellCount[d] : 1;
+      cells *= cellCount[d];
+    }
+    if(cellOf.length<n) {
+      cellOf = new int[n];
+      order = new int[n];
+      rank = new int[n];
+      start = new int[n+1];
+    }
+    if(cellStart.length<cells+1) {
+      cellStart = new int[cells+1];
+    }
+    // sort the particles into cells
+    new ParallelLoop() {
+      public void run(int begin, int end) {
+        for(int i = begin; i<end; i++) {
+          cellOf[i] = cellIndex(x[i], y[i], (dimension==3) ? z[i] : 0);
+        }
+      }
+
+    }.setMinChunkSize(4096).execute(n);
+    Arrays.fill(cellStart, 0, cells+1, 0);
+    for(int i = 0; i<n; i++) {
+      cellStart[cellOf[i]+1]++;
+    }
+    for(int c = 0; c<cells; c++) {
+      cellStart[c+1] += cellStart[c];
+    }
+    int[] next = new int[cells];
+    System.arraycopy(cellStart, 0, next, 0, cells);
+    for(int i = 0; i<n; i++) {
+      int k = next[cellOf[i]]++;
+      order[k] = i;
+      rank[i] = k;
+    }
+    px = gather(x, px, box[0]);
+    py = gather(y, py, box[1]);
+    pz = (dimension==3) ? gather(z, pz, box[2]) : null;
+    // find the neighbors in blocks of particles, then concatenate the blocks
+    final double radius2 = radius*radius;
+    final ArrayList<int[]> blocks = new ArrayList<int[]>();
+    new ParallelLoop() {
+      public void run(int begin, int end) {
+        int[] buffer = new int[32*(end-begin)+2]; // begin, size, neighbors
+        int size = 2;
+        for(int k = begin; k<end; k++) {
+          int count = findNeighbors(k, radius2, buffer, size);
+          while(count<0) {                         // the buffer is full
+            int[] temp = new int[2*buffer.length];
+            System.arraycopy(buffer, 0, temp, 0, size);
+            buffer = temp;
+            count = findNeighbors(k, radius2, buffer, size);
+          }
+          start[k+1] = count;
+          size += count;
+        }
+        buffer[0] = begin;
+        buffer[1] = size;
+        synchronized(blocks) {
+          blocks.add(buffer);
+        }
+      }
+
+    }.setMinChunkSize(1024).execute(n);
+    start[0] = 0;
+    for(int k = 0; k<n; k++) {
+      start[k+1] += start[k];
+    }
+    if(neighbors.length<start[n]) {
+      neighbors = new int[start[n]+start[n]/8];
+    }
+    for(int[] block : blocks) {
+      System.arraycopy(block, 2, neighbors, start[block[0]], block[1]-2);
+    }
+    x0 = copy(x, x0);
+    y0 = copy(y, y0);
+    z0 = (dimension==3) ? copy(z, z0) : null;
+    valid = true;
+    buildCount++;
+  }
+
+  /**
+   * Stores the cell order positions within the list radius of the particle at position k
+   * in cell order, and returns their number, or -1 if the result array is too small.
+   */
+  private int findNeighbors(int k, double radius2, int[] result, int offset) {
+    int c = cellOf[order[k]];
+    int cx = c%cellCount[0], cy = (c/cellCount[0])%cellCount[1], cz = c/(cellCount[0]*cellCount[1]);
+    double xi = px[k], yi = py[k], zi = (dimension==3) ? pz[k] : 0;
+    double halfX = box[0]/2, halfY = box[1]/2, halfZ = box[2]/2;
+    int rangeX = (cellCount[0]>1) ? 1 : 0, rangeY = (cellCount[1]>1) ? 1 : 0, rangeZ = (cellCount[2]>1) ? 1 : 0;
+    int count = 0;
+    for(int ox = -rangeX; ox<=rangeX; ox++) {
+      int nx = PBC.position(cx+ox, cellCount[0]);
+      for(int oy = -rangeY; oy<=rangeY; oy++) {
+        int ny = PBC.position(cy+oy, cellCount[1]);
+        for(int oz = -rangeZ; oz<=rangeZ; oz++) {
+          int nz = PBC.position(cz+oz, cellCount[2]);
+          int cell = nx+cellCount[0]*(ny+cellCount[1]*nz);
+          int end = cellStart[cell+1];
+          if(offset+count+end-cellStart[cell]>result.length) {
+            return -1;
+          }
+          for(int m = cellStart[cell]; m<end; m++) {
+            if(m==k) {
+              continue;
+            }
+            // both positions are in the box, so one box length gives the minimum image
+            double dx = px[m]-xi;
+            if(dx>halfX) {
+              dx -= box[0];
+            } else if(dx<-halfX) {
+              dx += box[0];
+            }
+            double dy = py[m]-yi;
+            if(dy>halfY) {
+              dy -= box[1];
+            } else if(dy<-halfY) {
+              dy += box[1];
+            }
+            double dz = 0;
+            if(dimension==3) {
+              dz = pz[m]-zi;
+              if(dz>halfZ) {
+                dz -= box[2];
+              } else if(dz<-halfZ) {
+                dz += box[2];
+              }
+            }
+            if(dx*dx+dy*dy+dz*dz<radius2) {
+              result[offset+count] = m;
+              count++;
+            }
+          }
+        }
+      }
+    }
+    return count;
+  }
+
+  private int cellIndex(double x, double y, double z) {
+    int cx = Math.min(cellCount[0]-1, (int) (PBC.position(x, box[0])/cellSize[0]));
+    int cy = Math.min(cellCount[1]-1, (int) (PBC.position(y, box[1])/cellSize[1]));
+    int cz = (dimension==3) ? Math.min(cellCount[2]-1, (int) (PBC.position(z, box[2])/cellSize[2])) : 0;
+    return cx+cellCount[0]*(cy+cellCount[1]*cz);
+  }
+
+  /**
+   * Computes the minimum image separation, avoiding the division for separations
+   * that are already within half a box length.
+   */
+  private static double separation(double dr, double size) {
+    if((dr>0.5*size)||(dr<-0.5*size)) {
+      return PBC.separation(dr, size);
+    }
+    return dr;
+  }
+
+  /**
+   * Copies coordinates into cell order, moving them into the box if the size is not zero.
+   */
+  private double[] gather(final double[] source, double[] target, final double size) {
+    if((target==null)||(target.length<n)) {
+      target = new double[n];
+    }
+    final double[] result = target;
+    new ParallelLoop() {
+      public void run(int begin, int end) {
+        for(int k = begin; k<end; k++) {
+          double r = source[order[k]];
+          result[k] = (size==0) ? r : PBC.position(r, size);
+        }
+      }
+
+    }.setMinChunkSize(4096).execute(n);
+    return result;
+  }
+
+  private double[] copy(double[] source, double[] target) {
+    if((target==null)||(target.length<n)) {
+      target = new double[n];
+    }
+    System.arraycopy(source, 0, target, 0, n);
+    return target;
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
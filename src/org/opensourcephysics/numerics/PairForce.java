@@ -0,0 +1,143 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.numerics;
+import java.util.Arrays;
+
+/**
+ * PairForce is an NBodyForce for a short range, central pair potential in a periodic box.
+ *
+ * Pairs are found with a NeighborList and the forces are computed in parallel, one
+ * particle per visit, so no synchronization is needed. A subclass defines the
+ * potential and the force as functions of the square of the distance. For example,
+ * a Lennard-Jones force in reduced units is:
+ *
+ * <pre>
+ *   new PairForce(2, 2.5, 0.3, new double[] {L, L}) {
+ *     public double potential(double r2) {
+ *       double ir6 = 1/(r2*r2*r2);
+ *       return 4*ir6*(ir6-1);
+ *     }
+ *     public double force(double r2) {
+ *       double ir6 = 1/(r2*r2*r2);
+ *       return 24*ir6*(2*ir6-1)/r2;
+ *     }
+ *   };
+ * </pre>
+ *
+ * The total energy is conserved better if the potential is shifted so that it is zero
+ * at the cutoff.
+ *
+ * @version 1.0
+ */
+public abstract class PairForce implements NBodyForce {
+  private NeighborList neighborList;
+  private int dimension;
+  private double[] energy = new double[0]; // twice the potential energy of each particle
+
+  /**
+   * Constructs a pair force.
+   *
+   * @param dimension 2 or 3
+   * @param cutoff the cutoff of the potential
+   * @param skin the skin of the neighbor list
+   * @param size the box size in each dimension
+   */
+  public PairForce(int dimension, double cutoff, double skin, double[] size) {
+    this.dimension = dimension;
+    neighborList = new NeighborList(dimension, cutoff, skin, size);
+  }
+
+  /**
+   * Gets the pair potential.
+   *
+   * @param r2 the square of the distance
+   * @return the potential
+   */
+  public abstract double potential(double r2);
+
+  /**
+   * Gets the magnitude of the pair force divided by the distance, -(dU/dr)/r.
+   * Positive values are repulsive.
+   *
+   * @param r2 the square of the distance
+   * @return the force divided by the distance
+   */
+  public abstract double force(double r2);
+
+  /**
+   * Gets the neighbor list.
+   *
+   * @return the neighbor list
+   */
+  public NeighborList getNeighborList() {
+    return neighborList;
+  }
+
+  /**
+   * Computes the forces on the particles.
+   *
+   * @param r the positions
+   * @param f the array for the forces
+   * @param n the number of particles
+   * @return the potential energy
+   */
+  public double computeForces(double[][] r, final double[][] f, int n) {
+    neighborList.update(r[0], r[1], (dimension==3) ? r[2] : null, n);
+    if(energy.length<n) {
+      energy = new double[n];
+    }
+    for(int d = 0; d<dimension; d++) {
+      Arrays.fill(f[d], 0, n, 0);
+    }
+    Arrays.fill(energy, 0, n, 0);
+    final double[] fx = f[0], fy = f[1], fz = (dimension==3) ? f[2] : null;
+    final double[] u = energy;
+    neighborList.visitNeighbors(new PairKernel() {
+      public void pair(int i, int j, double dx, double dy, double dz, double r2) {
+        double fr = force(r2);
+        fx[i] -= fr*dx;
+        fy[i] -= fr*dy;
+        if(fz!=null) {
+          fz[i] -= fr*dz;
+        }
+        u[i] += potential(r2);
+      }
+
+    });
+    double sum = 0;
+    for(int i = 0; i<n; i++) {
+      sum += u[i];
+    }
+    return sum/2;
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
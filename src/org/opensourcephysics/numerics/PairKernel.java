@@ -0,0 +1,54 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.numerics;
+
+/**
+ * A PairKernel computes the interaction of a pair of particles within the cutoff of a
+ * NeighborList, such as a force or a contribution to the potential energy.
+ *
+ * @version 1.0
+ */
+public interface PairKernel {
+  /**
+   * Computes the interaction of particles i and j. The separation is the minimum image
+   * separation, r_j-r_i, and dz is zero in two dimensions.
+   *
+   * @param i the first particle
+   * @param j the second particle
+   * @param dx the x separation
+   * @param dy the y separation
+   * @param dz the z separation
+   * @param r2 the square of the distance
+   */
+  public void pair(int i, int j, double dx, double dy, double dz, double r2);
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,214 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.numerics;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * ParallelLoop splits the index range of a loop into contiguous chunks and runs
+ * the chunks on a shared pool of daemon threads. Subclasses implement run(start, end)
+ * to process the indices from start (inclusive) to end (exclusive).
+ * <pre>
+ * Example:
+ *    new ParallelLoop() {
+ *      public void run(int start, int end) {
+ *        for(int i = start; i&lt;end; i++) {
+ *          y[i] = Math.sin(x[i]);
+ *        }
+ *      }
+ *    }.execute(x.length);
+ * </pre>
+ * Loops shorter than the minimum chunk size run on the calling thread, as do
+ * loops started by a task that is itself running on the pool.
+ *
+ * @version 1.0
+ */
+public abstract class ParallelLoop {
+  private static int threadCount = Runtime.getRuntime().availableProcessors();
+  private static ExecutorService pool;
+  private static ThreadLocal<Boolean> poolThread = new ThreadLocal<Boolean>();
+  protected int minChunkSize = 1024;
+
+  /**
+   * Processes the indices from start (inclusive) to end (exclusive).
+   *
+   * @param start the first index
+   * @param end one past the last index
+   */
+  public abstract void run(int start, int end);
+
+  /**
+   * Sets the minimum number of indices processed by a single task.
+   *
+   * @param size the minimum chunk size
+   * @return this loop
+   */
+  public ParallelLoop setMinChunkSize(int size) {
+    minChunkSize = Math.max(1, size);
+    return this;
+  }
+
+  /**
+   * Runs the loop over the indices 0 to n-1 and waits for all chunks to finish.
+   *
+   * @param n the number of indices
+   */
+  public void execute(int n) {
+    execute(0, n);
+  }
+
+  /**
+   * Runs the loop over the indices from start (inclusive) to end (exclusive)
+   * and waits for all chunks to finish. Runtime exceptions thrown by a chunk
+   * are rethrown on the calling thread.
+   *
+   * @param start the first index
+   * @param end one past the last index
+   */
+  public void execute(int start, int end) {
+    int n = end-start;
+    if(n<=0) {
+      return;
+    }
+    int chunks = Math.min(getThreadCount(), (n+minChunkSize-1)/minChunkSize);
+    if((chunks<=1)||isPoolThread()) {
+      run(start, end);
+      return;
+    }
+    ArrayList<Future<Object>> futures = new ArrayList<Future<Object>>();
+    int chunkSize = (n+chunks-1)/chunks;
+    int lo = start;
+    // submit all but the last chunk, which runs on the calling thread
+    for(int i = 0; i<chunks-1; i++) {
+      final int s = lo;
+      final int e = Math.min(end, lo+chunkSize);
+      futures.add(getPool().submit(new Callable<Object>() {
+        public Object call() {
+          run(s, e);
+          return null;
+        }
+
+      }));
+      lo = e;
+    }
+    run(lo, end);
+    for(Future<Object> next : futures) {
+      try {
+        next.get();
+      } catch(InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(ex);
+      } catch(ExecutionException ex) {
+        Throwable cause = ex.getCause();
+        if(cause instanceof RuntimeException) {
+          throw(RuntimeException) cause;
+        }
+        if(cause instanceof Error) {
+          throw(Error) cause;
+        }
+        throw new RuntimeException(cause);
+      }
+    }
+  }
+
+  /**
+   * Sets the number of threads used by parallel loops. Takes effect for
+   * loops started after the shared pool is next created.
+   *
+   * @param n the thread count
+   */
+  public static synchronized void setThreadCount(int n) {
+    n = Math.max(1, n);
+    if(n==threadCount) {
+      return;
+    }
+    threadCount = n;
+    if(pool!=null) {
+      pool.shutdown();
+      pool = null;
+    }
+  }
+
+  /**
+   * Gets the number of threads used by parallel loops.
+   *
+   * @return the thread count
+   */
+  public static synchronized int getThreadCount() {
+    return threadCount;
+  }
+
+  /**
+   * Gets the shared thread pool, creating it if needed. The pool may also be used
+   * to run independent tasks such as multi-start fits or simulation sweeps.
+   *
+   * @return the executor service
+   */
+  public static synchronized ExecutorService getPool() {
+    if(pool==null) {
+      pool = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+        int count = 0;
+
+        public Thread newThread(final Runnable r) {
+          Runnable marked = new Runnable() {
+            public void run() {
+              poolThread.set(Boolean.TRUE);
+              r.run();
+            }
+
+          };
+          Thread t = new Thread(marked, "ParallelLoop-"+(count++)); //$NON-NLS-1$
+          t.setDaemon(true);
+          return t;
+        }
+
+      });
+    }
+    return pool;
+  }
+
+  /**
+   * Determines if the current thread belongs to the shared pool. Tasks running on
+   * the pool must not wait for other pool tasks, so they should do their work serially.
+   *
+   * @return true if called from a pool thread
+   */
+  public static boolean isPoolThread() {
+    return poolThread.get()!=null;
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
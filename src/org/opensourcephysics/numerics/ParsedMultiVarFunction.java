@@ -17,9 +17,9 @@ package org.opensourcephysics.numerics;
  *
  * @author Wolfgang Christian
  */
-public final class ParsedMultiVarFunction implements MultiVarFunction {
+public final class ParsedMultiVarFunction implements DifferentiableMultiVarFunction {
   private final String fStr;
-  private final MultiVarFunction function;
+  private final SuryonoParser function;
   private String[] functionNames;
 
   /**
@@ -48,6 +48,18 @@ public final class ParsedMultiVarFunction implements MultiVarFunction {
     return function.evaluate(x);
   }
 
+  /**
+   * Evaluates the function and its partial derivatives.
+   *
+   * @param x the values of the independent variables
+   * @param gradient an array that is filled with the partial derivatives
+   *
+   * @return the value of the function
+   */
+  public double evaluate(double[] x, double[] gradient) {
+    return function.evaluate(x, gradient);
+  }
+
   /**
    * Represents the function as a string.
    *
@@ -73,10 +85,7 @@ public final class ParsedMultiVarFunction implements MultiVarFunction {
    * @return true if result was converted from NaN to zero
    */
   public boolean evaluatedToNaN() {
-  	if (function instanceof SuryonoParser) {
-  		return ((SuryonoParser)function).evaluatedToNaN();
-  	}
-  	return false;
+  	return function.evaluatedToNaN();
   }
 
 }
@@ -35,6 +35,7 @@ package org.opensourcephysics.numerics;
  * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA                                  *
  *                                                                                        *
  *----------------------------------------------------------------------------------------*/
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.Vector;
 
@@ -59,7 +60,7 @@ import java.util.Vector;
  * }
  * </pre>
  */
-public final class SuryonoParser extends MathExpParser {
+public final class SuryonoParser extends MathExpParser implements DifferentiableMultiVarFunction {
   // global variables
   private int var_count;                           // number of variables
   private String var_name[];                       // variables' name
@@ -88,6 +89,8 @@ public final class SuryonoParser extends MathExpParser {
   private static final int NO_EXT_FUNCS = 4;       // no. of extended functions
   private static final int STACK_SIZE = 50;        // evaluation stack size
   private double[] stack = new double[STACK_SIZE]; // moved by W. Christian from evaluate to global variables for speed
+  private double[][] dstack;                       // partial derivatives of stack values
+  private double[][] refgradient;                  // partial derivatives of references
   // constants
   private static final double DEGTORAD = Math.PI/180;
   private static final double LOG10 = Math.log(10);
@@ -606,6 +609,64 @@ public final class SuryonoParser extends MathExpParser {
     return result;
   }
 
+  /**
+   * Evaluates compiled function and its partial derivatives with respect to
+   * the variables by forward-mode automatic differentiation. Each stack value
+   * carries its gradient through the postfix code, so the derivatives are exact
+   * to rounding error. Discontinuous functions such as int, round and step, and
+   * relational and boolean operators, have zero derivatives.
+   *
+   * @param v the variable values
+   * @param gradient an array that is filled with the partial derivatives
+   * @return the result of the function
+   */
+  public double evaluate(double[] v, double[] gradient) {
+    if(var_value.length!=v.length) {
+      System.out.println("JEParser Error: incorrect number of variables."); //$NON-NLS-1$
+      return 0;
+    }
+    System.arraycopy(v, 0, var_value, 0, v.length);
+    int size = refnames.size();
+    double result;
+    Arrays.fill(gradient, 0);
+    if(!valid) {
+      error = UNCOMPILED_FUNCTION;
+      return 0;
+    }
+    error = NO_ERROR;
+    numberindex = 0;
+    if((dstack==null)||(dstack[0].length!=var_count)) {
+      dstack = new double[STACK_SIZE][var_count];
+    }
+    if(size!=0) {
+      String orgPFC = postfix_code;
+      refvalue = new double[size];
+      refgradient = new double[size][var_count];
+      for(int i = 0; i<refnames.size(); i++) {
+        String name = refnames.elementAt(i);
+        postfix_code = references.get(name);
+        result = differentiateSubFunction(refgradient[i]);
+        if(error!=NO_ERROR) {
+          postfix_code = orgPFC;
+          refvalue = null;
+          refgradient = null;
+          return result;
+        }
+        refvalue[i] = result;
+      }
+      postfix_code = orgPFC;
+    }
+    result = differentiateSubFunction(gradient);
+    refvalue = null;
+    refgradient = null;
+    isNaN = Double.isNaN(result);
+    if(isNaN) {
+      result = 0.0;
+      Arrays.fill(gradient, 0);
+    }
+    return result;
+  }
+
   /**
    * Determines if last evaluation resulted in NaN. Added by D Brown 15 Sep 2010.
    *
@@ -1371,6 +1432,309 @@ public final class SuryonoParser extends MathExpParser {
     }
   }
 
+  /**
+   * Derivative of a built-in one parameter function.
+   *
+   * @return the derivative with respect to the parameter
+   * @param  function  the function index
+   * @param  parameter the parameter to the function
+   * @param  value     the function result
+   */
+  private double builtInDerivative(int function, double parameter, double value) {
+    double scale = radian ? 1 : DEGTORAD;
+    switch(function) {
+       case 0 :
+         return Math.cos(parameter*scale)*scale;
+       case 1 :
+         return -Math.sin(parameter*scale)*scale;
+       case 2 :
+         double c = Math.cos(parameter*scale);
+         return scale/(c*c);
+       case 3 :
+         return 1/parameter;
+       case 4 :
+         return 1/(parameter*LOG10);
+       case 5 :
+         return(parameter>0) ? 1 : (parameter<0) ? -1 : 0;
+       case 7 :
+         return 1;
+       case 8 :
+         return 1/Math.sqrt(1-parameter*parameter)/scale;
+       case 9 :
+         return -1/Math.sqrt(1-parameter*parameter)/scale;
+       case 10 :
+         return 1/(1+parameter*parameter)/scale;
+       case 11 :
+         return(Math.exp(parameter)+Math.exp(-parameter))/2;
+       case 12 :
+         return(Math.exp(parameter)-Math.exp(-parameter))/2;
+       case 13 :
+         return 1-value*value;
+       case 14 :
+         return 1/Math.sqrt(parameter*parameter+1);
+       case 15 :
+         return 1/Math.sqrt(parameter*parameter-1);
+       case 16 :
+         return 1/(1-parameter*parameter);
+       case 20 :
+         return value;
+       case 21 :
+         return 2*parameter;
+       case 22 :
+         return 0.5/value;
+       case 25 :
+         return(parameter==0) ? 0 : value/parameter;
+       default :                         // int, ceil, floor, round, sign and step
+         return 0;
+    }
+  }
+
+  /**
+   * Differentiates a built-in two parameters extended function call. The
+   * derivatives of the first parameter are replaced by those of the result.
+   *
+   * @param  function  the function index
+   * @param  param1    the first parameter to the function
+   * @param  param2    the second parameter to the function
+   * @param  d1        the derivatives of the first parameter
+   * @param  d2        the derivatives of the second parameter
+   */
+  private void builtInExtDerivative(int function, double param1, double param2, double[] d1, double[] d2) {
+    switch(function) {
+       case 0 :
+         if(param1>param2) {
+           System.arraycopy(d2, 0, d1, 0, d1.length);
+         }
+         break;
+       case 1 :
+         if(param1<param2) {
+           System.arraycopy(d2, 0, d1, 0, d1.length);
+         }
+         break;
+       case 2 :
+         double n = Math.rint(param1/param2);
+         for(int k = 0; k<d1.length; k++) {
+           d1[k] -= n*d2[k];
+         }
+         break;
+       case 3 :
+         double r2 = param1*param1+param2*param2;
+         for(int k = 0; k<d1.length; k++) {
+           d1[k] = (param2*d1[k]-param1*d2[k])/r2;
+         }
+         break;
+       default :
+         error = CODE_DAMAGED;
+    }
+  }
+
+  /**
+   * Evaluates subfunction and its partial derivatives. Mirrors evaluateSubFunction
+   * with a gradient for every stack value.
+   *
+   * @param gradient the array that receives the partial derivatives
+   * @return the result of the subfunction
+   */
+  private double differentiateSubFunction(double[] gradient) {
+    int stack_pointer = -1;
+    int code_pointer = 0;
+    int destination;
+    char code;
+    int n = var_count;
+    int codeLength = postfix_code.length();
+    double[] da, db;
+    while(true) {
+      if(code_pointer==codeLength) {
+        System.arraycopy(dstack[0], 0, gradient, 0, n);
+        return stack[0];
+      }
+      code = postfix_code.charAt(code_pointer++);
+      try {
+        switch(code) {
+           case '+' :
+             da = dstack[stack_pointer-1];
+             db = dstack[stack_pointer];
+             for(int k = 0; k<n; k++) {
+               da[k] += db[k];
+             }
+             stack[stack_pointer-1] += stack[stack_pointer];
+             stack_pointer--;
+             break;
+           case '-' :
+             da = dstack[stack_pointer-1];
+             db = dstack[stack_pointer];
+             for(int k = 0; k<n; k++) {
+               da[k] -= db[k];
+             }
+             stack[stack_pointer-1] -= stack[stack_pointer];
+             stack_pointer--;
+             break;
+           case '*' : {
+             double a = stack[stack_pointer-1], b = stack[stack_pointer];
+             da = dstack[stack_pointer-1];
+             db = dstack[stack_pointer];
+             for(int k = 0; k<n; k++) {
+               da[k] = da[k]*b+a*db[k];
+             }
+             stack[stack_pointer-1] = a*b;
+             stack_pointer--;
+             break;
+           }
+           case '/' : {
+             double b = stack[stack_pointer];
+             da = dstack[stack_pointer-1];
+             db = dstack[stack_pointer];
+             if(b!=0) {
+               double q = stack[stack_pointer-1]/b;
+               for(int k = 0; k<n; k++) {
+                 da[k] = (da[k]-q*db[k])/b;
+               }
+               stack[stack_pointer-1] = q;
+             } else {
+               for(int k = 0; k<n; k++) {
+                 da[k] /= 1.0e-128;
+               }
+               stack[stack_pointer-1] /= 1.0e-128;
+             }
+             stack_pointer--;
+             break;
+           }
+           case '^' : {
+             double a = stack[stack_pointer-1], b = stack[stack_pointer];
+             double p = Math.pow(a, b);
+             double dpda = b*Math.pow(a, b-1);
+             double dpdb = p*Math.log(a);
+             da = dstack[stack_pointer-1];
+             db = dstack[stack_pointer];
+             for(int k = 0; k<n; k++) {
+               da[k] = ((da[k]==0) ? 0 : dpda*da[k])+((db[k]==0) ? 0 : dpdb*db[k]);
+             }
+             stack[stack_pointer-1] = p;
+             stack_pointer--;
+             break;
+           }
+           case '_' :
+             da = dstack[stack_pointer];
+             for(int k = 0; k<n; k++) {
+               da[k] = -da[k];
+             }
+             stack[stack_pointer] = -stack[stack_pointer];
+             break;
+           case JUMP_CODE :
+             destination = code_pointer+postfix_code.charAt(code_pointer++);
+             while(code_pointer<destination) {
+               if(postfix_code.charAt(code_pointer++)==NUMERIC) {
+                 numberindex++;
+               }
+             }
+             break;
+           case LESS_THAN :
+           case GREATER_THAN :
+           case LESS_EQUAL :
+           case GREATER_EQUAL :
+           case EQUAL :
+           case NOT_EQUAL :
+           case AND_CODE :
+           case OR_CODE : {
+             stack_pointer--;
+             double a = stack[stack_pointer], b = stack[stack_pointer+1];
+             boolean value;
+             switch(code) {
+                case LESS_THAN :
+                  value = a<b;
+                  break;
+                case GREATER_THAN :
+                  value = a>b;
+                  break;
+                case LESS_EQUAL :
+                  value = a<=b;
+                  break;
+                case GREATER_EQUAL :
+                  value = a>=b;
+                  break;
+                case EQUAL :
+                  value = a==b;
+                  break;
+                case NOT_EQUAL :
+                  value = a!=b;
+                  break;
+                case AND_CODE :
+                  value = (a!=0.0)&&(b!=0.0);
+                  break;
+                default :
+                  value = (a!=0.0)||(b!=0.0);
+             }
+             stack[stack_pointer] = value ? 1.0 : 0.0;
+             Arrays.fill(dstack[stack_pointer], 0);
+             break;
+           }
+           case IF_CODE :
+             if(stack[stack_pointer--]==0.0) {
+               destination = code_pointer+postfix_code.charAt(code_pointer++);
+               while(code_pointer<destination) {
+                 if(postfix_code.charAt(code_pointer++)==NUMERIC) {
+                   numberindex++;
+                 }
+               }
+             } else {
+               code_pointer++;
+             }
+             break;
+           case ENDIF :
+             break;                                // same as NOP
+           case NOT_CODE :
+             stack[stack_pointer] = (stack[stack_pointer]==0.0) ? 1.0 : 0.0;
+             Arrays.fill(dstack[stack_pointer], 0);
+             break;
+           case NUMERIC :
+             stack[++stack_pointer] = number[numberindex++];
+             Arrays.fill(dstack[stack_pointer], 0);
+             break;
+           case PI_CODE :
+             stack[++stack_pointer] = Math.PI;
+             Arrays.fill(dstack[stack_pointer], 0);
+             break;
+           case E_CODE :
+             stack[++stack_pointer] = Math.E;
+             Arrays.fill(dstack[stack_pointer], 0);
+             break;
+           default :
+             if(code>=REF_OFFSET) {
+               stack[++stack_pointer] = refvalue[code-REF_OFFSET];
+               System.arraycopy(refgradient[code-REF_OFFSET], 0, dstack[stack_pointer], 0, n);
+             } else if(code>=VAR_OFFSET) {
+               stack[++stack_pointer] = var_value[code-VAR_OFFSET];
+               Arrays.fill(dstack[stack_pointer], 0);
+               dstack[stack_pointer][code-VAR_OFFSET] = 1;
+             } else if(code>=EXT_FUNC_OFFSET) {
+               double a = stack[stack_pointer-1], b = stack[stack_pointer];
+               stack[stack_pointer-1] = builtInExtFunction(code-EXT_FUNC_OFFSET, a, b);
+               builtInExtDerivative(code-EXT_FUNC_OFFSET, a, b, dstack[stack_pointer-1], dstack[stack_pointer]);
+               stack_pointer--;
+             } else if(code>=FUNC_OFFSET) {
+               double a = stack[stack_pointer];
+               double value = builtInFunction(code-FUNC_OFFSET, a);
+               double factor = builtInDerivative(code-FUNC_OFFSET, a, value);
+               da = dstack[stack_pointer];
+               for(int k = 0; k<n; k++) {
+                 da[k] = (da[k]==0) ? 0 : factor*da[k];
+               }
+               stack[stack_pointer] = value;
+             } else {
+               error = CODE_DAMAGED;
+               return Double.NaN;
+             }
+        }
+      } catch(ArrayIndexOutOfBoundsException oe) {
+        error = STACK_OVERFLOW;
+        return Double.NaN;
+      } catch(NullPointerException ne) {
+        error = CODE_DAMAGED;
+        return Double.NaN;
+      }
+    }
+  }
+
   /**
    * Evaluates subfunction.
    *
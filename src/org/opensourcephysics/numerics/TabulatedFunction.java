@@ -0,0 +1,162 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.numerics;
+
+/**
+ * TabulatedFunction replaces an expensive function, such as a special function, by
+ * cubic interpolation in a table of its values on a uniform grid. The grid is
+ * refined until the interpolation error, measured between the grid points, is
+ * within a requested tolerance. Values outside the tabulated interval are computed
+ * by the function itself.
+ *
+ * A TabulatedFunction is immutable and may be shared by threads.
+ *
+ * @version 1.0
+ */
+public class TabulatedFunction implements Function {
+  /** maximum number of grid intervals */
+  public static int maxIntervals = 1<<22;
+  private Function function;
+  private double xmin, xmax, dx, invDx;
+  private double[] values;
+  private double error;
+
+  /**
+   * Constructs a table of a function on the interval [xmin, xmax].
+   *
+   * @param f the function
+   * @param xmin the minimum x
+   * @param xmax the maximum x
+   * @param tolerance the maximum absolute interpolation error
+   */
+  public TabulatedFunction(Function f, double xmin, double xmax, double tolerance) {
+    if(!(xmax>xmin)) {
+      throw new IllegalArgumentException("xmax must be greater than xmin"); //$NON-NLS-1$
+    }
+    function = f;
+    this.xmin = xmin;
+    this.xmax = xmax;
+    int n = 16;
+    while(true) {
+      tabulate(n);
+      error = measureError();
+      if((error<=tolerance)||(2*n>maxIntervals)) {
+        break;
+      }
+      n *= 2;
+    }
+  }
+
+  /**
+   * Evaluates the function by interpolation.
+   *
+   * @param x the x value
+   * @return the interpolated value
+   */
+  public double evaluate(double x) {
+    if((x<xmin)||(x>xmax)) {
+      return function.evaluate(x);
+    }
+    double u = (x-xmin)*invDx;
+    int i = (int) u;
+    // use the points i-1, i, i+1, i+2 within the table
+    if(i<1) {
+      i = 1;
+    } else if(i>values.length-3) {
+      i = values.length-3;
+    }
+    double t = u-i;
+    double y0 = values[i-1], y1 = values[i], y2 = values[i+1], y3 = values[i+2];
+    // cubic Lagrange interpolation through t = -1, 0, 1, 2
+    return y1+t*(0.5*(y2-y0)+t*(0.5*(y0+y2)-y1))+t*(t*t-1)*((y3-y0)/6+0.5*(y1-y2));
+  }
+
+  /**
+   * Evaluates the function by interpolation at every x.
+   *
+   * @param x the x values
+   * @param result the array for the values, or null to create one
+   * @return the values
+   */
+  public double[] evaluate(double[] x, double[] result) {
+    if(result==null) {
+      result = new double[x.length];
+    }
+    for(int i = 0; i<x.length; i++) {
+      result[i] = evaluate(x[i]);
+    }
+    return result;
+  }
+
+  /**
+   * Gets the largest interpolation error found between the grid points.
+   *
+   * @return the error estimate
+   */
+  public double getError() {
+    return error;
+  }
+
+  /**
+   * Gets the number of tabulated values.
+   *
+   * @return the table size
+   */
+  public int getSize() {
+    return values.length;
+  }
+
+  private void tabulate(int n) {
+    dx = (xmax-xmin)/n;
+    invDx = 1/dx;
+    values = new double[n+1];
+    for(int i = 0; i<=n; i++) {
+      values[i] = function.evaluate(xmin+i*dx);
+    }
+  }
+
+  private double measureError() {
+    double max = 0;
+    int n = values.length-1;
+    for(int i = 0; i<n; i++) {
+      for(int j = 1; j<4; j++) {
+        double x = xmin+(i+0.25*j)*dx;
+        double err = Math.abs(evaluate(x)-function.evaluate(x));
+        if(!(err<=max)) { // also catches NaN
+          max = err;
+        }
+      }
+    }
+    return max;
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -6,8 +6,7 @@
  */
 
 package org.opensourcephysics.numerics.specialfunctions;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.opensourcephysics.numerics.Function;
 
 /*
@@ -31,13 +30,13 @@ import org.opensourcephysics.numerics.Function;
  * @author Wolfgang Christian
  */
 public class Bessel {
-  static final Map<Integer, Function> functionMap = new HashMap<Integer, Function>();
-  static final Map<Integer, Function> derivativeMap = new HashMap<Integer, Function>();
+  static final ConcurrentHashMap<Integer, Function> functionMap = new ConcurrentHashMap<Integer, Function>();
+  static final ConcurrentHashMap<Integer, Function> derivativeMap = new ConcurrentHashMap<Integer, Function>();
 
   /**
    * Gets the Bessel function with the given order.
    */
-  public static synchronized Function getFunction(int n) {
+  public static Function getFunction(int n) {
     if(n<0) {
       throw new IllegalArgumentException(Messages.getString("Bessel.0.neg_order")); //$NON-NLS-1$
     }
@@ -46,14 +45,14 @@ public class Bessel {
       return f;
     }
     f = new BesselFunction(n);
-    functionMap.put(n, f); // polynomial was not in the list so add it.
-    return f;
+    Function old = functionMap.putIfAbsent(n, f);
+    return(old==null) ? f : old; // another thread may have added the function first
   }
 
   /**
    * Gets the derivative of the Bessel function with the given order.
    */
-  public static synchronized Function getDerivative(int n) {
+  public static Function getDerivative(int n) {
     if(n<0) {
       throw new IllegalArgumentException(Messages.getString("Bessel.1.neg_order")); //$NON-NLS-1$
     }
@@ -62,8 +61,8 @@ public class Bessel {
       return f;
     }
     f = new BesselDerivative(n);
-    derivativeMap.put(n, f); // polynomial was not in the list so add it.
-    return f;
+    Function old = derivativeMap.putIfAbsent(n, f);
+    return(old==null) ? f : old; // another thread may have added the function first
   }
 
   /**
@@ -140,6 +139,107 @@ public class Bessel {
     return sg*tmp;
   }
 
+  /**
+   * Computes the Bessel function of order n at every x. The continued fraction and
+   * recurrence of besseln are run over the whole array one term at a time.
+   * @param n the order
+   * @param x the x values
+   * @param result the array for the values, or null to create one
+   * @return the values
+   */
+  public static double[] besseln(int n, double[] x, double[] result) {
+    int len = x.length;
+    if(result==null) {
+      result = new double[len];
+    }
+    int order = Math.abs(n);
+    if(order<=2) {
+      for(int i = 0; i<len; i++) {
+        result[i] = besseln(n, x[i]);
+      }
+      return result;
+    }
+    int sg = ((n<0)&&(order%2!=0)) ? -1 : 1;
+    double[] ax = new double[len];
+    double[] tmp = new double[len];
+    double[] pk = new double[len];
+    double[] pkm1 = new double[len];
+    for(int i = 0; i<len; i++) {
+      ax[i] = Math.abs(x[i]);
+      tmp[i] = 2*(order+53);
+    }
+    // continued fraction for J(n)/J(n-1)
+    for(int k = 53; k>0; k--) {
+      double p = 2*(order+k-1);
+      for(int i = 0; i<len; i++) {
+        tmp[i] = p-ax[i]*ax[i]/tmp[i];
+      }
+    }
+    for(int i = 0; i<len; i++) {
+      pk[i] = 1.0;
+      pkm1[i] = tmp[i]/ax[i];
+    }
+    // backward recurrence to J(1) and J(0)
+    for(int k = order-1; k>0; k--) {
+      double r = 2*k;
+      for(int i = 0; i<len; i++) {
+        double pkm2 = (pkm1[i]*r-pk[i]*ax[i])/ax[i];
+        pk[i] = pkm1[i];
+        pkm1[i] = pkm2;
+      }
+    }
+    for(int i = 0; i<len; i++) {
+      if(ax[i]<1.e-12) {
+        result[i] = 0;
+        continue;
+      }
+      double val = (Math.abs(pk[i])>Math.abs(pkm1[i])) ? bessel1(ax[i])/pk[i] : bessel0(ax[i])/pkm1[i];
+      result[i] = ((x[i]<0)&&(order%2!=0)) ? -sg*val : sg*val;
+    }
+    return result;
+  }
+
+  /**
+   * Computes the Bessel functions of orders 0 to nmax at x in one pass. The ratios of
+   * the functions are found by the backward recurrence of besseln and normalized by
+   * J(0) or J(1).
+   * @param nmax the maximum order
+   * @param x the x value
+   * @param result the array of length nmax+1 for the values, or null to create one
+   * @return the values indexed by order
+   */
+  public static double[] besselnAll(int nmax, double x, double[] result) {
+    if(nmax<0) {
+      throw new IllegalArgumentException(Messages.getString("Bessel.0.neg_order")); //$NON-NLS-1$
+    }
+    if(result==null) {
+      result = new double[nmax+1];
+    }
+    double ax = Math.abs(x);
+    if((nmax<=2)||(ax<1.e-12)) {
+      for(int k = 0; k<=nmax; k++) {
+        result[k] = besseln(k, x);
+      }
+      return result;
+    }
+    double tmp = 2*(nmax+53);
+    double xk = ax*ax;
+    for(int k = 53; k>0; k--) {
+      tmp = 2*(nmax+k-1)-xk/tmp;
+    }
+    // unnormalized values, starting from J(nmax) = 1
+    result[nmax] = 1.0;
+    result[nmax-1] = tmp/ax;
+    for(int k = nmax-1; k>0; k--) {
+      result[k-1] = (result[k]*2*k-result[k+1]*ax)/ax;
+    }
+    double scale = (Math.abs(result[1])>Math.abs(result[0])) ? bessel1(ax)/result[1] : bessel0(ax)/result[0];
+    for(int k = 0; k<=nmax; k++) {
+      result[k] *= ((x<0)&&(k%2!=0)) ? -scale : scale;
+    }
+    return result;
+  }
+
   /**
    * Computes the derivative of the Bessel function of order n at x.
    * @param n
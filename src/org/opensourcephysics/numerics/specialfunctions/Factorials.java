@@ -32,6 +32,26 @@ public class Factorials {
     return -tmp+Math.log(2.5066282746310005*sum/x);
   }
 
+  /**
+   * Calculates the logarithm of the Gamma function at every x.
+   * @param x the x values
+   * @param result the array for the values, or null to create one
+   * @return the values
+   */
+  public static double[] gammaln(final double[] x, double[] result) {
+    if(result==null) {
+      result = new double[x.length];
+    }
+    double c0 = cof[0], c1 = cof[1], c2 = cof[2], c3 = cof[3], c4 = cof[4], c5 = cof[5];
+    for(int i = 0; i<x.length; i++) {
+      double xi = x[i], tmp = xi+5.5;
+      tmp -= (xi+0.5)*Math.log(tmp);
+      double sum = 1.000000000190015+c0/(xi+1)+c1/(xi+2)+c2/(xi+3)+c3/(xi+4)+c4/(xi+5)+c5/(xi+6);
+      result[i] = -tmp+Math.log(2.5066282746310005*sum/xi);
+    }
+    return result;
+  }
+
   /**
    * Calculates the factorial.
    * @param n int
@@ -7,8 +7,7 @@
 
 package org.opensourcephysics.numerics.specialfunctions;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.opensourcephysics.numerics.Function;
 import org.opensourcephysics.numerics.Polynomial;
 
@@ -20,7 +19,8 @@ import org.opensourcephysics.numerics.Polynomial;
  */
 public class Legendre {
   static final ArrayList<Polynomial> legendreList;
-  static final Map<QNKey, AssociatedLegendreFunction> associatedMap = new HashMap<QNKey, AssociatedLegendreFunction>();
+  static volatile Polynomial[] legendreTable; // read without locking; replaced when the list grows
+  static final ConcurrentHashMap<QNKey, AssociatedLegendreFunction> associatedMap = new ConcurrentHashMap<QNKey, AssociatedLegendreFunction>();
 
   private Legendre() {} // all methods are static so prohibit instantiation
 
@@ -29,19 +29,29 @@ public class Legendre {
    * it is returned  from the list. Uses the recurrence relationship to construct new polynomials
    * based on lower order polynomials.
    */
-  public static synchronized Polynomial getPolynomial(int el) {
+  public static Polynomial getPolynomial(int el) {
     if(el<0) {
       throw new IllegalArgumentException(Messages.getString("Legendre.neg_degree")); //$NON-NLS-1$
     }
-    if(el<legendreList.size()) {
-      return legendreList.get(el);
+    Polynomial[] table = legendreTable;
+    if(el<table.length) {
+      return table[el];
     }
-    Polynomial pk = new Polynomial(new double[] {0, (2.0*el-1.0)/el});
-    Polynomial p1 = getPolynomial(el-1).multiply(pk);
-    Polynomial p2 = getPolynomial(el-2).multiply((1.0-el)/el);
-    Polynomial p = p1.add(p2);
-    legendreList.add(p); // polynomial was not in the list so add it.
-    return p;
+    return addPolynomials(el);
+  }
+
+  /**
+   * Adds polynomials to the list up to the given degree.
+   */
+  private static synchronized Polynomial addPolynomials(int el) {
+    for(int k = legendreList.size(); k<=el; k++) {
+      Polynomial pk = new Polynomial(new double[] {0, (2.0*k-1.0)/k});
+      Polynomial p1 = legendreList.get(k-1).multiply(pk);
+      Polynomial p2 = legendreList.get(k-2).multiply((1.0-k)/k);
+      legendreList.add(p1.add(p2)); // polynomial was not in the list so add it.
+    }
+    legendreTable = legendreList.toArray(new Polynomial[legendreList.size()]);
+    return legendreList.get(el);
   }
 
   /**
@@ -49,7 +59,7 @@ public class Legendre {
    * it is returned  from the map. Uses the Legendre polynomial recurrence relationship to construct new functions
    * based on derivatives of lower order polynomials.
    */
-  public static synchronized Function getAssociatedFunction(int el, int m) {
+  public static Function getAssociatedFunction(int el, int m) {
     if(m*m>el*el) {
       throw new IllegalArgumentException(Messages.getString("Legendre.out_of_range_m")); //$NON-NLS-1$
     }
@@ -59,8 +69,8 @@ public class Legendre {
       return f;
     }
     f = new AssociatedLegendreFunction(el, m);
-    associatedMap.put(key, f); // polynomial was not in the list so add it.
-    return f;
+    AssociatedLegendreFunction old = associatedMap.putIfAbsent(key, f);
+    return(old==null) ? f : old; // another thread may have added the function first
   }
 
   /**
@@ -72,6 +82,145 @@ public class Legendre {
     return getPolynomial(el).evaluate(x);
   }
 
+  /**
+   * Evaluates the el-th Legendre polynomial at every x using Bonnet's recurrence,
+   * which is faster and more accurate than the polynomial coefficients at high degree.
+   *
+   * @param el the degree
+   * @param x the x values
+   * @param result the array for the values, or null to create one
+   * @return the values
+   */
+  public static double[] evaluate(int el, double[] x, double[] result) {
+    if(el<0) {
+      throw new IllegalArgumentException(Messages.getString("Legendre.neg_degree")); //$NON-NLS-1$
+    }
+    int n = x.length;
+    if(result==null) {
+      result = new double[n];
+    }
+    double[] prev = new double[n];
+    for(int i = 0; i<n; i++) {
+      prev[i] = 1;
+      result[i] = (el==0) ? 1 : x[i];
+    }
+    // each pass of the recurrence runs over the whole array
+    for(int k = 2; k<=el; k++) {
+      double a = (2.0*k-1.0)/k, b = (k-1.0)/k;
+      for(int i = 0; i<n; i++) {
+        double p = a*x[i]*result[i]-b*prev[i];
+        prev[i] = result[i];
+        result[i] = p;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Evaluates the Legendre polynomials of degree 0 to lmax at x in one pass.
+   *
+   * @param lmax the maximum degree
+   * @param x the x value
+   * @param result the array of length lmax+1 for the values, or null to create one
+   * @return the values indexed by degree
+   */
+  public static double[] evaluateAll(int lmax, double x, double[] result) {
+    if(result==null) {
+      result = new double[lmax+1];
+    }
+    result[0] = 1;
+    if(lmax>0) {
+      result[1] = x;
+    }
+    for(int k = 2; k<=lmax; k++) {
+      result[k] = ((2.0*k-1.0)*x*result[k-1]-(k-1.0)*result[k-2])/k;
+    }
+    return result;
+  }
+
+  /**
+   * Evaluates the associated Legendre function with 0 <= m <= el at every x using the
+   * recurrence in degree. The sign convention is the same as getAssociatedFunction.
+   *
+   * @param el the degree
+   * @param m the order
+   * @param x the x values in [-1, 1]
+   * @param result the array for the values, or null to create one
+   * @return the values
+   */
+  public static double[] evaluateAssociated(int el, int m, double[] x, double[] result) {
+    if((m<0)||(m>el)) {
+      throw new IllegalArgumentException(Messages.getString("Legendre.out_of_range_m")); //$NON-NLS-1$
+    }
+    int n = x.length;
+    if(result==null) {
+      result = new double[n];
+    }
+    double[] prev = new double[n];
+    for(int i = 0; i<n; i++) {
+      double pmm = sectoral(m, x[i]);
+      prev[i] = pmm;
+      result[i] = (el==m) ? pmm : x[i]*(2*m+1)*pmm;
+    }
+    for(int k = m+2; k<=el; k++) {
+      double a = (2.0*k-1.0)/(k-m), b = (k+m-1.0)/(k-m);
+      for(int i = 0; i<n; i++) {
+        double p = a*x[i]*result[i]-b*prev[i];
+        prev[i] = result[i];
+        result[i] = p;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Evaluates all associated Legendre functions with 0 <= m <= el <= lmax at x in one pass,
+   * as needed for spherical harmonic expansions. The sign convention is the same as
+   * getAssociatedFunction.
+   *
+   * @param lmax the maximum degree
+   * @param x the x value in [-1, 1]
+   * @param result the array [lmax+1][] for the values, or null to create one
+   * @return the values indexed by [el][m]
+   */
+  public static double[][] evaluateAssociatedAll(int lmax, double x, double[][] result) {
+    if(result==null) {
+      result = new double[lmax+1][];
+    }
+    for(int el = 0; el<=lmax; el++) {
+      if((result[el]==null)||(result[el].length<el+1)) {
+        result[el] = new double[el+1];
+      }
+    }
+    double s = Math.sqrt((1-x)*(1+x));
+    double pmm = 1;
+    for(int m = 0; m<=lmax; m++) {
+      if(m>0) {
+        pmm *= -(2*m-1)*s; // sectoral function from the previous order
+      }
+      result[m][m] = pmm;
+      if(m<lmax) {
+        result[m+1][m] = x*(2*m+1)*pmm;
+      }
+      for(int el = m+2; el<=lmax; el++) {
+        result[el][m] = ((2.0*el-1.0)*x*result[el-1][m]-(el+m-1.0)*result[el-2][m])/(el-m);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Computes the sectoral associated Legendre function P_m^m(x).
+   */
+  private static double sectoral(int m, double x) {
+    double s = Math.sqrt((1-x)*(1+x));
+    double pmm = 1;
+    for(int k = 1; k<=m; k++) {
+      pmm *= -(2*k-1)*s;
+    }
+    return pmm;
+  }
+
   /**
    * Computes the AssoicatedLegendre function.
    * @author Wolfgang Christian
@@ -116,6 +265,7 @@ public class Legendre {
     legendreList.add(p0);
     Polynomial p1 = new Polynomial(new double[] {0, 1.0});
     legendreList.add(p1);
+    legendreTable = legendreList.toArray(new Polynomial[legendreList.size()]);
   }
 
 }
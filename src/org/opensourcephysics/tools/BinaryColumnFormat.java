@@ -0,0 +1,516 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.tools;
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.swing.JOptionPane;
+import org.opensourcephysics.display.Dataset;
+import org.opensourcephysics.display.DatasetManager;
+
+/**
+ * Binary column format for Datasets. The file has a small header with the
+ * name, column names and marker properties of each dataset, followed by the
+ * x and y columns as page-aligned arrays of little-endian doubles. Opening a file reads only
+ * the header; columns are memory-mapped when requested so the operating system
+ * pages them in as they are used.
+ *
+ * X columns that hold row numbers (0, 1, 2...) are not stored.
+ *
+ * @version 1.0
+ */
+public class BinaryColumnFormat implements ExportFormat {
+  // static fields
+  protected static final byte[] MAGIC = {'O', 'S', 'P', 'C', 'O', 'L', 'S', '1'};
+  protected static final int VERSION = 1;
+  protected static final int PAGE_SIZE = 4096;
+  protected static final int PREAMBLE_SIZE = 16; // magic, version, header length
+
+  public String description() {
+    return "Binary Columns"; //$NON-NLS-1$
+  }
+
+  public String extension() {
+    return "odc"; //$NON-NLS-1$
+  }
+
+  public void export(File file, List<Object> data) {
+    ArrayList<Dataset> datasets = new ArrayList<Dataset>();
+    for(Iterator<Object> it = data.iterator(); it.hasNext(); ) {
+      Object o = it.next();
+      if(o instanceof Dataset) {
+        datasets.add((Dataset) o);
+      }
+    }
+    try {
+      write(file, datasets, null);
+    } catch(IOException e) {
+      JOptionPane.showMessageDialog(null, ToolsRes.getString("ExportFormat.Dialog.WriteError.Message"), //$NON-NLS-1$
+        ToolsRes.getString("ExportFormat.Dialog.WriteError.Title"),                                     //$NON-NLS-1$
+          JOptionPane.ERROR_MESSAGE);
+    }
+  }
+
+  /**
+   * Writes the datasets in a DatasetManager to a file.
+   *
+   * @param file the file
+   * @param manager the DatasetManager
+   * @throws IOException
+   */
+  public static void write(File file, DatasetManager manager) throws IOException {
+    write(file, manager.getDatasets(), manager.getName());
+  }
+
+  /**
+   * Writes datasets to a file.
+   *
+   * @param file the file
+   * @param datasets the datasets
+   * @param title a title for the data, may be null
+   * @throws IOException
+   */
+  public static void write(File file, List<Dataset> datasets, String title) throws IOException {
+    int n = datasets.size();
+    double[][] x = new double[n][];
+    double[][] y = new double[n][];
+    long[] xOffsets = new long[n];
+    long[] yOffsets = new long[n];
+    for(int i = 0; i<n; i++) {
+      Dataset dataset = datasets.get(i);
+      x[i] = dataset.getXPoints();
+      y[i] = dataset.getYPoints();
+      if(isRowNumbers(x[i])) {
+        x[i] = null;
+      }
+    }
+    // the header size does not depend on the offsets, so write it once to find
+    // where the columns start
+    long position = pageAlign(PREAMBLE_SIZE+writeHeader(datasets, title, xOffsets, yOffsets).length);
+    for(int i = 0; i<n; i++) {
+      xOffsets[i] = (x[i]==null) ? -1 : position;
+      position = pageAlign(position+8L*((x[i]==null) ? 0 : x[i].length));
+      yOffsets[i] = position;
+      position = pageAlign(position+8L*y[i].length);
+    }
+    byte[] header = writeHeader(datasets, title, xOffsets, yOffsets);
+    RandomAccessFile raf = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+    try {
+      raf.setLength(0);
+      FileChannel channel = raf.getChannel();
+      ByteBuffer buf = ByteBuffer.allocate(PREAMBLE_SIZE+header.length);
+      buf.put(MAGIC).putInt(VERSION).putInt(header.length).put(header);
+      buf.flip();
+      writeFully(channel, buf, 0);
+      buf = ByteBuffer.allocateDirect(1024*1024);
+      for(int i = 0; i<n; i++) {
+        if(x[i]!=null) {
+          writeColumn(channel, buf, x[i], xOffsets[i]);
+        }
+        writeColumn(channel, buf, y[i], yOffsets[i]);
+      }
+      raf.setLength(Math.max(raf.length(), position));
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Determines if a file starts with the binary column signature.
+   *
+   * @param file the file, may be null
+   * @return true if the file is a binary column file
+   */
+  public static boolean isColumnFile(File file) {
+    if((file==null)||!file.isFile()||(file.length()<PREAMBLE_SIZE)) {
+      return false;
+    }
+    try {
+      RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+      try {
+        byte[] magic = new byte[MAGIC.length];
+        raf.readFully(magic);
+        return java.util.Arrays.equals(magic, MAGIC);
+      } finally {
+        raf.close();
+      }
+    } catch(IOException ex) {
+      return false;
+    }
+  }
+
+  /**
+   * Opens a binary column file. Only the header is read.
+   *
+   * @param file the file
+   * @return the ColumnFile
+   * @throws IOException
+   */
+  public static ColumnFile open(File file) throws IOException {
+    return new ColumnFile(file);
+  }
+
+  /**
+   * Reads a binary column file into a DatasetManager.
+   *
+   * @param file the file
+   * @return the DatasetManager
+   * @throws IOException
+   */
+  public static DatasetManager read(File file) throws IOException {
+    ColumnFile columns = open(file);
+    try {
+      return columns.createDatasetManager();
+    } finally {
+      columns.close();
+    }
+  }
+
+  //_____________________________ private methods ___________________________
+
+  private static byte[] writeHeader(List<Dataset> datasets, String title, long[] xOffsets, long[] yOffsets) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    writeString(out, title);
+    out.writeInt(datasets.size());
+    for(int i = 0; i<datasets.size(); i++) {
+      Dataset dataset = datasets.get(i);
+      writeString(out, dataset.getName());
+      writeString(out, dataset.getXColumnName());
+      writeString(out, dataset.getYColumnName());
+      out.writeInt(dataset.getMarkerShape());
+      out.writeInt(dataset.getMarkerSize());
+      writeColor(out, dataset.getFillColor());
+      writeColor(out, dataset.getEdgeColor());
+      writeColor(out, dataset.getLineColor());
+      out.writeBoolean(dataset.isConnected());
+      out.writeBoolean(dataset.isSorted());
+      out.writeBoolean(dataset.isXColumnVisible());
+      out.writeBoolean(dataset.isYColumnVisible());
+      out.writeInt(dataset.getID());
+      out.writeLong(dataset.getIndex());
+      out.writeLong(xOffsets[i]);
+      out.writeLong(yOffsets[i]);
+    }
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    out.writeBoolean(s!=null);
+    if(s!=null) {
+      out.writeUTF(s);
+    }
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  private static void writeColor(DataOutputStream out, Color color) throws IOException {
+    out.writeBoolean(color!=null);
+    out.writeInt((color==null) ? 0 : color.getRGB());
+  }
+
+  private static Color readColor(DataInputStream in) throws IOException {
+    boolean exists = in.readBoolean();
+    int argb = in.readInt();
+    return exists ? new Color(argb, true) : null;
+  }
+
+  private static void writeColumn(FileChannel channel, ByteBuffer buf, double[] data, long position) throws IOException {
+    buf.clear();
+    DoubleBuffer doubles = buf.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+    int chunk = doubles.capacity();
+    for(int i = 0; i<data.length; i += chunk) {
+      int count = Math.min(chunk, data.length-i);
+      doubles.clear();
+      doubles.put(data, i, count);
+      buf.clear();
+      buf.limit(8*count);
+      writeFully(channel, buf, position+8L*i);
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+    while(buf.hasRemaining()) {
+      position += channel.write(buf, position);
+    }
+  }
+
+  private static long pageAlign(long position) {
+    return(position+PAGE_SIZE-1)/PAGE_SIZE*PAGE_SIZE;
+  }
+
+  private static boolean isRowNumbers(double[] x) {
+    for(int i = 0; i<x.length; i++) {
+      if(x[i]!=i) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * A ColumnFile gives access to the datasets in a binary column file.
+   * Column data is not read until a column or dataset is requested.
+   */
+  public static class ColumnFile {
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private String title;
+    private String[] names, xNames, yNames;
+    private int[] markerShapes, markerSizes, ids;
+    private Color[] fillColors, edgeColors, lineColors;
+    private boolean[] connected, sorted, xVisible, yVisible;
+    private long[] rowCounts, xOffsets, yOffsets;
+
+    ColumnFile(File file) throws IOException {
+      raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+      try {
+        channel = raf.getChannel();
+        byte[] magic = new byte[MAGIC.length];
+        raf.readFully(magic);
+        if(!java.util.Arrays.equals(magic, MAGIC)) {
+          throw new IOException("not a binary column file: "+file); //$NON-NLS-1$
+        }
+        int version = raf.readInt();
+        if(version>VERSION) {
+          throw new IOException("unsupported binary column file version: "+version); //$NON-NLS-1$
+        }
+        byte[] header = new byte[raf.readInt()];
+        raf.readFully(header);
+        readHeader(new DataInputStream(new ByteArrayInputStream(header)));
+      } catch(IOException ex) {
+        raf.close();
+        throw ex;
+      }
+    }
+
+    /**
+     * Gets the title.
+     *
+     * @return the title, may be null
+     */
+    public String getTitle() {
+      return title;
+    }
+
+    /**
+     * Gets the number of datasets.
+     *
+     * @return the dataset count
+     */
+    public int getDatasetCount() {
+      return names.length;
+    }
+
+    /**
+     * Gets the number of rows in a dataset.
+     *
+     * @param i the dataset index
+     * @return the row count
+     */
+    public int getRowCount(int i) {
+      return(int) rowCounts[i];
+    }
+
+    /**
+     * Gets the y column name of a dataset.
+     *
+     * @param i the dataset index
+     * @return the column name
+     */
+    public String getYColumnName(int i) {
+      return yNames[i];
+    }
+
+    /**
+     * Gets a read-only mapped view of the x column of a dataset.
+     *
+     * @param i the dataset index
+     * @return the x values, or null if the x values are row numbers
+     * @throws IOException
+     */
+    public DoubleBuffer getXColumn(int i) throws IOException {
+      return(xOffsets[i]<0) ? null : map(xOffsets[i], rowCounts[i]);
+    }
+
+    /**
+     * Gets a read-only mapped view of the y column of a dataset.
+     *
+     * @param i the dataset index
+     * @return the y values
+     * @throws IOException
+     */
+    public DoubleBuffer getYColumn(int i) throws IOException {
+      return map(yOffsets[i], rowCounts[i]);
+    }
+
+    /**
+     * Creates a Dataset with the data and properties of a stored dataset.
+     *
+     * @param i the dataset index
+     * @return the Dataset
+     * @throws IOException
+     */
+    public Dataset getDataset(int i) throws IOException {
+      return getDataset(i, null);
+    }
+
+    /**
+     * Creates a DatasetManager with all stored datasets. Datasets with row
+     * number x columns share a single row array.
+     *
+     * @return the DatasetManager
+     * @throws IOException
+     */
+    public DatasetManager createDatasetManager() throws IOException {
+      DatasetManager manager = new DatasetManager();
+      if(title!=null) {
+        manager.setName(title);
+      }
+      double[] rows = null;
+      for(int i = 0; i<names.length; i++) {
+        if((xOffsets[i]<0)&&((rows==null)||(rows.length!=rowCounts[i]))) {
+          rows = new double[getRowCount(i)];
+          for(int j = 0; j<rows.length; j++) {
+            rows[j] = j;
+          }
+        }
+        manager.addDataset(getDataset(i, rows));
+      }
+      return manager;
+    }
+
+    /**
+     * Closes the file. Mapped columns remain readable.
+     */
+    public void close() {
+      try {
+        raf.close();
+      } catch(IOException ex) {
+
+      /** empty block */
+      }
+    }
+
+    private Dataset getDataset(int i, double[] rows) throws IOException {
+      int n = getRowCount(i);
+      double[] x = rows;
+      if(xOffsets[i]>=0) {
+        x = new double[n];
+        getXColumn(i).get(x);
+      } else if(x==null) {
+        x = new double[n];
+        for(int j = 0; j<n; j++) {
+          x[j] = j;
+        }
+      }
+      double[] y = new double[n];
+      getYColumn(i).get(y);
+      Dataset dataset = new Dataset();
+      dataset.setSorted(sorted[i]);
+      dataset.setPoints(x, y, n);
+      dataset.setName(names[i]);
+      dataset.setXYColumnNames(xNames[i], yNames[i]);
+      dataset.setMarkerShape(markerShapes[i]);
+      dataset.setMarkerSize(markerSizes[i]);
+      dataset.setMarkerColor(fillColors[i], edgeColors[i]);
+      if(lineColors[i]!=null) {
+        dataset.setLineColor(lineColors[i]);
+      }
+      dataset.setConnected(connected[i]);
+      dataset.setXColumnVisible(xVisible[i]);
+      dataset.setYColumnVisible(yVisible[i]);
+      dataset.setID(ids[i]);
+      return dataset;
+    }
+
+    private DoubleBuffer map(long offset, long count) throws IOException {
+      return channel.map(FileChannel.MapMode.READ_ONLY, offset, 8*count).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+    }
+
+    private void readHeader(DataInputStream in) throws IOException {
+      title = readString(in);
+      int n = in.readInt();
+      names = new String[n];
+      xNames = new String[n];
+      yNames = new String[n];
+      markerShapes = new int[n];
+      markerSizes = new int[n];
+      ids = new int[n];
+      fillColors = new Color[n];
+      edgeColors = new Color[n];
+      lineColors = new Color[n];
+      connected = new boolean[n];
+      sorted = new boolean[n];
+      xVisible = new boolean[n];
+      yVisible = new boolean[n];
+      rowCounts = new long[n];
+      xOffsets = new long[n];
+      yOffsets = new long[n];
+      for(int i = 0; i<n; i++) {
+        names[i] = readString(in);
+        xNames[i] = readString(in);
+        yNames[i] = readString(in);
+        markerShapes[i] = in.readInt();
+        markerSizes[i] = in.readInt();
+        fillColors[i] = readColor(in);
+        edgeColors[i] = readColor(in);
+        lineColors[i] = readColor(in);
+        connected[i] = in.readBoolean();
+        sorted[i] = in.readBoolean();
+        xVisible[i] = in.readBoolean();
+        yVisible[i] = in.readBoolean();
+        ids[i] = in.readInt();
+        rowCounts[i] = in.readLong();
+        xOffsets[i] = in.readLong();
+        yOffsets[i] = in.readLong();
+      }
+    }
+
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,423 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.tools;
+
+/**
+ * ColumnStatistics maintains summary statistics (count, sum, mean, variance,
+ * min and max) of a column of data so that the statistics of any range of rows
+ * can be found without visiting every row. The rows are grouped into blocks and
+ * the block summaries are stored in a segment tree, so a range query merges
+ * O(log n) summaries plus the partial blocks at its ends. Setting or appending
+ * a value updates only its block and the tree nodes above it.
+ *
+ * Means and variances are accumulated with Welford's method and merged with
+ * the parallel algorithm of Chan, Golub and LeVeque. NaN values are ignored.
+ *
+ * @version 1.0
+ */
+public class ColumnStatistics {
+  // static fields
+  protected static final int BLOCK_SIZE = 256;
+  // instance fields
+  private double[] data = new double[0];
+  private int size;
+  private int leafCount;                   // power of two >= number of blocks
+  private int[] count;                     // tree nodes: 1 is the root, leaves start at leafCount
+  private double[] sum, mean, m2, min, max;
+
+  /**
+   * Constructs ColumnStatistics for the first n values of an array. The array is copied.
+   *
+   * @param values the values
+   * @param n the number of values
+   */
+  public ColumnStatistics(double[] values, int n) {
+    setData(values, n);
+  }
+
+  /**
+   * Replaces all values and rebuilds the statistics.
+   *
+   * @param values the values
+   * @param n the number of values
+   */
+  public void setData(double[] values, int n) {
+    data = new double[Math.max(n, BLOCK_SIZE)];
+    System.arraycopy(values, 0, data, 0, n);
+    size = n;
+    rebuild();
+  }
+
+  /**
+   * Gets the number of values, including NaN values.
+   *
+   * @return the size
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Gets a value.
+   *
+   * @param i the row
+   * @return the value
+   */
+  public double getValue(int i) {
+    return data[i];
+  }
+
+  /**
+   * Sets a value.
+   *
+   * @param i the row
+   * @param value the new value
+   */
+  public void setValue(int i, double value) {
+    if(Double.doubleToLongBits(data[i])==Double.doubleToLongBits(value)) {
+      return;
+    }
+    data[i] = value;
+    updateBlock(i/BLOCK_SIZE);
+  }
+
+  /**
+   * Appends a value.
+   *
+   * @param value the value
+   */
+  public void append(double value) {
+    if(size==data.length) {
+      double[] newData = new double[2*data.length];
+      System.arraycopy(data, 0, newData, 0, size);
+      data = newData;
+    }
+    data[size++] = value;
+    int block = (size-1)/BLOCK_SIZE;
+    if(block>=leafCount) {
+      rebuild();
+    } else {
+      updateBlock(block);
+    }
+  }
+
+  /**
+   * Updates the statistics to match new values, appending or replacing
+   * only the values that differ. The statistics are rebuilt if values were
+   * removed or many values changed.
+   *
+   * @param values the new values
+   * @param n the number of values
+   */
+  public void update(double[] values, int n) {
+    if(n<size) {
+      setData(values, n);
+      return;
+    }
+    int changed = 0;
+    for(int i = 0; i<size; i++) {
+      if(Double.doubleToLongBits(data[i])!=Double.doubleToLongBits(values[i])) {
+        if(++changed>size/BLOCK_SIZE) {
+          setData(values, n);
+          return;
+        }
+        setValue(i, values[i]);
+      }
+    }
+    for(int i = size; i<n; i++) {
+      append(values[i]);
+    }
+  }
+
+  /**
+   * Gets the statistics of a range of rows.
+   *
+   * @param start the first row
+   * @param end one past the last row
+   * @return the statistics
+   */
+  public Summary getSummary(int start, int end) {
+    Summary summary = new Summary();
+    addRange(summary, start, end);
+    return summary;
+  }
+
+  /**
+   * Gets the statistics of a set of rows. Runs of consecutive rows are
+   * merged from the tree, so selections of contiguous rows are fast.
+   *
+   * @param rows the rows in ascending order
+   * @return the statistics
+   */
+  public Summary getSummary(int[] rows) {
+    Summary summary = new Summary();
+    int i = 0;
+    while(i<rows.length) {
+      int j = i+1;
+      while((j<rows.length)&&(rows[j]==rows[j-1]+1)) {
+        j++;
+      }
+      addRange(summary, rows[i], rows[j-1]+1);
+      i = j;
+    }
+    return summary;
+  }
+
+  //_____________________________ private methods ___________________________
+
+  private void addRange(Summary summary, int start, int end) {
+    start = Math.max(0, start);
+    end = Math.min(size, end);
+    if(start>=end) {
+      return;
+    }
+    int firstBlock = (start+BLOCK_SIZE-1)/BLOCK_SIZE;
+    int lastBlock = end/BLOCK_SIZE; // one past the last whole block
+    if(firstBlock>=lastBlock) {
+      for(int i = start; i<end; i++) {
+        summary.add(data[i]);
+      }
+      return;
+    }
+    for(int i = start, n = firstBlock*BLOCK_SIZE; i<n; i++) {
+      summary.add(data[i]);
+    }
+    // merge whole blocks in order from left to right
+    Summary right = new Summary();
+    int lo = firstBlock+leafCount;
+    int hi = lastBlock+leafCount;
+    int[] rightNodes = new int[64];
+    int rightCount = 0;
+    while(lo<hi) {
+      if((lo&1)==1) {
+        merge(summary, lo++);
+      }
+      if((hi&1)==1) {
+        rightNodes[rightCount++] = --hi;
+      }
+      lo >>= 1;
+      hi >>= 1;
+    }
+    for(int k = rightCount-1; k>=0; k--) {
+      merge(summary, rightNodes[k]);
+    }
+    for(int i = lastBlock*BLOCK_SIZE; i<end; i++) {
+      right.add(data[i]);
+    }
+    summary.merge(right);
+  }
+
+  private void merge(Summary summary, int node) {
+    summary.merge(count[node], sum[node], mean[node], m2[node], min[node], max[node]);
+  }
+
+  private void rebuild() {
+    int blocks = Math.max(1, (size+BLOCK_SIZE-1)/BLOCK_SIZE);
+    leafCount = 1;
+    while(leafCount<blocks) {
+      leafCount *= 2;
+    }
+    count = new int[2*leafCount];
+    sum = new double[2*leafCount];
+    mean = new double[2*leafCount];
+    m2 = new double[2*leafCount];
+    min = new double[2*leafCount];
+    max = new double[2*leafCount];
+    for(int node = 1; node<2*leafCount; node++) {
+      min[node] = Double.NaN;
+      max[node] = Double.NaN;
+    }
+    for(int b = 0; b<blocks; b++) {
+      computeBlock(b);
+    }
+    for(int node = leafCount-1; node>0; node--) {
+      combine(node);
+    }
+  }
+
+  private void updateBlock(int block) {
+    computeBlock(block);
+    for(int node = (block+leafCount)/2; node>0; node /= 2) {
+      combine(node);
+    }
+  }
+
+  private void computeBlock(int block) {
+    Summary s = new Summary();
+    for(int i = block*BLOCK_SIZE, n = Math.min(size, i+BLOCK_SIZE); i<n; i++) {
+      s.add(data[i]);
+    }
+    int node = block+leafCount;
+    count[node] = s.count;
+    sum[node] = s.sum;
+    mean[node] = s.mean;
+    m2[node] = s.m2;
+    min[node] = s.min;
+    max[node] = s.max;
+  }
+
+  private void combine(int node) {
+    Summary s = new Summary();
+    merge(s, 2*node);
+    merge(s, 2*node+1);
+    count[node] = s.count;
+    sum[node] = s.sum;
+    mean[node] = s.mean;
+    m2[node] = s.m2;
+    min[node] = s.min;
+    max[node] = s.max;
+  }
+
+  /**
+   * Summary statistics of a set of values.
+   */
+  public static class Summary {
+    int count;
+    double sum, mean, m2;
+    double min = Double.NaN, max = Double.NaN;
+
+    /**
+     * Adds a value. NaN values are ignored.
+     *
+     * @param x the value
+     */
+    public void add(double x) {
+      if(Double.isNaN(x)) {
+        return;
+      }
+      count++;
+      sum += x;
+      double delta = x-mean;
+      mean += delta/count;
+      m2 += delta*(x-mean);
+      min = (count==1) ? x : Math.min(min, x);
+      max = (count==1) ? x : Math.max(max, x);
+    }
+
+    /**
+     * Merges another summary into this one.
+     *
+     * @param s the summary
+     */
+    public void merge(Summary s) {
+      merge(s.count, s.sum, s.mean, s.m2, s.min, s.max);
+    }
+
+    void merge(int n, double sumB, double meanB, double m2B, double minB, double maxB) {
+      if(n==0) {
+        return;
+      }
+      if(count==0) {
+        count = n;
+        sum = sumB;
+        mean = meanB;
+        m2 = m2B;
+        min = minB;
+        max = maxB;
+        return;
+      }
+      int total = count+n;
+      double delta = meanB-mean;
+      mean += delta*n/total;
+      m2 += m2B+delta*delta*((double) count*n/total);
+      sum += sumB;
+      count = total;
+      min = Math.min(min, minB);
+      max = Math.max(max, maxB);
+    }
+
+    /**
+     * Gets the number of non-NaN values.
+     *
+     * @return the count
+     */
+    public int getCount() {
+      return count;
+    }
+
+    /**
+     * Gets the sum.
+     *
+     * @return the sum
+     */
+    public double getSum() {
+      return sum;
+    }
+
+    /**
+     * Gets the mean.
+     *
+     * @return the mean, or NaN if there are no values
+     */
+    public double getMean() {
+      return(count==0) ? Double.NaN : mean;
+    }
+
+    /**
+     * Gets the sample standard deviation.
+     *
+     * @return the standard deviation, or NaN if there are fewer than two values
+     */
+    public double getStandardDeviation() {
+      return(count<2) ? Double.NaN : Math.sqrt(m2/(count-1));
+    }
+
+    /**
+     * Gets the standard error of the mean.
+     *
+     * @return the standard error
+     */
+    public double getStandardError() {
+      return getStandardDeviation()/Math.sqrt(count);
+    }
+
+    /**
+     * Gets the minimum.
+     *
+     * @return the minimum, or NaN if there are no values
+     */
+    public double getMin() {
+      return min;
+    }
+
+    /**
+     * Gets the maximum.
+     *
+     * @return the maximum, or NaN if there are no values
+     */
+    public double getMax() {
+      return max;
+    }
+
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
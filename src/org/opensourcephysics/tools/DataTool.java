@@ -75,6 +75,7 @@ import org.opensourcephysics.display.DataFunction;
 import org.opensourcephysics.display.Dataset;
 import org.opensourcephysics.display.DatasetManager;
 import org.opensourcephysics.display.DisplayColors;
+import org.opensourcephysics.display.MappedDataParser;
 import org.opensourcephysics.display.OSPFrame;
 import org.opensourcephysics.display.OSPRuntime;
 import org.opensourcephysics.display.TeXParser;
@@ -494,8 +495,14 @@ public class DataTool extends OSPFrame implements Tool, PropertyChangeListener {
         }
       }
       // if not xml, attempt to import data and add tab
-      else if(res.getString()!=null) {
-        Data data = parseData(res.getString(), fileName);
+      else {
+        Data data = readColumnFile(res, fileName);
+        if(data==null) {
+          data = parseLargeFile(res, fileName);
+        }
+        if((data==null)&&(res.getString()!=null)) {
+          data = parseData(res.getString(), fileName);
+        }
         if(data!=null) {
         	DataToolTab tab = null;
           if (this instanceof FourierTool)
@@ -544,9 +551,15 @@ public class DataTool extends OSPFrame implements Tool, PropertyChangeListener {
         }
       }
       // if not xml, attempt to import data and add tab
-      else if(res.getString()!=null) {
-        Data data = parseData(res.getString(), fileName);
-        if (fourier) {
+      else {
+        Data data = readColumnFile(res, fileName);
+        if(data==null) {
+          data = parseLargeFile(res, fileName);
+        }
+        if((data==null)&&(res.getString()!=null)) {
+          data = parseData(res.getString(), fileName);
+        }
+        if (fourier&&(data!=null)) {
         	data = FourierTool.createFourierData(data);
         }
         if(data!=null) {
@@ -717,6 +730,55 @@ public class DataTool extends OSPFrame implements Tool, PropertyChangeListener {
     return rows;
   }
 
+  /**
+   * Reads a local file saved in BinaryColumnFormat.
+   *
+   * @param res the resource
+   * @param fileName the file name
+   * @return DatasetManager with the stored data, or null if not a binary column file
+   */
+  protected static DatasetManager readColumnFile(Resource res, String fileName) {
+    File file = res.getFile();
+    if(!BinaryColumnFormat.isColumnFile(file)) {
+      return null;
+    }
+    try {
+      DatasetManager data = BinaryColumnFormat.read(file);
+      if((data.getName()==null)||data.getName().equals("")) { //$NON-NLS-1$
+        data.setName(XML.getName(fileName));
+      }
+      return data;
+    } catch(IOException ex) {
+      OSPLog.fine("failed to read "+fileName+": "+ex); //$NON-NLS-1$ //$NON-NLS-2$
+      return null;
+    }
+  }
+
+  /**
+   * Parses a large local data file with a MappedDataParser, which reads the file
+   * directly into column arrays rather than into a string.
+   *
+   * @param res the resource
+   * @param fileName the file name
+   * @return DatasetManager with parsed data, or null if the file is not local,
+   * is smaller than MappedDataParser.minimumFileSize or has no data
+   */
+  protected static DatasetManager parseLargeFile(Resource res, String fileName) {
+    File file = res.getFile();
+    if((file==null)||(file.length()<MappedDataParser.minimumFileSize)) {
+      return null;
+    }
+    try {
+      MappedDataParser parser = new MappedDataParser(file);
+      if(parser.parse()) {
+        return parser.createDatasetManager(fileName);
+      }
+    } catch(IOException ex) {
+      OSPLog.fine("failed to map "+fileName+": "+ex); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    return null;
+  }
+
   /**
    * Parses a String into tokens separated by a specified delimiter.
    * A token may be "".
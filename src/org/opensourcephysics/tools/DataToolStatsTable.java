@@ -11,7 +11,10 @@ import java.awt.Component;
 import java.awt.Font;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import javax.swing.JLabel;
 import javax.swing.JTable;
 import javax.swing.ListSelectionModel;
@@ -28,6 +31,7 @@ import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableColumn;
 import javax.swing.table.TableModel;
 import org.opensourcephysics.display.CellBorder;
+import org.opensourcephysics.display.Dataset;
 
 /**
  * This displays statistics of data columns in a DataToolTable.
@@ -42,6 +46,11 @@ public class DataToolStatsTable extends JTable {
   DataToolTable.LabelRenderer labelRenderer;
   NumberRenderer numberRenderer = new NumberRenderer(3);
   Object[][] statsData; // statsData[col] contains stats for a table column
+  HashMap<Dataset, ColumnStatistics> columnStats = new HashMap<Dataset, ColumnStatistics>();
+  int refreshID;        // identifies the latest refresh
+  private static ExecutorService executor;
+  /** tables with at least this many rows are processed on a worker thread */
+  public static int backgroundRowCount = 50000;
 
   /**
    * Constructor.
@@ -89,7 +98,7 @@ public class DataToolStatsTable extends JTable {
       public void valueChanged(ListSelectionEvent e) {
         // workaround to prevent exceptions
         if(e.getFirstIndex()>-1) {
-          refreshStatistics();
+          refreshStatistics(false);
         }
       }
 
@@ -112,36 +121,13 @@ public class DataToolStatsTable extends JTable {
   }
 
   /**
-   * Calculates statistical values for a data array.
+   * Returns statistical values from a summary.
    *
-   * @param data the data array
+   * @param stats the summary
    * @return the max, min, mean, SD, SE and non-NaN data count
    */
-  private Object[] getStatistics(double[] data) {
-    double max = -Double.MAX_VALUE;
-    double min = Double.MAX_VALUE;
-    double sum = 0.0;
-    double squareSum = 0.0;
-    int count = 0;
-    for(int i = 0; i<data.length; i++) {
-      if(Double.isNaN(data[i])) {
-        continue;
-      }
-      count++;
-      max = Math.max(max, data[i]);
-      min = Math.min(min, data[i]);
-      sum += data[i];
-      squareSum += data[i]*data[i];
-    }
-    double mean = sum/count;
-    double sd = (count<2) ? Double.NaN : Math.sqrt((squareSum-count*mean*mean)/(count-1));
-    if(max==-Double.MAX_VALUE) {
-      max = Double.NaN;
-    }
-    if(min==Double.MAX_VALUE) {
-      min = Double.NaN;
-    }
-    return new Object[] {new Double(max), new Double(min), new Double(mean), new Double(sd), new Double(sd/Math.sqrt(count)), new Integer(count)};
+  private Object[] getStatistics(ColumnStatistics.Summary stats) {
+    return new Object[] {new Double(stats.getMax()), new Double(stats.getMin()), new Double(stats.getMean()), new Double(stats.getStandardDeviation()), new Double(stats.getStandardError()), new Integer(stats.getCount())};
   }
 
   /**
@@ -166,45 +152,134 @@ public class DataToolStatsTable extends JTable {
    *  Refresh the statistics data.
    */
   public void refreshStatistics() {
-    // assemble statistics data array
+    refreshStatistics(true);
+  }
+
+  /**
+   * Refreshes the statistics data. Large tables are processed on a worker thread
+   * and the table is refreshed when the statistics are ready.
+   *
+   * @param dataChanged true if the data may have changed, false if only the selection changed
+   */
+  protected void refreshStatistics(boolean dataChanged) {
     TableModel model = dataTable.getModel();
+    int columnCount = model.getColumnCount();
     int[] rows = dataTable.getSelectedRows();
     int[] cols = dataTable.getSelectedColumns();
-    statsData = new Object[model.getColumnCount()][0];
-    ArrayList<Double> datalist = new ArrayList<Double>();
-    // for each column, assemble valid selected data and get stats
-    statsData[0] = getStatLabels();
-    for(int j = 1; j<model.getColumnCount(); j++) {
-      datalist.clear();
-      for(int i = 0; i<model.getRowCount(); i++) {
-        Double val = (Double) model.getValueAt(i, j);
-        if(val==null) {
-          val = new Double(Double.NaN);
-        }
-        datalist.add(val);
+    // convert selected table rows to ascending dataset rows
+    for(int i = 0; i<rows.length; i++) {
+      rows[i] = dataTable.convertRowToModel(rows[i]);
+    }
+    java.util.Arrays.sort(rows);
+    final Dataset[] datasets = new Dataset[columnCount];
+    final double[][] values = new double[columnCount][];
+    final boolean[] selected = new boolean[columnCount];
+    for(int j = 1; j<columnCount; j++) {
+      if(j-1>=dataTable.dataManager.getDatasets().size()) {
+        continue;
       }
-      double[] x = new double[datalist.size()];
-      for(int i = 0; i<x.length; i++) {
-        x[i] = datalist.get(i).doubleValue();
+      datasets[j] = dataTable.dataManager.getDataset(j-1);
+      if(dataChanged||!columnStats.containsKey(datasets[j])) {
+        values[j] = datasets[j].getYPoints();
       }
-      double[] selected = x;
-      if(rows.length>0) {
-        // is column selected?
-        boolean colSelected = false;
-        int col = dataTable.convertColumnIndexToView(j);
-        for(int k = 0; k<cols.length; k++) {
-          colSelected = colSelected||(col==cols[k]);
-        }
-        if(colSelected) {
-          selected = new double[rows.length];
-          for(int i = 0; i<rows.length; i++) {
-            selected[i] = x[rows[i]];
+      int col = dataTable.convertColumnIndexToView(j);
+      for(int k = 0; k<cols.length; k++) {
+        selected[j] = selected[j]||(col==cols[k]);
+      }
+    }
+    if((statsData==null)||(statsData.length!=columnCount)) {
+      // placeholder until the statistics are ready
+      statsData = new Object[columnCount][];
+      statsData[0] = getStatLabels();
+      for(int j = 1; j<columnCount; j++) {
+        statsData[j] = getStatistics(new ColumnStatistics.Summary());
+      }
+    }
+    final int[] selectedRows = rows;
+    final int id = ++refreshID;
+    Runnable runner = new Runnable() {
+      public void run() {
+        final Object[][] data = computeStatistics(datasets, values, selectedRows, selected);
+        Runnable refresh = new Runnable() {
+          public void run() {
+            if(id==refreshID) {
+              statsData = data;
+              refreshTable();
+            }
           }
+
+        };
+        if(SwingUtilities.isEventDispatchThread()) {
+          refresh.run();
+        } else {
+          SwingUtilities.invokeLater(refresh);
         }
       }
-      statsData[j] = getStatistics(selected);
+
+    };
+    if(model.getRowCount()<backgroundRowCount) {
+      runner.run();
+    } else {
+      getExecutor().execute(runner);
+    }
+  }
+
+  /**
+   * Computes the statistics for each column, updating the column statistics
+   * of datasets with new values.
+   *
+   * @param datasets the dataset for each table column
+   * @param values the y values for each column, or null if unchanged
+   * @param rows the selected dataset rows in ascending order
+   * @param selected true for selected columns
+   * @return the statistics data array
+   */
+  private Object[][] computeStatistics(Dataset[] datasets, double[][] values, int[] rows, boolean[] selected) {
+    synchronized(columnStats) {
+      Object[][] data = new Object[datasets.length][];
+      data[0] = getStatLabels();
+      HashMap<Dataset, ColumnStatistics> current = new HashMap<Dataset, ColumnStatistics>();
+      for(int j = 1; j<datasets.length; j++) {
+        if(datasets[j]==null) {
+          data[j] = getStatistics(new ColumnStatistics.Summary());
+          continue;
+        }
+        ColumnStatistics stats = columnStats.get(datasets[j]);
+        if(stats==null) {
+          stats = new ColumnStatistics(values[j], values[j].length);
+        } else if(values[j]!=null) {
+          stats.update(values[j], values[j].length);
+        }
+        current.put(datasets[j], stats);
+        if((rows.length>0)&&selected[j]) {
+          data[j] = getStatistics(stats.getSummary(rows));
+        } else {
+          data[j] = getStatistics(stats.getSummary(0, stats.getSize()));
+        }
+      }
+      columnStats.clear();
+      columnStats.putAll(current);
+      return data;
+    }
+  }
+
+  /**
+   * Gets the executor that computes statistics for large tables.
+   *
+   * @return the executor
+   */
+  private static synchronized ExecutorService getExecutor() {
+    if(executor==null) {
+      executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "DataToolStatsTable"); //$NON-NLS-1$
+          t.setDaemon(true);
+          return t;
+        }
+
+      });
     }
-    refreshTable();
+    return executor;
   }
 
   /**
@@ -272,6 +347,9 @@ public class DataToolStatsTable extends JTable {
 
     public Object getValueAt(int row, int col) {
       int i = dataTable.convertColumnIndexToModel(col);
+      if(i>=statsData.length) {
+        return (i==0) ? "" : new Double(Double.NaN); //$NON-NLS-1$
+      }
       return statsData[i][row];
     }
 
@@ -212,10 +212,15 @@ public class DatasetCurveFitter extends JPanel {
           }
           double tol = 1.0E-6;
           int iterations = 20;
-          hessian.minimize(minFunc, params, iterations, tol);
-          // get deviation after minimizing
-          devSq = getDevSquared(fit, x, y);
-          // restore parameters and try Levenberg-Marquardt if Hessian fit is worse
+          if(x.length>=ParallelFitter.parallelPointCount) {
+            // fit large data sets with the parallel least-squares fitter
+            devSq = new ParallelFitter(f, x, y).fit(params, iterations, tol);
+          } else {
+            hessian.minimize(minFunc, params, iterations, tol);
+            // get deviation after minimizing
+            devSq = getDevSquared(fit, x, y);
+          }
+          // restore parameters and try Levenberg-Marquardt if first fit is worse
           if(devSq>prevDevSq) {
             for(int i = 0; i<prevParams.length; i++) {
               f.setParameterValue(i, prevParams[i]);
@@ -1301,15 +1306,19 @@ public class DatasetCurveFitter extends JPanel {
    * between a user function and a set of data points.
    * This function is minimized by the HessianMinimize class.
    */
-  public class MinimizeUserFunction implements MultiVarFunction {
+  public class MinimizeUserFunction implements DifferentiableMultiVarFunction {
     UserFunction f;
     double[] x, y; // the data
+    ParallelFitter fitter;
 
     // Constructor
     MinimizeUserFunction(UserFunction f, double[] x, double[] y) {
       this.f = f;
       this.x = x;
       this.y = y;
+      if(x.length>=ParallelFitter.parallelPointCount) {
+        fitter = new ParallelFitter(f, x, y);
+      }
     }
 
     // Evaluates this function
@@ -1318,6 +1327,10 @@ public class DatasetCurveFitter extends JPanel {
       for(int i = 0; i<params.length; i++) {
         f.setParameterValue(i, params[i]);
       }
+      if(fitter!=null) {
+        // sum the squared deviations in parallel
+        return fitter.getDevSquared(params);
+      }
       double sum = 0.0;
       for(int i = 0; i<x.length; i++) {
         // evaluate the user function and find deviation
@@ -1328,6 +1341,28 @@ public class DatasetCurveFitter extends JPanel {
       return sum;
     }
 
+    // Evaluates this function and its gradient
+    public double evaluate(double[] params, double[] gradient) {
+      for(int i = 0; i<params.length; i++) {
+        f.setParameterValue(i, params[i]);
+      }
+      if(fitter!=null) {
+        return fitter.getDevSquared(params, gradient);
+      }
+      double[] g = new double[params.length];
+      Arrays.fill(gradient, 0);
+      double sum = 0.0;
+      for(int i = 0; i<x.length; i++) {
+        // the derivatives of the squared deviations follow from those of the function
+        double dev = y[i]-f.evaluateWithGradient(x[i], g);
+        sum += dev*dev;
+        for(int k = 0; k<g.length; k++) {
+          gradient[k] -= 2*dev*g[k];
+        }
+      }
+      return sum;
+    }
+
   }
 
   /**
@@ -64,6 +64,7 @@ public class ExportTool implements Tool, PropertyChangeListener {
     formats = new Hashtable<String, ExportFormat>();
     registerFormat(new ExportGnuplotFormat());
     registerFormat(new ExportXMLFormat());
+    registerFormat(new BinaryColumnFormat());
     // Set the "filesOfTypeLabelText" to "File Format:"
     Object oldFilesOfTypeLabelText = UIManager.put("FileChooser.filesOfTypeLabelText", //$NON-NLS-1$
       ToolsRes.getString("ExportTool.FileChooser.Label.FileFormat"));                  //$NON-NLS-1$
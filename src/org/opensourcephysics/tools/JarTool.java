@@ -18,6 +18,7 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
@@ -25,6 +26,8 @@ import java.rmi.RemoteException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -94,6 +97,7 @@ public class JarTool implements Tool, Runnable {
   private static int overwritePolicy = NO;
   private static Frame ownerFrame = null;
   private static Map<String, Map<String, ZipEntry>> jarContents = new HashMap<String, Map<String, ZipEntry>>(); // added by D Brown 2007-10-31
+  private static Map<String, Long> jarStamps = new HashMap<String, Long>(); // modification stamps of indexed jars
 
   /**
    * Gets the shared JarTool.
@@ -369,6 +373,50 @@ public class JarTool implements Tool, Runnable {
     return extract(source, filename, new File(destination));
   }
 
+  /**
+   * Gets the contents of a compressed (ZIP or JAR) file as a map of entry name
+   * to ZipEntry. Directories are not included. The central directory of each file
+   * is read once and shared, and is read again only if the file is modified.
+   * @param source File The compressed file
+   * @return Map The unmodifiable contents, or null if the file cannot be read
+   */
+  static public Map<String, ZipEntry> getJarContents(File source) {
+    String path = source.getPath();
+    Long stamp = Long.valueOf(source.lastModified()^source.length());
+    synchronized(jarContents) {
+      Map<String, ZipEntry> contents = jarContents.get(path);
+      if((contents!=null)&&stamp.equals(jarStamps.get(path))) {
+        return contents;
+      }
+    }
+    if(!source.isFile()) {
+      return null;
+    }
+    Map<String, ZipEntry> contents = new HashMap<String, ZipEntry>();
+    try {
+      ZipFile zip = new ZipFile(source);
+      try {
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while(entries.hasMoreElements()) {
+          ZipEntry zipEntry = entries.nextElement();
+          if(!zipEntry.isDirectory()) { // don't include directories
+            contents.put(zipEntry.getName(), zipEntry);
+          }
+        }
+      } finally {
+        zip.close();
+      }
+    } catch(IOException ex) {
+      return null;
+    }
+    contents = Collections.unmodifiableMap(contents);
+    synchronized(jarContents) {
+      jarContents.put(path, contents);
+      jarStamps.put(path, stamp);
+    }
+    return contents;
+  }
+
   /**
    * Extracts a given file from a compressed (ZIP or JAR) file
    * Extensive changes by D Brown 2007-10-31
@@ -384,20 +432,9 @@ public class JarTool implements Tool, Runnable {
     boolean isDirectory = (filename.lastIndexOf("/")==filename.length()-1); //$NON-NLS-1$
     try {
       // get contents Map of filename to ZipEntry for source jar
-      Map<String, ZipEntry> contents = jarContents.get(source.getPath());
+      Map<String, ZipEntry> contents = getJarContents(source);
       if(contents==null) {
-        // create new Map and fill it
-        contents = new HashMap<String, ZipEntry>();
-        jarContents.put(source.getPath(), contents);
-        ZipInputStream input = new ZipInputStream(new FileInputStream(source));
-        ZipEntry zipEntry = null;
-        while((zipEntry = input.getNextEntry())!=null) {
-          if(zipEntry.isDirectory()) {
-            continue;                               // don't include directories
-          }
-          contents.put(zipEntry.getName(), zipEntry);
-        }
-        input.close();
+        return null;
       }
       if(isDirectory) {
         // target is a directory: extract all contained files
@@ -0,0 +1,649 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.tools;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.opensourcephysics.display.Dataset;
+import org.opensourcephysics.numerics.LUPDecomposition;
+import org.opensourcephysics.numerics.ParallelLoop;
+
+/**
+ * ParallelFitter fits a UserFunction to data by least squares using the
+ * Levenberg-Marquardt method. The data points are divided into fixed blocks
+ * and the residuals and Jacobian of each block are evaluated on the
+ * ParallelLoop pool, each thread using its own copy of the function. The
+ * Jacobian is found by automatic differentiation of the function. Block
+ * results are summed in block order, so results do not depend on the number
+ * of threads.
+ *
+ * A fitter also supports multi-start fits, which fit from many perturbed
+ * starting points as independent tasks and keep the best result, and batch
+ * fits of one function to many datasets, which return a Batch handle that
+ * reports progress and can be cancelled. Fits started from a thread of the
+ * ParallelLoop pool run their tasks on that thread, since waiting for tasks
+ * queued behind the calling thread could deadlock the pool.
+ *
+ * @version 1.0
+ */
+public class ParallelFitter {
+  /** data sets with fewer points are evaluated on the calling thread */
+  public static int parallelPointCount = 20000;
+  protected static final int BLOCK_SIZE = 4096;
+  protected static final double MAX_LAMBDA = 1.0E12;
+  // instance fields
+  private UserFunction function;
+  private String[] paramNames;
+  private double[] x = new double[0], y = new double[0];
+  private boolean parallel = true;
+  private ThreadLocal<UserFunction> copies = new ThreadLocal<UserFunction>() {
+    protected UserFunction initialValue() {
+      return copy(function);
+    }
+
+  };
+
+  /**
+   * Constructs a fitter for a function. The function itself is never
+   * evaluated by the fitter; its parameter values are set to the result of
+   * each fit.
+   *
+   * @param f the function to fit
+   */
+  public ParallelFitter(UserFunction f) {
+    function = f;
+    paramNames = new String[f.getParameterCount()];
+    for(int i = 0; i<paramNames.length; i++) {
+      paramNames[i] = f.getParameterName(i);
+    }
+  }
+
+  /**
+   * Constructs a fitter for a function and data.
+   *
+   * @param f the function to fit
+   * @param x the x data
+   * @param y the y data
+   */
+  public ParallelFitter(UserFunction f, double[] x, double[] y) {
+    this(f);
+    setData(x, y);
+  }
+
+  /**
+   * Sets the data. The arrays are not copied.
+   *
+   * @param x the x data
+   * @param y the y data
+   */
+  public void setData(double[] x, double[] y) {
+    if(x.length!=y.length) {
+      throw new IllegalArgumentException("x and y arrays have different lengths"); //$NON-NLS-1$
+    }
+    this.x = x;
+    this.y = y;
+  }
+
+  /**
+   * Gets the function.
+   *
+   * @return the function
+   */
+  public UserFunction getFunction() {
+    return function;
+  }
+
+  /**
+   * Sets whether large data sets are evaluated in parallel. Fits run as pool
+   * tasks, such as multi-start and batch fits, are always evaluated serially.
+   *
+   * @param parallel true to evaluate in parallel
+   */
+  public void setParallel(boolean parallel) {
+    this.parallel = parallel;
+  }
+
+  /**
+   * Gets the sum of the squared deviations of the data from the function.
+   *
+   * @param params the parameter values
+   * @return the sum of the squared deviations
+   */
+  public double getDevSquared(final double[] params) {
+    final int blocks = getBlockCount();
+    final double[] partial = new double[blocks];
+    ParallelLoop loop = new ParallelLoop() {
+      public void run(int start, int end) {
+        UserFunction f = copies.get();
+        setParameters(f, params);
+        for(int b = start; b<end; b++) {
+          double sum = 0;
+          for(int i = b*BLOCK_SIZE, n = Math.min(x.length, i+BLOCK_SIZE); i<n; i++) {
+            double dev = y[i]-f.evaluate(x[i]);
+            sum += dev*dev;
+          }
+          partial[b] = sum;
+        }
+      }
+
+    };
+    execute(loop, blocks);
+    double sum = 0;
+    for(int b = 0; b<blocks; b++) {
+      sum += partial[b];
+    }
+    return sum;
+  }
+
+  /**
+   * Gets the sum of the squared deviations and its gradient with respect to
+   * the parameters.
+   *
+   * @param params the parameter values
+   * @param gradient an array that is filled with the gradient
+   * @return the sum of the squared deviations
+   */
+  public double getDevSquared(final double[] params, double[] gradient) {
+    final int m = params.length;
+    final int blocks = getBlockCount();
+    final double[][] partial = new double[blocks][m+1];
+    ParallelLoop loop = new ParallelLoop() {
+      public void run(int start, int end) {
+        UserFunction f = copies.get();
+        setParameters(f, params);
+        double[] g = new double[m];
+        for(int b = start; b<end; b++) {
+          double[] sums = partial[b];
+          for(int i = b*BLOCK_SIZE, n = Math.min(x.length, i+BLOCK_SIZE); i<n; i++) {
+            double dev = y[i]-f.evaluateWithGradient(x[i], g);
+            sums[m] += dev*dev;
+            for(int k = 0; k<m; k++) {
+              sums[k] -= 2*dev*g[k];
+            }
+          }
+        }
+      }
+
+    };
+    execute(loop, blocks);
+    double sum = 0;
+    for(int k = 0; k<m; k++) {
+      gradient[k] = 0;
+    }
+    for(int b = 0; b<blocks; b++) {
+      sum += partial[b][m];
+      for(int k = 0; k<m; k++) {
+        gradient[k] += partial[b][k];
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Fits the function to the data starting from the given parameter values.
+   * The parameter values of the function are set to the result.
+   *
+   * @param params the starting parameter values, replaced by the fitted values
+   * @param maxIterations the maximum number of iterations
+   * @param tol the relative tolerance of the parameter values
+   * @return the sum of the squared deviations
+   */
+  public double fit(double[] params, int maxIterations, double tol) {
+    double devSq = minimize(params, maxIterations, tol);
+    setParameters(function, params);
+    return devSq;
+  }
+
+  /**
+   * Fits the function from the given starting point and from randomly perturbed
+   * starting points, and keeps the best fit. Each start is fit as an
+   * independent task on the ParallelLoop pool. The parameter values of the
+   * function are set to the result.
+   *
+   * @param params the starting parameter values, replaced by the best fitted values
+   * @param starts the total number of starting points
+   * @param spread the relative spread of the perturbed starting points
+   * @param seed the random number seed
+   * @param maxIterations the maximum number of iterations per start
+   * @param tol the relative tolerance of the parameter values
+   * @return the sum of the squared deviations of the best fit
+   */
+  public double fitMultiStart(double[] params, int starts, double spread, long seed, int maxIterations, double tol) {
+    double[][] seeds = createStarts(params, starts, spread, seed);
+    ArrayList<Future<double[]>> futures = new ArrayList<Future<double[]>>();
+    for(int i = 0; i<seeds.length; i++) {
+      futures.add(submit(createTask(x, y, seeds[i], maxIterations, tol)));
+    }
+    double best = Double.NaN;
+    for(Future<double[]> next : futures) {
+      double[] result = getResult(next);
+      double devSq = result[params.length];
+      if(!Double.isNaN(devSq)&&(Double.isNaN(best)||(devSq<best))) {
+        best = devSq;
+        System.arraycopy(result, 0, params, 0, params.length);
+      }
+    }
+    setParameters(function, params);
+    return best;
+  }
+
+  /**
+   * Fits the function to each of a list of datasets as independent tasks on the
+   * ParallelLoop pool. Every fit starts from the given parameter values. The
+   * function itself is not changed.
+   *
+   * @param datasets the datasets
+   * @param params the starting parameter values
+   * @param maxIterations the maximum number of iterations per fit
+   * @param tol the relative tolerance of the parameter values
+   * @return a Batch that reports the progress and results of the fits
+   */
+  public Batch fitBatch(List<Dataset> datasets, double[] params, int maxIterations, double tol) {
+    return new Batch(datasets, params, maxIterations, tol);
+  }
+
+  /**
+   * Creates starting points by perturbing parameter values. The first starting
+   * point is the unperturbed values.
+   *
+   * @param params the parameter values
+   * @param starts the number of starting points
+   * @param spread the relative spread of the perturbations
+   * @param seed the random number seed
+   * @return the starting points
+   */
+  public static double[][] createStarts(double[] params, int starts, double spread, long seed) {
+    Random random = new Random(seed);
+    double[][] seeds = new double[Math.max(1, starts)][];
+    seeds[0] = params.clone();
+    for(int i = 1; i<seeds.length; i++) {
+      seeds[i] = new double[params.length];
+      for(int k = 0; k<params.length; k++) {
+        seeds[i][k] = params[k]+spread*(Math.abs(params[k])+1)*random.nextGaussian();
+      }
+    }
+    return seeds;
+  }
+
+  //_____________________________ private methods ___________________________
+
+  /**
+   * Minimizes the sum of the squared deviations without changing the function.
+   */
+  private double minimize(double[] params, int maxIterations, double tol) {
+    int m = params.length;
+    double devSq = getDevSquared(params);
+    if((m==0)||Double.isNaN(devSq)) {
+      return devSq;
+    }
+    double[][] alpha = new double[m][m];
+    double[] beta = new double[m];
+    double[] trial = new double[m];
+    double lambda = 1.0E-3;
+    for(int iteration = 0; iteration<maxIterations; iteration++) {
+      getNormalEquations(params, alpha, beta);
+      boolean improved = false;
+      while(!improved&&(lambda<MAX_LAMBDA)) {
+        double[][] a = new double[m][m];
+        for(int j = 0; j<m; j++) {
+          System.arraycopy(alpha[j], 0, a[j], 0, m);
+          a[j][j] = alpha[j][j]*(1+lambda)+lambda*1.0E-12;
+        }
+        double[] delta = new LUPDecomposition(a).solve(beta);
+        for(int k = 0; k<m; k++) {
+          trial[k] = params[k]+delta[k];
+        }
+        double trialDevSq = getDevSquared(trial);
+        if(trialDevSq<devSq) {
+          improved = true;
+          lambda /= 10;
+          boolean converged = true;
+          for(int k = 0; k<m; k++) {
+            converged = converged&&(Math.abs(delta[k])<=tol*(Math.abs(params[k])+tol));
+          }
+          System.arraycopy(trial, 0, params, 0, m);
+          devSq = trialDevSq;
+          if(converged) {
+            return devSq;
+          }
+        } else {
+          lambda *= 10;
+        }
+      }
+      if(!improved) {
+        break;
+      }
+    }
+    return devSq;
+  }
+
+  /**
+   * Computes the normal equations J'J and J'r of the residuals r = y-f, where J
+   * is the Jacobian of f with respect to the parameters.
+   */
+  private void getNormalEquations(final double[] params, double[][] alpha, double[] beta) {
+    final int m = params.length;
+    final int blocks = getBlockCount();
+    final double[][] partial = new double[blocks][];
+    ParallelLoop loop = new ParallelLoop() {
+      public void run(int start, int end) {
+        UserFunction f = copies.get();
+        double[] g = new double[m];
+        setParameters(f, params);
+        for(int b = start; b<end; b++) {
+          // sums[j*m+k] holds J'J and sums[m*m+j] holds J'r
+          double[] sums = new double[m*m+m];
+          for(int i = b*BLOCK_SIZE, n = Math.min(x.length, i+BLOCK_SIZE); i<n; i++) {
+            double r = y[i]-f.evaluateWithGradient(x[i], g);
+            for(int j = 0; j<m; j++) {
+              double gj = g[j];
+              sums[m*m+j] += gj*r;
+              for(int k = 0; k<=j; k++) {
+                sums[j*m+k] += gj*g[k];
+              }
+            }
+          }
+          partial[b] = sums;
+        }
+      }
+
+    };
+    execute(loop, blocks);
+    for(int j = 0; j<m; j++) {
+      beta[j] = 0;
+      for(int k = 0; k<m; k++) {
+        alpha[j][k] = 0;
+      }
+    }
+    for(int b = 0; b<blocks; b++) {
+      double[] sums = partial[b];
+      for(int j = 0; j<m; j++) {
+        beta[j] += sums[m*m+j];
+        for(int k = 0; k<=j; k++) {
+          alpha[j][k] += sums[j*m+k];
+        }
+      }
+    }
+    for(int j = 0; j<m; j++) {
+      for(int k = j+1; k<m; k++) {
+        alpha[j][k] = alpha[k][j];
+      }
+    }
+  }
+
+  private int getBlockCount() {
+    return(x.length+BLOCK_SIZE-1)/BLOCK_SIZE;
+  }
+
+  private void execute(ParallelLoop loop, int blocks) {
+    if(parallel&&(x.length>=parallelPointCount)) {
+      loop.setMinChunkSize(1).execute(blocks);
+    } else {
+      loop.run(0, blocks);
+    }
+  }
+
+  /**
+   * Creates a task that fits a serial copy of this fitter and returns the
+   * fitted parameters followed by the sum of the squared deviations.
+   */
+  private Callable<double[]> createTask(final double[] x, final double[] y, final double[] start, final int maxIterations, final double tol) {
+    return new Callable<double[]>() {
+      public double[] call() {
+        ParallelFitter fitter = new ParallelFitter(function, x, y);
+        fitter.setParallel(false);
+        double[] params = start.clone();
+        double[] result = new double[params.length+1];
+        result[params.length] = fitter.minimize(params, maxIterations, tol);
+        System.arraycopy(params, 0, result, 0, params.length);
+        return result;
+      }
+
+    };
+  }
+
+  private void setParameters(UserFunction f, double[] params) {
+    for(int k = 0; k<params.length; k++) {
+      f.setParameterValue(k, params[k]);
+    }
+  }
+
+  /**
+   * Returns a copy of a function with its own parameter array, since
+   * UserFunction.clone shares the parameter values with the original.
+   */
+  private UserFunction copy(UserFunction f) {
+    UserFunction c;
+    synchronized(f) {
+      c = f.clone();
+      double[] values = new double[paramNames.length];
+      for(int k = 0; k<values.length; k++) {
+        values[k] = f.getParameterValue(k);
+      }
+      c.setParameters(paramNames, values);
+    }
+    c.updateReferenceParameters();
+    return c;
+  }
+
+  /**
+   * Submits a task to the ParallelLoop pool, or runs it on the calling thread
+   * if that thread belongs to the pool.
+   */
+  private static Future<double[]> submit(Callable<double[]> task) {
+    if(ParallelLoop.isPoolThread()) {
+      FutureTask<double[]> future = new FutureTask<double[]>(task);
+      future.run();
+      return future;
+    }
+    return ParallelLoop.getPool().submit(task);
+  }
+
+  private static double[] getResult(Future<double[]> future) {
+    try {
+      return future.get();
+    } catch(InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(ex);
+    } catch(ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if(cause instanceof RuntimeException) {
+        throw(RuntimeException) cause;
+      }
+      if(cause instanceof Error) {
+        throw(Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /**
+   * A batch of fits of one function to many datasets. Fits that have not
+   * started when the batch is cancelled are skipped.
+   */
+  public class Batch {
+    private List<Dataset> datasets;
+    private int[] pointCounts;
+    private ArrayList<Future<double[]>> futures = new ArrayList<Future<double[]>>();
+    private int paramCount;
+    private AtomicInteger completed = new AtomicInteger();
+    private volatile boolean cancelled;
+
+    Batch(List<Dataset> datasets, double[] params, int maxIterations, double tol) {
+      this.datasets = new ArrayList<Dataset>(datasets);
+      paramCount = params.length;
+      pointCounts = new int[this.datasets.size()];
+      for(int i = 0; i<pointCounts.length; i++) {
+        Dataset next = this.datasets.get(i);
+        double[] x = next.getValidXPoints();
+        pointCounts[i] = x.length;
+        final Callable<double[]> task = createTask(x, next.getValidYPoints(), params, maxIterations, tol);
+        futures.add(submit(new Callable<double[]>() {
+          public double[] call() throws Exception {
+            if(cancelled) {
+              return null;
+            }
+            try {
+              return task.call();
+            } finally {
+              completed.incrementAndGet();
+            }
+          }
+
+        }));
+      }
+    }
+
+    /**
+     * Gets the number of datasets in this batch.
+     *
+     * @return the dataset count
+     */
+    public int getDatasetCount() {
+      return datasets.size();
+    }
+
+    /**
+     * Gets the number of completed fits.
+     *
+     * @return the completed count
+     */
+    public int getCompletedCount() {
+      return completed.get();
+    }
+
+    /**
+     * Gets the fraction of fits completed.
+     *
+     * @return the progress from 0 to 1
+     */
+    public double getProgress() {
+      return datasets.isEmpty() ? 1 : (double) completed.get()/datasets.size();
+    }
+
+    /**
+     * Cancels the fits that have not started.
+     */
+    public void cancel() {
+      cancelled = true;
+      for(Future<double[]> next : futures) {
+        next.cancel(false);
+      }
+    }
+
+    /**
+     * Determines if this batch was cancelled.
+     *
+     * @return true if cancelled
+     */
+    public boolean isCancelled() {
+      return cancelled;
+    }
+
+    /**
+     * Determines if all fits are done or skipped.
+     *
+     * @return true if done
+     */
+    public boolean isDone() {
+      for(Future<double[]> next : futures) {
+        if(!next.isDone()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Waits for all fits to finish or be skipped.
+     */
+    public void waitFor() {
+      for(int i = 0; i<futures.size(); i++) {
+        getFit(i);
+      }
+    }
+
+    /**
+     * Gets the dataset at an index.
+     *
+     * @param i the index
+     * @return the dataset
+     */
+    public Dataset getDataset(int i) {
+      return datasets.get(i);
+    }
+
+    /**
+     * Gets the fitted parameter values for a dataset, waiting if necessary.
+     *
+     * @param i the dataset index
+     * @return the parameter values, or null if the fit was cancelled
+     */
+    public double[] getParameters(int i) {
+      double[] result = getFit(i);
+      if(result==null) {
+        return null;
+      }
+      double[] params = new double[paramCount];
+      System.arraycopy(result, 0, params, 0, paramCount);
+      return params;
+    }
+
+    /**
+     * Gets the rms deviation of the fit to a dataset, waiting if necessary.
+     *
+     * @param i the dataset index
+     * @return the rms deviation, or NaN if the fit was cancelled
+     */
+    public double getRMSDeviation(int i) {
+      double[] result = getFit(i);
+      int n = pointCounts[i];
+      return((result==null)||(n==0)) ? Double.NaN : Math.sqrt(result[paramCount]/n);
+    }
+
+    private double[] getFit(int i) {
+      try {
+        return getResult(futures.get(i));
+      } catch(CancellationException ex) {
+        return null;
+      }
+    }
+
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,203 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.tools;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ResourceCache is a bounded least-recently-used cache. Each value has a
+ * weight, such as its size in bytes, and the least recently used values are
+ * evicted when the total weight exceeds the maximum. Values heavier than the
+ * maximum are not cached. All methods are synchronized so a cache may be
+ * shared by threads.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ * @version 1.0
+ */
+public class ResourceCache<K, V> {
+  private LinkedHashMap<K, Entry<V>> map = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+  private long maxWeight;
+  private long weight;
+  private int hits, misses, evictions;
+
+  /**
+   * Constructs a cache with a maximum total weight.
+   *
+   * @param maxWeight the maximum weight
+   */
+  public ResourceCache(long maxWeight) {
+    this.maxWeight = maxWeight;
+  }
+
+  /**
+   * Gets a value and marks it as recently used.
+   *
+   * @param key the key
+   * @return the value, or null if not cached
+   */
+  public synchronized V get(K key) {
+    Entry<V> entry = map.get(key);
+    if(entry==null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.value;
+  }
+
+  /**
+   * Adds a value, evicting least recently used values as needed.
+   *
+   * @param key the key
+   * @param value the value
+   * @param valueWeight the weight of the value
+   */
+  public synchronized void put(K key, V value, long valueWeight) {
+    remove(key);
+    if((value==null)||(valueWeight>maxWeight)) {
+      return;
+    }
+    map.put(key, new Entry<V>(value, valueWeight));
+    weight += valueWeight;
+    trim();
+  }
+
+  /**
+   * Removes a value.
+   *
+   * @param key the key
+   * @return the removed value, or null if not cached
+   */
+  public synchronized V remove(K key) {
+    Entry<V> entry = map.remove(key);
+    if(entry==null) {
+      return null;
+    }
+    weight -= entry.weight;
+    return entry.value;
+  }
+
+  /**
+   * Removes all values.
+   */
+  public synchronized void clear() {
+    map.clear();
+    weight = 0;
+  }
+
+  /**
+   * Sets the maximum total weight, evicting values if needed.
+   *
+   * @param max the maximum weight
+   */
+  public synchronized void setMaxWeight(long max) {
+    maxWeight = max;
+    trim();
+  }
+
+  /**
+   * Gets the maximum total weight.
+   *
+   * @return the maximum weight
+   */
+  public synchronized long getMaxWeight() {
+    return maxWeight;
+  }
+
+  /**
+   * Gets the total weight of the cached values.
+   *
+   * @return the weight
+   */
+  public synchronized long getWeight() {
+    return weight;
+  }
+
+  /**
+   * Gets the number of cached values.
+   *
+   * @return the size
+   */
+  public synchronized int size() {
+    return map.size();
+  }
+
+  /**
+   * Gets the number of get calls that found a value.
+   *
+   * @return the hit count
+   */
+  public synchronized int getHitCount() {
+    return hits;
+  }
+
+  /**
+   * Gets the number of get calls that found no value.
+   *
+   * @return the miss count
+   */
+  public synchronized int getMissCount() {
+    return misses;
+  }
+
+  /**
+   * Gets the number of values evicted to stay within the maximum weight.
+   *
+   * @return the eviction count
+   */
+  public synchronized int getEvictionCount() {
+    return evictions;
+  }
+
+  private void trim() {
+    Iterator<Map.Entry<K, Entry<V>>> it = map.entrySet().iterator();
+    while((weight>maxWeight)&&it.hasNext()) {
+      weight -= it.next().getValue().weight;
+      it.remove();
+      evictions++;
+    }
+  }
+
+  private static class Entry<V> {
+    V value;
+    long weight;
+
+    Entry(V value, long weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
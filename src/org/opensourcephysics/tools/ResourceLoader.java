@@ -10,6 +10,7 @@ package org.opensourcephysics.tools;
 import java.applet.AudioClip;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -19,10 +20,11 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.security.AccessControlException;
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.zip.ZipEntry;
 import javax.swing.ImageIcon;
 import org.opensourcephysics.controls.OSPLog;
 import org.opensourcephysics.controls.XML;
@@ -38,9 +40,11 @@ public class ResourceLoader {
   protected static ArrayList<String> searchPaths = new ArrayList<String>();                        // search paths
   protected static ArrayList<String> appletSearchPaths = new ArrayList<String>();                  // search paths for apples
   protected static int maxPaths = 20;                                                              // max number of paths in history
-  protected static Hashtable<String, Resource> resources = new Hashtable<String, Resource>();      // cached resources
+  protected static ResourceCache<String, Resource> resources = new ResourceCache<String, Resource>(1000); // cached resources, weighed by count
+  protected static ResourceCache<String, byte[]> byteCache = new ResourceCache<String, byte[]>(32L<<20);  // bytes by content key
+  protected static ResourceCache<String, Object> imageCache = new ResourceCache<String, Object>(64L<<20); // decoded images by content key
   protected static boolean cacheEnabled = false;
-  protected static Map<String, URLClassLoader> zipLoaders = new TreeMap<String, URLClassLoader>(); // maps zip to zipLoader
+  protected static Map<String, URLClassLoader> zipLoaders = Collections.synchronizedMap(new TreeMap<String, URLClassLoader>()); // maps zip to zipLoader
   protected static URLClassLoader xsetZipLoader; // zipLoader of current xset
   protected static ArrayList<String> extractExtensions = new ArrayList<String>();
 
@@ -370,6 +374,30 @@ public class ResourceLoader {
     return cacheEnabled;
   }
 
+  /**
+   * Sets the limits of the caches. Resources are cached by path only when the
+   * cacheEnabled property is true. Resource bytes and decoded images are always
+   * cached, keyed by path and modification time, so changed files are reloaded.
+   *
+   * @param resourceCount the maximum number of cached resources
+   * @param byteCount the maximum number of cached resource bytes
+   * @param imageByteCount the maximum number of cached decoded image bytes
+   */
+  public static void setCacheLimits(int resourceCount, long byteCount, long imageByteCount) {
+    resources.setMaxWeight(resourceCount);
+    byteCache.setMaxWeight(byteCount);
+    imageCache.setMaxWeight(imageByteCount);
+  }
+
+  /**
+   * Removes all cached resources, bytes and images.
+   */
+  public static void clearCache() {
+    resources.clear();
+    byteCache.clear();
+    imageCache.clear();
+  }
+
   /**
    * Adds an extension to the end of the extractExtensions list.
    * Files with this extension found inside jars are extracted before loading.
@@ -405,13 +433,49 @@ public class ResourceLoader {
     return(res==null) ? null : res.getString();
   }
 
+  /**
+   * Gets the bytes of a resource. The bytes are cached by path and modification
+   * time and are shared, so they must not be modified.
+   *
+   * @param path the path
+   * @return the bytes, or null if not found
+   */
+  public static byte[] getBytes(String path) {
+    Resource res = getResource(path);
+    if(res==null) {
+      return null;
+    }
+    String key = getContentKey(res);
+    byte[] bytes = byteCache.get(key);
+    if(bytes==null) {
+      InputStream in = res.openInputStream();
+      if(in==null) {
+        return null;
+      }
+      try {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while((n = in.read(buffer))!=-1) {
+          out.write(buffer, 0, n);
+        }
+        in.close();
+        bytes = out.toByteArray();
+      } catch(IOException ex) {
+        return null;
+      }
+      byteCache.put(key, bytes, bytes.length);
+    }
+    return bytes;
+  }
+
   public static ImageIcon getIcon(String path) {
     URL url = getAppletResourceURL(path); // added by W. Christian
     if(url!=null) {
       return new ImageIcon(url);
     }
     Resource res = getResource(path);
-    return(res==null) ? null : res.getIcon();
+    return(res==null) ? null : getIcon(res);
   }
 
   public static Image getImage(String path) {
@@ -420,12 +484,25 @@ public class ResourceLoader {
       return new ImageIcon(url).getImage();
     }
     Resource res = getResource(path);
-    return(res==null) ? null : res.getImage();
+    ImageIcon icon = (res==null) ? null : getIcon(res);
+    return(icon==null) ? null : icon.getImage();
   }
 
   public static BufferedImage getBufferedImage(String path) {
     Resource res = getResource(path);
-    return(res==null) ? null : res.getBufferedImage();
+    if(res==null) {
+      return null;
+    }
+    // decoded images are shared by path and modification time
+    String key = getContentKey(res)+"#buffered"; //$NON-NLS-1$
+    BufferedImage image = (BufferedImage) imageCache.get(key);
+    if(image==null) {
+      image = res.getBufferedImage();
+      if(image!=null) {
+        imageCache.put(key, image, 4L*image.getWidth()*image.getHeight());
+      }
+    }
+    return image;
   }
 
   public static AudioClip getAudioClip(String path) {
@@ -435,6 +512,69 @@ public class ResourceLoader {
 
   // ______________________________ private methods ___________________________
 
+  /**
+   * Gets the icon of a resource from the image cache, decoding it if needed.
+   *
+   * @param res the resource
+   * @return the icon, or null if not an image
+   */
+  private static ImageIcon getIcon(Resource res) {
+    String key = getContentKey(res)+"#icon"; //$NON-NLS-1$
+    ImageIcon icon = (ImageIcon) imageCache.get(key);
+    if(icon==null) {
+      icon = res.getIcon();
+      if(icon!=null) {
+        imageCache.put(key, icon, 4L*icon.getIconWidth()*icon.getIconHeight());
+      }
+    }
+    return icon;
+  }
+
+  /**
+   * Gets a key that identifies the content of a resource: its path and the
+   * modification time of its file or of the zip file that contains it.
+   *
+   * @param res the resource
+   * @return the key
+   */
+  private static String getContentKey(Resource res) {
+    File file = res.getFile();
+    if(file!=null) {
+      return file.getAbsolutePath()+"@"+file.lastModified(); //$NON-NLS-1$
+    }
+    String path = res.getURL().toExternalForm();
+    String filePath = path;
+    if(path.startsWith("jar:")) {                           //$NON-NLS-1$
+      int i = path.indexOf("!/");                           //$NON-NLS-1$
+      filePath = (i==-1) ? "" : path.substring(4, i);       //$NON-NLS-1$
+    }
+    if(filePath.startsWith("file:")) {                      //$NON-NLS-1$
+      try {
+        return path+"@"+new File(new URL(filePath).toURI()).lastModified(); //$NON-NLS-1$
+      } catch(Exception ex) {
+        /** empty block */
+      }
+    }
+    return path;
+  }
+
+  /**
+   * Determines if a local zip file is known not to contain a file. The zip
+   * contents are indexed once by JarTool, so misses need no class loader.
+   *
+   * @param zipPath the zip file path
+   * @param fileName the name of the file in the zip
+   * @return true if the zip file was indexed and does not contain the file
+   */
+  private static boolean isMissingFromZip(String zipPath, String fileName) {
+    File zip = new File(zipPath);
+    if(!zip.isFile()||fileName.endsWith("/")) { //$NON-NLS-1$
+      return false;
+    }
+    Map<String, ZipEntry> contents = JarTool.getJarContents(zip);
+    return(contents!=null)&&!contents.containsKey(fileName);
+  }
+
   /**
    * Gets the resource URL using the applet's class loader.
    * Added by Wolfgang Christian.
@@ -616,7 +756,7 @@ public class ResourceLoader {
     }
     URLClassLoader zipLoader = null;
     URL url = null;
-    if(base!=null) {
+    if((base!=null)&&!isMissingFromZip(base, fileName)) {
       // use existing zip loader, if any
       zipLoader = zipLoaders.get(base);
       if(zipLoader!=null) {
@@ -647,19 +787,21 @@ public class ResourceLoader {
     if((url==null)&&(xsetZipLoader!=null)) {
       url = xsetZipLoader.findResource(fileName);
       if(url!=null) {
-        Iterator<String> it = zipLoaders.keySet().iterator();
-        while(it.hasNext()) {
-          Object key = it.next();
-          if(zipLoaders.get(key)==xsetZipLoader) {
-            base = (String) key;
-            break;
+        synchronized(zipLoaders) {
+          Iterator<String> it = zipLoaders.keySet().iterator();
+          while(it.hasNext()) {
+            Object key = it.next();
+            if(zipLoaders.get(key)==xsetZipLoader) {
+              base = (String) key;
+              break;
+            }
           }
         }
       }
     }
     String launchJarPath = OSPRuntime.getLaunchJarPath();
     // if still not found, use launch jar loader, if any
-    if((url==null)&&(launchJarPath!=null)) {
+    if((url==null)&&(launchJarPath!=null)&&!isMissingFromZip(launchJarPath, fileName)) {
       zipLoader = zipLoaders.get(launchJarPath);
       if(zipLoader!=null) {
         url = zipLoader.findResource(fileName);
@@ -813,7 +955,7 @@ public class ResourceLoader {
     }
     if((res = createClassResource(path, type))!=null) {
       if(cacheEnabled) {
-        resources.put(path, res);
+        resources.put(path, res, 1);
       }
       return res;
     }
@@ -838,7 +980,7 @@ public class ResourceLoader {
     // search files only if flagged
     if((searchFiles&&(res = createFileResource(path))!=null)||(res = createURLResource(path))!=null||(res = createZipResource(path))!=null||(res = createClassResource(path, type))!=null) {
       if(cacheEnabled) {
-        resources.put(path, res);
+        resources.put(path, res, 1);
       }
       return res;
     }
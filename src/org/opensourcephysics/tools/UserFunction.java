@@ -6,6 +6,7 @@
  */
 
 package org.opensourcephysics.tools;
+import java.util.Arrays;
 import org.opensourcephysics.controls.XML;
 import org.opensourcephysics.controls.XMLControl;
 import org.opensourcephysics.controls.XMLLoader;
@@ -357,6 +358,46 @@ public class UserFunction implements KnownFunction, MultiVarFunction, Cloneable
     return function.evaluate(values);
   }
 
+  /**
+   * Evaluates the function for a single variable x and its partial derivatives
+   * with respect to the parameters. The derivatives are found by automatic
+   * differentiation of the parsed expression and of any reference functions.
+   *
+   * @param x
+   * @param gradient an array of length getParameterCount() that is filled with the derivatives
+   * @return f(x)
+   */
+  public double evaluateWithGradient(double x, double[] gradient) {
+    int m = paramValues.length;
+    if(function==null) {
+      Arrays.fill(gradient, Double.NaN);
+      return Double.NaN;
+    }
+    double[] supportValues = new double[references.length];
+    double[][] supportGradients = new double[references.length][];
+    for(int i = 0; i<supportValues.length; i++) {
+      supportGradients[i] = new double[references[i].getParameterCount()];
+      supportValues[i] = references[i].evaluateWithGradient(x, supportGradients[i]);
+    }
+    int n = supportValues.length+m+1;
+    double[] values = new double[n];
+    double[] partials = new double[n];
+    values[0] = x;
+    System.arraycopy(paramValues, 0, values, 1, m);
+    System.arraycopy(supportValues, 0, values, 1+m, supportValues.length);
+    double result = function.evaluate(values, partials);
+    // chain rule: parameters affect f directly and through the reference functions
+    for(int k = 0; k<m; k++) {
+      gradient[k] = partials[1+k];
+      for(int i = 0; i<supportValues.length; i++) {
+        if(k<supportGradients[i].length) {
+          gradient[k] += partials[1+m+i]*supportGradients[i][k];
+        }
+      }
+    }
+    return result;
+  }
+
   /**
    * Evaluates the function for a variables array x.
    *